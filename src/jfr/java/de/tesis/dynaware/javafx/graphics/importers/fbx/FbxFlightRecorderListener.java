@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * An {@link FbxImportListener} that emits Java Flight Recorder events, so that imports can be correlated with garbage
+ * collection and allocation in a recording.
+ *
+ * <p>
+ * An <tt>de.tesis.dynaware.fbx.Import</tt> event spans every import. When the import ends, one
+ * <tt>de.tesis.dynaware.fbx.ImportPhase</tt> event is committed per phase that was run. Events cost next to nothing
+ * while no recording is running.
+ * </p>
+ *
+ * <p>
+ * A listener instance must only be used for one import at a time. The flight recorder API is only available on Java 8
+ * update 262 and later, see {@link #isAvailable()}.
+ * </p>
+ */
+public class FbxFlightRecorderListener implements FbxImportListener {
+
+    private static final String EVENT_CLASS = "jdk.jfr.Event";
+
+    private FbxImportEvent event;
+
+    /**
+     * Checks whether the flight recorder API is available in this JVM.
+     *
+     * @return <tt>true</tt> if the listener can be used
+     */
+    public static boolean isAvailable() {
+
+        try {
+            Class.forName(EVENT_CLASS, false, FbxFlightRecorderListener.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void importStarted(String filePath) {
+
+        event = new FbxImportEvent();
+        event.filePath = filePath;
+        event.begin();
+    }
+
+    @Override
+    public void importFinished(String filePath, FbxImportStats stats) {
+        commit(filePath, stats, true);
+    }
+
+    @Override
+    public void importFailed(String filePath, FbxImportStats stats, Throwable cause) {
+        commit(filePath, stats, false);
+    }
+
+    private void commit(String filePath, FbxImportStats stats, boolean success) {
+
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+
+        if (event.shouldCommit()) {
+
+            event.success = success;
+            event.cacheHit = stats.isCacheHit();
+            event.nodeCount = stats.getNodeCount();
+            event.meshCount = stats.getMeshCount();
+            event.geometryCount = stats.getGeometryCount();
+            event.materialCount = stats.getMaterialCount();
+            event.triangleCount = stats.getTriangleCount();
+            event.meshBytes = stats.getMeshBytes();
+            event.allocatedBytes = stats.getAllocatedBytes();
+            event.commit();
+        }
+        event = null;
+
+        for (FbxImportPhase phase : FbxImportPhase.values()) {
+
+            if (stats.getTime(phase) == 0 && stats.getCount(phase) == 0) {
+                continue;
+            }
+
+            FbxImportPhaseEvent phaseEvent = new FbxImportPhaseEvent();
+            if (phaseEvent.isEnabled()) {
+                phaseEvent.filePath = filePath;
+                phaseEvent.phase = phase.name();
+                phaseEvent.time = stats.getTime(phase);
+                phaseEvent.bytes = stats.getBytes(phase);
+                phaseEvent.count = stats.getCount(phase);
+                phaseEvent.commit();
+            }
+        }
+    }
+}
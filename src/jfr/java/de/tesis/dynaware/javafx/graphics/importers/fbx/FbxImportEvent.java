@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event spanning a whole import by {@link FbxImporter}.
+ */
+@Name("de.tesis.dynaware.fbx.Import")
+@Label("FBX Import")
+@Category({ "FBX Importer" })
+@Description("The import of an FBX file")
+@StackTrace(false)
+class FbxImportEvent extends Event {
+
+    @Label("File")
+    String filePath;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Nodes")
+    long nodeCount;
+
+    @Label("Meshes")
+    long meshCount;
+
+    @Label("Geometries")
+    long geometryCount;
+
+    @Label("Materials")
+    long materialCount;
+
+    @Label("Triangles")
+    long triangleCount;
+
+    @Label("Mesh Size")
+    @DataAmount
+    long meshBytes;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event with the statistics of one {@link FbxImportPhase} of an import.
+ *
+ * <p>
+ * The phases of an import overlap and partly run on several threads, so the time spent in a phase is recorded as a
+ * field. The events are committed when the import ends.
+ * </p>
+ */
+@Name("de.tesis.dynaware.fbx.ImportPhase")
+@Label("FBX Import Phase")
+@Category({ "FBX Importer" })
+@Description("The time, bytes and item count of a phase of an FBX import")
+@StackTrace(false)
+class FbxImportPhaseEvent extends Event {
+
+    @Label("File")
+    String filePath;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Phase Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Count")
+    long count;
+}
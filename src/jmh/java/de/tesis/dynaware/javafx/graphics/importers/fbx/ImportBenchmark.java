@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.Group;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the end-to-end import of small, medium and huge scenes by {@link FbxImporter}.
+ *
+ * <p>
+ * With <tt>lib=stub</tt> the scenes are generated by a {@link StubFbxLib}, so only the Java side of the importer is
+ * measured. With <tt>lib=java</tt> or <tt>lib=native</tt> the files <tt>small.fbx</tt>, <tt>medium.fbx</tt> and
+ * <tt>huge.fbx</tt> are read from the directory given by the system property {@value #FIXTURES_PROPERTY} with the
+ * {@link BinaryFbxLib} or the {@link JFbxLib}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImportBenchmark {
+
+    /**
+     * System property with the directory of the FBX fixtures for the <tt>java</tt> and <tt>native</tt> libraries.
+     */
+    public static final String FIXTURES_PROPERTY = "fbx.benchmark.fixtures";
+
+    private static final String LIB_STUB = "stub";
+    private static final String LIB_JAVA = "java";
+    private static final String LIB_NATIVE = "native";
+
+    @Param({ "small", "medium", "huge" })
+    private String scene;
+
+    @Param({ LIB_STUB })
+    private String lib;
+
+    private String url;
+    private FbxLib fbxLib;
+
+    /**
+     * Creates the library and locates the scene.
+     *
+     * @throws IOException if the fixture file does not exist
+     */
+    @Setup
+    public void setUp() throws IOException {
+
+        switch (lib) {
+        case LIB_STUB:
+            fbxLib = createStubFbxLib(scene);
+            url = new File(scene + ".fbx").toURI().toString();
+            return;
+        case LIB_JAVA:
+            fbxLib = new BinaryFbxLib();
+            break;
+        case LIB_NATIVE:
+            fbxLib = new JFbxLib(true);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown library [" + lib + "]");
+        }
+
+        File file = new File(System.getProperty(FIXTURES_PROPERTY, "."), scene + ".fbx");
+        if (!file.isFile()) {
+            throw new IOException("Fixture not found, set " + FIXTURES_PROPERTY + " [" + file + "]");
+        }
+        url = file.toURI().toString();
+    }
+
+    /**
+     * Imports the scene, without loading texture maps.
+     *
+     * @return the root of the imported scene
+     * @throws IOException if the scene cannot be read
+     */
+    @Benchmark
+    public Group importScene() throws IOException {
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setLoadTextures(false);
+
+        return new FbxImporter(url, fbxLib, options).getRoot();
+    }
+
+    /**
+     * Creates the stub library for a scene.
+     *
+     * @param scene <tt>small</tt>, <tt>medium</tt> or <tt>huge</tt>
+     * @return a {@link StubFbxLib} generating the scene
+     */
+    static StubFbxLib createStubFbxLib(String scene) {
+
+        switch (scene) {
+        case "small":
+            return new StubFbxLib(8, 16);
+        case "medium":
+            return new StubFbxLib(256, 32);
+        case "huge":
+            return new StubFbxLib(1024, 48);
+        default:
+            throw new IllegalArgumentException("Unknown scene [" + scene + "]");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of JavaFX materials from the raw material parameters.
+ *
+ * <p>
+ * Texture maps are not part of this benchmark, as they are decoded in the background by the
+ * {@link FbxTextureCache}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MaterialBenchmark {
+
+    private final FbxMaterialData materialData = new FbxMaterialData("material", new double[] { 0.2, 0.5, 1.2, 1 },
+            new double[] { 1, 1, 1, 1 }, 32, null, null, null, null);
+
+    /**
+     * Creates a material with diffuse and specular colors and a specular power.
+     *
+     * @return the new material
+     */
+    @Benchmark
+    public PhongMaterial createMaterial() {
+        return FbxImporter.createMaterial(materialData);
+    }
+
+    /**
+     * Creates a color, clamping its values.
+     *
+     * @return the new color
+     */
+    @Benchmark
+    public Color createColor() {
+        return FbxImporter.createColor(new double[] { -0.5, 0.5, 1.5, 1 });
+    }
+}
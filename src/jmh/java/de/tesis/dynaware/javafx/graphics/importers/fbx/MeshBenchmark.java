@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.shape.TriangleMesh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the steps that turn the raw data of a single mesh into a {@link TriangleMesh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeshBenchmark {
+
+    // Cells per side of the grid mesh, with 2 triangles per cell.
+    @Param({ "16", "128", "512" })
+    private int gridSize;
+
+    private FbxMeshData meshData;
+    private ByteBuffer buffer;
+
+    /**
+     * Generates the mesh data and its packed form.
+     */
+    @Setup
+    public void setUp() {
+
+        meshData = StubFbxLib.createGrid(gridSize);
+
+        float[] vertices = meshData.getVertices();
+        float[] texCoords = meshData.getTexCoords();
+        int[] faces = meshData.getFaces();
+        int[] smoothingGroups = meshData.getSmoothingGroups();
+
+        buffer = FbxMeshData.allocate(FbxMeshData.getSize(vertices, texCoords, faces, smoothingGroups));
+        FbxMeshData.encode(buffer, vertices, texCoords, faces, smoothingGroups);
+    }
+
+    /**
+     * Populates a triangle mesh from the float and int arrays.
+     *
+     * @return the new mesh
+     */
+    @Benchmark
+    public TriangleMesh createMesh() {
+        return FbxImporter.createMesh(meshData);
+    }
+
+    /**
+     * Computes the normals of the mesh data and populates a triangle mesh with them.
+     *
+     * @return the new mesh
+     */
+    @Benchmark
+    public TriangleMesh createMeshWithNormals() {
+        return FbxMeshNormals.createMesh(meshData);
+    }
+
+    /**
+     * Unpacks the arrays from the direct buffer filled by {@link FbxLib#getMeshData(int, ByteBuffer)}.
+     *
+     * @return the unpacked mesh data
+     */
+    @Benchmark
+    public FbxMeshData decodeMeshData() {
+        return FbxMeshData.decode(buffer);
+    }
+
+    /**
+     * Unpacks the arrays from the direct buffer and populates a triangle mesh from them.
+     *
+     * @return the new mesh
+     */
+    @Benchmark
+    public TriangleMesh decodeAndCreateMesh() {
+        return FbxImporter.createMesh(FbxMeshData.decode(buffer));
+    }
+}
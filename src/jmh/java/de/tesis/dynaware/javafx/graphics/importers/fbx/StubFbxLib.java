@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link FbxLib} that serves a generated scene from memory instead of reading a file.
+ *
+ * <p>
+ * The scene is a root node with one child per mesh. Every mesh has its own geometry, a square grid of triangles, and
+ * one of a few materials. This allows the Java side of the importer to be measured without the FBX SDK and without
+ * the cost of parsing a file. The grid is generated once, so an instance can be opened again for every import.
+ * </p>
+ */
+class StubFbxLib implements FbxLib {
+
+    private static final String MESH = "mesh";
+    private static final int MATERIAL_COUNT = 4;
+
+    private final int meshCount;
+    private final FbxMeshData grid;
+    private final int gridDataSize;
+
+    // -1 for the root node, otherwise the index of the mesh node.
+    private int currentNode;
+    private boolean open;
+
+    /**
+     * Creates a new stub library.
+     *
+     * @param meshCount the number of mesh nodes below the root
+     * @param gridSize the number of grid cells per side of every mesh, each cell being two triangles
+     */
+    StubFbxLib(int meshCount, int gridSize) {
+        this(meshCount, createGrid(gridSize));
+    }
+
+    /**
+     * Creates a new stub library.
+     *
+     * @param meshCount the number of mesh nodes below the root
+     * @param grid the mesh data returned for every mesh node
+     */
+    StubFbxLib(int meshCount, FbxMeshData grid) {
+        this.meshCount = meshCount;
+        this.grid = grid;
+        gridDataSize = FbxMeshData.getSize(grid.getVertices(), grid.getTexCoords(), grid.getFaces(),
+                grid.getSmoothingGroups());
+    }
+
+    /**
+     * Creates the data of a flat square grid mesh in the xz plane.
+     *
+     * @param gridSize the number of cells per side
+     * @return the mesh data of <tt>2 * gridSize * gridSize</tt> triangles
+     */
+    static FbxMeshData createGrid(int gridSize) {
+
+        int side = gridSize + 1;
+        float[] vertices = new float[3 * side * side];
+        float[] texCoords = new float[2 * side * side];
+
+        for (int z = 0; z < side; z++) {
+            for (int x = 0; x < side; x++) {
+                int v = z * side + x;
+                vertices[3 * v] = x;
+                vertices[3 * v + 2] = z;
+                texCoords[2 * v] = x / (float) gridSize;
+                texCoords[2 * v + 1] = z / (float) gridSize;
+            }
+        }
+
+        int[] faces = new int[12 * gridSize * gridSize];
+        int[] smoothingGroups = new int[2 * gridSize * gridSize];
+        int f = 0;
+
+        for (int z = 0; z < gridSize; z++) {
+            for (int x = 0; x < gridSize; x++) {
+                int v = z * side + x;
+                f = addTriangle(faces, f, v, v + side, v + 1);
+                f = addTriangle(faces, f, v + 1, v + side, v + side + 1);
+            }
+        }
+        for (int t = 0; t < smoothingGroups.length; t++) {
+            smoothingGroups[t] = 1;
+        }
+
+        return new FbxMeshData(vertices, texCoords, faces, smoothingGroups);
+    }
+
+    private static int addTriangle(int[] faces, int f, int v0, int v1, int v2) {
+
+        // The texture coordinates are laid out like the vertices, so both indices are the same.
+        faces[f++] = v0;
+        faces[f++] = v0;
+        faces[f++] = v1;
+        faces[f++] = v1;
+        faces[f++] = v2;
+        faces[f++] = v2;
+        return f;
+    }
+
+    @Override
+    public boolean open(String filePath) {
+        currentNode = -1;
+        open = true;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean nextChild() {
+
+        checkOpen();
+
+        if (currentNode >= 0 || meshCount == 0) {
+            return false;
+        }
+        currentNode = 0;
+        return true;
+    }
+
+    @Override
+    public boolean nextSibling() {
+
+        checkOpen();
+
+        if (currentNode < 0 || currentNode + 1 >= meshCount) {
+            return false;
+        }
+        currentNode++;
+        return true;
+    }
+
+    @Override
+    public boolean nextParent() {
+
+        checkOpen();
+
+        if (currentNode < 0) {
+            return false;
+        }
+        currentNode = -1;
+        return true;
+    }
+
+    @Override
+    public boolean selectNode(int node) {
+
+        checkOpen();
+
+        if (node < 0 || node > meshCount) {
+            return false;
+        }
+        currentNode = node - 1;
+        return true;
+    }
+
+    @Override
+    public String getNodeName() {
+        return currentNode < 0 ? "root" : "mesh" + currentNode;
+    }
+
+    @Override
+    public double[] getNodeGlobalAffineTransformation() {
+
+        double[] transform = new double[16];
+        transform[0] = 1;
+        transform[5] = 1;
+        transform[10] = 1;
+        transform[15] = 1;
+
+        // Lay the meshes out next to each other.
+        transform[12] = Math.max(currentNode, 0) * grid.getVertices()[grid.getVertices().length - 3];
+        return transform;
+    }
+
+    @Override
+    public double[] getNodeGeometricTranslation() {
+        return new double[3];
+    }
+
+    @Override
+    public int getNodeAttributeCount() {
+        return currentNode < 0 ? 0 : 1;
+    }
+
+    @Override
+    public String getNodeAttributeName(int i) {
+        return getNodeName();
+    }
+
+    @Override
+    public String getNodeAttributeType(int i) {
+        return MESH;
+    }
+
+    @Override
+    public long getNodeAttributeId(int i) {
+        return currentNode;
+    }
+
+    @Override
+    public boolean isTriangleMesh(int i) {
+        return true;
+    }
+
+    @Override
+    public void triangulate(int i) {
+    }
+
+    @Override
+    public float[] getMeshVertices(int i) {
+        return grid.getVertices().clone();
+    }
+
+    @Override
+    public float[] getMeshTexCoords(int i) {
+        return grid.getTexCoords().clone();
+    }
+
+    @Override
+    public int[] getMeshFaces(int i) {
+        return grid.getFaces().clone();
+    }
+
+    @Override
+    public int[] getMeshFaceSmoothingGroups(int i) {
+        return grid.getSmoothingGroups().clone();
+    }
+
+    @Override
+    public int getMeshDataSize(int i) {
+        return gridDataSize;
+    }
+
+    @Override
+    public boolean getMeshData(int i, ByteBuffer buffer) {
+        FbxMeshData.encode(buffer, grid.getVertices(), grid.getTexCoords(), grid.getFaces(),
+                grid.getSmoothingGroups());
+        return true;
+    }
+
+    @Override
+    public int getMaterialCount() {
+        return currentNode < 0 ? 0 : 1;
+    }
+
+    @Override
+    public String getMaterialName(int j) {
+        return "material" + currentNode % MATERIAL_COUNT;
+    }
+
+    @Override
+    public double[] getMaterialDiffuseColor(int j) {
+        return new double[] { 0.2 * (currentNode % MATERIAL_COUNT), 0.5, 0.8, 1 };
+    }
+
+    @Override
+    public double[] getMaterialSpecularColor(int j) {
+        return new double[] { 1, 1, 1, 1 };
+    }
+
+    @Override
+    public double getMaterialSpecularPower(int j) {
+        return 32;
+    }
+
+    @Override
+    public String getMaterialDiffuseMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialSpecularMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialBumpMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialSelfIlluminationMap(int j) {
+        return null;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("No file is open");
+        }
+    }
+}
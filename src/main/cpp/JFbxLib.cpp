@@ -10,45 +10,73 @@
 
 #include "JFbxLib.h"
 
-JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_open(JNIEnv *env, jobject obj, jstring filePath) {
+JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_open(JNIEnv *env, jobject obj, jstring filePath, jboolean preprocess, jboolean convertSmoothing) {
 
-	sdkManager = FbxManager::Create();
+	// Release any file that this instance still has open.
+	destroyContext(env, obj);
 
-	FbxIOSettings *ios = FbxIOSettings::Create(sdkManager, IOSROOT);
+	JFbxContext *context = new JFbxContext();
+	context->convertSmoothing = convertSmoothing == JNI_TRUE;
 
-	sdkManager->SetIOSettings(ios);
+	context->sdkManager = FbxManager::Create();
 
-	FbxImporter *importer = FbxImporter::Create(sdkManager,"");
+	FbxIOSettings *ios = FbxIOSettings::Create(context->sdkManager, IOSROOT);
 
-	if(!importer->Initialize(env->GetStringUTFChars(filePath, 0), -1, sdkManager->GetIOSettings())) {
+	context->sdkManager->SetIOSettings(ios);
+
+	FbxImporter *importer = FbxImporter::Create(context->sdkManager,"");
+
+	const char *path = env->GetStringUTFChars(filePath, 0);
+	const bool initialized = importer->Initialize(path, -1, context->sdkManager->GetIOSettings());
+	env->ReleaseStringUTFChars(filePath, path);
+
+	if(!initialized) {
+		context->sdkManager->Destroy();
+		delete context;
 		throwIOException(env);
+		return JNI_FALSE;
 	}
 
-	FbxScene *scene = FbxScene::Create(sdkManager,"");
+	FbxScene *scene = FbxScene::Create(context->sdkManager,"");
 
 	importer->Import(scene);
 	importer->Destroy();
 
-	currentNode = scene->GetRootNode();
+	context->currentNode = scene->GetRootNode();
+
+	if (preprocess) {
+		context->triangulated = preprocessScene(context, scene);
+	}
+
+	setContext(env, obj, context);
 
 	return JNI_TRUE;
 }
 
 JNIEXPORT void JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_close(JNIEnv *env, jobject obj) {
 
+	destroyContext(env, obj);
+}
+
+JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_isTriangulated(JNIEnv *env, jobject obj) {
+
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { return; }
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
 
-	sdkManager->Destroy();
+	return context->triangulated ? JNI_TRUE : JNI_FALSE;
 }
 
 JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_nextChild(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
 
-	if (currentNode->GetChildCount(false)>0) {
-		currentNode = currentNode->GetChild(0);
+	if (context->currentNode->GetChildCount(false)>0) {
+		context->currentNode = context->currentNode->GetChild(0);
 		return JNI_TRUE;
 	}
 	else {
@@ -58,18 +86,20 @@ JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_
 
 JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_nextSibling(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
 
-	FbxNode *parent = currentNode->GetParent();
+	FbxNode *parent = context->currentNode->GetParent();
 
 	if (parent!=NULL) {
 		const int siblingCount = parent->GetChildCount(false);
 
 		for (int i=0; i<siblingCount-1; i++) {
 			FbxNode *sibling = parent->GetChild(i);
-			if (currentNode == sibling) {
-				currentNode = parent->GetChild(i+1);
+			if (context->currentNode == sibling) {
+				context->currentNode = parent->GetChild(i+1);
 				return JNI_TRUE;
 			}
 		}
@@ -79,11 +109,126 @@ JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_
 
 JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_nextParent(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
+
+	if (context->currentNode->GetParent()!=NULL) {
+		context->currentNode = context->currentNode->GetParent();
+		return JNI_TRUE;
+	}
+	else {
+		return JNI_FALSE;
+	}
+}
+
+JNIEXPORT jbyteArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeTableData(JNIEnv *env, jobject obj) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
+
+	collectNodes(context);
+
+	const jint nodeCount = (jint) context->nodes.size();
+	jint attributeCount = 0;
+	jint stringByteCount = 0;
+
+	for (jint i=0; i<nodeCount; i++) {
+		FbxNode *node = context->nodes[i];
+		attributeCount += node->GetNodeAttributeCount();
+		stringByteCount += (jint) strlen(node->GetName());
+		if (node->GetMaterialCount()>0) {
+			stringByteCount += (jint) strlen(node->GetMaterial(0)->GetName());
+		}
+	}
+
+	const jsize size = NODE_TABLE_HEADER_SIZE + (19*sizeof(jdouble) + 5*sizeof(jint))*nodeCount
+		+ (sizeof(jlong) + sizeof(jint))*attributeCount + 2*sizeof(jint) + stringByteCount;
+
+	jbyteArray data = env->NewByteArray(size);
+
+	// Check memory could be allocated.
+	if (data == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jbyte *target = (jbyte *) env->GetPrimitiveArrayCritical(data, NULL);
+
+	// Check the array could be pinned or copied.
+	if (target == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jint *header = (jint *) target;
+	header[0] = nodeCount;
+	header[1] = attributeCount;
+	header[2] = stringByteCount;
+	header[3] = 0;
+
+	// The arrays of doubles and longs come first, so that every array is aligned to the size of its elements.
+	jdouble *transforms = (jdouble *) (target + NODE_TABLE_HEADER_SIZE);
+	jdouble *translations = transforms + 16*nodeCount;
+	jlong *attributeIds = (jlong *) (translations + 3*nodeCount);
+	jint *parents = (jint *) (attributeIds + attributeCount);
+	jint *stringOffsets = parents + nodeCount;
+	jint *materialCounts = stringOffsets + 2*nodeCount + 1;
+	jint *attributeOffsets = materialCounts + nodeCount;
+	jint *attributeTypes = attributeOffsets + nodeCount + 1;
+	char *strings = (char *) (attributeTypes + attributeCount);
+
+	jint attributeOffset = 0;
+	jint stringOffset = 0;
+
+	for (jint i=0; i<nodeCount; i++) {
+		FbxNode *node = context->nodes[i];
+
+		memcpy(transforms + 16*i, (double *)node->EvaluateGlobalTransform(), 16*sizeof(jdouble));
+		memcpy(translations + 3*i, (double *)node->GetGeometricTranslation(FbxNode::eSourcePivot), 3*sizeof(jdouble));
+
+		parents[i] = context->parents[i];
+
+		const char *name = node->GetName();
+		const size_t nameLength = strlen(name);
+		stringOffsets[2*i] = stringOffset;
+		memcpy(strings + stringOffset, name, nameLength);
+		stringOffset += (jint) nameLength;
+
+		const int materialCount = node->GetMaterialCount();
+		materialCounts[i] = materialCount;
+		stringOffsets[2*i+1] = stringOffset;
+		if (materialCount>0) {
+			const char *materialName = node->GetMaterial(0)->GetName();
+			const size_t materialNameLength = strlen(materialName);
+			memcpy(strings + stringOffset, materialName, materialNameLength);
+			stringOffset += (jint) materialNameLength;
+		}
+
+		attributeOffsets[i] = attributeOffset;
+		for (int j=0; j<node->GetNodeAttributeCount(); j++) {
+			FbxNodeAttribute *attribute = node->GetNodeAttributeByIndex(j);
+			attributeIds[attributeOffset] = (jlong) attribute->GetUniqueID();
+			attributeTypes[attributeOffset] = getAttributeTypeCode(attribute->GetAttributeType());
+			attributeOffset++;
+		}
+	}
+	stringOffsets[2*nodeCount] = stringOffset;
+	attributeOffsets[nodeCount] = attributeOffset;
+
+	env->ReleasePrimitiveArrayCritical(data, target, 0);
+
+	return data;
+}
+
+JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_selectNode(JNIEnv *env, jobject obj, jint node) {
+
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
+
+	collectNodes(context);
 
-	if (currentNode->GetParent()!=NULL) {
-		currentNode = currentNode->GetParent();
+	if (node>=0 && node<(jint) context->nodes.size()) {
+		context->currentNode = context->nodes[node];
 		return JNI_TRUE;
 	}
 	else {
@@ -93,18 +238,22 @@ JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeName(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
-	return env->NewStringUTF(currentNode->GetName());
+	return env->NewStringUTF(context->currentNode->GetName());
 }
 
 JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeGlobalAffineTransformation(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
-	double *fbxAffine = (double *)currentNode->EvaluateGlobalTransform();
+	double *fbxAffine = (double *)context->currentNode->EvaluateGlobalTransform();
 
 	jdoubleArray affine = env->NewDoubleArray(16);
 
@@ -118,10 +267,12 @@ JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_
 
 JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeGeometricTranslation(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
-	double *fbxTranslation = (double *)currentNode->GetGeometricTranslation(FbxNode::eSourcePivot);
+	double *fbxTranslation = (double *)context->currentNode->GetGeometricTranslation(FbxNode::eSourcePivot);
 
 	jdoubleArray translation = env->NewDoubleArray(3);
 
@@ -135,403 +286,786 @@ JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_
 
 JNIEXPORT jint JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeAttributeCount(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return 0; }
 
-	return currentNode->GetNodeAttributeCount();
+	return context->currentNode->GetNodeAttributeCount();
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeAttributeName(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
-	return env->NewStringUTF(currentNode->GetNodeAttributeByIndex(attributeIndex)->GetName());
+	return env->NewStringUTF(context->currentNode->GetNodeAttributeByIndex(attributeIndex)->GetName());
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeAttributeType(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	FbxNodeAttribute::EType eType = currentNode->GetNodeAttributeByIndex(attributeIndex)->GetAttributeType();
+	FbxNodeAttribute::EType eType = context->currentNode->GetNodeAttributeByIndex(attributeIndex)->GetAttributeType();
 
-	switch(eType) {
-	case FbxNodeAttribute::EType::eNull: return env->NewStringUTF("null");
-	case FbxNodeAttribute::EType::eMarker: return env->NewStringUTF("marker");
-	case FbxNodeAttribute::EType::eSkeleton: return env->NewStringUTF("skeleton");
-	case FbxNodeAttribute::EType::eMesh: return env->NewStringUTF("mesh");
-	case FbxNodeAttribute::EType::eNurbs: return env->NewStringUTF("nurbs");
-	case FbxNodeAttribute::EType::ePatch: return env->NewStringUTF("patch");
-	case FbxNodeAttribute::EType::eCamera: return env->NewStringUTF("camera");
-	case FbxNodeAttribute::EType::eCameraStereo: return env->NewStringUTF("stereo");
-	case FbxNodeAttribute::EType::eCameraSwitcher: return env->NewStringUTF("camera switcher");
-	case FbxNodeAttribute::EType::eLight: return env->NewStringUTF("light");
-	case FbxNodeAttribute::EType::eOpticalReference: return env->NewStringUTF("optical reference");
-	case FbxNodeAttribute::EType::eOpticalMarker: return env->NewStringUTF("marker");
-	case FbxNodeAttribute::EType::eNurbsCurve: return env->NewStringUTF("nurbs curve");
-	case FbxNodeAttribute::EType::eTrimNurbsSurface: return env->NewStringUTF("trim nurbs surface");
-	case FbxNodeAttribute::EType::eBoundary: return env->NewStringUTF("boundary");
-	case FbxNodeAttribute::EType::eNurbsSurface: return env->NewStringUTF("nurbs surface");
-	case FbxNodeAttribute::EType::eShape: return env->NewStringUTF("shape");
-	case FbxNodeAttribute::EType::eLODGroup: return env->NewStringUTF("lodgroup");
-	case FbxNodeAttribute::EType::eSubDiv: return env->NewStringUTF("subdiv");
-	default: return env->NewStringUTF("unknown");
-	}
+	return env->NewStringUTF(ATTRIBUTE_TYPE_NAMES[getAttributeTypeCode(eType)]);
+}
+
+JNIEXPORT jlong JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getNodeAttributeId(JNIEnv *env, jobject obj, jint attributeIndex) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return 0; }
+
+	// Check attribute index bounds for safety.
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return 0; }
+
+	// Instances of the same geometry share one attribute object, and so its unique id.
+	return (jlong) context->currentNode->GetNodeAttributeByIndex(attributeIndex)->GetUniqueID();
 }
 
 JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_isTriangleMesh(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return JNI_FALSE; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh)) { return false; }
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return false; }
 
-	return ((FbxMesh*) currentNode->GetNodeAttributeByIndex(attributeIndex))->IsTriangleMesh();
+	return ((FbxMesh*) context->currentNode->GetNodeAttributeByIndex(attributeIndex))->IsTriangleMesh();
 }
 
 JNIEXPORT void JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_triangulate(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh) &&
-		!isValidType(attributeIndex, FbxNodeAttribute::EType::ePatch) &&
-		!isValidType(attributeIndex, FbxNodeAttribute::EType::eNurbs) &&
-		!isValidType(attributeIndex, FbxNodeAttribute::EType::eNurbsSurface)) { return; }
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::ePatch) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eNurbs) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eNurbsSurface)) { return; }
 
-	FbxGeometryConverter *converter = new FbxGeometryConverter(sdkManager);
-	converter->Triangulate(currentNode->GetNodeAttributeByIndex(attributeIndex), true);
+	getConverter(context)->Triangulate(context->currentNode->GetNodeAttributeByIndex(attributeIndex), true);
 }
 
 JNIEXPORT jfloatArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshVertices(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
-
-	FbxMesh* mesh = (FbxMesh*)currentNode->GetNodeAttributeByIndex(attributeIndex);
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
 
-	FbxVector4 *controlPoints    = mesh->GetControlPoints();
-	const int controlPointsCount = mesh->GetControlPointsCount();
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
 
-	jfloatArray vertices = env->NewFloatArray(3*controlPointsCount);
+	jfloatArray vertices = env->NewFloatArray(copyMeshVertices(mesh, NULL));
 
 	// Check memory could be allocated.
-	if (vertices == NULL) {	throwOutOfMemoryError(env); }
-
-	for (int i=0; i<controlPointsCount; i++)	{
-		jfloat vertex[3];
+	if (vertices == NULL) {	throwOutOfMemoryError(env); return NULL; }
 
-		vertex[0] = controlPoints[i][0];
-		vertex[1] = controlPoints[i][1];
-		vertex[2] = controlPoints[i][2];
-
-		env->SetFloatArrayRegion(vertices, 3*i, 3, vertex);
-	}
+	jfloat *target = env->GetFloatArrayElements(vertices, NULL);
+	copyMeshVertices(mesh, target);
+	env->ReleaseFloatArrayElements(vertices, target, 0);
 
 	return vertices;
 }
 
 JNIEXPORT jfloatArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshTexCoords(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
 
-	FbxMesh* mesh = (FbxMesh*)currentNode->GetNodeAttributeByIndex(attributeIndex);
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
 
 	// Currently we only read from the first layer.
-	FbxLayerElementUV *firstLayer = mesh->GetElementUV(0);
-
-	if (firstLayer==NULL) {	return NULL; }
+	if (mesh->GetElementUV(0)==NULL) {	return NULL; }
 
-	const int uvCount = firstLayer->GetDirectArray().GetCount();
-
-	jfloatArray texCoords = env->NewFloatArray(2*uvCount);
+	jfloatArray texCoords = env->NewFloatArray(copyMeshTexCoords(mesh, NULL));
 	if (texCoords == NULL) {
 		return NULL;
 	}
 
-	for (int i=0; i<uvCount; i++) {
-		jfloat uv[2];
-
-		// Note that we invert the 'v' index to match the JavaFX (DirectX?) convention.
-		uv[0] = firstLayer->GetDirectArray().GetAt(i)[0];
-		uv[1] = 1-firstLayer->GetDirectArray().GetAt(i)[1];
-
-		env->SetFloatArrayRegion(texCoords, 2*i, 2, uv);
-	}
+	jfloat *target = env->GetFloatArrayElements(texCoords, NULL);
+	copyMeshTexCoords(mesh, target);
+	env->ReleaseFloatArrayElements(texCoords, target, 0);
 
 	return texCoords;
 }
 
 JNIEXPORT jintArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshFaces(JNIEnv *env, jobject obj, jint attributeIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
 
-	FbxMesh* mesh = (FbxMesh*)currentNode->GetNodeAttributeByIndex(attributeIndex);
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
 
-	bool byPolygonVertex = false;
-	bool index           = false;
-	bool indexToDirect   = false;
-	bool direct          = false;
+	jintArray faces = env->NewIntArray(copyMeshFaces(mesh, NULL));
 
-	FbxLayerElementUV *firstLayer = mesh->GetElementUV(0);
-	if (firstLayer!=NULL) {
-		byPolygonVertex = firstLayer->GetMappingMode()==FbxLayerElement::EMappingMode::eByPolygonVertex;
-		index           = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eIndex;
-		indexToDirect   = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eIndexToDirect;
-		direct          = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eDirect;
-	}
+	// Check memory could be allocated.
+	if (faces == NULL) { throwOutOfMemoryError(env); return NULL; }
 
-	const int polygonCount = mesh->GetPolygonCount();
+	jint *target = env->GetIntArrayElements(faces, NULL);
+	copyMeshFaces(mesh, target);
+	env->ReleaseIntArrayElements(faces, target, 0);
+
+	return faces;
+}
+
+JNIEXPORT jintArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshFaceSmoothingGroups(JNIEnv *env, jobject obj, jint attributeIndex) {
+
+	JFbxContext *context = getContext(env, obj);
 
-	jintArray faces = env->NewIntArray(6*polygonCount);
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
+
+	// Check attribute index bounds for safety.
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
+
+	// Check attribute type for safety.
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
+
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
+
+	FbxGeometryElementSmoothing* smoothingElement = getPolygonSmoothing(context, mesh);
+
+	// Neither smoothing nor normals are defined.
+	if (!smoothingElement) { return NULL; }
+
+	jintArray faceSmoothingGroups = env->NewIntArray(mesh->GetPolygonCount());
 
 	// Check memory could be allocated.
-	if (faces == NULL) { throwOutOfMemoryError(env); }
+	if (faceSmoothingGroups == NULL) { throwOutOfMemoryError(env); return NULL; }
 
-	for (int i=0; i<polygonCount; i++) {
-		jint face[6];
+	jint *target = env->GetIntArrayElements(faceSmoothingGroups, NULL);
+	copyMeshFaceSmoothingGroups(mesh, smoothingElement, target);
+	env->ReleaseIntArrayElements(faceSmoothingGroups, target, 0);
 
-		// Assume we are working with a triangle mesh.
-		face[0] = mesh->GetPolygonVertex(i,0);
-		face[2] = mesh->GetPolygonVertex(i,1);
-		face[4] = mesh->GetPolygonVertex(i,2);
+	return faceSmoothingGroups;
+}
 
-		if (byPolygonVertex && (index || indexToDirect)) {
-			face[1] = mesh->GetTextureUVIndex(i, 0);
-			face[3] = mesh->GetTextureUVIndex(i, 1);
-			face[5] = mesh->GetTextureUVIndex(i, 2);
-		}
-		else if (direct) {
-			face[1] = 3*i;
-			face[3] = 3*i+1;
-			face[5] = 3*i+2;
-		}
-		else {
-			face[1] = 0;
-			face[3] = 0;
-			face[5] = 0;
-		}
+JNIEXPORT jint JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshDataSize(JNIEnv *env, jobject obj, jint attributeIndex) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return 0; }
+
+	// Check attribute index bounds for safety.
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return 0; }
+
+	// Check attribute type for safety.
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return 0; }
+
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
+
+	// Upper bound: smoothing groups are counted even if they turn out to be undefined.
+	const int floatCount = copyMeshVertices(mesh, NULL) + copyMeshTexCoords(mesh, NULL);
+	const int intCount   = copyMeshFaces(mesh, NULL) + mesh->GetPolygonCount();
+
+	return MESH_DATA_HEADER_SIZE + sizeof(jfloat)*floatCount + sizeof(jint)*intCount;
+}
+
+JNIEXPORT jboolean JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshData(JNIEnv *env, jobject obj, jint attributeIndex, jobject buffer) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return JNI_FALSE; }
+
+	// Check attribute index bounds for safety.
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return JNI_FALSE; }
+
+	// Check attribute type for safety.
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return JNI_FALSE; }
+
+	char *address = (char *) env->GetDirectBufferAddress(buffer);
+
+	// Only direct buffers can be written without copying.
+	if (address == NULL) { throwIllegalArgumentException(env); return JNI_FALSE; }
+
+	FbxMesh* mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
+
+	FbxGeometryElementSmoothing* smoothingElement = getPolygonSmoothing(context, mesh);
+
+	const jint vertexCount    = copyMeshVertices(mesh, NULL);
+	const jint texCoordCount  = copyMeshTexCoords(mesh, NULL);
+	const jint faceCount      = copyMeshFaces(mesh, NULL);
+	const jint smoothingCount = smoothingElement ? mesh->GetPolygonCount() : 0;
 
-		env->SetIntArrayRegion(faces, 6*i, 6, face);
+	const jlong size = MESH_DATA_HEADER_SIZE + sizeof(jfloat)*(vertexCount + texCoordCount) + sizeof(jint)*(faceCount + smoothingCount);
+
+	// Check the buffer is large enough for safety.
+	if (env->GetDirectBufferCapacity(buffer) < size) { throwArrayOutOfBoundsException(env); return JNI_FALSE; }
+
+	jint *header = (jint *) address;
+	header[0] = vertexCount;
+	header[1] = texCoordCount;
+	header[2] = faceCount;
+	header[3] = smoothingCount;
+
+	jfloat *vertices       = (jfloat *) (address + MESH_DATA_HEADER_SIZE);
+	jfloat *texCoords      = vertices + vertexCount;
+	jint *faces            = (jint *) (texCoords + texCoordCount);
+	jint *smoothingGroups  = faces + faceCount;
+
+	copyMeshVertices(mesh, vertices);
+	copyMeshTexCoords(mesh, texCoords);
+	copyMeshFaces(mesh, faces);
+
+	if (smoothingElement) {
+		copyMeshFaceSmoothingGroups(mesh, smoothingElement, smoothingGroups);
 	}
 
-	return faces;
+	return JNI_TRUE;
 }
 
-JNIEXPORT jintArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshFaceSmoothingGroups(JNIEnv *env, jobject obj, jint attributeIndex) {
+JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshBounds(JNIEnv *env, jobject obj, jint attributeIndex) {
+
+	JFbxContext *context = getContext(env, obj);
 
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check attribute index bounds for safety.
-	if (!checkAttributeBounds(attributeIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
 	// Check attribute type for safety.
-	if (!isValidType(attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::ePatch) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eNurbs) &&
+		!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eNurbsSurface)) { return NULL; }
 
-	FbxMesh* mesh = (FbxMesh*)currentNode->GetNodeAttributeByIndex(attributeIndex);
+	// Patches and NURBS lie within the hull of their control points, so their bounds need no triangulation.
+	FbxGeometryBase* geometry = (FbxGeometryBase*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
 
-	FbxGeometryElementSmoothing* smoothingElement = mesh->GetElementSmoothing(0);
+	const int controlPointCount = geometry->GetControlPointsCount();
+	if (controlPointCount == 0) { return NULL; }
 
-	// If smoothing is not defined explicitly, try to convert from normals. Convert edge-smoothing to face-smoothing.
-	if (!smoothingElement || smoothingElement->GetMappingMode() == FbxGeometryElement::eByEdge) {
+	FbxVector4* controlPoints = geometry->GetControlPoints();
 
-		FbxGeometryConverter geometryConverter(sdkManager);
-		if (!smoothingElement) {
-			geometryConverter.ComputeEdgeSmoothingFromNormals(mesh);
-			smoothingElement = mesh->GetElementSmoothing(0);
-		}
-		if (smoothingElement->GetMappingMode() == FbxGeometryElement::eByEdge) {
-			geometryConverter.ComputePolygonSmoothingFromEdgeSmoothing(mesh);
+	jdouble fbxBounds[6] = { controlPoints[0][0], controlPoints[0][1], controlPoints[0][2],
+		controlPoints[0][0], controlPoints[0][1], controlPoints[0][2] };
+
+	for (int i = 1; i < controlPointCount; i++) {
+		for (int j = 0; j < 3; j++) {
+			fbxBounds[j]     = fmin(fbxBounds[j],     controlPoints[i][j]);
+			fbxBounds[j + 3] = fmax(fbxBounds[j + 3], controlPoints[i][j]);
 		}
 	}
 
-	const int polygonCount = mesh->GetPolygonCount();
+	jdoubleArray bounds = env->NewDoubleArray(6);
+
+	// Check memory could be allocated.
+	if (bounds == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	env->SetDoubleArrayRegion(bounds, 0, 6, fbxBounds);
+
+	return bounds;
+}
 
-	jintArray faceSmoothingGroups = env->NewIntArray(polygonCount);
+JNIEXPORT jbyteArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMeshSkinData(JNIEnv *env, jobject obj, jint attributeIndex) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
+
+	// Check attribute index bounds for safety.
+	if (!checkAttributeBounds(context, attributeIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
+
+	// Check attribute type for safety.
+	if (!isValidType(context, attributeIndex, FbxNodeAttribute::EType::eMesh)) { return NULL; }
+
+	FbxMesh *mesh = (FbxMesh*)context->currentNode->GetNodeAttributeByIndex(attributeIndex);
+
+	// Only the first skin is read.
+	if (mesh->GetDeformerCount(FbxDeformer::eSkin) == 0) { return NULL; }
+
+	FbxSkin *skin = (FbxSkin*)mesh->GetDeformer(0, FbxDeformer::eSkin);
+
+	// The bones are referenced by their index in the node table.
+	collectNodes(context);
+
+	const jint clusterCount = skin->GetClusterCount();
+	jint indexCount = 0;
+	for (jint i=0; i<clusterCount; i++) {
+		indexCount += skin->GetCluster(i)->GetControlPointIndicesCount();
+	}
+
+	const jsize size = SKIN_HEADER_SIZE + (16*clusterCount + indexCount)*sizeof(jdouble)
+		+ (2*clusterCount + 1 + indexCount)*sizeof(jint);
+
+	jbyteArray data = env->NewByteArray(size);
 
 	// Check memory could be allocated.
-	if (faceSmoothingGroups == NULL) { throwOutOfMemoryError(env); }
+	if (data == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jbyte *target = (jbyte *) env->GetPrimitiveArrayCritical(data, NULL);
+
+	// Check the array could be pinned or copied.
+	if (target == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jint *header = (jint *) target;
+	header[0] = mesh->GetControlPointsCount();
+	header[1] = clusterCount;
+	header[2] = indexCount;
+	header[3] = 0;
+
+	jdouble *bindTransforms = (jdouble *) (target + SKIN_HEADER_SIZE);
+	jdouble *weights = bindTransforms + 16*clusterCount;
+	jint *boneNodes = (jint *) (weights + indexCount);
+	jint *clusterOffsets = boneNodes + clusterCount;
+	jint *points = clusterOffsets + clusterCount + 1;
+
+	const FbxAMatrix geometry = getGeometricTransform(context->currentNode);
+	jint offset = 0;
+
+	for (jint i=0; i<clusterCount; i++) {
+		FbxCluster *cluster = skin->GetCluster(i);
+
+		// Takes a point from the geometry to the bone in the bind pose.
+		FbxAMatrix transform;
+		FbxAMatrix transformLink;
+		cluster->GetTransformMatrix(transform);
+		cluster->GetTransformLinkMatrix(transformLink);
+		FbxAMatrix bind = transformLink.Inverse() * transform * geometry;
+		memcpy(bindTransforms + 16*i, (double *)bind, 16*sizeof(jdouble));
+
+		std::map<FbxNode *, jint>::const_iterator bone = context->nodeIndices.find(cluster->GetLink());
+		boneNodes[i] = bone != context->nodeIndices.end() ? bone->second : -1;
+
+		const int count = cluster->GetControlPointIndicesCount();
+		clusterOffsets[i] = offset;
+		if (count>0) {
+			memcpy(points + offset, cluster->GetControlPointIndices(), count*sizeof(jint));
+			memcpy(weights + offset, cluster->GetControlPointWeights(), count*sizeof(jdouble));
+		}
+		offset += count;
+	}
+	clusterOffsets[clusterCount] = offset;
 
-	for (int i=0; i<polygonCount; i++) {
-		jint iValue = smoothingElement->GetDirectArray().GetAt(i);
-		env->SetIntArrayRegion(faceSmoothingGroups, i, 1, &iValue);
+	env->ReleasePrimitiveArrayCritical(data, target, 0);
+
+	return data;
+}
+
+JNIEXPORT jbyteArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getAnimationData(JNIEnv *env, jobject obj) {
+
+	JFbxContext *context = getContext(env, obj);
+
+	// Check FBX file has been opened.
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
+
+	collectNodes(context);
+
+	FbxScene *scene = !context->nodes.empty() ? context->nodes[0]->GetScene() : NULL;
+	FbxAnimStack *stack = scene != NULL ? scene->GetSrcObject<FbxAnimStack>(0) : NULL;
+
+	if (stack == NULL) { return NULL; }
+
+	// Only the first layer is read.
+	FbxAnimLayer *layer = stack->GetMember<FbxAnimLayer>(0);
+
+	const jint nodeCount = (jint) context->nodes.size();
+	jint curveCount = 0;
+	jint keyCount = 0;
+
+	for (jint i=0; i<nodeCount; i++) {
+		for (int channel=0; channel<ANIMATION_CHANNEL_COUNT; channel++) {
+			FbxAnimCurve *curve = getAnimationCurve(context->nodes[i], layer, channel);
+			if (curve && curve->KeyGetCount()>0) {
+				curveCount++;
+				keyCount += curve->KeyGetCount();
+			}
+		}
 	}
 
-	return faceSmoothingGroups;
+	const jsize size = ANIMATION_HEADER_SIZE + (2 + ANIMATION_PROPERTY_COUNT*nodeCount)*sizeof(jdouble)
+		+ (2*nodeCount + 3*curveCount + 1)*sizeof(jint) + 2*keyCount*sizeof(jfloat);
+
+	jbyteArray data = env->NewByteArray(size);
+
+	// Check memory could be allocated.
+	if (data == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jbyte *target = (jbyte *) env->GetPrimitiveArrayCritical(data, NULL);
+
+	// Check the array could be pinned or copied.
+	if (target == NULL) { throwOutOfMemoryError(env); return NULL; }
+
+	jint *header = (jint *) target;
+	header[0] = nodeCount;
+	header[1] = curveCount;
+	header[2] = keyCount;
+	header[3] = 0;
+
+	jdouble *timeSpan = (jdouble *) (target + ANIMATION_HEADER_SIZE);
+	jdouble *properties = timeSpan + 2;
+	jint *parents = (jint *) (properties + ANIMATION_PROPERTY_COUNT*nodeCount);
+	jint *rotationOrders = parents + nodeCount;
+	jint *curveNodes = rotationOrders + nodeCount;
+	jint *curveChannels = curveNodes + curveCount;
+	jint *keyOffsets = curveChannels + curveCount;
+	jfloat *keyTimes = (jfloat *) (keyOffsets + curveCount + 1);
+	jfloat *keyValues = keyTimes + keyCount;
+
+	jint curve = 0;
+	jint key = 0;
+	double firstKeyTime = 0;
+	double lastKeyTime = 0;
+
+	for (jint i=0; i<nodeCount; i++) {
+		FbxNode *node = context->nodes[i];
+
+		copyNodeProperties(node, properties + ANIMATION_PROPERTY_COUNT*i);
+		parents[i] = context->parents[i];
+		rotationOrders[i] = node->RotationActive.Get() ? (jint) node->RotationOrder.Get() : 0;
+
+		for (int channel=0; channel<ANIMATION_CHANNEL_COUNT; channel++) {
+			FbxAnimCurve *animCurve = getAnimationCurve(node, layer, channel);
+			if (!animCurve || animCurve->KeyGetCount()==0) {
+				continue;
+			}
+			curveNodes[curve] = i;
+			curveChannels[curve] = channel;
+			keyOffsets[curve] = key;
+			curve++;
+
+			for (int k=0; k<animCurve->KeyGetCount(); k++) {
+				const double time = animCurve->KeyGetTime(k).GetSecondDouble();
+				firstKeyTime = key==0 ? time : fmin(firstKeyTime, time);
+				lastKeyTime = key==0 ? time : fmax(lastKeyTime, time);
+				keyTimes[key] = (jfloat) time;
+				keyValues[key] = (jfloat) animCurve->KeyGetValue(k);
+				key++;
+			}
+		}
+	}
+	keyOffsets[curveCount] = key;
+
+	// Stacks without a time span are played over their keys.
+	FbxTimeSpan span = stack->GetLocalTimeSpan();
+	timeSpan[0] = span.GetStart().GetSecondDouble();
+	timeSpan[1] = span.GetStop().GetSecondDouble();
+	if (timeSpan[1] <= timeSpan[0]) {
+		timeSpan[0] = firstKeyTime;
+		timeSpan[1] = lastKeyTime;
+	}
+
+	env->ReleasePrimitiveArrayCritical(data, target, 0);
+
+	return data;
 }
 
 JNIEXPORT jint JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialCount(JNIEnv *env, jobject obj) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return 0; }
 
-	return currentNode->GetMaterialCount();
+	return context->currentNode->GetMaterialCount();
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialName(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check material index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	return env->NewStringUTF(currentNode->GetMaterial(materialIndex)->GetName());
+	return env->NewStringUTF(context->currentNode->GetMaterial(materialIndex)->GetName());
 }
 
 JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialDiffuseColor(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	FbxClassId shaderType = currentNode->GetMaterial(materialIndex)->GetClassId();
+	FbxClassId shaderType = context->currentNode->GetMaterial(materialIndex)->GetClassId();
 
 	// Exit if the material is neither Lambert nor Phong shaded.
 	if (!shaderType.Is(FbxSurfaceLambert::ClassId) && !shaderType.Is(FbxSurfacePhong::ClassId)) { return NULL; }
 
 	// Note: the lines below are not specific to Lambert surfaces -- FbxSurfacePhong inherits from FbxSurfaceLambert.
-	FbxDouble3 fbxColor      = ((FbxSurfaceLambert *) currentNode->GetMaterial(materialIndex))->Diffuse;
-	FbxDouble fbxColorFactor = ((FbxSurfaceLambert *) currentNode->GetMaterial(materialIndex))->DiffuseFactor;
+	FbxDouble3 fbxColor      = ((FbxSurfaceLambert *) context->currentNode->GetMaterial(materialIndex))->Diffuse;
+	FbxDouble fbxColorFactor = ((FbxSurfaceLambert *) context->currentNode->GetMaterial(materialIndex))->DiffuseFactor;
 
-	return getMaterialColorByProperty(env, materialIndex, fbxColor, fbxColorFactor);
+	return getMaterialColorByProperty(env, context, materialIndex, fbxColor, fbxColorFactor);
 }
 
 JNIEXPORT jdoubleArray JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialSpecularColor(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	FbxClassId shaderType = currentNode->GetMaterial(materialIndex)->GetClassId();
+	FbxClassId shaderType = context->currentNode->GetMaterial(materialIndex)->GetClassId();
 
 	// Exit if the material is not Phong shaded.
 	if (!shaderType.Is(FbxSurfacePhong::ClassId)) { return NULL; }
 
 	// Note: the lines below are not specific to Lambert surfaces, as FbxSurfacePhong inherits from FbxSurfaceLambert.
-	FbxDouble3 fbxColor      = ((FbxSurfacePhong *) currentNode->GetMaterial(materialIndex))->Specular;
-	FbxDouble fbxColorFactor = ((FbxSurfacePhong *) currentNode->GetMaterial(materialIndex))->SpecularFactor;
+	FbxDouble3 fbxColor      = ((FbxSurfacePhong *) context->currentNode->GetMaterial(materialIndex))->Specular;
+	FbxDouble fbxColorFactor = ((FbxSurfacePhong *) context->currentNode->GetMaterial(materialIndex))->SpecularFactor;
 
-	return getMaterialColorByProperty(env, materialIndex, fbxColor, fbxColorFactor);
+	return getMaterialColorByProperty(env, context, materialIndex, fbxColor, fbxColorFactor);
 }
 
 JNIEXPORT jdouble JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialSpecularPower(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return -1; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return -1; }
 
-	FbxClassId shaderType = currentNode->GetMaterial(materialIndex)->GetClassId();
+	FbxClassId shaderType = context->currentNode->GetMaterial(materialIndex)->GetClassId();
 
 	// Exit with -1 if the material is not Phong shaded.
 	if (!shaderType.Is(FbxSurfacePhong::ClassId)) { return -1; }
 
-	return ((FbxSurfacePhong *) currentNode->GetMaterial(materialIndex))->Shininess;
+	return ((FbxSurfacePhong *) context->currentNode->GetMaterial(materialIndex))->Shininess;
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialDiffuseMap(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	const char *type = currentNode->GetMaterial(materialIndex)->sDiffuse;
+	const char *type = context->currentNode->GetMaterial(materialIndex)->sDiffuse;
 
-	return getMaterialMapByProperty(env, materialIndex, type);
+	return getMaterialMapByProperty(env, context, materialIndex, type);
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialSpecularMap(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	const char *type = currentNode->GetMaterial(materialIndex)->sSpecular;
+	const char *type = context->currentNode->GetMaterial(materialIndex)->sSpecular;
 
-	return getMaterialMapByProperty(env, materialIndex, type);
+	return getMaterialMapByProperty(env, context, materialIndex, type);
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialBumpMap(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
 
-	const char *type = currentNode->GetMaterial(materialIndex)->sBump;
+	const char *type = context->currentNode->GetMaterial(materialIndex)->sBump;
 
-	return getMaterialMapByProperty(env, materialIndex, type);
+	return getMaterialMapByProperty(env, context, materialIndex, type);
 }
 
 JNIEXPORT jstring JNICALL Java_de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib_getMaterialSelfIlluminationMap(JNIEnv *env, jobject obj, jint materialIndex) {
 
+	JFbxContext *context = getContext(env, obj);
+
 	// Check FBX file has been opened.
-	if (!isOpen()) { throwFileClosedException(env); }
+	if (!isOpen(context)) { throwFileClosedException(env); return NULL; }
 
 	// Check j index bounds for safety.
-	if (!checkMaterialBounds(materialIndex)) { throwArrayOutOfBoundsException(env); }
+	if (!checkMaterialBounds(context, materialIndex)) { throwArrayOutOfBoundsException(env); return NULL; }
+
+	const char *property = context->currentNode->GetMaterial(materialIndex)->sEmissive;
+
+	return getMaterialMapByProperty(env, context, materialIndex, property);
+}
+
+bool preprocessScene(JFbxContext *context, FbxScene *scene) {
+
+	// Replaces every mesh, patch and NURBS attribute of the scene by a triangle mesh. Instances stay shared.
+	const bool triangulated = getConverter(context)->Triangulate(scene, true);
+
+	// Converts the smoothing of all meshes up front, with the same converter.
+	const int meshCount = context->convertSmoothing ? scene->GetSrcObjectCount<FbxMesh>() : 0;
+	for (int i=0; i<meshCount; i++) {
+		getPolygonSmoothing(context, scene->GetSrcObject<FbxMesh>(i));
+	}
+
+	return triangulated;
+}
+
+void collectNodes(JFbxContext *context) {
+
+	if (!context->nodes.empty()) { return; }
+
+	FbxNode *root = context->currentNode;
+	while (root->GetParent()!=NULL) {
+		root = root->GetParent();
+	}
+
+	// An explicit stack instead of recursion, so that deep hierarchies cannot overflow the native stack.
+	std::vector<FbxNode *> stack(1, root);
+	std::vector<jint> stackParents(1, -1);
+
+	while (!stack.empty()) {
+		FbxNode *node = stack.back();
+		const jint parent = stackParents.back();
+		stack.pop_back();
+		stackParents.pop_back();
+
+		const jint index = (jint) context->nodes.size();
+		context->nodes.push_back(node);
+		context->parents.push_back(parent);
+		context->nodeIndices[node] = index;
+
+		// Children are pushed in reverse, so that they are popped in order.
+		for (int i=node->GetChildCount(false)-1; i>=0; i--) {
+			stack.push_back(node->GetChild(i));
+			stackParents.push_back(index);
+		}
+	}
+}
+
+FbxAMatrix getGeometricTransform(FbxNode *node) {
+
+	return FbxAMatrix(node->GetGeometricTranslation(FbxNode::eSourcePivot),
+		node->GetGeometricRotation(FbxNode::eSourcePivot), node->GetGeometricScaling(FbxNode::eSourcePivot));
+}
+
+void copyNodeProperties(FbxNode *node, jdouble *target) {
+
+	// Pre- and post-rotation only apply if rotation is active, as in FbxNode::EvaluateLocalTransform.
+	const bool rotationActive = node->RotationActive.Get();
+	const FbxDouble3 zero(0, 0, 0);
+
+	const FbxDouble3 vectors[ANIMATION_PROPERTY_COUNT/3] = { node->LclTranslation.Get(), node->LclRotation.Get(),
+		node->LclScaling.Get(), node->RotationOffset.Get(), node->RotationPivot.Get(),
+		rotationActive ? node->PreRotation.Get() : zero, rotationActive ? node->PostRotation.Get() : zero,
+		node->ScalingOffset.Get(), node->ScalingPivot.Get() };
+
+	for (int i=0; i<ANIMATION_PROPERTY_COUNT/3; i++) {
+		for (int j=0; j<3; j++) {
+			target[3*i+j] = vectors[i][j];
+		}
+	}
+}
+
+FbxAnimCurve *getAnimationCurve(FbxNode *node, FbxAnimLayer *layer, int channel) {
 
-	const char *property = currentNode->GetMaterial(materialIndex)->sEmissive;
+	if (layer == NULL) { return NULL; }
 
-	return getMaterialMapByProperty(env, materialIndex, property);
+	static const char *components[] = { FBXSDK_CURVENODE_COMPONENT_X, FBXSDK_CURVENODE_COMPONENT_Y,
+		FBXSDK_CURVENODE_COMPONENT_Z };
+	const char *component = components[channel%3];
+
+	switch(channel/3) {
+	case 0: return node->LclTranslation.GetCurve(layer, component);
+	case 1: return node->LclRotation.GetCurve(layer, component);
+	default: return node->LclScaling.GetCurve(layer, component);
+	}
 }
 
-jdoubleArray getMaterialColorByProperty(JNIEnv *env, jint materialIndex, FbxDouble3 fbxColor, FbxDouble fbxColorFactor) {
+jint getAttributeTypeCode(FbxNodeAttribute::EType eType) {
+
+	switch(eType) {
+	case FbxNodeAttribute::EType::eNull: return 1;
+	case FbxNodeAttribute::EType::eMarker: return 2;
+	case FbxNodeAttribute::EType::eSkeleton: return 3;
+	case FbxNodeAttribute::EType::eMesh: return 4;
+	case FbxNodeAttribute::EType::eNurbs: return 5;
+	case FbxNodeAttribute::EType::ePatch: return 6;
+	case FbxNodeAttribute::EType::eCamera: return 7;
+	case FbxNodeAttribute::EType::eCameraStereo: return 8;
+	case FbxNodeAttribute::EType::eCameraSwitcher: return 9;
+	case FbxNodeAttribute::EType::eLight: return 10;
+	case FbxNodeAttribute::EType::eOpticalReference: return 11;
+	case FbxNodeAttribute::EType::eOpticalMarker: return 2;
+	case FbxNodeAttribute::EType::eNurbsCurve: return 12;
+	case FbxNodeAttribute::EType::eTrimNurbsSurface: return 13;
+	case FbxNodeAttribute::EType::eBoundary: return 14;
+	case FbxNodeAttribute::EType::eNurbsSurface: return 15;
+	case FbxNodeAttribute::EType::eShape: return 16;
+	case FbxNodeAttribute::EType::eLODGroup: return 17;
+	case FbxNodeAttribute::EType::eSubDiv: return 18;
+	default: return 0;
+	}
+}
+
+jdoubleArray getMaterialColorByProperty(JNIEnv *env, JFbxContext *context, jint materialIndex, FbxDouble3 fbxColor, FbxDouble fbxColorFactor) {
 
 	jdoubleArray color = env->NewDoubleArray(4);
 
 	// Check memory could be allocated.
 	if (color == NULL) { throwOutOfMemoryError(env); }
 
-	FbxDouble transparencyFactor = ((FbxSurfaceLambert *) currentNode->GetMaterial(materialIndex))->TransparencyFactor;
+	FbxDouble transparencyFactor = ((FbxSurfaceLambert *) context->currentNode->GetMaterial(materialIndex))->TransparencyFactor;
 	FbxDouble opacity;
 
 	// Older FBX files may define the 'Opacity' property instead of 'TransparencyFactor'.
-	FbxProperty opacityProperty = currentNode->GetMaterial(materialIndex)->FindProperty("Opacity");
+	FbxProperty opacityProperty = context->currentNode->GetMaterial(materialIndex)->FindProperty("Opacity");
 	if (opacityProperty.IsValid()) {
 		opacity = opacityProperty.Get<FbxDouble>();
 	}
@@ -550,9 +1084,9 @@ jdoubleArray getMaterialColorByProperty(JNIEnv *env, jint materialIndex, FbxDoub
 	return color;
 }
 
-jstring getMaterialMapByProperty(JNIEnv *env, jint materialIndex, const char *property) {
+jstring getMaterialMapByProperty(JNIEnv *env, JFbxContext *context, jint materialIndex, const char *property) {
 
-	FbxTexture *texture = currentNode->GetMaterial(materialIndex)->FindProperty(property).GetSrcObject<FbxTexture>();
+	FbxTexture *texture = context->currentNode->GetMaterial(materialIndex)->FindProperty(property).GetSrcObject<FbxTexture>();
 
 	if (texture) {
 		FbxFileTexture *fileTexture = FbxCast<FbxFileTexture>(texture);
@@ -563,3 +1097,121 @@ jstring getMaterialMapByProperty(JNIEnv *env, jint materialIndex, const char *pr
 	}
 	return NULL;
 }
+
+int copyMeshVertices(FbxMesh *mesh, jfloat *target) {
+
+	FbxVector4 *controlPoints    = mesh->GetControlPoints();
+	const int controlPointsCount = mesh->GetControlPointsCount();
+
+	if (target) {
+		for (int i=0; i<controlPointsCount; i++) {
+			target[3*i]   = controlPoints[i][0];
+			target[3*i+1] = controlPoints[i][1];
+			target[3*i+2] = controlPoints[i][2];
+		}
+	}
+
+	return 3*controlPointsCount;
+}
+
+int copyMeshTexCoords(FbxMesh *mesh, jfloat *target) {
+
+	// Currently we only read from the first layer.
+	FbxLayerElementUV *firstLayer = mesh->GetElementUV(0);
+
+	if (firstLayer==NULL) { return 0; }
+
+	const int uvCount = firstLayer->GetDirectArray().GetCount();
+
+	if (target) {
+		for (int i=0; i<uvCount; i++) {
+
+			// Note that we invert the 'v' index to match the JavaFX (DirectX?) convention.
+			target[2*i]   = firstLayer->GetDirectArray().GetAt(i)[0];
+			target[2*i+1] = 1-firstLayer->GetDirectArray().GetAt(i)[1];
+		}
+	}
+
+	return 2*uvCount;
+}
+
+int copyMeshFaces(FbxMesh *mesh, jint *target) {
+
+	const int polygonCount = mesh->GetPolygonCount();
+
+	if (!target) { return 6*polygonCount; }
+
+	bool byPolygonVertex = false;
+	bool index           = false;
+	bool indexToDirect   = false;
+	bool direct          = false;
+
+	FbxLayerElementUV *firstLayer = mesh->GetElementUV(0);
+	if (firstLayer!=NULL) {
+		byPolygonVertex = firstLayer->GetMappingMode()==FbxLayerElement::EMappingMode::eByPolygonVertex;
+		index           = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eIndex;
+		indexToDirect   = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eIndexToDirect;
+		direct          = firstLayer->GetReferenceMode()==FbxLayerElement::EReferenceMode::eDirect;
+	}
+
+	for (int i=0; i<polygonCount; i++) {
+		jint *face = target + 6*i;
+
+		// Assume we are working with a triangle mesh.
+		face[0] = mesh->GetPolygonVertex(i,0);
+		face[2] = mesh->GetPolygonVertex(i,1);
+		face[4] = mesh->GetPolygonVertex(i,2);
+
+		if (byPolygonVertex && (index || indexToDirect)) {
+			face[1] = mesh->GetTextureUVIndex(i, 0);
+			face[3] = mesh->GetTextureUVIndex(i, 1);
+			face[5] = mesh->GetTextureUVIndex(i, 2);
+		}
+		else if (direct) {
+			face[1] = 3*i;
+			face[3] = 3*i+1;
+			face[5] = 3*i+2;
+		}
+		else {
+			face[1] = 0;
+			face[3] = 0;
+			face[5] = 0;
+		}
+	}
+
+	return 6*polygonCount;
+}
+
+FbxGeometryElementSmoothing *getPolygonSmoothing(JFbxContext *context, FbxMesh *mesh) {
+
+	FbxGeometryElementSmoothing* smoothingElement = mesh->GetElementSmoothing(0);
+
+	// The normals are computed by the importer, which only needs smoothing that is already defined per polygon.
+	if (!context->convertSmoothing) {
+		return smoothingElement && smoothingElement->GetMappingMode() == FbxGeometryElement::eByPolygon ? smoothingElement : NULL;
+	}
+
+	// If smoothing is not defined explicitly, try to convert from normals. Convert edge-smoothing to face-smoothing.
+	if (!smoothingElement || smoothingElement->GetMappingMode() == FbxGeometryElement::eByEdge) {
+
+		FbxGeometryConverter *geometryConverter = getConverter(context);
+		if (!smoothingElement) {
+			geometryConverter->ComputeEdgeSmoothingFromNormals(mesh);
+			smoothingElement = mesh->GetElementSmoothing(0);
+		}
+		if (smoothingElement && smoothingElement->GetMappingMode() == FbxGeometryElement::eByEdge) {
+			geometryConverter->ComputePolygonSmoothingFromEdgeSmoothing(mesh);
+		}
+	}
+
+	return smoothingElement;
+}
+
+void copyMeshFaceSmoothingGroups(FbxMesh *mesh, FbxGeometryElementSmoothing *smoothingElement, jint *target) {
+
+	const int polygonCount = mesh->GetPolygonCount();
+
+	for (int i=0; i<polygonCount; i++) {
+		target[i] = smoothingElement->GetDirectArray().GetAt(i);
+	}
+}
@@ -10,38 +10,154 @@
 #define JFBXLIB_H_
 
 #include <stdlib.h>
+#include <string.h>
+#include <math.h>
+#include <vector>
+#include <map>
 #include <fbxsdk.h>
 #include "../../../build/generated/de_tesis_dynaware_javafx_graphics_importers_fbx_JFbxLib.h"
 
-static FbxManager *sdkManager;
-static FbxNode *currentNode;
+/*
+ * Size in bytes of the header written by getMeshData: the vertex, texture coordinate, face and smoothing group counts.
+ */
+#define MESH_DATA_HEADER_SIZE (4*sizeof(jint))
+
+/*
+ * Size in bytes of the header written by getNodeTableData: the node, attribute and string byte counts, and a padding
+ * int that keeps the arrays of doubles aligned.
+ */
+#define NODE_TABLE_HEADER_SIZE (4*sizeof(jint))
+
+/*
+ * Size in bytes of the header written by getMeshSkinData: the point, cluster and point index counts, and a padding int
+ * that keeps the arrays of doubles aligned.
+ */
+#define SKIN_HEADER_SIZE (4*sizeof(jint))
+
+/*
+ * Size in bytes of the header written by getAnimationData: the node, curve and key counts, and a padding int that
+ * keeps the arrays of doubles aligned.
+ */
+#define ANIMATION_HEADER_SIZE (4*sizeof(jint))
+
+/*
+ * The number of transform properties of a node written by getAnimationData. Must match FbxAnimation.java.
+ */
+#define ANIMATION_PROPERTY_COUNT 27
+
+/*
+ * The number of animated channels of a node: the x, y and z of translation, rotation and scaling.
+ */
+#define ANIMATION_CHANNEL_COUNT 9
+
+/*
+ * The names of the node attribute types, indexed by the type codes of the node table. Must match FbxNodeTable.java.
+ */
+static const char *ATTRIBUTE_TYPE_NAMES[] = { "unknown", "null", "marker", "skeleton", "mesh", "nurbs", "patch",
+	"camera", "stereo", "camera switcher", "light", "optical reference", "nurbs curve", "trim nurbs surface",
+	"boundary", "nurbs surface", "shape", "lodgroup", "subdiv" };
+
+/*
+ * The native state of one JFbxLib instance. A pointer to it is stored in the instance's 'peer' field, so that
+ * different instances can read different files on different threads.
+ */
+struct JFbxContext {
+	FbxManager *sdkManager;
+	FbxNode *currentNode;
+
+	// The geometry converter shared by all conversions of the file, created when first needed.
+	FbxGeometryConverter *converter;
+
+	// Whether all geometry was converted to triangle meshes with polygon smoothing when the file was opened.
+	bool triangulated;
+
+	// Whether normals and edge smoothing are converted to polygon smoothing, false if the importer computes normals.
+	bool convertSmoothing;
+
+	// All nodes in traversal order and the indices of their parents, collected when first needed.
+	std::vector<FbxNode *> nodes;
+	std::vector<jint> parents;
+	std::map<FbxNode *, jint> nodeIndices;
+
+	JFbxContext() : sdkManager(NULL), currentNode(NULL), converter(NULL), triangulated(false), convertSmoothing(true) {}
+};
+
+/*
+ * Gets the ID of the 'peer' field of JFbxLib. Field IDs stay valid as long as the class is loaded.
+ */
+inline jfieldID getPeerField(JNIEnv *env, jobject obj) {
+	static jfieldID peerField = NULL;
+	if (peerField == NULL) {
+		peerField = env->GetFieldID(env->GetObjectClass(obj), "peer", "J");
+	}
+	return peerField;
+}
+
+/*
+ * Gets the native state of a JFbxLib instance, or NULL if it has no file open.
+ */
+inline JFbxContext *getContext(JNIEnv *env, jobject obj) {
+	return (JFbxContext *) env->GetLongField(obj, getPeerField(env, obj));
+}
+
+/*
+ * Sets the native state of a JFbxLib instance.
+ */
+inline void setContext(JNIEnv *env, jobject obj, JFbxContext *context) {
+	env->SetLongField(obj, getPeerField(env, obj), (jlong) context);
+}
+
+/*
+ * Destroys the native state of a JFbxLib instance, if there is one.
+ */
+inline void destroyContext(JNIEnv *env, jobject obj) {
+	JFbxContext *context = getContext(env, obj);
+	if (context) {
+		delete context->converter;
+		if (context->sdkManager) {
+			context->sdkManager->Destroy();
+		}
+		delete context;
+		setContext(env, obj, NULL);
+	}
+}
+
+/*
+ * Gets the geometry converter of a JFbxLib instance, creating it if necessary.
+ */
+inline FbxGeometryConverter *getConverter(JFbxContext *context) {
+	if (context->converter == NULL) {
+		context->converter = new FbxGeometryConverter(context->sdkManager);
+	}
+	return context->converter;
+}
 
 /*
  * Checks whether a FBX file is currently open.
  */
-inline bool isOpen() {
-	return (sdkManager && currentNode);
+inline bool isOpen(JFbxContext *context) {
+	return (context && context->sdkManager && context->currentNode);
 }
 
 /*
  * Checks whether the given attribute index is valid.
  */
-inline bool checkAttributeBounds(int attributeIndex) {
-	return (attributeIndex>=0 && attributeIndex<currentNode->GetNodeAttributeCount());
+inline bool checkAttributeBounds(JFbxContext *context, int attributeIndex) {
+	return (attributeIndex>=0 && attributeIndex<context->currentNode->GetNodeAttributeCount());
 }
 
 /*
  * Checks whether the given material index is valid.
  */
-inline bool checkMaterialBounds(int materialIndex) {
-	return (materialIndex>=0 && materialIndex<currentNode->GetMaterialCount());
+inline bool checkMaterialBounds(JFbxContext *context, int materialIndex) {
+	return (materialIndex>=0 && materialIndex<context->currentNode->GetMaterialCount());
 }
 
 /*
  * Checks whether the given attribute index & type combination is valid.
  */
-inline bool isValidType(int attributeIndex, FbxNodeAttribute::EType type) {
-	return currentNode->GetNodeAttributeByIndex(attributeIndex)->GetAttributeType()==type;
+inline bool isValidType(JFbxContext *context, int attributeIndex, FbxNodeAttribute::EType type) {
+	return context->currentNode->GetNodeAttributeByIndex(attributeIndex)->GetAttributeType()==type;
 }
 
 /*
@@ -65,6 +181,13 @@ inline void throwArrayOutOfBoundsException(JNIEnv *env) {
 	env->ThrowNew(env->FindClass("java/lang/ArrayIndexOutOfBoundsException"), "jfbxlib: Index out of bounds.\n");
 }
 
+/*
+ * Throws a new IllegalArgumentException back to the Java class calling this library.
+ */
+inline void throwIllegalArgumentException(JNIEnv *env) {
+	env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "jfbxlib: Buffer must be direct.\n");
+}
+
 /*
  * Throws a new OutOfMemoryError back to the Java class calling this library.
  */
@@ -72,14 +195,71 @@ inline void throwOutOfMemoryError(JNIEnv *env) {
 	env->ThrowNew(env->FindClass("java/lang/OutOfMemoryError"), "jfbxlib: Out of memory.\n");
 }
 
+/*
+ * Triangulates all geometry of a scene and, if enabled for the context, converts its smoothing to polygon smoothing.
+ * Returns false if some geometry could not be triangulated.
+ */
+bool preprocessScene(JFbxContext *context, FbxScene *scene);
+
+/*
+ * Collects all nodes of the open file in traversal order into the context, unless this was done before.
+ */
+void collectNodes(JFbxContext *context);
+
+/*
+ * Gets the geometric transform of a node, which applies to its attributes but not to its children.
+ */
+FbxAMatrix getGeometricTransform(FbxNode *node);
+
+/*
+ * Copies the transform properties of a node into the target array, in the order of FbxAnimation.java.
+ */
+void copyNodeProperties(FbxNode *node, jdouble *target);
+
+/*
+ * Gets the animation curve of a channel of a node in an animation layer. May return NULL.
+ */
+FbxAnimCurve *getAnimationCurve(FbxNode *node, FbxAnimLayer *layer, int channel);
+
+/*
+ * Gets the type code of a node attribute type, the index of its name in ATTRIBUTE_TYPE_NAMES.
+ */
+jint getAttributeTypeCode(FbxNodeAttribute::EType eType);
+
 /*
  * Gets the color of a material.
  */
-jdoubleArray getMaterialColorByProperty(JNIEnv *env, jint materialIndex, FbxDouble3 fbxColor, FbxDouble fbxColorFactor);
+jdoubleArray getMaterialColorByProperty(JNIEnv *env, JFbxContext *context, jint materialIndex, FbxDouble3 fbxColor, FbxDouble fbxColorFactor);
 
 /*
  * Gets the texture of a material.
  */
-jstring getMaterialMapByProperty(JNIEnv *env, jint materialIndex, const char *property);
+jstring getMaterialMapByProperty(JNIEnv *env, JFbxContext *context, jint materialIndex, const char *property);
+
+/*
+ * Copies the control points of a mesh into the target array, if it is not NULL. Returns the number of floats.
+ */
+int copyMeshVertices(FbxMesh *mesh, jfloat *target);
+
+/*
+ * Copies the first-layer UV coordinates of a mesh into the target array, if it is not NULL. Returns the number of floats.
+ */
+int copyMeshTexCoords(FbxMesh *mesh, jfloat *target);
+
+/*
+ * Copies the faces of a triangle mesh into the target array, if it is not NULL. Returns the number of ints.
+ */
+int copyMeshFaces(FbxMesh *mesh, jint *target);
+
+/*
+ * Gets the polygon smoothing of a mesh, converting it from edge smoothing or normals if necessary and enabled for the
+ * context. May return NULL.
+ */
+FbxGeometryElementSmoothing *getPolygonSmoothing(JFbxContext *context, FbxMesh *mesh);
+
+/*
+ * Copies the polygon smoothing groups of a mesh into the target array.
+ */
+void copyMeshFaceSmoothingGroups(FbxMesh *mesh, FbxGeometryElementSmoothing *smoothingElement, jint *target);
 
 #endif /* JFBXLIB_H_ */
@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import de.tesis.dynaware.javafx.graphics.importers.Importer3D;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImportOptions;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImportPhase;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImportStats;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImporter;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshBatcher;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshOptimizer;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshSimplifier;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxSceneCache;
+
+/**
+ * Imports FBX files without a user interface and reports the throughput of the importer.
+ *
+ * <p>
+ * All FBX files in the given directory trees are imported on a fixed number of worker threads. The node, mesh and
+ * triangle counts and the time spent in each phase of every import are written as JSON, together with the number of
+ * files and triangles imported per second. Texture maps are not loaded unless requested, since decoding images needs
+ * a running JavaFX toolkit.
+ * </p>
+ *
+ * <pre>
+ * java -cp JFbxViewer.jar de.tesis.dynaware.javafx.graphics.batch.FbxBatchImport [options] &lt;file or directory&gt;...
+ * </pre>
+ */
+public final class FbxBatchImport {
+
+    private static final String USAGE = "Usage: FbxBatchImport [--threads <count>] [--output <file.json>] "
+            + "[--optimize <tolerance>] [--lod] [--merge] [--cache <directory>] [--textures] <file or directory>...";
+
+    private static final String FBX_EXTENSION = ".fbx";
+    private static final long CACHE_SIZE = 1L << 30;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private File output;
+    private FbxMeshOptimizer optimizer;
+    private FbxMeshSimplifier simplifier;
+    private FbxMeshBatcher batcher;
+    private FbxSceneCache cache;
+    private boolean loadTextures;
+    private final List<Path> inputs = new ArrayList<>();
+
+    FbxBatchImport() {
+    }
+
+    /**
+     * Runs the batch import.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+
+        FbxBatchImport batchImport = new FbxBatchImport();
+
+        try {
+            batchImport.parseArguments(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            System.exit(batchImport.run() ? 0 : 1);
+        } catch (IOException | InterruptedException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    void parseArguments(String[] args) throws IOException {
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--threads":
+                threadCount = getIntValue(args, ++i);
+                if (threadCount < 1) {
+                    throw new IllegalArgumentException("Thread count must be at least 1 [" + threadCount + "]");
+                }
+                break;
+            case "--output":
+                output = new File(getValue(args, ++i));
+                break;
+            case "--optimize":
+                float tolerance = getFloatValue(args, ++i);
+                if (tolerance < 0) {
+                    throw new IllegalArgumentException("Tolerance must not be negative [" + tolerance + "]");
+                }
+                optimizer = new FbxMeshOptimizer(tolerance, tolerance);
+                break;
+            case "--lod":
+                simplifier = new FbxMeshSimplifier();
+                break;
+            case "--merge":
+                batcher = new FbxMeshBatcher();
+                break;
+            case "--cache":
+                cache = new FbxSceneCache(new File(getValue(args, ++i)), CACHE_SIZE);
+                break;
+            case "--textures":
+                loadTextures = true;
+                break;
+            default:
+                if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option [" + args[i] + "]");
+                }
+                inputs.add(new File(args[i]).toPath());
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input files given");
+        }
+    }
+
+    private static String getValue(String[] args, int i) {
+
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for option [" + args[i - 1] + "]");
+        }
+        return args[i];
+    }
+
+    private static int getIntValue(String[] args, int i) {
+
+        String value = getValue(args, i);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for option " + args[i - 1] + " [" + value + "]");
+        }
+    }
+
+    private static float getFloatValue(String[] args, int i) {
+
+        String value = getValue(args, i);
+        float result;
+        try {
+            result = Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for option " + args[i - 1] + " [" + value + "]");
+        }
+        if (Float.isNaN(result) || Float.isInfinite(result)) {
+            throw new IllegalArgumentException("Value for option " + args[i - 1] + " must be finite [" + value + "]");
+        }
+        return result;
+    }
+
+    /**
+     * Imports all files and writes the report.
+     *
+     * @return <tt>true</tt> if all files were imported successfully
+     */
+    private boolean run() throws IOException, InterruptedException {
+
+        List<Path> files = findFiles();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Result>> futures = new ArrayList<>(files.size());
+
+        long start = System.nanoTime();
+
+        for (final Path file : files) {
+            futures.add(executor.submit(new Callable<Result>() {
+
+                @Override
+                public Result call() {
+                    return importFile(file);
+                }
+            }));
+        }
+
+        List<Result> results = new ArrayList<>(files.size());
+        try {
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        long wallTime = System.nanoTime() - start;
+
+        writeReport(results, wallTime);
+
+        return getFailedCount(results) == 0;
+    }
+
+    /**
+     * Finds all FBX files in the inputs, in a stable order.
+     *
+     * @return the FBX files
+     * @throws IOException if a directory cannot be read
+     */
+    private List<Path> findFiles() throws IOException {
+
+        List<Path> files = new ArrayList<>();
+
+        for (Path input : inputs) {
+
+            if (!Files.isDirectory(input)) {
+                files.add(input);
+                continue;
+            }
+
+            List<Path> found = new ArrayList<>();
+            try (Stream<Path> stream = Files.walk(input)) {
+                Iterator<Path> paths = stream.iterator();
+                while (paths.hasNext()) {
+                    Path path = paths.next();
+                    if (isFbxFile(path)) {
+                        found.add(path);
+                    }
+                }
+            }
+            Collections.sort(found);
+            files.addAll(found);
+        }
+        return files;
+    }
+
+    private static boolean isFbxFile(Path path) {
+        return Files.isRegularFile(path) && path.toString().toLowerCase(Locale.ROOT).endsWith(FBX_EXTENSION);
+    }
+
+    /**
+     * Imports a single file.
+     *
+     * @param file the file
+     * @return the result of the import, which holds the error if it failed
+     */
+    private Result importFile(Path file) {
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setOptimizer(optimizer);
+        options.setSimplifier(simplifier);
+        options.setBatcher(batcher);
+        options.setCache(cache);
+        options.setLoadTextures(loadTextures);
+
+        try {
+            FbxImporter importer = new FbxImporter(file.toUri().toString(), Importer3D.createFbxLib(), options);
+            return new Result(file, importer.getStats(), null);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            return new Result(file, null, e.toString());
+        }
+    }
+
+    private void writeReport(List<Result> results, long wallTime) throws IOException {
+
+        long triangleCount = 0;
+        long meshBytes = 0;
+        long allocatedBytes = 0;
+        for (Result result : results) {
+            if (result.stats != null) {
+                triangleCount += result.stats.getTriangleCount();
+                meshBytes += result.stats.getMeshBytes();
+                allocatedBytes += result.stats.getAllocatedBytes();
+            }
+        }
+
+        int failedCount = getFailedCount(results);
+        double seconds = wallTime / NANOS_PER_SECOND;
+
+        PrintWriter out = output != null ? new PrintWriter(output, StandardCharsets.UTF_8.name()) : new PrintWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+        try {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.property("threads", threadCount);
+
+            json.beginArray("files");
+            for (Result result : results) {
+                writeResult(json, result);
+            }
+            json.endArray();
+
+            json.beginObject("summary");
+            json.property("files", results.size());
+            json.property("failed", failedCount);
+            json.property("triangles", triangleCount);
+            json.property("meshBytes", meshBytes);
+            json.property("allocatedBytes", allocatedBytes);
+            json.property("wallTimeMs", wallTime / NANOS_PER_MILLI);
+            json.property("filesPerSecond", results.size() / seconds);
+            json.property("trianglesPerSecond", triangleCount / seconds);
+            json.endObject();
+
+            json.endObject();
+            json.flush();
+        } finally {
+            if (output != null) {
+                out.close();
+            }
+        }
+
+        System.err.println(String.format(Locale.ROOT, "Imported %d files (%d failed), %d triangles in %.3f s: "
+                + "%.1f files/s, %.0f triangles/s", results.size(), failedCount, triangleCount, seconds,
+                results.size() / seconds, triangleCount / seconds));
+    }
+
+    private static void writeResult(JsonWriter json, Result result) {
+
+        json.beginObject();
+        json.property("path", result.file.toString());
+        json.property("success", result.stats != null);
+
+        if (result.stats == null) {
+            json.property("error", result.error);
+        } else {
+            FbxImportStats stats = result.stats;
+            json.property("cacheHit", stats.isCacheHit());
+            if (stats.getCacheError() != null) {
+                json.property("cacheError", stats.getCacheError().toString());
+            }
+            json.property("nodes", stats.getNodeCount());
+            json.property("meshes", stats.getMeshCount());
+            json.property("geometries", stats.getGeometryCount());
+            json.property("materials", stats.getMaterialCount());
+            json.property("triangles", stats.getTriangleCount());
+            json.property("meshBytes", stats.getMeshBytes());
+            json.property("allocatedBytes", stats.getAllocatedBytes());
+            json.property("cacheMs", stats.getCacheTime() / NANOS_PER_MILLI);
+            json.property("openMs", stats.getOpenTime() / NANOS_PER_MILLI);
+            json.property("traversalMs", stats.getTraversalTime() / NANOS_PER_MILLI);
+            json.property("conversionMs", stats.getConversionTime() / NANOS_PER_MILLI);
+            json.property("totalMs", stats.getTotalTime() / NANOS_PER_MILLI);
+
+            json.beginObject("phases");
+            for (FbxImportPhase phase : FbxImportPhase.values()) {
+                json.beginObject(phase.name().toLowerCase(Locale.ROOT));
+                json.property("timeMs", stats.getTime(phase) / NANOS_PER_MILLI);
+                json.property("bytes", stats.getBytes(phase));
+                json.property("count", stats.getCount(phase));
+                json.endObject();
+            }
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    private static int getFailedCount(List<Result> results) {
+
+        int count = 0;
+        for (Result result : results) {
+            if (result.stats == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The outcome of importing a single file.
+     */
+    private static class Result {
+
+        private final Path file;
+        private final FbxImportStats stats;
+        private final String error;
+
+        Result(Path file, FbxImportStats stats, String error) {
+            this.file = file;
+            this.stats = stats;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.batch;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * A minimal streaming writer for indented JSON.
+ */
+class JsonWriter {
+
+    private static final String INDENT = "  ";
+
+    private final PrintWriter out;
+
+    // One entry per open object or array, true as long as it has no members yet.
+    private final Deque<Boolean> empty = new ArrayDeque<>();
+
+    // True if a member name was written and its value is still missing.
+    private boolean pendingName;
+
+    /**
+     * Creates a new JSON writer.
+     *
+     * @param out the writer to write to
+     */
+    JsonWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() {
+        value("{");
+        empty.push(true);
+        return this;
+    }
+
+    JsonWriter beginObject(String name) {
+        name(name);
+        return beginObject();
+    }
+
+    JsonWriter endObject() {
+        return end("}");
+    }
+
+    JsonWriter beginArray(String name) {
+        name(name);
+        value("[");
+        empty.push(true);
+        return this;
+    }
+
+    JsonWriter endArray() {
+        return end("]");
+    }
+
+    JsonWriter property(String name, String value) {
+        name(name);
+        value(value == null ? "null" : quote(value));
+        return this;
+    }
+
+    JsonWriter property(String name, long value) {
+        name(name);
+        value(Long.toString(value));
+        return this;
+    }
+
+    JsonWriter property(String name, double value) {
+        name(name);
+        value(Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.format(Locale.ROOT, "%.3f", value));
+        return this;
+    }
+
+    JsonWriter property(String name, boolean value) {
+        name(name);
+        value(Boolean.toString(value));
+        return this;
+    }
+
+    void flush() {
+        out.println();
+        out.flush();
+    }
+
+    private void name(String name) {
+        separate();
+        out.print(quote(name));
+        out.print(": ");
+        pendingName = true;
+    }
+
+    private void value(String value) {
+        if (pendingName) {
+            pendingName = false;
+        } else {
+            separate();
+        }
+        out.print(value);
+    }
+
+    private JsonWriter end(String bracket) {
+
+        boolean wasEmpty = empty.pop();
+        if (!wasEmpty) {
+            newLine();
+        }
+        out.print(bracket);
+        return this;
+    }
+
+    /**
+     * Starts a new member of the innermost object or array.
+     */
+    private void separate() {
+
+        if (empty.isEmpty()) {
+            return;
+        }
+        if (!empty.pop()) {
+            out.print(',');
+        }
+        empty.push(false);
+        newLine();
+    }
+
+    private void newLine() {
+
+        out.println();
+        for (int i = 0; i < empty.size(); i++) {
+            out.print(INDENT);
+        }
+    }
+
+    private static String quote(String value) {
+
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.scene.Group;
+
+/**
+ * Loads several 3D files in parallel using {@link Importer3D}.
+ *
+ * <p>
+ * Every file is read by its own importer instance on one of a fixed number of worker threads. The pool must be closed
+ * when it is no longer needed.
+ * </p>
+ */
+public class ImportPool implements AutoCloseable {
+
+    private static final String THREAD_NAME_PREFIX = "import-pool-";
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new import pool with one worker thread per available processor.
+     */
+    public ImportPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new import pool.
+     *
+     * @param threadCount the number of files that are loaded at the same time
+     */
+    public ImportPool(int threadCount) {
+
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1 [" + threadCount + "]");
+        }
+
+        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Schedules a 3D file to be loaded.
+     *
+     * @param fileUrl the url of the 3D file to load
+     * @return a future for the loaded content
+     */
+    public Future<Group> submit(final String fileUrl) {
+
+        return executor.submit(new Callable<Group>() {
+
+            @Override
+            public Group call() throws IOException {
+                return Importer3D.load(fileUrl);
+            }
+        });
+    }
+
+    /**
+     * Loads all given files in parallel and waits until they are loaded.
+     *
+     * @param fileUrls the urls of the 3D files to load
+     * @return the loaded content, in the same order as the urls
+     * @throws IOException if there is a problem loading one of the files
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws IllegalArgumentException if a system property of the importer has an invalid value
+     */
+    public List<Group> loadAll(List<String> fileUrls) throws IOException, InterruptedException {
+
+        List<Future<Group>> futures = new ArrayList<>();
+        for (String fileUrl : fileUrls) {
+            futures.add(submit(fileUrl));
+        }
+
+        List<Group> results = new ArrayList<>();
+        try {
+            for (Future<Group> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<Group> future : futures) {
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Failed to load file", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Stops accepting new files. Files that were already submitted are still loaded.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
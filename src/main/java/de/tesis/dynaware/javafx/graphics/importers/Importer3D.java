@@ -31,16 +31,128 @@
  */
 package de.tesis.dynaware.javafx.graphics.importers;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+import de.tesis.dynaware.javafx.graphics.importers.fbx.BinaryFbxLib;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxAnimationBaker;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxAnimator;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxCancellationToken;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImportListener;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImportOptions;
 import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxImporter;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLazyNode;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLevelOfDetail;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLib;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshBatcher;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshOptimizer;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxMeshSimplifier;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxSceneCache;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxTexturePolicy;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxTextureType;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.JFbxLib;
 import javafx.scene.Group;
+import javafx.scene.shape.MeshView;
 
 /**
  * Base Importer for all supported 3D file formats.
  */
 public final class Importer3D {
 
+    /**
+     * System property selecting the FBX reader: <tt>native</tt> for jfbxlib, <tt>java</tt> for the pure-Java reader
+     * of binary FBX files. By default jfbxlib is used if it can be loaded.
+     */
+    public static final String FBX_READER_PROPERTY = "fbx.reader";
+
+    /**
+     * System property with the directory of the persistent FBX conversion cache. The cache is disabled if not set.
+     */
+    public static final String FBX_CACHE_DIRECTORY_PROPERTY = "fbx.cache.dir";
+
+    /**
+     * System property with the maximum size of the FBX conversion cache in bytes, 1 GB by default.
+     */
+    public static final String FBX_CACHE_SIZE_PROPERTY = "fbx.cache.size";
+
+    /**
+     * System property enabling the mesh optimisation stage. Its value is the tolerance within which points and texture
+     * coordinates are welded, e.g. <tt>0</tt> to weld only equal values.
+     */
+    public static final String FBX_OPTIMIZE_PROPERTY = "fbx.optimize";
+
+    /**
+     * System property enabling levels of detail when set to <tt>true</tt>. Every large mesh then gets simplified
+     * levels, see {@link FbxLevelOfDetail}.
+     */
+    public static final String FBX_LEVEL_OF_DETAIL_PROPERTY = "fbx.lod";
+
+    /**
+     * System property enabling the merging of meshes by material when set to <tt>true</tt>, which gives large scenes
+     * far fewer nodes, see {@link FbxMeshBatcher}.
+     */
+    public static final String FBX_MERGE_PROPERTY = "fbx.merge";
+
+    /**
+     * System property with the budget in bytes for the decoded size of the textures of an FBX import. Textures that do
+     * not fit are decoded at a reduced size, see {@link FbxTexturePolicy}. Textures are loaded at full size unless this
+     * or {@value #FBX_TEXTURE_MAX_DIMENSION_PROPERTY} is set, and the budget is 256 MB if only the latter is set.
+     */
+    public static final String FBX_TEXTURE_BUDGET_PROPERTY = "fbx.texture.budget";
+
+    /**
+     * System property with the maximum width and height in pixels of all texture maps. If only
+     * {@value #FBX_TEXTURE_BUDGET_PROPERTY} is set, diffuse maps are limited to 4096 and all other maps to 2048 pixels.
+     */
+    public static final String FBX_TEXTURE_MAX_DIMENSION_PROPERTY = "fbx.texture.maxdim";
+
+    /**
+     * System property enabling lazy imports when set to <tt>true</tt>. Only placeholder mesh views are created, whose
+     * geometry and material are read once they are resolved, see {@link FbxLazyNode}.
+     */
+    public static final String FBX_LAZY_PROPERTY = "fbx.lazy";
+
+    /**
+     * System property enabling normals computed by the import when set to <tt>true</tt>. The meshes are then created
+     * with normals instead of having JavaFX compute them from the smoothing groups.
+     */
+    public static final String FBX_NORMALS_PROPERTY = "fbx.normals";
+
+    /**
+     * System property enabling the import of skins and animation when set to <tt>true</tt>. The animator of an import
+     * is stored on its root, see {@link FbxAnimator#get(javafx.scene.Node)}.
+     */
+    public static final String FBX_ANIMATION_PROPERTY = "fbx.animation";
+
+    /**
+     * System property with the frame rate in frames per second that animations are baked at, quantized and with
+     * keyframe reduction, see {@link FbxAnimationBaker}. Animations are evaluated for every frame if it is not set.
+     */
+    public static final String FBX_ANIMATION_BAKE_PROPERTY = "fbx.animation.bake";
+
+    /**
+     * System property that switches off the flight recorder events for FBX imports when set to <tt>false</tt>. The
+     * events are emitted by default if the flight recorder API is available.
+     */
+    public static final String FBX_FLIGHT_RECORDER_PROPERTY = "fbx.jfr";
+
+    // Built from a separate source set, and only if the build JDK has the flight recorder API.
+    private static final String FBX_FLIGHT_RECORDER_LISTENER_CLASS =
+            "de.tesis.dynaware.javafx.graphics.importers.fbx.FbxFlightRecorderListener";
+    private static final String FLIGHT_RECORDER_EVENT_CLASS = "jdk.jfr.Event";
+
+    private static final String FBX_READER_NATIVE = "native";
+    private static final String FBX_READER_JAVA = "java";
+    private static final long FBX_CACHE_DEFAULT_SIZE = 1L << 30;
+    private static final double FBX_ANIMATION_BAKE_TOLERANCE = 1e-4;
+
+    private static FbxSceneCache fbxSceneCache;
+
+    private static final List<FbxImportListener> fbxImportListeners = new CopyOnWriteArrayList<>();
+
     /**
      * Get array of extension filters for supported file formats.
      * 
@@ -50,14 +162,70 @@ public final class Importer3D {
         return new String[] { "*.fbx"};
     }
 
+    /**
+     * Adds a listener that is notified about every FBX import, e.g. to collect timings per phase.
+     * 
+     * @param listener a thread-safe {@link FbxImportListener}
+     */
+    public static void addImportListener(final FbxImportListener listener) {
+        fbxImportListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was added before.
+     * 
+     * @param listener the listener to remove
+     */
+    public static void removeImportListener(final FbxImportListener listener) {
+        fbxImportListeners.remove(listener);
+    }
+
     /**
      * Load a 3D file, always loaded as TriangleMesh.
      * 
+     * <p>
+     * Different files can be loaded concurrently from different threads, see {@link ImportPool}.
+     * </p>
+     * 
      * @param fileUrl the url of the 3D file to load
      * @return the loaded Node which could be a MeshView or a Group
      * @throws IOException if there is a problem loading the file
      */
     public static Group load(final String fileUrl) throws IOException {
+        return load(fileUrl, null);
+    }
+
+    /**
+     * Load a 3D file, streaming the meshes to the given consumer as soon as they are converted.
+     * 
+     * <p>
+     * The consumer receives batches of mesh views while the file is still being read. It is called from several worker
+     * threads at the same time and must hand the mesh views over to the JavaFX application thread itself. All batches
+     * have been delivered when this method returns.
+     * </p>
+     * 
+     * @param fileUrl the url of the 3D file to load
+     * @param consumer the consumer for batches of mesh views, or <tt>null</tt> to add them to the returned group
+     * @return the loaded Group, which is empty if a consumer is given
+     * @throws IOException if there is a problem loading the file
+     */
+    public static Group load(final String fileUrl, final Consumer<List<MeshView>> consumer) throws IOException {
+        return load(fileUrl, consumer, null);
+    }
+
+    /**
+     * Load a 3D file with the possibility to cancel the load from another thread.
+     * 
+     * @param fileUrl the url of the 3D file to load
+     * @param consumer the consumer for batches of mesh views, or <tt>null</tt> to add them to the returned group
+     * @param cancellationToken the token to cancel the load with, or <tt>null</tt>
+     * @return the loaded Group, which is empty if a consumer is given
+     * @throws IOException if there is a problem loading the file
+     * @throws java.util.concurrent.CancellationException if the load was cancelled
+     * @throws IllegalArgumentException if a system property of the importer has an invalid value
+     */
+    public static Group load(final String fileUrl, final Consumer<List<MeshView>> consumer,
+            final FbxCancellationToken cancellationToken) throws IOException {
 
         final int dot = fileUrl.lastIndexOf('.');
         if (dot <= 0) {
@@ -67,10 +235,240 @@ public final class Importer3D {
 
         switch (extension) {
         case "fbx":
-            FbxImporter fbxImporter = new FbxImporter(fileUrl);
+            FbxImportOptions options = new FbxImportOptions();
+            options.setCache(getFbxSceneCache());
+            options.setOptimizer(createFbxMeshOptimizer());
+            options.setTexturePolicy(createFbxTexturePolicy());
+            if (Boolean.getBoolean(FBX_LEVEL_OF_DETAIL_PROPERTY)) {
+                options.setSimplifier(new FbxMeshSimplifier());
+            }
+            if (Boolean.getBoolean(FBX_MERGE_PROPERTY)) {
+                options.setBatcher(new FbxMeshBatcher());
+            }
+            options.setLazy(Boolean.getBoolean(FBX_LAZY_PROPERTY));
+            options.setComputeNormals(Boolean.getBoolean(FBX_NORMALS_PROPERTY));
+            options.setAnimated(Boolean.getBoolean(FBX_ANIMATION_PROPERTY));
+            options.setAnimationBaker(createFbxAnimationBaker());
+            options.setMeshViewConsumer(consumer);
+            options.setCancellationToken(cancellationToken);
+
+            for (FbxImportListener listener : fbxImportListeners) {
+                options.addImportListener(listener);
+            }
+            if (isFlightRecorderEnabled()) {
+                FbxImportListener flightRecorderListener = createFlightRecorderListener();
+                if (flightRecorderListener != null) {
+                    options.addImportListener(flightRecorderListener);
+                }
+            }
+
+            FbxImporter fbxImporter = new FbxImporter(fileUrl, createFbxLib(), options);
             return fbxImporter.getRoot();
         default:
             throw new IOException("Unsupported 3D file format [" + extension + "]");
         }
     }
+
+    /**
+     * Creates the library used to read FBX files, as selected by the {@value #FBX_READER_PROPERTY} system property.
+     * 
+     * <p>
+     * A {@link JFbxLib} triangulates the whole scene when it opens a file, unless imports are lazy (see
+     * {@value #FBX_LAZY_PROPERTY}) and may only read part of the geometry. If normals are computed by the import (see
+     * {@value #FBX_NORMALS_PROPERTY}), it does not convert normals to smoothing groups.
+     * </p>
+     * 
+     * @return a {@link JFbxLib} if requested or available, otherwise a {@link BinaryFbxLib}
+     */
+    public static FbxLib createFbxLib() {
+
+        String reader = System.getProperty(FBX_READER_PROPERTY, "");
+
+        if (FBX_READER_NATIVE.equals(reader) || (!FBX_READER_JAVA.equals(reader) && JFbxLib.isAvailable())) {
+            return new JFbxLib(!Boolean.getBoolean(FBX_LAZY_PROPERTY), Boolean.getBoolean(FBX_NORMALS_PROPERTY));
+        } else {
+            return new BinaryFbxLib();
+        }
+    }
+
+    /**
+     * Checks whether flight recorder events are emitted for FBX imports, see {@value #FBX_FLIGHT_RECORDER_PROPERTY}.
+     * 
+     * @return <tt>true</tt> if the events are not switched off and the flight recorder API is available in this JVM
+     */
+    private static boolean isFlightRecorderEnabled() {
+
+        if ("false".equals(System.getProperty(FBX_FLIGHT_RECORDER_PROPERTY))) {
+            return false;
+        }
+
+        try {
+            Class.forName(FLIGHT_RECORDER_EVENT_CLASS, false, Importer3D.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the listener that emits flight recorder events. It is loaded reflectively, as it is compiled against
+     * <tt>jdk.jfr</tt>, which neither every Java 8 JDK nor every build of this library has.
+     * 
+     * @return a new <tt>FbxFlightRecorderListener</tt>, or <tt>null</tt> if it is not part of this build
+     */
+    private static FbxImportListener createFlightRecorderListener() {
+
+        try {
+            Class<?> listenerClass = Class.forName(FBX_FLIGHT_RECORDER_LISTENER_CLASS, true,
+                    Importer3D.class.getClassLoader());
+            return (FbxImportListener) listenerClass.newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the optimizer for imported meshes, as configured by the {@value #FBX_OPTIMIZE_PROPERTY} system property.
+     * 
+     * @return a {@link FbxMeshOptimizer}, or <tt>null</tt> if the meshes should not be optimized
+     * @throws IllegalArgumentException if the property is not a finite, non-negative number
+     */
+    private static FbxMeshOptimizer createFbxMeshOptimizer() {
+
+        String tolerance = System.getProperty(FBX_OPTIMIZE_PROPERTY);
+        if (tolerance == null || tolerance.isEmpty()) {
+            return null;
+        }
+
+        float value;
+        try {
+            value = Float.parseFloat(tolerance);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of system property " + FBX_OPTIMIZE_PROPERTY + " ["
+                    + tolerance + "]", e);
+        }
+
+        if (!(value >= 0) || Float.isInfinite(value)) {
+            throw new IllegalArgumentException("System property " + FBX_OPTIMIZE_PROPERTY
+                    + " must be a finite, non-negative tolerance [" + tolerance + "]");
+        }
+
+        return new FbxMeshOptimizer(value, value);
+    }
+
+    /**
+     * Creates the baker for animations as configured by the {@value #FBX_ANIMATION_BAKE_PROPERTY} system property.
+     * 
+     * @return a {@link FbxAnimationBaker}, or <tt>null</tt> if animations are not baked
+     * @throws IllegalArgumentException if the property is not a finite, positive number
+     */
+    private static FbxAnimationBaker createFbxAnimationBaker() {
+
+        String frameRate = System.getProperty(FBX_ANIMATION_BAKE_PROPERTY);
+        if (frameRate == null || frameRate.isEmpty()) {
+            return null;
+        }
+
+        double value;
+        try {
+            value = Double.parseDouble(frameRate);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of system property " + FBX_ANIMATION_BAKE_PROPERTY
+                    + " [" + frameRate + "]", e);
+        }
+
+        if (!(value > 0) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("System property " + FBX_ANIMATION_BAKE_PROPERTY
+                    + " must be a finite, positive frame rate [" + frameRate + "]");
+        }
+
+        return new FbxAnimationBaker(value, true, FBX_ANIMATION_BAKE_TOLERANCE);
+    }
+
+    /**
+     * Creates the policy for the texture maps of an import, as configured by the {@value #FBX_TEXTURE_BUDGET_PROPERTY}
+     * and {@value #FBX_TEXTURE_MAX_DIMENSION_PROPERTY} system properties.
+     * 
+     * @return a {@link FbxTexturePolicy}, or <tt>null</tt> if neither property is set and textures are loaded at full
+     *         size
+     * @throws IllegalArgumentException if the budget is not a non-negative number, or the maximum dimension is not a
+     *             positive number
+     */
+    private static FbxTexturePolicy createFbxTexturePolicy() {
+
+        if (System.getProperty(FBX_TEXTURE_BUDGET_PROPERTY) == null
+                && System.getProperty(FBX_TEXTURE_MAX_DIMENSION_PROPERTY) == null) {
+            return null;
+        }
+
+        FbxTexturePolicy policy = new FbxTexturePolicy(getLongProperty(FBX_TEXTURE_BUDGET_PROPERTY,
+                FbxTexturePolicy.DEFAULT_MAX_SIZE));
+
+        long maxDimension = getLongProperty(FBX_TEXTURE_MAX_DIMENSION_PROPERTY, -1);
+        if (maxDimension == 0) {
+            throw new IllegalArgumentException("System property " + FBX_TEXTURE_MAX_DIMENSION_PROPERTY
+                    + " must be positive [" + System.getProperty(FBX_TEXTURE_MAX_DIMENSION_PROPERTY) + "]");
+        }
+
+        // A limit beyond the largest image size is no limit.
+        if (maxDimension > 0) {
+            for (FbxTextureType type : FbxTextureType.values()) {
+                policy.setMaxDimension(type, (int) Math.min(maxDimension, Integer.MAX_VALUE));
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * Gets the FBX conversion cache configured by the {@value #FBX_CACHE_DIRECTORY_PROPERTY} and
+     * {@value #FBX_CACHE_SIZE_PROPERTY} system properties.
+     * 
+     * @return the shared cache, or <tt>null</tt> if no cache directory is configured
+     * @throws IOException if the cache directory cannot be created
+     * @throws IllegalArgumentException if the cache size is not a non-negative number
+     */
+    private static synchronized FbxSceneCache getFbxSceneCache() throws IOException {
+
+        String directory = System.getProperty(FBX_CACHE_DIRECTORY_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+
+        long size = getLongProperty(FBX_CACHE_SIZE_PROPERTY, FBX_CACHE_DEFAULT_SIZE);
+
+        if (fbxSceneCache == null || !fbxSceneCache.getDirectory().equals(new File(directory))
+                || fbxSceneCache.getMaxSize() != size) {
+            fbxSceneCache = new FbxSceneCache(new File(directory), size);
+        }
+        return fbxSceneCache;
+    }
+
+    /**
+     * Gets the value of a system property that holds a non-negative number.
+     * 
+     * @param name the name of the system property
+     * @param defaultValue the value if the property is not set
+     * @return the value of the property
+     * @throws IllegalArgumentException if the property is not a non-negative number
+     */
+    private static long getLongProperty(String name, long defaultValue) {
+
+        String property = System.getProperty(name);
+        if (property == null || property.isEmpty()) {
+            return defaultValue;
+        }
+
+        long value;
+        try {
+            value = Long.parseLong(property.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of system property " + name + " [" + property + "]", e);
+        }
+
+        if (value < 0) {
+            throw new IllegalArgumentException("System property " + name + " must not be negative [" + property
+                    + "]");
+        }
+        return value;
+    }
 }
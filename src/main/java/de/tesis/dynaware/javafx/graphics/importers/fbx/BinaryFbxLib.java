@@ -0,0 +1,1207 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pure-Java replacement for {@link JFbxLib} that reads binary FBX files (version 7.0 and later) without the FBX SDK.
+ *
+ * <p>
+ * The file is memory-mapped and its records are interpreted directly: <tt>Model</tt> objects form the node graph,
+ * <tt>Geometry</tt> and <tt>NodeAttribute</tt> objects become node attributes, and <tt>Material</tt> and
+ * <tt>Texture</tt> objects are resolved through the <tt>Connections</tt> section. ASCII FBX files, NURBS and patch
+ * geometry are not supported.
+ * </p>
+ *
+ * <p>
+ * Skins are read from the <tt>Skin</tt> and <tt>Cluster</tt> deformers of a geometry, and animation from the
+ * <tt>AnimationCurveNode</tt> and <tt>AnimationCurve</tt> objects of the first layer of the first
+ * <tt>AnimationStack</tt>.
+ * </p>
+ */
+public class BinaryFbxLib implements FbxLib {
+
+    private static final int MIN_VERSION = 7000;
+
+    private static final String ROOT_NODE_NAME = "RootNode";
+    private static final String NAME_SEPARATOR = "\u0000\u0001";
+
+    private static final String MODEL = "Model";
+    private static final String GEOMETRY = "Geometry";
+    private static final String NODE_ATTRIBUTE = "NodeAttribute";
+    private static final String MATERIAL = "Material";
+    private static final String TEXTURE = "Texture";
+    private static final String LAYERED_TEXTURE = "LayeredTexture";
+    private static final String DEFORMER = "Deformer";
+    private static final String ANIMATION_STACK = "AnimationStack";
+    private static final String ANIMATION_LAYER = "AnimationLayer";
+    private static final String ANIMATION_CURVE_NODE = "AnimationCurveNode";
+    private static final String ANIMATION_CURVE = "AnimationCurve";
+
+    // The properties animated by curve nodes, in the order of the channels of FbxAnimation.
+    private static final String[] ANIMATED_PROPERTIES = { "Lcl Translation", "Lcl Rotation", "Lcl Scaling" };
+
+    // The transform properties of a model, in the order of FbxAnimation, and their default values.
+    private static final String[] TRANSFORM_PROPERTIES = { "Lcl Translation", "Lcl Rotation", "Lcl Scaling",
+            "RotationOffset", "RotationPivot", "PreRotation", "PostRotation", "ScalingOffset", "ScalingPivot" };
+    private static final double[] TRANSFORM_PROPERTY_DEFAULTS = { 0, 0, 1, 0, 0, 0, 0, 0, 0 };
+
+    // The channels of the curves of a curve node.
+    private static final String[] CURVE_CHANNELS = { "d|X", "d|Y", "d|Z" };
+
+    // FBX time is counted in ticks.
+    private static final double TICKS_PER_SECOND = 46186158000.0;
+
+    private static final String PHONG = "phong";
+
+    private static final int PROPERTY_VALUE_OFFSET = 4;
+
+    private String directory;
+    private Map<Long, FbxRecord> objects;
+    private Map<String, FbxRecord> templates;
+    private Map<FbxRecord, Map<String, FbxRecord>> materialTextures;
+    private Map<FbxRecord, FbxBinaryMesh> meshes;
+    private Map<Long, List<Connection>> connections;
+    private List<FbxRecord> animationStacks;
+    private SceneNode currentNode;
+
+    // All nodes in traversal order, collected on the first call of selectNode.
+    private List<SceneNode> nodeList;
+
+    @Override
+    public boolean open(String filePath) throws IOException {
+
+        ByteBuffer buffer = FbxBinaryReader.map(filePath);
+
+        if (!FbxBinaryReader.isBinary(buffer)) {
+            throw new IOException("ASCII FBX files can only be read with the native library jfbxlib [" + filePath
+                    + "]");
+        }
+
+        FbxBinaryReader reader = new FbxBinaryReader(buffer);
+        FbxRecord document = reader.read();
+
+        if (reader.getVersion() < MIN_VERSION) {
+            throw new IOException("FBX version " + reader.getVersion() + " is not supported [" + filePath + "]");
+        }
+
+        directory = new File(filePath).getAbsoluteFile().getParent();
+        objects = new HashMap<>();
+        templates = new HashMap<>();
+        materialTextures = new IdentityHashMap<>();
+        meshes = new IdentityHashMap<>();
+        connections = new HashMap<>();
+        animationStacks = new ArrayList<>();
+
+        readTemplates(document.getChild("Definitions"));
+        currentNode = readScene(document.getChild("Objects"), document.getChild("Connections"));
+
+        return true;
+    }
+
+    @Override
+    public void close() {
+
+        // The mapping itself is released once the buffer is garbage collected.
+        objects = null;
+        templates = null;
+        materialTextures = null;
+        meshes = null;
+        connections = null;
+        animationStacks = null;
+        currentNode = null;
+        nodeList = null;
+    }
+
+    @Override
+    public boolean nextChild() {
+
+        checkOpen();
+
+        if (currentNode.children.isEmpty()) {
+            return false;
+        }
+        moveTo(currentNode.children.get(0));
+        return true;
+    }
+
+    @Override
+    public boolean nextSibling() {
+
+        checkOpen();
+
+        SceneNode parent = currentNode.parent;
+        if (parent == null || currentNode.siblingIndex + 1 >= parent.children.size()) {
+            return false;
+        }
+        moveTo(parent.children.get(currentNode.siblingIndex + 1));
+        return true;
+    }
+
+    @Override
+    public boolean nextParent() {
+
+        checkOpen();
+
+        if (currentNode.parent == null) {
+            return false;
+        }
+        moveTo(currentNode.parent);
+        return true;
+    }
+
+    @Override
+    public boolean selectNode(int node) {
+
+        checkOpen();
+
+        if (nodeList == null) {
+            nodeList = getNodeList();
+        }
+        if (node < 0 || node >= nodeList.size()) {
+            return false;
+        }
+        moveTo(nodeList.get(node));
+        return true;
+    }
+
+    @Override
+    public String getNodeName() {
+
+        checkOpen();
+        return currentNode.name;
+    }
+
+    @Override
+    public double[] getNodeGlobalAffineTransformation() {
+
+        checkOpen();
+        return getGlobalTransform(currentNode).clone();
+    }
+
+    @Override
+    public double[] getNodeGeometricTranslation() {
+
+        checkOpen();
+
+        if (currentNode.model == null) {
+            return new double[3];
+        }
+        return getVector(currentNode.model, "GeometricTranslation", 0);
+    }
+
+    @Override
+    public int getNodeAttributeCount() {
+
+        checkOpen();
+        return currentNode.attributes.size();
+    }
+
+    @Override
+    public String getNodeAttributeName(int i) {
+
+        checkOpen();
+        return getObjectName(currentNode.attributes.get(i));
+    }
+
+    @Override
+    public String getNodeAttributeType(int i) {
+
+        checkOpen();
+
+        FbxRecord attribute = currentNode.attributes.get(i);
+        String subclass = attribute.getString(2) != null ? attribute.getString(2) : "";
+
+        if (GEOMETRY.equals(attribute.getName())) {
+            switch (subclass) {
+            case "Mesh": return "mesh";
+            case "Nurbs": return "nurbs";
+            case "NurbsSurface": return "nurbs surface";
+            case "NurbsCurve": return "nurbs curve";
+            case "TrimNurbsSurface": return "trim nurbs surface";
+            case "Patch": return "patch";
+            case "Shape": return "shape";
+            case "Boundary": return "boundary";
+            default: return "unknown";
+            }
+        }
+
+        switch (subclass) {
+        case "Null": return "null";
+        case "Marker": return "marker";
+        case "Root":
+        case "Limb":
+        case "LimbNode": return "skeleton";
+        case "Camera": return "camera";
+        case "CameraStereo": return "stereo";
+        case "CameraSwitcher": return "camera switcher";
+        case "Light": return "light";
+        case "LodGroup": return "lodgroup";
+        case "SubDiv": return "subdiv";
+        default: return "unknown";
+        }
+    }
+
+    @Override
+    public long getNodeAttributeId(int i) {
+
+        checkOpen();
+        return currentNode.attributes.get(i).getLong(0, 0);
+    }
+
+    @Override
+    public boolean isTriangleMesh(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null && mesh.isTriangleMesh();
+    }
+
+    @Override
+    public void triangulate(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        if (mesh != null) {
+            mesh.triangulate();
+        }
+    }
+
+    @Override
+    public float[] getMeshVertices(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null ? mesh.getVertices() : null;
+    }
+
+    @Override
+    public float[] getMeshTexCoords(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null ? mesh.getTexCoords() : null;
+    }
+
+    @Override
+    public int[] getMeshFaces(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null ? mesh.getFaces() : null;
+    }
+
+    @Override
+    public int[] getMeshFaceSmoothingGroups(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null ? mesh.getFaceSmoothingGroups() : null;
+    }
+
+    @Override
+    public int getMeshDataSize(int i) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        return mesh != null ? mesh.getDataSize() : 0;
+    }
+
+    @Override
+    public boolean getMeshData(int i, ByteBuffer buffer) {
+
+        FbxBinaryMesh mesh = getMesh(i);
+        if (mesh == null) {
+            return false;
+        }
+        mesh.getData(buffer);
+        return true;
+    }
+
+    @Override
+    public FbxSkin getMeshSkin(int i) {
+
+        if (getMesh(i) == null || currentNode.model == null) {
+            return null;
+        }
+
+        FbxRecord geometry = currentNode.attributes.get(i);
+        List<FbxRecord> skins = getSources(geometry, DEFORMER, "Skin");
+        if (skins.isEmpty()) {
+            return null;
+        }
+
+        FbxArrayProperty vertices = geometry.getChildArray("Vertices");
+        int pointCount = vertices != null ? vertices.getLength() / 3 : 0;
+
+        // Only the first skin is read.
+        List<FbxRecord> clusters = getSources(skins.get(0), DEFORMER, "Cluster");
+        Map<FbxRecord, Integer> nodeIndices = getNodeIndices();
+
+        double[] geometryTransform = FbxMatrices.multiply(FbxMatrices.multiply(
+                FbxMatrices.translation(getVector(currentNode.model, "GeometricTranslation", 0)),
+                FbxMatrices.rotation(getVector(currentNode.model, "GeometricRotation", 0), 0)),
+                FbxMatrices.scaling(getVector(currentNode.model, "GeometricScaling", 1)));
+
+        int[] boneNodes = new int[clusters.size()];
+        double[] bindTransforms = new double[16 * clusters.size()];
+        int[] clusterOffsets = new int[clusters.size() + 1];
+        List<int[]> clusterPoints = new ArrayList<>();
+        List<double[]> clusterWeights = new ArrayList<>();
+
+        for (int bone = 0; bone < clusters.size(); bone++) {
+
+            FbxRecord cluster = clusters.get(bone);
+
+            List<FbxRecord> links = getSources(cluster, MODEL, null);
+            Integer node = links.isEmpty() ? null : nodeIndices.get(links.get(0));
+            boneNodes[bone] = node != null ? node : -1;
+
+            // Takes a point from the geometry to the bone in the bind pose.
+            double[] bind = FbxMatrices.multiply(FbxMatrices.multiply(
+                    FbxMatrices.invert(getMatrix(cluster, "TransformLink")), getMatrix(cluster, "Transform")),
+                    geometryTransform);
+            System.arraycopy(bind, 0, bindTransforms, 16 * bone, 16);
+
+            FbxArrayProperty indexes = cluster.getChildArray("Indexes");
+            FbxArrayProperty weights = cluster.getChildArray("Weights");
+            int[] points = indexes != null && weights != null ? indexes.toIntArray() : new int[0];
+            double[] pointWeights = indexes != null && weights != null ? weights.toDoubleArray() : new double[0];
+            int count = Math.min(points.length, pointWeights.length);
+
+            clusterPoints.add(points);
+            clusterWeights.add(pointWeights);
+            clusterOffsets[bone + 1] = clusterOffsets[bone] + count;
+        }
+
+        int[] points = new int[clusterOffsets[clusters.size()]];
+        double[] weights = new double[points.length];
+        for (int bone = 0; bone < clusters.size(); bone++) {
+            int count = clusterOffsets[bone + 1] - clusterOffsets[bone];
+            System.arraycopy(clusterPoints.get(bone), 0, points, clusterOffsets[bone], count);
+            System.arraycopy(clusterWeights.get(bone), 0, weights, clusterOffsets[bone], count);
+        }
+
+        return new FbxSkin(pointCount, boneNodes, bindTransforms, clusterOffsets, points, weights);
+    }
+
+    @Override
+    public FbxAnimation getAnimation() {
+
+        checkOpen();
+
+        if (animationStacks.isEmpty()) {
+            return null;
+        }
+
+        // Only the first layer of the first stack is read.
+        FbxRecord stack = animationStacks.get(0);
+        List<FbxRecord> layers = getSources(stack, ANIMATION_LAYER, null);
+        Set<FbxRecord> curveNodes = Collections.newSetFromMap(new IdentityHashMap<FbxRecord, Boolean>());
+        if (!layers.isEmpty()) {
+            curveNodes.addAll(getSources(layers.get(0), ANIMATION_CURVE_NODE, null));
+        }
+
+        if (nodeList == null) {
+            nodeList = getNodeList();
+        }
+        int nodeCount = nodeList.size();
+        Map<SceneNode, Integer> nodeIndices = new IdentityHashMap<>();
+        for (int node = 0; node < nodeCount; node++) {
+            nodeIndices.put(nodeList.get(node), node);
+        }
+
+        int[] parents = new int[nodeCount];
+        double[] properties = new double[FbxAnimation.PROPERTY_COUNT * nodeCount];
+        int[] rotationOrders = new int[nodeCount];
+        List<Integer> curveNodeIndices = new ArrayList<>();
+        List<Integer> curveChannels = new ArrayList<>();
+        List<FbxRecord> curves = new ArrayList<>();
+
+        for (int node = 0; node < nodeCount; node++) {
+
+            SceneNode sceneNode = nodeList.get(node);
+            parents[node] = sceneNode.parent != null ? nodeIndices.get(sceneNode.parent) : -1;
+            readTransformProperties(sceneNode.model, properties, FbxAnimation.PROPERTY_COUNT * node);
+            rotationOrders[node] = sceneNode.model != null ? getRotationOrder(sceneNode.model) : 0;
+
+            if (sceneNode.model == null) {
+                continue;
+            }
+
+            FbxRecord[] channelCurves = new FbxRecord[FbxAnimation.CHANNEL_COUNT];
+            for (Connection connection : getConnections(sceneNode.model)) {
+
+                int property = indexOf(ANIMATED_PROPERTIES, connection.property);
+                if (property < 0 || !curveNodes.contains(connection.source)) {
+                    continue;
+                }
+                for (Connection curveConnection : getConnections(connection.source)) {
+                    int component = indexOf(CURVE_CHANNELS, curveConnection.property);
+                    if (component >= 0 && ANIMATION_CURVE.equals(curveConnection.source.getName())) {
+                        channelCurves[3 * property + component] = curveConnection.source;
+                    }
+                }
+            }
+
+            for (int channel = 0; channel < channelCurves.length; channel++) {
+                if (channelCurves[channel] != null) {
+                    curveNodeIndices.add(node);
+                    curveChannels.add(channel);
+                    curves.add(channelCurves[channel]);
+                }
+            }
+        }
+
+        int curveCount = curves.size();
+        int[] keyOffsets = new int[curveCount + 1];
+        List<long[]> curveTimes = new ArrayList<>();
+        List<float[]> curveValues = new ArrayList<>();
+
+        for (int curve = 0; curve < curveCount; curve++) {
+
+            FbxArrayProperty times = curves.get(curve).getChildArray("KeyTime");
+            FbxArrayProperty values = curves.get(curve).getChildArray("KeyValueFloat");
+            long[] keyTimes = times != null && values != null ? times.toLongArray() : new long[0];
+            float[] keyValues = times != null && values != null ? values.toFloatArray() : new float[0];
+
+            curveTimes.add(keyTimes);
+            curveValues.add(keyValues);
+            keyOffsets[curve + 1] = keyOffsets[curve] + Math.min(keyTimes.length, keyValues.length);
+        }
+
+        float[] keyTimes = new float[keyOffsets[curveCount]];
+        float[] keyValues = new float[keyTimes.length];
+        double firstKeyTime = Double.POSITIVE_INFINITY;
+        double lastKeyTime = Double.NEGATIVE_INFINITY;
+
+        for (int curve = 0; curve < curveCount; curve++) {
+            for (int key = keyOffsets[curve]; key < keyOffsets[curve + 1]; key++) {
+                double time = curveTimes.get(curve)[key - keyOffsets[curve]] / TICKS_PER_SECOND;
+                firstKeyTime = Math.min(firstKeyTime, time);
+                lastKeyTime = Math.max(lastKeyTime, time);
+                keyTimes[key] = (float) time;
+                keyValues[key] = curveValues.get(curve)[key - keyOffsets[curve]];
+            }
+        }
+
+        // Stacks without a time span are played over their keys.
+        double startTime = getTime(stack, "LocalStart");
+        double stopTime = getTime(stack, "LocalStop");
+        if (stopTime <= startTime && keyTimes.length > 0) {
+            startTime = firstKeyTime;
+            stopTime = lastKeyTime;
+        }
+
+        return new FbxAnimation(parents, properties, rotationOrders, startTime, stopTime, toArray(curveNodeIndices),
+                toArray(curveChannels), keyOffsets, keyTimes, keyValues);
+    }
+
+    @Override
+    public int getMaterialCount() {
+
+        checkOpen();
+        return currentNode.materials.size();
+    }
+
+    @Override
+    public String getMaterialName(int j) {
+
+        checkOpen();
+        return getObjectName(currentNode.materials.get(j));
+    }
+
+    @Override
+    public double[] getMaterialDiffuseColor(int j) {
+
+        checkOpen();
+
+        FbxRecord material = currentNode.materials.get(j);
+        return getMaterialColor(material, "DiffuseColor", "Diffuse", "DiffuseFactor");
+    }
+
+    @Override
+    public double[] getMaterialSpecularColor(int j) {
+
+        checkOpen();
+
+        FbxRecord material = currentNode.materials.get(j);
+        if (!isPhong(material)) {
+            return null;
+        }
+        return getMaterialColor(material, "SpecularColor", "Specular", "SpecularFactor");
+    }
+
+    @Override
+    public double getMaterialSpecularPower(int j) {
+
+        checkOpen();
+
+        FbxRecord material = currentNode.materials.get(j);
+        if (!isPhong(material)) {
+            return -1;
+        }
+
+        FbxRecord shininess = findProperty(material, "Shininess");
+        if (shininess == null) {
+            shininess = findProperty(material, "ShininessExponent");
+        }
+        return shininess != null ? shininess.getDouble(PROPERTY_VALUE_OFFSET, -1) : -1;
+    }
+
+    @Override
+    public String getMaterialDiffuseMap(int j) {
+        return getMaterialMap(j, "DiffuseColor");
+    }
+
+    @Override
+    public String getMaterialSpecularMap(int j) {
+        return getMaterialMap(j, "SpecularColor");
+    }
+
+    @Override
+    public String getMaterialBumpMap(int j) {
+
+        String bumpMap = getMaterialMap(j, "Bump");
+        return bumpMap != null ? bumpMap : getMaterialMap(j, "NormalMap");
+    }
+
+    @Override
+    public String getMaterialSelfIlluminationMap(int j) {
+        return getMaterialMap(j, "EmissiveColor");
+    }
+
+    /**
+     * Reads the property templates of the <tt>Definitions</tt> section, which hold the default property values for
+     * each object type.
+     *
+     * @param definitions the <tt>Definitions</tt> record, may be <tt>null</tt>
+     */
+    private void readTemplates(FbxRecord definitions) {
+
+        if (definitions == null) {
+            return;
+        }
+
+        for (FbxRecord objectType : definitions.getChildren()) {
+            FbxRecord template = objectType.getChild("PropertyTemplate");
+            FbxRecord properties = template != null ? template.getChild("Properties70") : null;
+            if (properties != null) {
+                templates.put(objectType.getString(0), properties);
+            }
+        }
+    }
+
+    /**
+     * Builds the node graph from the objects and their connections.
+     *
+     * @param objectsRecord the <tt>Objects</tt> record
+     * @param connectionsRecord the <tt>Connections</tt> record
+     * @return the root node of the graph
+     */
+    private SceneNode readScene(FbxRecord objectsRecord, FbxRecord connectionsRecord) {
+
+        SceneNode root = new SceneNode(ROOT_NODE_NAME, null);
+
+        // In the order of the file, which is kept by the models that are attached to the root below.
+        Map<Long, SceneNode> nodes = new LinkedHashMap<>();
+        nodes.put(0L, root);
+
+        if (objectsRecord != null) {
+            for (FbxRecord object : objectsRecord.getChildren()) {
+                long id = object.getLong(0, 0);
+                objects.put(id, object);
+                if (MODEL.equals(object.getName())) {
+                    nodes.put(id, new SceneNode(getObjectName(object), object));
+                } else if (ANIMATION_STACK.equals(object.getName())) {
+                    animationStacks.add(object);
+                }
+            }
+        }
+
+        Map<FbxRecord, FbxRecord> firstLayers = new IdentityHashMap<>();
+
+        if (connectionsRecord != null) {
+            for (FbxRecord connection : connectionsRecord.getChildren()) {
+
+                FbxRecord source = objects.get(connection.getLong(1, 0));
+                long destinationId = connection.getLong(2, 0);
+                FbxRecord destination = objects.get(destinationId);
+
+                if (source == null) {
+                    continue;
+                }
+
+                // Every connection is kept for the deformers and animation, which are only read on request.
+                List<Connection> incoming = connections.get(destinationId);
+                if (incoming == null) {
+                    incoming = new ArrayList<>();
+                    connections.put(destinationId, incoming);
+                }
+                incoming.add(new Connection(source, connection.getString(3)));
+
+                String sourceType = source.getName();
+                SceneNode node = nodes.get(destinationId);
+
+                if (MODEL.equals(sourceType) && node != null) {
+                    nodes.get(source.getLong(0, 0)).setParent(node);
+                } else if ((GEOMETRY.equals(sourceType) || NODE_ATTRIBUTE.equals(sourceType)) && node != null) {
+                    node.attributes.add(source);
+                } else if (MATERIAL.equals(sourceType) && node != null) {
+                    node.materials.add(source);
+                } else if (TEXTURE.equals(sourceType) && destination != null) {
+                    if (MATERIAL.equals(destination.getName()) && connection.getString(3) != null) {
+                        addMaterialTexture(destination, connection.getString(3), source);
+                    } else if (LAYERED_TEXTURE.equals(destination.getName()) && !firstLayers.containsKey(destination)) {
+                        firstLayers.put(destination, source);
+                    }
+                } else if (LAYERED_TEXTURE.equals(sourceType) && destination != null
+                        && MATERIAL.equals(destination.getName()) && connection.getString(3) != null) {
+                    addMaterialTexture(destination, connection.getString(3), source);
+                }
+            }
+        }
+
+        // Only the first layer of a layered texture is used, as in the native library.
+        for (Map<String, FbxRecord> textures : materialTextures.values()) {
+            for (Map.Entry<String, FbxRecord> entry : textures.entrySet()) {
+                if (LAYERED_TEXTURE.equals(entry.getValue().getName())) {
+                    entry.setValue(firstLayers.get(entry.getValue()));
+                }
+            }
+        }
+
+        // Models without a connection to a parent are attached to the root.
+        for (SceneNode node : nodes.values()) {
+            if (node != root && node.parent == null) {
+                node.setParent(root);
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Remembers a texture connected to a material property.
+     *
+     * @param material the material record
+     * @param property the name of the material property, e.g. <tt>DiffuseColor</tt>
+     * @param texture the texture or layered texture record
+     */
+    private void addMaterialTexture(FbxRecord material, String property, FbxRecord texture) {
+
+        Map<String, FbxRecord> textures = materialTextures.get(material);
+        if (textures == null) {
+            textures = new HashMap<>();
+            materialTextures.put(material, textures);
+        }
+        if (!textures.containsKey(property)) {
+            textures.put(property, texture);
+        }
+    }
+
+    /**
+     * Gets the mesh for an attribute of the current node.
+     *
+     * @param i the index of the attribute
+     * @return the mesh, or <tt>null</tt> if the attribute is not a polygon mesh
+     */
+    private FbxBinaryMesh getMesh(int i) {
+
+        checkOpen();
+
+        FbxRecord attribute = currentNode.attributes.get(i);
+        if (!GEOMETRY.equals(attribute.getName()) || !"Mesh".equals(attribute.getString(2))) {
+            return null;
+        }
+
+        FbxBinaryMesh mesh = meshes.get(attribute);
+        if (mesh == null) {
+            mesh = new FbxBinaryMesh(attribute);
+            meshes.put(attribute, mesh);
+        }
+        return mesh;
+    }
+
+    /**
+     * Collects all nodes of the graph in traversal order.
+     *
+     * @return the nodes, starting with the root node
+     */
+    private List<SceneNode> getNodeList() {
+
+        SceneNode root = currentNode;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+
+        List<SceneNode> nodes = new ArrayList<>();
+        Deque<SceneNode> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+
+            SceneNode node = pending.pop();
+            nodes.add(node);
+
+            // Pushed in reverse, so the first child is visited next.
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                pending.push(node.children.get(i));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Moves the cursor to the given node, dropping the decoded meshes of the previous node.
+     *
+     * @param node the new current node
+     */
+    private void moveTo(SceneNode node) {
+
+        currentNode = node;
+        meshes.clear();
+    }
+
+    /**
+     * Gets the global transform of a node, computing and caching it together with those of its ancestors.
+     *
+     * @param node a node of the graph
+     * @return the global transform in column-major order
+     */
+    private double[] getGlobalTransform(SceneNode node) {
+
+        if (node.globalTransform == null) {
+            if (node.model == null) {
+                node.globalTransform = FbxMatrices.identity();
+            } else {
+                double[] local = getLocalTransform(node.model);
+                node.globalTransform = node.parent != null ? FbxMatrices.multiply(getGlobalTransform(node.parent),
+                        local) : local;
+            }
+        }
+        return node.globalTransform;
+    }
+
+    /**
+     * Computes the local transform of a model from its transform properties.
+     *
+     * <p>
+     * The transform is <tt>T * Roff * Rp * Rpre * R * Rpost^-1 * Rp^-1 * Soff * Sp * S * Sp^-1</tt>, as documented for
+     * the FBX SDK.
+     * </p>
+     *
+     * @param model a <tt>Model</tt> record
+     * @return the local transform in column-major order
+     */
+    private double[] getLocalTransform(FbxRecord model) {
+
+        boolean rotationActive = isRotationActive(model);
+        int rotationOrder = getRotationOrder(model);
+
+        double[] rotationPivot = getVector(model, "RotationPivot", 0);
+        double[] scalingPivot = getVector(model, "ScalingPivot", 0);
+
+        double[] preRotation = rotationActive ? getVector(model, "PreRotation", 0) : new double[3];
+        double[] postRotation = rotationActive ? getVector(model, "PostRotation", 0) : new double[3];
+
+        double[][] factors = {
+            FbxMatrices.translation(getVector(model, "Lcl Translation", 0)),
+            FbxMatrices.translation(getVector(model, "RotationOffset", 0)),
+            FbxMatrices.translation(rotationPivot),
+            FbxMatrices.rotation(preRotation, 0),
+            FbxMatrices.rotation(getVector(model, "Lcl Rotation", 0), rotationOrder),
+            FbxMatrices.transpose(FbxMatrices.rotation(postRotation, 0)),
+            FbxMatrices.translation(FbxMatrices.negate(rotationPivot)),
+            FbxMatrices.translation(getVector(model, "ScalingOffset", 0)),
+            FbxMatrices.translation(scalingPivot),
+            FbxMatrices.scaling(getVector(model, "Lcl Scaling", 1)),
+            FbxMatrices.translation(FbxMatrices.negate(scalingPivot))
+        };
+
+        double[] local = factors[0];
+        for (int i = 1; i < factors.length; i++) {
+            local = FbxMatrices.multiply(local, factors[i]);
+        }
+        return local;
+    }
+
+    /**
+     * Checks whether the rotation order, pre-rotation and post-rotation of a model apply.
+     *
+     * @param model a <tt>Model</tt> record
+     * @return <tt>true</tt> if the <tt>RotationActive</tt> property is set
+     */
+    private boolean isRotationActive(FbxRecord model) {
+
+        FbxRecord rotationActiveProperty = findProperty(model, "RotationActive");
+        return rotationActiveProperty != null && rotationActiveProperty.getLong(PROPERTY_VALUE_OFFSET, 0) != 0;
+    }
+
+    /**
+     * Gets the rotation order of a model.
+     *
+     * @param model a <tt>Model</tt> record
+     * @return the FBX rotation order, or 0 (XYZ) if rotation is not active
+     */
+    private int getRotationOrder(FbxRecord model) {
+
+        FbxRecord rotationOrderProperty = findProperty(model, "RotationOrder");
+        return isRotationActive(model) && rotationOrderProperty != null ? (int) rotationOrderProperty.getLong(
+                PROPERTY_VALUE_OFFSET, 0) : 0;
+    }
+
+    /**
+     * Reads the transform properties of a model in the order of {@link FbxAnimation}.
+     *
+     * @param model a <tt>Model</tt> record, or <tt>null</tt> for the root node
+     * @param target the array the properties are written to
+     * @param offset the index of the first property in the array
+     */
+    private void readTransformProperties(FbxRecord model, double[] target, int offset) {
+
+        boolean rotationActive = model != null && isRotationActive(model);
+
+        for (int i = 0; i < TRANSFORM_PROPERTIES.length; i++) {
+
+            // Pre- and post-rotation only apply if rotation is active, as in the local transform.
+            boolean ignored = model == null || (!rotationActive && TRANSFORM_PROPERTIES[i].endsWith("Rotation")
+                    && !TRANSFORM_PROPERTIES[i].startsWith("Lcl"));
+            double[] vector = ignored ? null : getVector(model, TRANSFORM_PROPERTIES[i],
+                    TRANSFORM_PROPERTY_DEFAULTS[i]);
+
+            for (int j = 0; j < 3; j++) {
+                target[offset + 3 * i + j] = vector != null ? vector[j] : TRANSFORM_PROPERTY_DEFAULTS[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the objects of a type that are connected to an object, in the order of the connections.
+     *
+     * @param destination the object record
+     * @param type the record name of the connected objects
+     * @param subclass the subclass of the connected objects, or <tt>null</tt> for any
+     * @return the connected object records
+     */
+    private List<FbxRecord> getSources(FbxRecord destination, String type, String subclass) {
+
+        List<FbxRecord> sources = new ArrayList<>();
+        for (Connection connection : getConnections(destination)) {
+            if (type.equals(connection.source.getName())
+                    && (subclass == null || subclass.equals(connection.source.getString(2)))) {
+                sources.add(connection.source);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Gets the connections to an object.
+     *
+     * @param destination the object record
+     * @return the connections with the object as their destination
+     */
+    private List<Connection> getConnections(FbxRecord destination) {
+
+        List<Connection> incoming = connections.get(destination.getLong(0, 0));
+        return incoming != null ? incoming : Collections.<Connection> emptyList();
+    }
+
+    /**
+     * Gets the index of every model in traversal order.
+     *
+     * @return the node indices by <tt>Model</tt> record
+     */
+    private Map<FbxRecord, Integer> getNodeIndices() {
+
+        if (nodeList == null) {
+            nodeList = getNodeList();
+        }
+
+        Map<FbxRecord, Integer> indices = new IdentityHashMap<>();
+        for (int node = 0; node < nodeList.size(); node++) {
+            if (nodeList.get(node).model != null) {
+                indices.put(nodeList.get(node).model, node);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Gets a matrix stored as an array of 16 doubles in a child record.
+     *
+     * @param object an object record
+     * @param name the name of the child record
+     * @return the matrix in column order, or the identity if it is not defined
+     */
+    private static double[] getMatrix(FbxRecord object, String name) {
+
+        FbxArrayProperty matrix = object.getChildArray(name);
+        double[] values = matrix != null ? matrix.toDoubleArray() : null;
+        return values != null && values.length == 16 ? values : FbxMatrices.identity();
+    }
+
+    /**
+     * Gets a time property of an object.
+     *
+     * @param object an object record
+     * @param name the property name
+     * @return the time in seconds, 0 if it is not defined
+     */
+    private double getTime(FbxRecord object, String name) {
+
+        FbxRecord property = findProperty(object, name);
+        return property != null ? property.getLong(PROPERTY_VALUE_OFFSET, 0) / TICKS_PER_SECOND : 0;
+    }
+
+    private static int indexOf(String[] values, String value) {
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Gets the color of a material as (r, g, b, o), scaled by the color factor.
+     *
+     * @param material a <tt>Material</tt> record
+     * @param colorName the name of the color property
+     * @param legacyColorName the name of the color property in files written by older exporters
+     * @param factorName the name of the factor property
+     * @return the color and opacity, or <tt>null</tt> if the color is not defined
+     */
+    private double[] getMaterialColor(FbxRecord material, String colorName, String legacyColorName, String factorName) {
+
+        FbxRecord color = findProperty(material, colorName);
+        if (color == null) {
+            color = findProperty(material, legacyColorName);
+        }
+        if (color == null) {
+            return null;
+        }
+
+        FbxRecord factorProperty = findProperty(material, factorName);
+        double factor = factorProperty != null ? factorProperty.getDouble(PROPERTY_VALUE_OFFSET, 1) : 1;
+
+        // Older FBX files may define the 'Opacity' property instead of 'TransparencyFactor'.
+        double opacity;
+        FbxRecord opacityProperty = findOwnProperty(material, "Opacity");
+        if (opacityProperty != null) {
+            opacity = opacityProperty.getDouble(PROPERTY_VALUE_OFFSET, 1);
+        } else {
+            FbxRecord transparency = findProperty(material, "TransparencyFactor");
+            opacity = 1 - (transparency != null ? transparency.getDouble(PROPERTY_VALUE_OFFSET, 0) : 0);
+        }
+
+        double[] colorArray = new double[4];
+        for (int i = 0; i < 3; i++) {
+            colorArray[i] = factor * color.getDouble(PROPERTY_VALUE_OFFSET + i, 0);
+        }
+        colorArray[3] = opacity;
+        return colorArray;
+    }
+
+    /**
+     * Checks whether a material is Phong shaded.
+     *
+     * @param material a <tt>Material</tt> record
+     * @return <tt>true</tt> if the material has the Phong shading model
+     */
+    private boolean isPhong(FbxRecord material) {
+
+        String shadingModel = material.getChildString("ShadingModel");
+        return shadingModel != null && PHONG.equalsIgnoreCase(shadingModel);
+    }
+
+    /**
+     * Gets the absolute path of the texture connected to a material property.
+     *
+     * @param j the index of the material
+     * @param property the material property, e.g. <tt>DiffuseColor</tt>
+     * @return the absolute path to the texture file, or <tt>null</tt> if no texture is connected
+     */
+    private String getMaterialMap(int j, String property) {
+
+        checkOpen();
+
+        Map<String, FbxRecord> textures = materialTextures.get(currentNode.materials.get(j));
+        FbxRecord texture = textures != null ? textures.get(property) : null;
+
+        if (texture == null) {
+            return null;
+        }
+
+        String fileName = texture.getChildString("FileName");
+        if (fileName != null && !fileName.isEmpty() && new File(fileName).exists()) {
+            return fileName;
+        }
+
+        // Textures are often moved together with the FBX file, in which case the absolute path is stale.
+        String relativeFileName = texture.getChildString("RelativeFilename");
+        if (relativeFileName != null && !relativeFileName.isEmpty()) {
+            File relativeFile = new File(directory, relativeFileName.replace('\\', File.separatorChar));
+            if (relativeFile.exists() || fileName == null || fileName.isEmpty()) {
+                return relativeFile.getPath();
+            }
+        }
+
+        return fileName != null && !fileName.isEmpty() ? fileName : null;
+    }
+
+    /**
+     * Gets a three-component vector property of an object, falling back to the template default.
+     *
+     * @param object an object record
+     * @param name the property name
+     * @param defaultValue the value used for each component if the property is not defined
+     * @return the vector
+     */
+    private double[] getVector(FbxRecord object, String name, double defaultValue) {
+
+        FbxRecord property = findProperty(object, name);
+
+        double[] vector = new double[3];
+        for (int i = 0; i < 3; i++) {
+            vector[i] = property != null ? property.getDouble(PROPERTY_VALUE_OFFSET + i, defaultValue) : defaultValue;
+        }
+        return vector;
+    }
+
+    /**
+     * Finds a property of an object, falling back to the template for the object's type.
+     *
+     * @param object an object record
+     * @param name the property name
+     * @return the <tt>P</tt> record of the property, or <tt>null</tt> if it is not defined
+     */
+    private FbxRecord findProperty(FbxRecord object, String name) {
+
+        FbxRecord property = findOwnProperty(object, name);
+        if (property == null) {
+            property = findPropertyIn(templates.get(object.getName()), name);
+        }
+        return property;
+    }
+
+    /**
+     * Finds a property that is defined on the object itself.
+     *
+     * @param object an object record
+     * @param name the property name
+     * @return the <tt>P</tt> record of the property, or <tt>null</tt> if it is not defined
+     */
+    private FbxRecord findOwnProperty(FbxRecord object, String name) {
+        return findPropertyIn(object.getChild("Properties70"), name);
+    }
+
+    /**
+     * Finds a property in a property list.
+     *
+     * @param properties a <tt>Properties70</tt> record, may be <tt>null</tt>
+     * @param name the property name
+     * @return the <tt>P</tt> record of the property, or <tt>null</tt> if it is not defined
+     */
+    private static FbxRecord findPropertyIn(FbxRecord properties, String name) {
+
+        if (properties == null) {
+            return null;
+        }
+        for (FbxRecord property : properties.getChildren()) {
+            if (name.equals(property.getString(0))) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the name of an object, without the class suffix that binary FBX files append to it.
+     *
+     * @param object an object record
+     * @return the object name
+     */
+    private static String getObjectName(FbxRecord object) {
+
+        String name = object.getString(1);
+        if (name == null) {
+            return "";
+        }
+        int separator = name.indexOf(NAME_SEPARATOR);
+        return separator >= 0 ? name.substring(0, separator) : name;
+    }
+
+    /**
+     * Checks that a file is open.
+     */
+    private void checkOpen() {
+        if (currentNode == null) {
+            throw new IllegalStateException("File must be opened before data can be queried.");
+        }
+    }
+
+    /**
+     * A connection to an object, with the name of the property of the object it is connected to, if any.
+     */
+    private static final class Connection {
+
+        private final FbxRecord source;
+        private final String property;
+
+        private Connection(FbxRecord source, String property) {
+            this.source = source;
+            this.property = property;
+        }
+    }
+
+    /**
+     * A node of the FBX graph.
+     */
+    private static final class SceneNode {
+
+        private final String name;
+        private final FbxRecord model;
+        private final List<SceneNode> children = new ArrayList<>();
+        private final List<FbxRecord> attributes = new ArrayList<>();
+        private final List<FbxRecord> materials = new ArrayList<>();
+        private SceneNode parent;
+        private int siblingIndex;
+        private double[] globalTransform;
+
+        private SceneNode(String name, FbxRecord model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        private void setParent(SceneNode parent) {
+            if (this.parent == null) {
+                this.parent = parent;
+                siblingIndex = parent.children.size();
+                parent.children.add(this);
+            }
+        }
+    }
+}
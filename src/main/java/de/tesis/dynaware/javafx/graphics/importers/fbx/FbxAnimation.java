@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The animation of the nodes of an FBX graph, from the curves of the first layer of the first animation stack.
+ *
+ * <p>
+ * Every node has its transform properties, and a curve for each of the nine channels of its local translation,
+ * rotation and scaling (x, y and z each) that is animated. A node's local transform at a time is composed like in the
+ * FBX SDK, <tt>T * Roff * Rp * Rpre * R * Rpost^-1 * Rp^-1 * Soff * Sp * S * Sp^-1</tt>, with the animated channels
+ * taken from the curves. The parts between <tt>T</tt>, <tt>R</tt> and <tt>S</tt> are constant and composed once.
+ * </p>
+ *
+ * <p>
+ * Curves are interpolated linearly between their keys and hold their first and last value outside of them. Tangents
+ * and other layers of the stack are ignored.
+ * </p>
+ *
+ * <p>
+ * The packed form written by <tt>jfbxlib</tt> has a header of four ints: the node count, the curve count, the key
+ * count and a padding int. It is followed by the start and stop time of the stack in seconds and the transform
+ * properties (27 doubles per node: translation, rotation, scaling, rotation offset, rotation pivot, pre-rotation,
+ * post-rotation, scaling offset and scaling pivot), the parent indices, the rotation orders, the node, the channel
+ * and the key offset of every curve followed by the end offset (ints), and the times in seconds and values of all
+ * keys (floats), all in native byte order.
+ * </p>
+ */
+public final class FbxAnimation {
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The number of transform properties of every node.
+     */
+    static final int PROPERTY_COUNT = 27;
+
+    /**
+     * The number of animated channels of every node: the x, y and z of translation, rotation and scaling.
+     */
+    static final int CHANNEL_COUNT = 9;
+
+    private static final int TRANSFORM_SIZE = 16;
+
+    // The offsets of the vectors in the transform properties of a node.
+    private static final int ROTATION_OFFSET = 9;
+    private static final int ROTATION_PIVOT = 12;
+    private static final int PRE_ROTATION = 15;
+    private static final int POST_ROTATION = 18;
+    private static final int SCALING_OFFSET = 21;
+    private static final int SCALING_PIVOT = 24;
+
+    private final int nodeCount;
+    private final int[] parents;
+    private final int[] rotationOrders;
+    private final double startTime;
+    private final double stopTime;
+
+    // The translation, rotation and scaling of every node when not animated.
+    private final double[] channels;
+
+    // Roff * Rp * Rpre and Rpost^-1 * Rp^-1 * Soff * Sp of every node, and its scaling pivot.
+    private final double[] preRotations;
+    private final double[] postRotations;
+    private final double[] scalingPivots;
+
+    // The curves of node n are the range from nodeCurveOffsets[n] to nodeCurveOffsets[n + 1].
+    private final int[] nodeCurveOffsets;
+    private final int[] curveChannels;
+    private final int[] keyOffsets;
+    private final float[] keyTimes;
+    private final float[] keyValues;
+
+    // Whether a node or one of its ancestors has curves.
+    private final boolean[] animated;
+
+    /**
+     * Creates a new animation.
+     *
+     * @param parents the parent index of every node in the order of {@link FbxLib#getNodeTable()}, -1 for the root
+     * @param properties the {@link #PROPERTY_COUNT} transform properties of every node
+     * @param rotationOrders the FBX rotation order of every node
+     * @param startTime the start time of the animation in seconds
+     * @param stopTime the stop time of the animation in seconds
+     * @param curveNodes the node of every curve, in ascending order
+     * @param curveChannels the channel of every curve, from 0 to {@link #CHANNEL_COUNT} - 1
+     * @param keyOffsets the offset of the first key of every curve, followed by the end offset
+     * @param keyTimes the times of all keys in seconds, ascending for every curve
+     * @param keyValues the values of all keys
+     */
+    FbxAnimation(int[] parents, double[] properties, int[] rotationOrders, double startTime, double stopTime,
+            int[] curveNodes, int[] curveChannels, int[] keyOffsets, float[] keyTimes, float[] keyValues) {
+
+        this.parents = parents;
+        this.rotationOrders = rotationOrders;
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+        this.curveChannels = curveChannels;
+        this.keyOffsets = keyOffsets;
+        this.keyTimes = keyTimes;
+        this.keyValues = keyValues;
+
+        nodeCount = parents.length;
+        channels = new double[CHANNEL_COUNT * nodeCount];
+        preRotations = new double[TRANSFORM_SIZE * nodeCount];
+        postRotations = new double[TRANSFORM_SIZE * nodeCount];
+        scalingPivots = new double[3 * nodeCount];
+
+        for (int node = 0; node < nodeCount; node++) {
+
+            int offset = PROPERTY_COUNT * node;
+            System.arraycopy(properties, offset, channels, CHANNEL_COUNT * node, CHANNEL_COUNT);
+            System.arraycopy(properties, offset + SCALING_PIVOT, scalingPivots, 3 * node, 3);
+
+            double[] rotationPivot = getVector(properties, offset + ROTATION_PIVOT);
+
+            double[] preRotation = FbxMatrices.multiply(FbxMatrices.multiply(
+                    FbxMatrices.translation(getVector(properties, offset + ROTATION_OFFSET)),
+                    FbxMatrices.translation(rotationPivot)),
+                    FbxMatrices.rotation(getVector(properties, offset + PRE_ROTATION), 0));
+
+            double[] postRotation = FbxMatrices.multiply(FbxMatrices.multiply(FbxMatrices.multiply(
+                    FbxMatrices.transpose(FbxMatrices.rotation(getVector(properties, offset + POST_ROTATION), 0)),
+                    FbxMatrices.translation(FbxMatrices.negate(rotationPivot))),
+                    FbxMatrices.translation(getVector(properties, offset + SCALING_OFFSET))),
+                    FbxMatrices.translation(getVector(properties, offset + SCALING_PIVOT)));
+
+            System.arraycopy(preRotation, 0, preRotations, TRANSFORM_SIZE * node, TRANSFORM_SIZE);
+            System.arraycopy(postRotation, 0, postRotations, TRANSFORM_SIZE * node, TRANSFORM_SIZE);
+        }
+
+        nodeCurveOffsets = new int[nodeCount + 1];
+        for (int node : curveNodes) {
+            nodeCurveOffsets[node + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            nodeCurveOffsets[node + 1] += nodeCurveOffsets[node];
+        }
+
+        // Parents come before their children in traversal order.
+        animated = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            animated[node] = nodeCurveOffsets[node + 1] > nodeCurveOffsets[node]
+                    || (parents[node] >= 0 && animated[parents[node]]);
+        }
+    }
+
+    /**
+     * Decodes the packed form of an animation.
+     *
+     * @param buffer a buffer holding the packed animation from index 0
+     * @return the animation
+     */
+    static FbxAnimation decode(ByteBuffer buffer) {
+
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.nativeOrder());
+        source.clear();
+
+        int nodeCount = source.getInt();
+        int curveCount = source.getInt();
+        int keyCount = source.getInt();
+        source.getInt();
+
+        double startTime = source.getDouble();
+        double stopTime = source.getDouble();
+
+        double[] properties = new double[PROPERTY_COUNT * nodeCount];
+        source.asDoubleBuffer().get(properties);
+        source.position(source.position() + properties.length * Double.BYTES);
+
+        int[] parents = new int[nodeCount];
+        int[] rotationOrders = new int[nodeCount];
+        int[] curveNodes = new int[curveCount];
+        int[] curveChannels = new int[curveCount];
+        int[] keyOffsets = new int[curveCount + 1];
+        source.asIntBuffer().get(parents).get(rotationOrders).get(curveNodes).get(curveChannels).get(keyOffsets);
+        source.position(source.position() + (2 * nodeCount + 3 * curveCount + 1) * Integer.BYTES);
+
+        float[] keyTimes = new float[keyCount];
+        float[] keyValues = new float[keyCount];
+        source.asFloatBuffer().get(keyTimes).get(keyValues);
+
+        return new FbxAnimation(parents, properties, rotationOrders, startTime, stopTime, curveNodes, curveChannels,
+                keyOffsets, keyTimes, keyValues);
+    }
+
+    /**
+     * Gets the number of nodes, which is the number of nodes of {@link FbxLib#getNodeTable()}.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of animation curves.
+     *
+     * @return the number of curves
+     */
+    public int getCurveCount() {
+        return curveChannels.length;
+    }
+
+    /**
+     * Gets the start time of the animation.
+     *
+     * @return the start time in seconds
+     */
+    public double getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the stop time of the animation.
+     *
+     * @return the stop time in seconds
+     */
+    public double getStopTime() {
+        return stopTime;
+    }
+
+    /**
+     * Checks whether the global transform of a node changes over time.
+     *
+     * @param node the index of the node
+     * @return <tt>true</tt> if the node or one of its ancestors is animated
+     */
+    public boolean isAnimated(int node) {
+        return animated[node];
+    }
+
+    /**
+     * Gets the parent of a node.
+     *
+     * @param node the index of the node
+     * @return the index of the parent, or -1 for the root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * Evaluates the global transforms of all nodes at a time.
+     *
+     * @param time the time in seconds
+     * @param globalTransforms the array of at least 16 values per node that the transforms are written to, in column
+     *            order
+     */
+    public void evaluate(double time, double[] globalTransforms) {
+
+        double[] local = new double[2 * TRANSFORM_SIZE];
+        double[] values = new double[CHANNEL_COUNT];
+
+        for (int node = 0; node < nodeCount; node++) {
+
+            System.arraycopy(channels, CHANNEL_COUNT * node, values, 0, CHANNEL_COUNT);
+            for (int curve = nodeCurveOffsets[node]; curve < nodeCurveOffsets[node + 1]; curve++) {
+                values[curveChannels[curve]] = sample(curve, time);
+            }
+
+            computeLocalTransform(node, values, local);
+
+            int parent = parents[node];
+            if (parent >= 0) {
+                FbxMatrices.multiply(globalTransforms, TRANSFORM_SIZE * parent, local, TRANSFORM_SIZE,
+                        globalTransforms, TRANSFORM_SIZE * node);
+            } else {
+                System.arraycopy(local, TRANSFORM_SIZE, globalTransforms, TRANSFORM_SIZE * node, TRANSFORM_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Samples a curve.
+     *
+     * @param curve the index of the curve
+     * @param time the time in seconds
+     * @return the value of the curve, interpolated linearly between the keys around the time
+     */
+    float sample(int curve, double time) {
+
+        int first = keyOffsets[curve];
+        int last = keyOffsets[curve + 1] - 1;
+
+        if (last < first) {
+            return 0;
+        } else if (time <= keyTimes[first]) {
+            return keyValues[first];
+        } else if (time >= keyTimes[last]) {
+            return keyValues[last];
+        }
+
+        // Finds the last key at or before the time.
+        int low = first;
+        int high = last;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (keyTimes[middle] <= time) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        double fraction = (time - keyTimes[low]) / (keyTimes[high] - keyTimes[low]);
+        return (float) (keyValues[low] + fraction * (keyValues[high] - keyValues[low]));
+    }
+
+    /**
+     * Composes the local transform of a node from its translation, rotation and scaling.
+     *
+     * @param node the index of the node
+     * @param values the translation, rotation in degrees and scaling of the node
+     * @param local an array of 32 values, the transform is written to the second 16
+     */
+    private void computeLocalTransform(int node, double[] values, double[] local) {
+
+        FbxMatrices.rotation(values[3], values[4], values[5], rotationOrders[node], local, 0);
+        FbxMatrices.multiply(preRotations, TRANSFORM_SIZE * node, local, 0, local, TRANSFORM_SIZE);
+        FbxMatrices.multiply(local, TRANSFORM_SIZE, postRotations, TRANSFORM_SIZE * node, local, 0);
+
+        // Multiplies S * Sp^-1 from the right, then T from the left.
+        for (int row = 0; row < 4; row++) {
+
+            double translation = local[12 + row];
+            for (int axis = 0; axis < 3; axis++) {
+                double scaled = local[4 * axis + row] * values[6 + axis];
+                local[TRANSFORM_SIZE + 4 * axis + row] = scaled;
+                translation -= scaled * scalingPivots[3 * node + axis];
+            }
+            local[TRANSFORM_SIZE + 12 + row] = translation + (row < 3 ? values[row] * local[15] : 0);
+        }
+    }
+
+    private static double[] getVector(double[] properties, int offset) {
+        return new double[] { properties[offset], properties[offset + 1], properties[offset + 2] };
+    }
+}
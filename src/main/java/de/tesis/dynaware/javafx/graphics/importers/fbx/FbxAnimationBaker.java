@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * Bakes the animation of an import into an {@link FbxBakedAnimation}, so that playback samples packed tracks instead
+ * of evaluating the animation curves and node hierarchy for every frame.
+ *
+ * <p>
+ * The global transforms of the nodes are evaluated once for every frame from the start to the stop time of the
+ * animation. With a tolerance, every track then keeps only every n-th frame as a key, n being the largest power of two
+ * for which interpolating between the keys reproduces all frames within the tolerance. Tracks that do not change
+ * within the tolerance keep a single key. The keys can then be quantized to 16 bits per value, over the range of every
+ * value of a track.
+ * </p>
+ *
+ * <p>
+ * A baker can be shared by several imports once it is configured.
+ * </p>
+ */
+public class FbxAnimationBaker {
+
+    /**
+     * The default number of frames per second.
+     */
+    public static final double DEFAULT_FRAME_RATE = 30;
+
+    // The range of quantized values, which are stored as shorts.
+    private static final int QUANTIZATION_LEVELS = (1 << 16) - 1;
+
+    private static final int TRANSFORM_SIZE = 16;
+    private static final int KEY_SIZE = FbxBakedAnimation.KEY_SIZE;
+
+    private final double frameRate;
+    private final boolean quantized;
+    private final double tolerance;
+
+    /**
+     * Creates a new baker with the default frame rate, which keeps every frame without quantization.
+     */
+    public FbxAnimationBaker() {
+        this(DEFAULT_FRAME_RATE, false, 0);
+    }
+
+    /**
+     * Creates a new baker.
+     *
+     * @param frameRate the number of frames per second
+     * @param quantized <tt>true</tt> to store the keys as 16-bit values
+     * @param tolerance the largest difference of any value of a transform that removing keys may cause, 0 to only
+     *            remove keys that interpolation reproduces exactly
+     */
+    public FbxAnimationBaker(double frameRate, boolean quantized, double tolerance) {
+
+        if (!(frameRate > 0) || !(tolerance >= 0)) {
+            throw new IllegalArgumentException("Frame rate must be positive and tolerance must not be negative ["
+                    + frameRate + ", " + tolerance + "]");
+        }
+
+        this.frameRate = frameRate;
+        this.quantized = quantized;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Bakes the global transforms of some nodes of an animation.
+     *
+     * @param animation the animation
+     * @param nodes the nodes to bake, one track each
+     * @return the baked animation
+     */
+    public FbxBakedAnimation bake(FbxAnimation animation, int[] nodes) {
+
+        double startTime = animation.getStartTime();
+        double duration = Math.max(0, animation.getStopTime() - startTime);
+        int frameCount = (int) Math.ceil(duration * frameRate) + 1;
+
+        // The frames of every track, one after the other.
+        float[] frames = new float[KEY_SIZE * frameCount * nodes.length];
+        double[] globalTransforms = new double[TRANSFORM_SIZE * animation.getNodeCount()];
+
+        for (int frame = 0; frame < frameCount; frame++) {
+
+            animation.evaluate(startTime + frame / frameRate, globalTransforms);
+
+            for (int track = 0; track < nodes.length; track++) {
+
+                int source = TRANSFORM_SIZE * nodes[track];
+                int target = KEY_SIZE * (track * frameCount + frame);
+                for (int i = 0; i < KEY_SIZE; i++) {
+                    frames[target + i] = (float) globalTransforms[source + 4 * (i & 3) + (i >> 2)];
+                }
+            }
+        }
+
+        int[] steps = new int[nodes.length];
+        int[] keyOffsets = new int[nodes.length + 1];
+
+        for (int track = 0; track < nodes.length; track++) {
+            steps[track] = findStep(frames, KEY_SIZE * track * frameCount, frameCount);
+            keyOffsets[track + 1] = keyOffsets[track] + getKeyCount(steps[track], frameCount);
+        }
+
+        float[] values = new float[KEY_SIZE * keyOffsets[nodes.length]];
+
+        for (int track = 0; track < nodes.length; track++) {
+            for (int key = 0; key < keyOffsets[track + 1] - keyOffsets[track]; key++) {
+                int frame = Math.min(key * steps[track], frameCount - 1);
+                System.arraycopy(frames, KEY_SIZE * (track * frameCount + frame), values,
+                        KEY_SIZE * (keyOffsets[track] + key), KEY_SIZE);
+            }
+        }
+
+        if (!quantized) {
+            return new FbxBakedAnimation(nodes.clone(), startTime, frameRate, frameCount, keyOffsets, steps, values,
+                    null, null, null);
+        }
+
+        float[] offsets = new float[KEY_SIZE * nodes.length];
+        float[] scales = new float[KEY_SIZE * nodes.length];
+        short[] quantizedValues = quantize(values, keyOffsets, offsets, scales);
+
+        return new FbxBakedAnimation(nodes.clone(), startTime, frameRate, frameCount, keyOffsets, steps, null,
+                quantizedValues, offsets, scales);
+    }
+
+    /**
+     * Finds the largest number of frames between keys for which the frames of a track are reproduced within the
+     * tolerance.
+     *
+     * @param frames the frames of all tracks
+     * @param offset the index of the first value of the track
+     * @param frameCount the number of frames
+     * @return the step, or the frame count if the track keeps a single key
+     */
+    private int findStep(float[] frames, int offset, int frameCount) {
+
+        if (isConstant(frames, offset, frameCount)) {
+            return frameCount;
+        }
+
+        int step = 1;
+        while (2 * step < frameCount - 1 && isReproduced(frames, offset, frameCount, 2 * step)) {
+            step *= 2;
+        }
+        return step;
+    }
+
+    private boolean isConstant(float[] frames, int offset, int frameCount) {
+
+        for (int frame = 1; frame < frameCount; frame++) {
+            for (int i = 0; i < KEY_SIZE; i++) {
+                if (Math.abs(frames[offset + KEY_SIZE * frame + i] - frames[offset + i]) > tolerance) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether interpolating between every n-th frame and the last frame reproduces all frames of a track.
+     */
+    private boolean isReproduced(float[] frames, int offset, int frameCount, int step) {
+
+        for (int frame = 0; frame < frameCount; frame++) {
+
+            int keyFrame = Math.min(frame / step * step, frameCount - 1);
+            int nextFrame = Math.min(keyFrame + step, frameCount - 1);
+            if (keyFrame == frame || keyFrame == nextFrame) {
+                continue;
+            }
+
+            double fraction = (double) (frame - keyFrame) / (nextFrame - keyFrame);
+            for (int i = 0; i < KEY_SIZE; i++) {
+
+                float key = frames[offset + KEY_SIZE * keyFrame + i];
+                float next = frames[offset + KEY_SIZE * nextFrame + i];
+                double value = key + fraction * (next - key);
+                if (Math.abs(value - frames[offset + KEY_SIZE * frame + i]) > tolerance) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of keys of a track, which always has a key on the first and last frame.
+     */
+    private static int getKeyCount(int step, int frameCount) {
+        return step >= frameCount ? 1 : (frameCount - 1 + step - 1) / step + 1;
+    }
+
+    /**
+     * Quantizes the values of the keys of all tracks over the range of every value of a track.
+     *
+     * @param values the values of all keys
+     * @param keyOffsets the offset of the first key of every track, followed by the end offset
+     * @param offsets the array the minimum of every value of every track is written to
+     * @param scales the array the scale of every value of every track is written to
+     * @return the quantized values
+     */
+    private static short[] quantize(float[] values, int[] keyOffsets, float[] offsets, float[] scales) {
+
+        short[] quantizedValues = new short[values.length];
+
+        for (int track = 0; track < keyOffsets.length - 1; track++) {
+            for (int i = 0; i < KEY_SIZE; i++) {
+
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+                for (int key = keyOffsets[track]; key < keyOffsets[track + 1]; key++) {
+                    min = Math.min(min, values[KEY_SIZE * key + i]);
+                    max = Math.max(max, values[KEY_SIZE * key + i]);
+                }
+
+                float scale = (max - min) / QUANTIZATION_LEVELS;
+                offsets[KEY_SIZE * track + i] = min;
+                scales[KEY_SIZE * track + i] = scale;
+
+                for (int key = keyOffsets[track]; key < keyOffsets[track + 1]; key++) {
+                    int level = scale > 0 ? Math.round((values[KEY_SIZE * key + i] - min) / scale) : 0;
+                    quantizedValues[KEY_SIZE * key + i] = (short) (Math.min(level, QUANTIZATION_LEVELS)
+                            + Short.MIN_VALUE);
+                }
+            }
+        }
+        return quantizedValues;
+    }
+}
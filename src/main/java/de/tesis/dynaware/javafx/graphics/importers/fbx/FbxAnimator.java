@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.transform.Affine;
+
+/**
+ * Plays the animation of an import on its mesh views.
+ *
+ * <p>
+ * For every frame, the global transforms of all nodes are evaluated once. Mesh views of animated nodes get the new
+ * global transform of their node, and skinned meshes are deformed by their {@link FbxSkinning}. Mesh views of skinned
+ * meshes keep their transforms, as the skinned points already follow the skeleton.
+ * </p>
+ *
+ * <p>
+ * If the animation was baked by an {@link FbxAnimationBaker}, the global transforms of the nodes that are needed are
+ * sampled from the {@link FbxBakedAnimation} instead, and an update allocates nothing.
+ * </p>
+ *
+ * <p>
+ * The animator of an import is stored in the properties of the root of the import. Must only be used on the JavaFX
+ * application thread once the mesh views are part of a scene.
+ * </p>
+ */
+public final class FbxAnimator {
+
+    private static final String PROPERTY_KEY = FbxAnimator.class.getName();
+
+    private static final int TRANSFORM_SIZE = 16;
+
+    private final FbxAnimation animation;
+    private FbxBakedAnimation bakedAnimation;
+    private final double[] globalTransforms;
+
+    // The transforms of the mesh views of animated nodes, and their nodes.
+    private final List<Affine> transforms = new ArrayList<>();
+    private final List<Integer> transformNodes = new ArrayList<>();
+
+    // The skinnings of skinned meshes, and the inverse transforms of their mesh views.
+    private final List<FbxSkinning> skinnings = new ArrayList<>();
+    private final List<double[]> meshTransforms = new ArrayList<>();
+
+    private AnimationTimer timer;
+    private long playStart;
+
+    /**
+     * Creates a new animator.
+     *
+     * @param animation the animation of the import
+     */
+    FbxAnimator(FbxAnimation animation) {
+        this.animation = animation;
+        globalTransforms = new double[TRANSFORM_SIZE * animation.getNodeCount()];
+    }
+
+    /**
+     * Gets the animator of an import.
+     *
+     * @param root the root of an import
+     * @return the animator, or <tt>null</tt> if the import is not animated
+     */
+    public static FbxAnimator get(Node root) {
+
+        if (!root.hasProperties()) {
+            return null;
+        }
+        Object animator = root.getProperties().get(PROPERTY_KEY);
+        return animator instanceof FbxAnimator ? (FbxAnimator) animator : null;
+    }
+
+    /**
+     * Gets the animation that is played.
+     *
+     * @return the animation
+     */
+    public FbxAnimation getAnimation() {
+        return animation;
+    }
+
+    /**
+     * Gets the baked animation that is sampled instead of the animation.
+     *
+     * @return the baked animation, or <tt>null</tt> if the animation is evaluated for every update
+     */
+    public FbxBakedAnimation getBakedAnimation() {
+        return bakedAnimation;
+    }
+
+    /**
+     * Gets the skinnings of the skinned meshes.
+     *
+     * @return an unmodifiable list of the skinnings, one per skinned mesh
+     */
+    public List<FbxSkinning> getSkinnings() {
+        return Collections.unmodifiableList(skinnings);
+    }
+
+    /**
+     * Moves the nodes and deforms the skinned meshes to the pose at a time.
+     *
+     * @param time the time in seconds
+     */
+    public void update(double time) {
+
+        if (bakedAnimation != null) {
+            bakedAnimation.sample(time, globalTransforms);
+        } else {
+            animation.evaluate(time, globalTransforms);
+        }
+
+        for (int i = 0; i < transforms.size(); i++) {
+
+            int offset = TRANSFORM_SIZE * transformNodes.get(i);
+            double[] g = globalTransforms;
+
+            // In the FBX SDK the indices go *down* the columns of the affine matrix.
+            transforms.get(i).setToTransform(g[offset], g[offset + 4], g[offset + 8], g[offset + 12], g[offset + 1],
+                    g[offset + 5], g[offset + 9], g[offset + 13], g[offset + 2], g[offset + 6], g[offset + 10],
+                    g[offset + 14]);
+        }
+
+        for (int i = 0; i < skinnings.size(); i++) {
+            skinnings.get(i).update(globalTransforms, meshTransforms.get(i));
+        }
+    }
+
+    /**
+     * Starts playing the animation in a loop from its start time, with one update per frame.
+     */
+    public void play() {
+
+        if (timer != null) {
+            return;
+        }
+
+        final double duration = animation.getStopTime() - animation.getStartTime();
+        playStart = System.nanoTime();
+
+        timer = new AnimationTimer() {
+
+            @Override
+            public void handle(long now) {
+
+                double elapsed = (now - playStart) / 1e9;
+                update(animation.getStartTime() + (duration > 0 ? elapsed % duration : 0));
+            }
+        };
+        timer.start();
+    }
+
+    /**
+     * Stops playing the animation, leaving the nodes in their current pose.
+     */
+    public void stop() {
+
+        if (timer != null) {
+            timer.stop();
+            timer = null;
+        }
+    }
+
+    /**
+     * Checks whether the animation is playing.
+     *
+     * @return <tt>true</tt> if {@link #play()} was called and the animation has not been stopped since
+     */
+    public boolean isPlaying() {
+        return timer != null;
+    }
+
+    /**
+     * Stores this animator in the properties of the root of the import.
+     *
+     * @param root the root of the import
+     */
+    void attach(Node root) {
+        root.getProperties().put(PROPERTY_KEY, this);
+    }
+
+    /**
+     * Adds the transform of the mesh view of an animated node.
+     *
+     * @param node the index of the node
+     * @param transform the transform of the mesh view that holds the global transform of the node
+     */
+    void addTransform(int node, Affine transform) {
+        transforms.add(transform);
+        transformNodes.add(node);
+    }
+
+    /**
+     * Adds a skinned mesh.
+     *
+     * @param skinning the skinning of the mesh
+     * @param meshTransform the inverse of the transform of the mesh view from the coordinates of the mesh to global
+     *            coordinates
+     */
+    void addSkinning(FbxSkinning skinning, double[] meshTransform) {
+        skinnings.add(skinning);
+        meshTransforms.add(meshTransform);
+    }
+
+    /**
+     * Sets a baked animation, which must have a track for every node in {@link #getNodes()}.
+     *
+     * @param bakedAnimation the baked animation
+     */
+    void setBakedAnimation(FbxBakedAnimation bakedAnimation) {
+        this.bakedAnimation = bakedAnimation;
+    }
+
+    /**
+     * Gets the nodes whose global transforms are needed for an update.
+     *
+     * @return the nodes of the mesh views of animated nodes and the bones of the skinned meshes, in ascending order
+     */
+    int[] getNodes() {
+
+        SortedSet<Integer> nodes = new TreeSet<>(transformNodes);
+        for (FbxSkinning skinning : skinnings) {
+            for (int bone = 0; bone < skinning.getSkin().getBoneCount(); bone++) {
+                if (skinning.getSkin().getBoneNode(bone) >= 0) {
+                    nodes.add(skinning.getSkin().getBoneNode(bone));
+                }
+            }
+        }
+
+        int[] array = new int[nodes.size()];
+        int i = 0;
+        for (int node : nodes) {
+            array[i++] = node;
+        }
+        return array;
+    }
+
+    /**
+     * Checks whether nothing is animated.
+     *
+     * @return <tt>true</tt> if there are neither mesh views of animated nodes nor skinned meshes
+     */
+    boolean isEmpty() {
+        return transforms.isEmpty() && skinnings.isEmpty();
+    }
+}
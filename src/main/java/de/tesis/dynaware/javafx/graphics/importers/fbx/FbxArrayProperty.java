@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An array (or raw binary) property of a binary FBX record.
+ *
+ * <p>
+ * Only the location of the array inside the mapped file is stored. The data is decoded, and inflated if it was stored
+ * zlib-compressed, each time one of the <tt>to...Array</tt> methods is called, so arrays of records that are never
+ * queried are never copied onto the heap.
+ * </p>
+ */
+final class FbxArrayProperty {
+
+    private static final int ENCODING_DEFLATE = 1;
+
+    private final char type;
+    private final int length;
+    private final int encoding;
+    private final int storedLength;
+    private final ByteBuffer file;
+    private final int offset;
+
+    /**
+     * Creates a new array property.
+     *
+     * @param type the FBX type code of the array, one of <tt>d, f, l, i, b</tt> or <tt>R</tt> for raw data
+     * @param length the number of elements in the array
+     * @param encoding 0 if the array is stored as is, 1 if it is zlib-compressed
+     * @param storedLength the number of bytes the array occupies in the file
+     * @param file the buffer the file is mapped into
+     * @param offset the offset of the array data in the file buffer
+     */
+    FbxArrayProperty(char type, int length, int encoding, int storedLength, ByteBuffer file, int offset) {
+        this.type = type;
+        this.length = length;
+        this.encoding = encoding;
+        this.storedLength = storedLength;
+        this.file = file;
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the FBX type code of the array.
+     *
+     * @return one of <tt>d, f, l, i, b</tt> or <tt>R</tt>
+     */
+    char getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of elements in the array.
+     *
+     * @return the array length
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Decodes the array into doubles, converting from the stored type if necessary.
+     *
+     * @return the decoded array
+     */
+    double[] toDoubleArray() {
+
+        ByteBuffer data = decode();
+        double[] array = new double[length];
+
+        switch (type) {
+        case 'd':
+            data.asDoubleBuffer().get(array);
+            break;
+        case 'f':
+            for (int i = 0; i < length; i++) {
+                array[i] = data.getFloat(4 * i);
+            }
+            break;
+        default:
+            // Integer types are widened from the same decoded data.
+            for (int i = 0; i < length; i++) {
+                array[i] = getLong(data, i);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Decodes the array into floats, converting from the stored type if necessary.
+     *
+     * @return the decoded array
+     */
+    float[] toFloatArray() {
+
+        if (type == 'f') {
+            float[] array = new float[length];
+            decode().asFloatBuffer().get(array);
+            return array;
+        }
+
+        double[] doubles = toDoubleArray();
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = (float) doubles[i];
+        }
+        return array;
+    }
+
+    /**
+     * Decodes the array into ints, converting from the stored type if necessary.
+     *
+     * @return the decoded array
+     */
+    int[] toIntArray() {
+
+        if (type == 'i') {
+            int[] array = new int[length];
+            decode().asIntBuffer().get(array);
+            return array;
+        }
+
+        long[] longs = toLongArray();
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = (int) longs[i];
+        }
+        return array;
+    }
+
+    /**
+     * Decodes the array into longs, converting from the stored type if necessary.
+     *
+     * @return the decoded array
+     */
+    long[] toLongArray() {
+
+        ByteBuffer data = decode();
+        long[] array = new long[length];
+
+        switch (type) {
+        case 'l':
+            data.asLongBuffer().get(array);
+            break;
+        case 'd':
+            for (int i = 0; i < length; i++) {
+                array[i] = (long) data.getDouble(8 * i);
+            }
+            break;
+        case 'f':
+            for (int i = 0; i < length; i++) {
+                array[i] = (long) data.getFloat(4 * i);
+            }
+            break;
+        default:
+            for (int i = 0; i < length; i++) {
+                array[i] = getLong(data, i);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Gets an element of an integer array, or of a boolean or raw array, from the decoded data.
+     *
+     * @param data the decoded data
+     * @param i the index of the element
+     * @return the element, widened to a long
+     */
+    private long getLong(ByteBuffer data, int i) {
+
+        switch (type) {
+        case 'l':
+            return data.getLong(8 * i);
+        case 'i':
+            return data.getInt(4 * i);
+        default:
+            return data.get(i);
+        }
+    }
+
+    /**
+     * Gets the size in bytes of one element of the array.
+     *
+     * @return the element size
+     */
+    private int getElementSize() {
+        switch (type) {
+        case 'd':
+        case 'l':
+            return 8;
+        case 'f':
+        case 'i':
+            return 4;
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * Gets a little-endian view of the (inflated) array data.
+     *
+     * @return a buffer positioned at the first element of the array
+     */
+    private ByteBuffer decode() {
+
+        if (encoding != ENCODING_DEFLATE) {
+            ByteBuffer data = file.duplicate();
+            data.position(offset);
+            data.limit(offset + length * getElementSize());
+            return data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Inflater only accepts heap arrays in Java 8, so the compressed bytes have to be copied out of the mapping.
+        byte[] compressed = new byte[storedLength];
+        ByteBuffer source = file.duplicate();
+        source.position(offset);
+        source.get(compressed);
+
+        byte[] inflated = new byte[length * getElementSize()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int count = 0;
+            while (count < inflated.length && !inflater.finished()) {
+                int n = inflater.inflate(inflated, count, inflated.length - count);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += n;
+            }
+            if (count != inflated.length) {
+                throw new ZipException("Compressed array is truncated");
+            }
+        } catch (DataFormatException | ZipException e) {
+            throw new UncheckedIOException(new ZipException("Corrupt compressed array: " + e.getMessage()));
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(inflated).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
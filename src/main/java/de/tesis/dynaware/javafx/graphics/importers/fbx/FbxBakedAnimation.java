@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * The global transforms of some nodes of an {@link FbxAnimation}, resampled onto a fixed timestep by the
+ * {@link FbxAnimationBaker}.
+ *
+ * <p>
+ * Every node has a track of keys, each holding the first three rows of its global transform as 12 values in row
+ * order. The keys of a track are a fixed number of frames apart, its step, so the two keys around a time are found
+ * by a division and sampling takes constant time. A track whose transform does not change has a single key. The keys
+ * of all tracks are packed into one array of floats, or of shorts if they are quantized, in which case every value of
+ * a track is stored relative to an offset and scale.
+ * </p>
+ */
+public final class FbxBakedAnimation {
+
+    /**
+     * The number of values of a key, the first three rows of a transform.
+     */
+    static final int KEY_SIZE = 12;
+
+    private static final int TRANSFORM_SIZE = 16;
+
+    private final int[] nodes;
+    private final double startTime;
+    private final double frameRate;
+    private final int frameCount;
+
+    // The keys of track t are the range from keyOffsets[t] to keyOffsets[t + 1], steps[t] frames apart.
+    private final int[] keyOffsets;
+    private final int[] steps;
+
+    // The values of all keys, either as floats or quantized with the offsets and scales of every value of a track.
+    private final float[] values;
+    private final short[] quantizedValues;
+    private final float[] offsets;
+    private final float[] scales;
+
+    /**
+     * Creates a new baked animation.
+     *
+     * @param nodes the node of every track
+     * @param startTime the time of the first frame in seconds
+     * @param frameRate the number of frames per second
+     * @param frameCount the number of frames
+     * @param keyOffsets the offset of the first key of every track, followed by the end offset
+     * @param steps the number of frames between two keys of every track
+     * @param values the values of all keys, or <tt>null</tt> if they are quantized
+     * @param quantizedValues the quantized values of all keys, or <tt>null</tt> if they are not quantized
+     * @param offsets the offset of every value of every track for quantized values, or <tt>null</tt>
+     * @param scales the scale of every value of every track for quantized values, or <tt>null</tt>
+     */
+    FbxBakedAnimation(int[] nodes, double startTime, double frameRate, int frameCount, int[] keyOffsets, int[] steps,
+            float[] values, short[] quantizedValues, float[] offsets, float[] scales) {
+
+        this.nodes = nodes;
+        this.startTime = startTime;
+        this.frameRate = frameRate;
+        this.frameCount = frameCount;
+        this.keyOffsets = keyOffsets;
+        this.steps = steps;
+        this.values = values;
+        this.quantizedValues = quantizedValues;
+        this.offsets = offsets;
+        this.scales = scales;
+    }
+
+    /**
+     * Gets the number of tracks.
+     *
+     * @return the number of baked nodes
+     */
+    public int getTrackCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Gets the node of a track.
+     *
+     * @param track the index of the track
+     * @return the index of the node in the order of {@link FbxLib#getNodeTable()}
+     */
+    public int getNode(int track) {
+        return nodes[track];
+    }
+
+    /**
+     * Gets the number of keys of a track.
+     *
+     * @param track the index of the track
+     * @return the number of keys, 1 if the transform of the node does not change
+     */
+    public int getKeyCount(int track) {
+        return keyOffsets[track + 1] - keyOffsets[track];
+    }
+
+    /**
+     * Gets the number of frames, which is the number of keys of a track without reduction.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the number of frames per second.
+     *
+     * @return the frame rate
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Checks whether the keys are quantized.
+     *
+     * @return <tt>true</tt> if the keys are stored as 16-bit values
+     */
+    public boolean isQuantized() {
+        return quantizedValues != null;
+    }
+
+    /**
+     * Gets the size of the keys and track data.
+     *
+     * @return the size in bytes
+     */
+    public long getSize() {
+
+        long size = 4L * (nodes.length + keyOffsets.length + steps.length);
+        if (quantizedValues != null) {
+            size += 2L * quantizedValues.length + 4L * (offsets.length + scales.length);
+        } else {
+            size += 4L * values.length;
+        }
+        return size;
+    }
+
+    /**
+     * Samples the global transforms of all tracks at a time, interpolating linearly between the keys around it.
+     *
+     * <p>
+     * Times outside of the baked frames are clamped to the first or last frame. Only the transforms of the nodes of
+     * the tracks are written, nothing is allocated.
+     * </p>
+     *
+     * @param time the time in seconds
+     * @param globalTransforms the array of 16 values per node that the transforms are written to, in column order
+     */
+    public void sample(double time, double[] globalTransforms) {
+
+        double frame = Math.max(0, Math.min((time - startTime) * frameRate, frameCount - 1));
+
+        for (int track = 0; track < nodes.length; track++) {
+
+            int first = keyOffsets[track];
+            int count = keyOffsets[track + 1] - first;
+            int key = 0;
+            double fraction = 0;
+
+            if (count > 1) {
+                int step = steps[track];
+                key = Math.min((int) (frame / step), count - 2);
+
+                // The last key is on the last frame, so the last interval can be shorter than the step.
+                double keyFrame = (double) key * step;
+                double nextFrame = Math.min(keyFrame + step, frameCount - 1);
+                fraction = (frame - keyFrame) / (nextFrame - keyFrame);
+            }
+
+            int offset = TRANSFORM_SIZE * nodes[track];
+            int next = count > 1 ? key + 1 : key;
+
+            for (int i = 0; i < KEY_SIZE; i++) {
+
+                double value = getValue(track, first + key, i);
+                if (fraction > 0) {
+                    value += fraction * (getValue(track, first + next, i) - value);
+                }
+
+                // Row i / 4 and column i % 4 of the transform.
+                globalTransforms[offset + 4 * (i & 3) + (i >> 2)] = value;
+            }
+            globalTransforms[offset + 3] = 0;
+            globalTransforms[offset + 7] = 0;
+            globalTransforms[offset + 11] = 0;
+            globalTransforms[offset + 15] = 1;
+        }
+    }
+
+    private double getValue(int track, int key, int i) {
+
+        if (quantizedValues == null) {
+            return values[KEY_SIZE * key + i];
+        }
+        int value = quantizedValues[KEY_SIZE * key + i] - Short.MIN_VALUE;
+        return offsets[KEY_SIZE * track + i] + scales[KEY_SIZE * track + i] * value;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The polygon mesh stored in a <tt>Geometry</tt> record of a binary FBX file.
+ *
+ * <p>
+ * Polygons with more than three vertices are fan-triangulated. The texture coordinate and smoothing layers are mapped
+ * onto the resulting triangles in the same form as {@link JFbxLib} returns them.
+ * </p>
+ */
+final class FbxBinaryMesh {
+
+    private static final String BY_POLYGON_VERTEX = "ByPolygonVertex";
+    private static final String BY_CONTROL_POINT = "ByControlPoint";
+    private static final String BY_VERTEX = "ByVertice";
+    private static final String BY_POLYGON = "ByPolygon";
+    private static final String INDEX_TO_DIRECT = "IndexToDirect";
+    private static final String INDEX = "Index";
+
+    private final FbxRecord geometry;
+    private int[] polygonVertexIndex;
+
+    // For each triangle corner, the position of the corresponding polygon vertex in the polygon-vertex index array.
+    private int[] corners;
+
+    // For each triangle, the index of the polygon it was created from.
+    private int[] trianglePolygons;
+
+    /**
+     * Creates a new mesh for the given geometry record.
+     *
+     * @param geometry a <tt>Geometry</tt> record of class <tt>Mesh</tt>
+     */
+    FbxBinaryMesh(FbxRecord geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Checks whether every polygon of the mesh is a triangle.
+     *
+     * @return <tt>true</tt> if the mesh is a triangle mesh
+     */
+    boolean isTriangleMesh() {
+
+        int[] indices = getPolygonVertexIndex();
+
+        int polygonSize = 0;
+        for (int index : indices) {
+            polygonSize++;
+            if (index < 0) {
+                if (polygonSize != 3) {
+                    return false;
+                }
+                polygonSize = 0;
+            }
+        }
+        return polygonSize == 0;
+    }
+
+    /**
+     * Splits all polygons into triangles. Called implicitly by the methods that return face data.
+     */
+    void triangulate() {
+
+        if (corners != null) {
+            return;
+        }
+
+        int[] indices = getPolygonVertexIndex();
+
+        int triangleCount = 0;
+        int polygonStart = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 0) {
+                triangleCount += Math.max(0, i - polygonStart - 1);
+                polygonStart = i + 1;
+            }
+        }
+
+        corners = new int[3 * triangleCount];
+        trianglePolygons = new int[triangleCount];
+
+        int triangle = 0;
+        int polygon = 0;
+        polygonStart = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 0) {
+                for (int k = polygonStart + 1; k < i; k++) {
+                    corners[3 * triangle] = polygonStart;
+                    corners[3 * triangle + 1] = k;
+                    corners[3 * triangle + 2] = k + 1;
+                    trianglePolygons[triangle] = polygon;
+                    triangle++;
+                }
+                polygon++;
+                polygonStart = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Gets the control points of the mesh.
+     *
+     * @return the array of vertices in the form (x1, y1, z1, x2, y2, z2, ... ), or <tt>null</tt> if none are defined
+     */
+    float[] getVertices() {
+
+        FbxArrayProperty vertices = geometry.getChildArray("Vertices");
+        return vertices != null ? vertices.toFloatArray() : null;
+    }
+
+    /**
+     * Gets the texture coordinates of the first UV layer, with the v coordinate inverted to match JavaFX.
+     *
+     * @return the array of texture coordinates in the form (u1, v1, u2, v2, ... ), or <tt>null</tt> if none are
+     *         defined
+     */
+    float[] getTexCoords() {
+
+        FbxRecord layer = geometry.getChild("LayerElementUV");
+        FbxArrayProperty uv = layer != null ? layer.getChildArray("UV") : null;
+
+        if (uv == null) {
+            return null;
+        }
+
+        float[] texCoords = uv.toFloatArray();
+        for (int i = 1; i < texCoords.length; i += 2) {
+            texCoords[i] = 1 - texCoords[i];
+        }
+        return texCoords;
+    }
+
+    /**
+     * Gets the triangle faces of the mesh.
+     *
+     * @return the array of face coordinates in the form ( p1, t1, p2, t2, p3, t3, ... ), or <tt>null</tt> if the mesh
+     *         has no polygons
+     */
+    int[] getFaces() {
+
+        int[] indices = getPolygonVertexIndex();
+        if (indices.length == 0) {
+            return null;
+        }
+
+        triangulate();
+
+        FbxRecord layer = geometry.getChild("LayerElementUV");
+        String mapping = layer != null ? layer.getChildString("MappingInformationType") : null;
+        String reference = layer != null ? layer.getChildString("ReferenceInformationType") : null;
+        FbxArrayProperty uvIndexArray = layer != null ? layer.getChildArray("UVIndex") : null;
+        FbxArrayProperty uvArray = layer != null ? layer.getChildArray("UV") : null;
+
+        boolean indexed = INDEX_TO_DIRECT.equals(reference) || INDEX.equals(reference);
+        int[] uvIndex = indexed && uvIndexArray != null ? uvIndexArray.toIntArray() : null;
+        int uvCount = uvArray != null ? uvArray.getLength() / 2 : 0;
+
+        int[] faces = new int[2 * corners.length];
+
+        for (int c = 0; c < corners.length; c++) {
+
+            int polygonVertex = corners[c];
+            int point = decode(indices[polygonVertex]);
+
+            int uv;
+            if (BY_POLYGON_VERTEX.equals(mapping)) {
+                uv = polygonVertex;
+            } else if (BY_CONTROL_POINT.equals(mapping) || BY_VERTEX.equals(mapping)) {
+                uv = point;
+            } else if (BY_POLYGON.equals(mapping)) {
+                uv = trianglePolygons[c / 3];
+            } else {
+                uv = 0;
+            }
+
+            if (indexed) {
+                uv = uvIndex != null && uv < uvIndex.length ? uvIndex[uv] : 0;
+            }
+
+            // Unmapped corners are stored as -1, JavaFX needs a valid index.
+            if (uv < 0 || uv >= uvCount) {
+                uv = 0;
+            }
+
+            faces[2 * c] = point;
+            faces[2 * c + 1] = uv;
+        }
+
+        return faces;
+    }
+
+    /**
+     * Gets the face smoothing groups of the mesh.
+     *
+     * <p>
+     * Only smoothing that is stored per polygon is supported. Edge smoothing and smoothing derived from normals
+     * require the FBX SDK, in which case <tt>null</tt> is returned and JavaFX smooths the whole mesh.
+     * </p>
+     *
+     * @return one smoothing group per triangle, or <tt>null</tt> if no polygon smoothing is defined
+     */
+    int[] getFaceSmoothingGroups() {
+
+        FbxRecord layer = geometry.getChild("LayerElementSmoothing");
+        if (layer == null || !BY_POLYGON.equals(layer.getChildString("MappingInformationType"))) {
+            return null;
+        }
+
+        FbxArrayProperty smoothingArray = layer.getChildArray("Smoothing");
+        if (smoothingArray == null) {
+            return null;
+        }
+
+        triangulate();
+
+        int[] smoothing = smoothingArray.toIntArray();
+        int[] groups = new int[trianglePolygons.length];
+        for (int t = 0; t < groups.length; t++) {
+            int polygon = trianglePolygons[t];
+            groups[t] = polygon < smoothing.length ? smoothing[polygon] : 0;
+        }
+        return groups;
+    }
+
+    /**
+     * Gets an upper bound for the size of the packed mesh data, without decoding the vertex and UV arrays.
+     *
+     * @return the number of bytes needed by {@link #getData(ByteBuffer)}
+     */
+    int getDataSize() {
+
+        triangulate();
+
+        FbxArrayProperty vertices = geometry.getChildArray("Vertices");
+        FbxRecord layer = geometry.getChild("LayerElementUV");
+        FbxArrayProperty uv = layer != null ? layer.getChildArray("UV") : null;
+
+        int floatCount = (vertices != null ? vertices.getLength() : 0) + (uv != null ? uv.getLength() : 0);
+        return FbxMeshData.HEADER_SIZE + 4 * (floatCount + 2 * corners.length + trianglePolygons.length);
+    }
+
+    /**
+     * Writes all data of the mesh into a buffer in the packed form described in {@link FbxMeshData}.
+     *
+     * @param buffer a buffer with a capacity of at least {@link #getDataSize()} bytes
+     */
+    void getData(ByteBuffer buffer) {
+        FbxMeshData.encode(buffer, getVertices(), getTexCoords(), getFaces(), getFaceSmoothingGroups());
+    }
+
+    /**
+     * Gets the polygon-vertex index array, where the last vertex of every polygon is stored as <tt>-(index + 1)</tt>.
+     *
+     * @return the polygon-vertex index array
+     */
+    private int[] getPolygonVertexIndex() {
+
+        if (polygonVertexIndex == null) {
+            FbxArrayProperty array = geometry.getChildArray("PolygonVertexIndex");
+            polygonVertexIndex = array != null ? array.toIntArray() : new int[0];
+        }
+        return polygonVertexIndex;
+    }
+
+    /**
+     * Decodes an entry of the polygon-vertex index array.
+     *
+     * @param index the stored index
+     * @return the control point index
+     */
+    private static int decode(int index) {
+        return index < 0 ? ~index : index;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the node records of a binary FBX file.
+ *
+ * <p>
+ * The file is memory-mapped rather than read onto the heap. Array properties are not decoded here, see
+ * {@link FbxArrayProperty}. ASCII FBX files are not supported.
+ * </p>
+ */
+final class FbxBinaryReader {
+
+    private static final byte[] MAGIC = "Kaydara FBX Binary  \0".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_LENGTH = 27;
+
+    /**
+     * From version 7.5 the record header fields are 64 bit wide.
+     */
+    private static final int WIDE_HEADER_VERSION = 7500;
+
+    private final ByteBuffer buffer;
+    private int version;
+
+    /**
+     * Creates a new reader for the given buffer.
+     *
+     * @param buffer a buffer containing the whole FBX file
+     */
+    FbxBinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Memory-maps the given file.
+     *
+     * <p>
+     * The mapping stays valid after the channel is closed and is released when the buffer is garbage collected.
+     * </p>
+     *
+     * @param filePath the path of the FBX file
+     * @return a read-only buffer mapping the whole file
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedByteBuffer map(String filePath) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("FBX files larger than 2 GB are not supported [" + filePath + "]");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks whether the buffer starts with the binary FBX magic string.
+     *
+     * @param buffer a buffer containing an FBX file
+     * @return <tt>true</tt> if the file is a binary FBX file
+     */
+    static boolean isBinary(ByteBuffer buffer) {
+
+        if (buffer.limit() < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the FBX version of the file, e.g. 7400 for FBX 2014. Only valid after {@link #read()} was called.
+     *
+     * @return the version number stored in the file header
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Reads all top-level records of the file.
+     *
+     * @return a synthetic record without properties whose children are the top-level records of the file
+     * @throws IOException if the file is not a binary FBX file or is corrupt
+     */
+    FbxRecord read() throws IOException {
+
+        if (!isBinary(buffer)) {
+            throw new IOException("Not a binary FBX file");
+        }
+
+        version = buffer.getInt(HEADER_LENGTH - 4);
+        buffer.position(HEADER_LENGTH);
+
+        FbxRecord document = new FbxRecord("", new Object[0]);
+        try {
+            FbxRecord record;
+            while ((record = readRecord()) != null) {
+                document.addChild(record);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt or truncated FBX file at offset " + buffer.position(), e);
+        }
+        return document;
+    }
+
+    /**
+     * Reads the record at the current position, including all nested records.
+     *
+     * @return the record, or <tt>null</tt> if a null record (the end of a record list) was read
+     * @throws IOException if the record is corrupt
+     */
+    private FbxRecord readRecord() throws IOException {
+
+        // A file may end without a final null record.
+        if (buffer.remaining() < getRecordHeaderLength()) {
+            return null;
+        }
+
+        long endOffset = readHeaderField();
+        long propertyCount = readHeaderField();
+        readHeaderField(); // Length of the property list in bytes.
+        int nameLength = buffer.get() & 0xFF;
+
+        if (endOffset == 0) {
+            return null;
+        }
+        if (endOffset > buffer.limit() || propertyCount > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt FBX record at offset " + buffer.position());
+        }
+
+        String name = readString(nameLength);
+
+        Object[] properties = new Object[(int) propertyCount];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = readProperty();
+        }
+
+        FbxRecord record = new FbxRecord(name, properties);
+
+        while (buffer.position() < endOffset) {
+            FbxRecord child = readRecord();
+            if (child == null) {
+                break;
+            }
+            record.addChild(child);
+        }
+
+        buffer.position((int) endOffset);
+        return record;
+    }
+
+    /**
+     * Reads a single property at the current position.
+     *
+     * @return the property value
+     * @throws IOException if the property type is unknown
+     */
+    private Object readProperty() throws IOException {
+
+        char type = (char) buffer.get();
+
+        switch (type) {
+        case 'Y':
+            return buffer.getShort();
+        case 'C':
+            return buffer.get() != 0;
+        case 'I':
+            return buffer.getInt();
+        case 'F':
+            return buffer.getFloat();
+        case 'D':
+            return buffer.getDouble();
+        case 'L':
+            return buffer.getLong();
+        case 'S':
+            return readString(buffer.getInt());
+        case 'R':
+            return readArray(type, buffer.getInt(), 0, -1);
+        case 'd':
+        case 'f':
+        case 'l':
+        case 'i':
+        case 'b':
+            int length = buffer.getInt();
+            int encoding = buffer.getInt();
+            int storedLength = buffer.getInt();
+            return readArray(type, length, encoding, storedLength);
+        default:
+            throw new IOException("Unknown FBX property type '" + type + "' at offset " + (buffer.position() - 1));
+        }
+    }
+
+    /**
+     * Skips over the data of an array property, remembering where it is located.
+     *
+     * @param type the FBX type code of the array
+     * @param length the number of elements
+     * @param encoding the encoding of the array
+     * @param storedLength the number of bytes stored in the file, or -1 for raw data
+     * @return a lazy reference to the array
+     */
+    private FbxArrayProperty readArray(char type, int length, int encoding, int storedLength) {
+
+        int stored = storedLength < 0 ? length : storedLength;
+        FbxArrayProperty array = new FbxArrayProperty(type, length, encoding, stored, buffer, buffer.position());
+        buffer.position(buffer.position() + stored);
+        return array;
+    }
+
+    /**
+     * Reads a string of the given length at the current position.
+     *
+     * @param length the length of the string in bytes
+     * @return the decoded string
+     */
+    private String readString(int length) {
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an offset or count field of a record header, which is 32 or 64 bits wide depending on the file version.
+     *
+     * @return the field value
+     */
+    private long readHeaderField() {
+        return version >= WIDE_HEADER_VERSION ? buffer.getLong() : buffer.getInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Gets the length of a record header without its name.
+     *
+     * @return the number of bytes used by the end offset, property count, property list length and name length
+     */
+    private int getRecordHeaderLength() {
+        return version >= WIDE_HEADER_VERSION ? 25 : 13;
+    }
+}
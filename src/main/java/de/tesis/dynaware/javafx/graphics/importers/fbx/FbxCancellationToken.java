@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Allows an import to be cancelled from another thread.
+ *
+ * <p>
+ * The importer checks the token between the nodes of the FBX graph and between batches of converted meshes. A
+ * cancelled import stops at the next check, closes its {@link FbxLib} and throws a {@link CancellationException}. The
+ * initial loading of the file by the FBX SDK cannot be interrupted.
+ * </p>
+ */
+public class FbxCancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Requests the import to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether the import was requested to stop.
+     *
+     * @return <tt>true</tt> if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws if the import was requested to stop.
+     *
+     * @throws CancellationException if {@link #cancel()} was called
+     */
+    void checkCancelled() {
+
+        if (cancelled) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * Is notified about the progress of imports by {@link FbxImporter}.
+ *
+ * <p>
+ * All methods are called on the thread that runs the import. A listener that is shared by several imports must
+ * therefore be thread-safe.
+ * </p>
+ */
+public interface FbxImportListener {
+
+    /**
+     * Called when an import starts.
+     *
+     * @param filePath the path of the imported file
+     */
+    default void importStarted(String filePath) {
+    }
+
+    /**
+     * Called when an import has finished successfully.
+     *
+     * @param filePath the path of the imported file
+     * @param stats the statistics of the import, including the time, bytes and count of every
+     *            {@link FbxImportPhase}
+     */
+    default void importFinished(String filePath, FbxImportStats stats) {
+    }
+
+    /**
+     * Called when an import has failed or was cancelled.
+     *
+     * @param filePath the path of the imported file
+     * @param stats the statistics of the phases that were run before the failure
+     * @param cause the exception the import failed with
+     */
+    default void importFailed(String filePath, FbxImportStats stats, Throwable cause) {
+    }
+}
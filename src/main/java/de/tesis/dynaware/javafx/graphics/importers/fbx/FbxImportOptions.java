@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.scene.shape.MeshView;
+
+/**
+ * Optional settings for a single import by {@link FbxImporter}. All settings except texture loading are off by default.
+ */
+public class FbxImportOptions {
+
+    private FbxSceneCache cache;
+    private FbxMeshOptimizer optimizer;
+    private FbxMeshSimplifier simplifier;
+    private FbxMeshBatcher batcher;
+    private FbxTexturePolicy texturePolicy;
+    private Consumer<List<MeshView>> meshViewConsumer;
+    private FbxCancellationToken cancellationToken;
+    private boolean loadTextures = true;
+    private boolean lazy;
+    private boolean computeNormals;
+    private boolean animated;
+    private FbxAnimationBaker animationBaker;
+    private final List<FbxImportListener> importListeners = new ArrayList<>();
+
+    /**
+     * Gets the cache for the converted file content.
+     *
+     * @return the cache, or <tt>null</tt> if the file is always read
+     */
+    public FbxSceneCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache for the converted file content.
+     *
+     * @param cache the cache, or <tt>null</tt> to always read the file
+     */
+    public void setCache(FbxSceneCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the optimizer applied to every unique geometry.
+     *
+     * @return the optimizer, or <tt>null</tt> if the meshes are kept as they are
+     */
+    public FbxMeshOptimizer getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Sets the optimizer applied to every unique geometry.
+     *
+     * @param optimizer the optimizer, or <tt>null</tt> to keep the meshes as they are
+     */
+    public void setOptimizer(FbxMeshOptimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Gets the simplifier that builds the levels of detail of every unique geometry.
+     *
+     * @return the simplifier, or <tt>null</tt> if no levels of detail are built
+     */
+    public FbxMeshSimplifier getSimplifier() {
+        return simplifier;
+    }
+
+    /**
+     * Sets a simplifier that builds the levels of detail of every unique geometry. The levels can be retrieved from
+     * the mesh views with {@link FbxLevelOfDetail#get(MeshView)}.
+     *
+     * @param simplifier the simplifier, or <tt>null</tt> to build no levels of detail
+     */
+    public void setSimplifier(FbxMeshSimplifier simplifier) {
+        this.simplifier = simplifier;
+    }
+
+    /**
+     * Gets the batcher that merges the meshes by material.
+     *
+     * @return the batcher, or <tt>null</tt> if every FBX node gets a mesh view of its own
+     */
+    public FbxMeshBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Sets a batcher that merges the meshes by material, baking the node transforms into the points. The optimizer and
+     * simplifier are then applied to the merged meshes instead of every unique geometry.
+     *
+     * @param batcher the batcher, or <tt>null</tt> to give every FBX node a mesh view of its own
+     */
+    public void setBatcher(FbxMeshBatcher batcher) {
+        this.batcher = batcher;
+    }
+
+    /**
+     * Gets the policy that limits the size of the loaded texture maps.
+     *
+     * @return the policy, or <tt>null</tt> if textures are loaded at full size
+     */
+    public FbxTexturePolicy getTexturePolicy() {
+        return texturePolicy;
+    }
+
+    /**
+     * Sets a policy that limits the size of the loaded texture maps, which are then decoded at a reduced size if they
+     * exceed the maximum dimension of their type or the memory budget of the import.
+     *
+     * @param texturePolicy the policy, or <tt>null</tt> to load textures at full size
+     */
+    public void setTexturePolicy(FbxTexturePolicy texturePolicy) {
+        this.texturePolicy = texturePolicy;
+    }
+
+    /**
+     * Gets the consumer that mesh views are streamed to.
+     *
+     * @return the consumer, or <tt>null</tt> if the mesh views are added to the root of the importer
+     */
+    public Consumer<List<MeshView>> getMeshViewConsumer() {
+        return meshViewConsumer;
+    }
+
+    /**
+     * Sets a consumer that mesh views are streamed to as soon as they are converted.
+     *
+     * <p>
+     * The consumer receives batches of mesh views while the file is still being read. It is called from several
+     * worker threads at the same time and in no particular order. All batches have been delivered when the import
+     * returns. Streamed mesh views are not added to the root of the importer.
+     * </p>
+     *
+     * @param meshViewConsumer the consumer, or <tt>null</tt> to add the mesh views to the root of the importer
+     */
+    public void setMeshViewConsumer(Consumer<List<MeshView>> meshViewConsumer) {
+        this.meshViewConsumer = meshViewConsumer;
+    }
+
+    /**
+     * Gets the token that allows the import to be cancelled.
+     *
+     * @return the token, or <tt>null</tt> if the import cannot be cancelled
+     */
+    public FbxCancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Sets a token that allows the import to be cancelled from another thread.
+     *
+     * @param cancellationToken the token, or <tt>null</tt> if the import cannot be cancelled
+     */
+    public void setCancellationToken(FbxCancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Checks whether the texture maps of materials are loaded.
+     *
+     * @return <tt>true</tt> if texture maps are loaded
+     */
+    public boolean isLoadTextures() {
+        return loadTextures;
+    }
+
+    /**
+     * Sets whether the texture maps of materials are loaded. Loading images needs a running JavaFX toolkit, so it
+     * should be switched off for headless imports.
+     *
+     * @param loadTextures <tt>true</tt> to load texture maps, which is the default
+     */
+    public void setLoadTextures(boolean loadTextures) {
+        this.loadTextures = loadTextures;
+    }
+
+    /**
+     * Checks whether the import is lazy.
+     *
+     * @return <tt>true</tt> if the geometry and materials are only read on request
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Sets whether the import is lazy.
+     *
+     * <p>
+     * A lazy import only reads the names, transforms and bounds of the FBX nodes, and creates mesh views with
+     * placeholder meshes. The file is kept open, and the geometry and material of a mesh view are read when its
+     * {@link FbxLazyNode} is resolved, see {@link FbxImporter#getLazyScene()}. The cache and batcher are not used.
+     * </p>
+     *
+     * @param lazy <tt>true</tt> to read the geometry and materials on request, <tt>false</tt> by default
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Checks whether the normals of the meshes are computed by the import.
+     *
+     * @return <tt>true</tt> if the meshes are created with normals
+     */
+    public boolean isComputeNormals() {
+        return computeNormals;
+    }
+
+    /**
+     * Sets whether the normals of the meshes are computed by the import.
+     *
+     * <p>
+     * The normals are computed from the smoothing groups in parallel, and the meshes are created with the
+     * {@link javafx.scene.shape.VertexFormat#POINT_NORMAL_TEXCOORD} vertex format. JavaFX then uses them as they are,
+     * instead of computing the normals from the smoothing groups itself on the JavaFX application thread when the
+     * mesh is first rendered. Meshes with normals take more memory.
+     * </p>
+     *
+     * @param computeNormals <tt>true</tt> to create the meshes with normals, <tt>false</tt> by default
+     */
+    public void setComputeNormals(boolean computeNormals) {
+        this.computeNormals = computeNormals;
+    }
+
+    /**
+     * Checks whether skins and animation are imported.
+     *
+     * @return <tt>true</tt> if the import is animated
+     */
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * Sets whether skins and animation are imported.
+     *
+     * <p>
+     * The skins of the meshes and the animation curves of the nodes are read, and an {@link FbxAnimator} that plays
+     * the animation is stored on the root, see {@link FbxAnimator#get(javafx.scene.Node)}. Skinned meshes keep their
+     * control points in order, so the optimizer, the simplifier and computed normals are not applied to them. The
+     * cache and batcher are not used, and the setting is ignored by lazy imports.
+     * </p>
+     *
+     * @param animated <tt>true</tt> to import skins and animation, <tt>false</tt> by default
+     */
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+    }
+
+    /**
+     * Gets the baker of the animation of an animated import.
+     *
+     * @return the baker, or <tt>null</tt> if the animation is evaluated for every update
+     */
+    public FbxAnimationBaker getAnimationBaker() {
+        return animationBaker;
+    }
+
+    /**
+     * Sets a baker that resamples the animation of an animated import onto a fixed timestep, so that the
+     * {@link FbxAnimator} samples packed tracks instead of evaluating the animation curves for every update.
+     *
+     * @param animationBaker the baker, or <tt>null</tt> to evaluate the animation for every update
+     */
+    public void setAnimationBaker(FbxAnimationBaker animationBaker) {
+        this.animationBaker = animationBaker;
+    }
+
+    /**
+     * Gets the listeners that are notified about the progress of the import.
+     *
+     * @return an unmodifiable list of the listeners
+     */
+    public List<FbxImportListener> getImportListeners() {
+        return Collections.unmodifiableList(new ArrayList<>(importListeners));
+    }
+
+    /**
+     * Adds a listener that is notified about the progress of the import.
+     *
+     * @param listener the listener
+     */
+    public void addImportListener(FbxImportListener listener) {
+        importListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was added before.
+     *
+     * @param listener the listener
+     */
+    public void removeImportListener(FbxImportListener listener) {
+        importListeners.remove(listener);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * The phases of an import by {@link FbxImporter} that are measured in the {@link FbxImportStats}.
+ *
+ * <p>
+ * The reading phases run one after the other on the importing thread, and the traversal includes the triangulation,
+ * transfer and material reading. The creation phases run in parallel on the worker threads while the file is still
+ * being traversed, so their times are summed over all threads and can exceed the total time of the import.
+ * </p>
+ */
+public enum FbxImportPhase {
+
+    /**
+     * Looking up and storing the content in the {@link FbxSceneCache}, including hashing the file. The count is 1 for
+     * a cache hit.
+     */
+    CACHE,
+
+    /**
+     * Opening the file, which is where the FBX SDK parses it, and triangulates the whole scene if the library does so
+     * on opening. The bytes are the size of the file.
+     */
+    OPEN,
+
+    /**
+     * Traversing the FBX graph and extracting the raw data. The count is the number of nodes.
+     */
+    TRAVERSAL,
+
+    /**
+     * Triangulating geometries that are not triangle meshes yet. The count is the number of triangulated geometries.
+     */
+    TRIANGULATION,
+
+    /**
+     * Transferring the arrays of the geometries from the library. The bytes are the size of the transferred data.
+     */
+    MESH_TRANSFER,
+
+    /**
+     * Reading the parameters of materials. The count is the number of materials.
+     */
+    MATERIAL_READ,
+
+    /**
+     * Reading the skins of geometries and the animation curves of the nodes, and baking the animation with the
+     * {@link FbxAnimationBaker}. The bytes are the size of the baked animation, the count is the number of skins and
+     * animation curves.
+     */
+    ANIMATION,
+
+    /**
+     * Merging mesh parts by material with the {@link FbxMeshBatcher}. The bytes are the size of the merged mesh
+     * arrays, the count is the number of merged mesh parts.
+     */
+    BATCHING,
+
+    /**
+     * Welding and compacting geometries with the {@link FbxMeshOptimizer}. The bytes are the number of bytes saved.
+     */
+    OPTIMIZATION,
+
+    /**
+     * Populating the {@link javafx.scene.shape.TriangleMesh} of every geometry. The bytes are the size of the mesh
+     * arrays.
+     */
+    MESH_CREATION,
+
+    /**
+     * Building the levels of detail of geometries with the {@link FbxMeshSimplifier}. The bytes are the size of the
+     * mesh arrays of the simplified levels, the count is the number of simplified levels.
+     */
+    SIMPLIFICATION,
+
+    /**
+     * Creating the {@link javafx.scene.paint.PhongMaterial} of every material, without its texture maps.
+     */
+    MATERIAL_CREATION,
+
+    /**
+     * Requesting the texture maps of materials from the {@link FbxTextureCache}. The images are decoded in the
+     * background, so this only includes decoding for images that are already cached. The bytes are the decoded size of
+     * the textures selected by the {@link FbxTexturePolicy}, if one is set. The count is the number of texture maps.
+     */
+    TEXTURE,
+
+    /**
+     * Waiting for the conversion to JavaFX objects after the traversal. The count is the number of mesh views.
+     */
+    CONVERSION
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics about a single import by {@link FbxImporter}.
+ *
+ * <p>
+ * Times are wall-clock times in nanoseconds. The time, bytes and count of every {@link FbxImportPhase} are recorded
+ * separately. The conversion of meshes overlaps with the traversal of the FBX graph, so the conversion time only
+ * covers the part of the conversion that was still running after the traversal.
+ * </p>
+ *
+ * <p>
+ * The heap allocated by an import is measured per thread, on the importing thread and on every conversion task, if
+ * the JVM supports it (e.g. HotSpot via <tt>com.sun.management.ThreadMXBean</tt>).
+ * </p>
+ */
+public class FbxImportStats {
+
+    private static final int PHASE_COUNT = FbxImportPhase.values().length;
+
+    private long nodeCount;
+    private long meshCount;
+    private long geometryCount;
+    private long materialCount;
+    private long triangleCount;
+    private long meshBytes;
+    private boolean cacheHit;
+    private IOException cacheError;
+    private long totalTime;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    // Indexed by the ordinal of the phase. Phases that run on the worker threads are added to concurrently.
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(PHASE_COUNT);
+    private final AtomicLongArray phaseBytes = new AtomicLongArray(PHASE_COUNT);
+    private final AtomicLongArray phaseCounts = new AtomicLongArray(PHASE_COUNT);
+
+    /**
+     * Gets the number of nodes of the FBX graph that were traversed.
+     *
+     * @return the number of nodes, or 0 if the content was loaded from the cache
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of imported meshes, i.e. of mesh views.
+     *
+     * @return the number of meshes
+     */
+    public long getMeshCount() {
+        return meshCount;
+    }
+
+    /**
+     * Gets the number of unique geometries, i.e. of triangle meshes shared by the mesh views.
+     *
+     * @return the number of geometries
+     */
+    public long getGeometryCount() {
+        return geometryCount;
+    }
+
+    /**
+     * Gets the number of unique materials.
+     *
+     * @return the number of materials
+     */
+    public long getMaterialCount() {
+        return materialCount;
+    }
+
+    /**
+     * Gets the number of triangles of all meshes, counting shared geometry once per mesh.
+     *
+     * @return the number of triangles
+     */
+    public long getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Gets the size of the point, texture coordinate, face and smoothing group arrays of all unique geometries.
+     *
+     * @return the size in bytes
+     */
+    public long getMeshBytes() {
+        return meshBytes;
+    }
+
+    /**
+     * Checks whether the content was loaded from the cache.
+     *
+     * @return <tt>true</tt> if the FBX file was not read
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * Gets the error that prevented the content from being stored in the cache. The import itself still succeeds.
+     *
+     * @return the exception thrown while writing the cache entry, or <tt>null</tt> if it was written or not needed
+     */
+    public IOException getCacheError() {
+        return cacheError;
+    }
+
+    /**
+     * Gets the time spent in a phase of the import.
+     *
+     * @param phase the phase
+     * @return the time in nanoseconds, summed over all threads for phases that run in parallel
+     */
+    public long getTime(FbxImportPhase phase) {
+        return phaseTimes.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the number of bytes processed in a phase of the import.
+     *
+     * @param phase the phase
+     * @return the number of bytes, see {@link FbxImportPhase} for what is counted
+     */
+    public long getBytes(FbxImportPhase phase) {
+        return phaseBytes.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the number of items processed in a phase of the import.
+     *
+     * @param phase the phase
+     * @return the number of items, see {@link FbxImportPhase} for what is counted
+     */
+    public long getCount(FbxImportPhase phase) {
+        return phaseCounts.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the time spent to look up and store the content in the cache, including hashing the file.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getCacheTime() {
+        return getTime(FbxImportPhase.CACHE);
+    }
+
+    /**
+     * Gets the time spent to open the FBX file.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getOpenTime() {
+        return getTime(FbxImportPhase.OPEN);
+    }
+
+    /**
+     * Gets the time spent to traverse the FBX graph and extract the raw data.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTraversalTime() {
+        return getTime(FbxImportPhase.TRAVERSAL);
+    }
+
+    /**
+     * Gets the time spent waiting for the conversion to JavaFX objects after the traversal.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getConversionTime() {
+        return getTime(FbxImportPhase.CONVERSION);
+    }
+
+    /**
+     * Gets the total time of the import.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Gets the memory allocated by the import, summed over all threads that worked on it.
+     *
+     * <p>
+     * This includes the JavaFX objects that are created, and the direct memory of any staging buffer that
+     * {@link FbxStagingBuffers} had to grow.
+     * </p>
+     *
+     * @return the size in bytes, leaving out the heap if the JVM cannot measure the allocation of a thread
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    void setNodeCount(long nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    void setMeshCount(long meshCount) {
+        this.meshCount = meshCount;
+    }
+
+    void setGeometryCount(long geometryCount) {
+        this.geometryCount = geometryCount;
+    }
+
+    void setMaterialCount(long materialCount) {
+        this.materialCount = materialCount;
+    }
+
+    void setTriangleCount(long triangleCount) {
+        this.triangleCount = triangleCount;
+    }
+
+    void setMeshBytes(long meshBytes) {
+        this.meshBytes = meshBytes;
+    }
+
+    void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    void setCacheError(IOException cacheError) {
+        this.cacheError = cacheError;
+    }
+
+    void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Adds to the statistics of a phase. This can be called from several threads at the same time.
+     *
+     * @param phase the phase
+     * @param time the time in nanoseconds
+     * @param bytes the number of bytes
+     * @param count the number of items
+     */
+    void add(FbxImportPhase phase, long time, long bytes, long count) {
+        phaseTimes.addAndGet(phase.ordinal(), time);
+        phaseBytes.addAndGet(phase.ordinal(), bytes);
+        phaseCounts.addAndGet(phase.ordinal(), count);
+    }
+
+    /**
+     * Adds the memory allocated by the current thread since a measurement was started. This can be called from
+     * several threads at the same time.
+     *
+     * @param allocationStart the result of {@link #getThreadAllocatedBytes()} when the measurement was started
+     */
+    void addAllocatedBytes(long allocationStart) {
+        if (allocationStart >= 0) {
+            allocatedBytes.addAndGet(getThreadAllocatedBytes() - allocationStart);
+        }
+    }
+
+    /**
+     * Adds memory that was allocated outside of the heap, which is not measured per thread.
+     *
+     * @param bytes the size in bytes
+     */
+    void addDirectBytes(long bytes) {
+        allocatedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Gets the memory allocated by the current thread so far.
+     *
+     * @return the size in bytes, or -1 if the JVM cannot measure the allocation of a thread
+     */
+    static long getThreadAllocatedBytes() {
+        return ThreadAllocation.SUPPORTED ? ThreadAllocation.get() : -1;
+    }
+
+    /**
+     * Reads the allocation of the current thread from the JVM-specific thread bean, which is only linked if it exists.
+     */
+    private static final class ThreadAllocation {
+
+        private static final String THREAD_BEAN_CLASS = "com.sun.management.ThreadMXBean";
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final boolean SUPPORTED = isSupported();
+
+        private static boolean isSupported() {
+
+            try {
+                Class<?> beanClass = Class.forName(THREAD_BEAN_CLASS, false, ThreadAllocation.class.getClassLoader());
+                if (!beanClass.isInstance(THREADS)) {
+                    return false;
+                }
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                if (!threads.isThreadAllocatedMemorySupported()) {
+                    return false;
+                }
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return true;
+            } catch (ClassNotFoundException | LinkageError | UnsupportedOperationException | SecurityException e) {
+                return false;
+            }
+        }
+
+        private static long get() {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -9,11 +9,23 @@ package de.tesis.dynaware.javafx.graphics.importers.fbx;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 import javafx.scene.Group;
 import javafx.scene.image.Image;
@@ -22,6 +34,7 @@ import javafx.scene.paint.Material;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
 
@@ -29,7 +42,8 @@ import javafx.scene.transform.Translate;
  * Responsible for loading a FBX model from a file into a {@link MeshView}.
  * 
  * <p>
- * The data is read from the FBX file (which can be binary or ASCII) via the native methods in {@link JFbxLib}.
+ * The data is read from the FBX file (which can be binary or ASCII) via the native methods in {@link JFbxLib}, or from
+ * binary FBX files only via the pure-Java {@link BinaryFbxLib}.
  * </p>
  */
 public class FbxImporter {
@@ -41,19 +55,114 @@ public class FbxImporter {
     private static final String NURBS = "nurbs";
     private static final String NURBS_SURFACE = "nurbs surface";
     
+    // Number of mesh parts that are converted together by a single fork-join task.
+    private static final int MESH_BATCH_SIZE = 16;
+
+
     private Group root = new Group();
-    private Map<String, Material> materials = new HashMap<>();
+    private FbxStagingBuffers.Staging staging;
+    private FbxMeshOptimizer optimizer;
+    private FbxMeshSimplifier simplifier;
+    private FbxMeshBatcher batcher;
+    private FbxTexturePolicy texturePolicy;
+    private Consumer<List<MeshView>> meshViewConsumer;
+    private FbxCancellationToken cancellationToken;
+    private boolean loadTextures;
+    private boolean lazy;
+    private boolean triangulated;
+    private boolean computeNormals;
+    private boolean animated;
+    private boolean batched;
+    private boolean directMeshes;
+    private boolean releaseMeshData;
+    private FbxAnimationBaker animationBaker;
+    private FbxLazyScene lazyScene;
+    private List<FbxImportListener> listeners;
+
+    // Raw payloads collected while traversing the FBX graph. Conversion tasks read the geometries and materials while
+    // the traversal is still adding to them.
+    private List<FbxMeshPart> meshParts = new ArrayList<>();
+    private List<FbxMeshData> geometries = Collections.synchronizedList(new ArrayList<FbxMeshData>());
+    private List<FbxMaterialData> materialData = Collections.synchronizedList(new ArrayList<FbxMaterialData>());
+    private Map<Long, Integer> geometryIndices = new HashMap<>();
+    private Map<String, Integer> materialIndices = new HashMap<>();
+
+    // The skins of skinned geometries by index, and the animation of an animated import.
+    private Map<Integer, FbxSkin> skins = new ConcurrentHashMap<>();
+    private FbxAnimation animation;
+    private FbxAnimator animator;
+
+    // JavaFX objects created from the raw payloads, by index. They are created by the first task that needs them.
+    private Map<Integer, Material> materials = new ConcurrentHashMap<>();
+    private Map<Integer, TriangleMesh> meshes = new ConcurrentHashMap<>();
+    private Map<Integer, FbxLevelOfDetail> levelsOfDetail = new ConcurrentHashMap<>();
+
+    // The bounds of the geometries of a lazy import, which are read before the geometries themselves.
+    private Map<Integer, double[]> geometryBounds = new HashMap<>();
+
+    // The images selected for the texture files of this import, and their decoded size counted against the budget.
+    private Map<String, Image> textureImages = new HashMap<>();
+    private long textureSize;
+
+    // Conversion tasks in traversal order, and the number of mesh parts handed over to them so far.
+    private List<MeshConversion> conversions = new ArrayList<>();
+    private int convertedPartCount;
+
+    // Tasks that merge the mesh parts if a batcher is set, which replace the conversion tasks.
+    private List<MeshBatch> batches = new ArrayList<>();
+
+    private FbxImportStats stats = new FbxImportStats();
+    private long nodeCount;
 
     /**
-     * Creates a new FBX importer for the given FBX file.
+     * Creates a new FBX importer for the given FBX file, reading it with the native library jfbxlib, which triangulates
+     * the whole scene when it opens the file.
      * 
      * @param url the URL string of the FBX file to be imported
      * @throws IOException if the URL string cannot be parsed
      */
     public FbxImporter(String url) throws IOException {
+        this(url, new JFbxLib(true));
+    }
+
+    /**
+     * Creates a new FBX importer for the given FBX file, reading it with the given library.
+     * 
+     * @param url the URL string of the FBX file to be imported
+     * @param fbxLib the {@link FbxLib} used to read the file, e.g. {@link JFbxLib} or {@link BinaryFbxLib}
+     * @throws IOException if the URL string cannot be parsed
+     */
+    public FbxImporter(String url, FbxLib fbxLib) throws IOException {
+        this(url, fbxLib, new FbxImportOptions());
+    }
+
+    /**
+     * Creates a new FBX importer for the given FBX file, reading it with the given library and options.
+     * 
+     * @param url the URL string of the FBX file to be imported
+     * @param fbxLib the {@link FbxLib} used to read the file, unless its content is found in the cache
+     * @param options the {@link FbxImportOptions} for this import
+     * @throws IOException if the URL string cannot be parsed
+     * @throws java.util.concurrent.CancellationException if the import was cancelled via the cancellation token
+     */
+    public FbxImporter(String url, FbxLib fbxLib, FbxImportOptions options) throws IOException {
+
+        optimizer = options.getOptimizer();
+        simplifier = options.getSimplifier();
+        batcher = options.getBatcher();
+        texturePolicy = options.getTexturePolicy();
+        meshViewConsumer = options.getMeshViewConsumer();
+        loadTextures = options.isLoadTextures();
+        lazy = options.isLazy();
+        computeNormals = options.isComputeNormals();
+        animated = options.isAnimated() && !options.isLazy();
+        animationBaker = options.getAnimationBaker();
+        listeners = options.getImportListeners();
+        cancellationToken = options.getCancellationToken() != null ? options.getCancellationToken()
+                : new FbxCancellationToken();
 
         String filePath = new File(new URL(URLDecoder.decode(url,  UTF_8)).getFile()).getPath();
-        read(filePath);
+        read(filePath, fbxLib, options.getCache());
     }
     
     /**
@@ -64,153 +173,1102 @@ public class FbxImporter {
     public Group getRoot() {
         return root;
     }
+
+    /**
+     * Returns the open file of a lazy import, see {@link FbxImportOptions#setLazy(boolean)}.
+     * 
+     * @return the {@link FbxLazyScene}, or <tt>null</tt> if the import was not lazy or has no meshes
+     */
+    public FbxLazyScene getLazyScene() {
+        return lazyScene;
+    }
+
+    /**
+     * Returns the animator of an animated import, see {@link FbxImportOptions#setAnimated(boolean)}. It is also stored
+     * on the root, see {@link FbxAnimator#get(javafx.scene.Node)}.
+     * 
+     * @return the {@link FbxAnimator}, or <tt>null</tt> if the import was not animated or nothing in it moves
+     */
+    public FbxAnimator getAnimator() {
+        return animator;
+    }
+
+    /**
+     * Returns statistics about the import.
+     * 
+     * @return the {@link FbxImportStats} of this import
+     */
+    public FbxImportStats getStats() {
+        return stats;
+    }
     
     /**
-     * Reads a FBX file using the native library jfbxlib.
+     * Reads a FBX file using the given library.
+     * 
+     * <p>
+     * The import runs in two overlapping stages. The FBX graph is traversed and the raw mesh and material data is
+     * extracted. Whenever enough mesh parts have been read, they are handed over to a task in the common fork-join pool
+     * that creates the JavaFX meshes, materials and mesh views while the traversal continues. The library is closed as
+     * soon as the traversal is done. The mesh views are added to the root in traversal order, or streamed to the mesh
+     * view consumer as soon as they are created.
+     * </p>
+     * 
+     * <p>
+     * If a batcher is given, the mesh parts are instead merged by material once the traversal is done, and a mesh view
+     * is created for every merged mesh.
+     * </p>
+     * 
+     * <p>
+     * A lazy import only creates placeholder mesh views, and ignores the cache and the batcher. So does an animated
+     * import, whose mesh views are moved and deformed by the {@link FbxAnimator} created once all of them exist.
+     * </p>
+     * 
+     * <p>
+     * If a cache is given, the traversal is skipped when the file was already imported, and its result is stored
+     * otherwise. An entry that cannot be stored is reported in the statistics, and does not fail the import.
+     * </p>
      * 
      * @param filePath the path of the fbx file
+     * @param jFbxLib the {@link FbxLib} used to read the file
+     * @param cache the cache for the converted file content, or <tt>null</tt>
      * @throws IOException if there is a problem loading the file
      */
-    private void read(String filePath) throws IOException {
+    private void read(String filePath, FbxLib jFbxLib, FbxSceneCache cache) throws IOException {
+
+        long start = System.nanoTime();
+
+        for (FbxImportListener listener : listeners) {
+            listener.importStarted(filePath);
+        }
+
+        try {
+            String cacheKey = null;
+            boolean cacheHit = false;
 
-        JFbxLib jFbxLib = new JFbxLib();
+            // Neither skins nor animation are cached.
+            boolean useCache = cache != null && !lazy && !animated;
 
-        if (jFbxLib.open(filePath)) {
+            // The mesh data is only kept until the meshes are created if the cache or the batcher need it.
+            batched = batcher != null && !lazy && !animated;
+            releaseMeshData = !useCache && !batched;
+            directMeshes = releaseMeshData && optimizer == null && simplifier == null && !computeNormals;
 
-            // Read nodes from FBX graph recursively, starting from root.
-            readNode(jFbxLib);
+            long allocationStart = FbxImportStats.getThreadAllocatedBytes();
+
+            if (useCache) {
+                long cacheStart = System.nanoTime();
+                cacheKey = cache.getKey(filePath, jFbxLib);
+                cacheHit = cache.load(cacheKey, materialData, geometries, meshParts);
+                stats.setCacheHit(cacheHit);
+                stats.add(FbxImportPhase.CACHE, System.nanoTime() - cacheStart, 0, cacheHit ? 1 : 0);
+            }
+
+            if (!cacheHit) {
+
+                readFile(filePath, jFbxLib);
+
+                if (useCache) {
+                    long storeStart = System.nanoTime();
+                    try {
+                        cache.store(cacheKey, materialData, geometries, meshParts);
+                    } catch (IOException e) {
+                        // E.g. a full disk or a read-only cache directory, the file itself was read correctly.
+                        stats.setCacheError(e);
+                    }
+                    stats.add(FbxImportPhase.CACHE, System.nanoTime() - storeStart, 0, 0);
+                }
+            } else if (!batched) {
+                // Nothing is stored, so the loaded data can be dropped as soon as its mesh exists.
+                releaseMeshData = true;
+            }
+
+            // The conversion tasks measure their own allocation, and waiting for them may run them on this thread.
+            stats.addAllocatedBytes(allocationStart);
+
+            long conversionStart = System.nanoTime();
+            int meshViewCount;
+
+            if (lazy) {
+                meshViewCount = addLazyMeshViews();
+            } else if (batched) {
+                batchMeshParts();
+                meshViewCount = batches.size();
+            } else {
+                // Hand over the remaining mesh parts, then wait for all conversions.
+                startConversion();
+
+                for (MeshConversion conversion : conversions) {
+                    conversion.join();
+                    if (meshViewConsumer == null) {
+                        root.getChildren().addAll(conversion.getMeshViews());
+                    }
+                }
+                meshViewCount = meshParts.size();
+
+                if (animated) {
+                    long animatorAllocationStart = FbxImportStats.getThreadAllocatedBytes();
+                    createAnimator();
+                    stats.addAllocatedBytes(animatorAllocationStart);
+                }
+            }
+            stats.add(FbxImportPhase.CONVERSION, System.nanoTime() - conversionStart, 0, meshViewCount);
+
+            updateStats();
+            stats.setTotalTime(System.nanoTime() - start);
+
+            for (FbxImportListener listener : listeners) {
+                listener.importFinished(filePath, stats);
+            }
+        } catch (UncheckedIOException e) {
+            // Thrown by BinaryFbxLib if an array of the file cannot be decoded, or by the conversion tasks if a
+            // texture path cannot be transformed to a URL.
+            importFailed(filePath, start, e.getCause());
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            importFailed(filePath, start, e);
+            throw e;
+        } finally {
+            // Only has an effect if the import failed or was cancelled.
+            for (MeshConversion conversion : conversions) {
+                conversion.cancel(false);
+            }
+            for (MeshBatch batch : batches) {
+                batch.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that the import has failed.
+     * 
+     * @param filePath the path of the fbx file
+     * @param start the start time of the import
+     * @param cause the exception the import failed with
+     */
+    private void importFailed(String filePath, long start, Throwable cause) {
+
+        // Placeholders of a failed import are never resolved.
+        if (lazyScene != null) {
+            lazyScene.release();
         }
 
-        jFbxLib.close();
+        stats.setTotalTime(System.nanoTime() - start);
+
+        for (FbxImportListener listener : listeners) {
+            listener.importFailed(filePath, stats, cause);
+        }
     }
 
     /**
-     * Reads the current node of the FBX file.
+     * Extracts the raw mesh and material data of a FBX file.
      * 
-     * @param jFbxLib the {@link JFbxLib} instance that has the file open
+     * @param filePath the path of the fbx file
+     * @param jFbxLib the {@link FbxLib} used to read the file
      * @throws IOException if there is a problem loading the file
      */
-    private void readNode(JFbxLib jFbxLib) throws IOException {
+    private void readFile(String filePath, FbxLib jFbxLib) throws IOException {
+
+        boolean keepOpen = false;
+        staging = FbxStagingBuffers.getInstance().acquire();
+        long directSize = staging.getDirectSize();
+
+        try {
+            long openStart = System.nanoTime();
+            boolean open = jFbxLib.open(filePath);
+            stats.add(FbxImportPhase.OPEN, System.nanoTime() - openStart, new File(filePath).length(), 1);
+
+            if (open) {
+
+                // A library that triangulated the whole scene on opening needs no checks per geometry.
+                triangulated = jFbxLib.isTriangulated();
+
+                if (lazy) {
+                    lazyScene = new FbxLazyScene(this, jFbxLib);
+                }
+
+                // Read the whole node graph in one call, then only move the library to nodes with data to read.
+                long traversalStart = System.nanoTime();
+                FbxNodeTable nodeTable = jFbxLib.getNodeTable();
+                for (int node = 0; node < nodeTable.getNodeCount(); node++) {
+                    readNode(jFbxLib, nodeTable, node);
+                }
+                stats.add(FbxImportPhase.TRAVERSAL, System.nanoTime() - traversalStart, 0, nodeCount);
+
+                if (animated) {
+                    long animationStart = System.nanoTime();
+                    animation = jFbxLib.getAnimation();
+                    stats.add(FbxImportPhase.ANIMATION, System.nanoTime() - animationStart, 0,
+                            animation != null ? animation.getCurveCount() : 0);
+                }
+
+                // The lazy scene takes over the library if there is anything to resolve.
+                keepOpen = lazyScene != null && !lazyScene.getNodes().isEmpty();
+            }
+        } finally {
+            if (!keepOpen) {
+                lazyScene = null;
+                jFbxLib.close();
+            }
+            stats.addDirectBytes(staging.getDirectSize() - directSize);
+            FbxStagingBuffers.getInstance().release(staging);
+            staging = null;
+        }
+    }
+
+    /**
+     * Counts the imported content once all conversions are done.
+     */
+    private void updateStats() {
+
+        stats.setNodeCount(nodeCount);
+        stats.setMaterialCount(materials.size());
+
+        long triangleCount = 0;
+        List<TriangleMesh> uniqueMeshes = new ArrayList<>(meshes.values());
+
+        if (batched) {
+            for (MeshBatch batch : batches) {
+                triangleCount += getTriangleCount(batch.mesh);
+                uniqueMeshes.add(batch.mesh);
+            }
+            stats.setMeshCount(batches.size());
+        } else {
+            for (FbxMeshPart part : meshParts) {
+                // The meshes of a lazy import are only created once they are resolved.
+                TriangleMesh mesh = meshes.get(part.getGeometryIndex());
+                if (mesh != null) {
+                    triangleCount += getTriangleCount(mesh);
+                }
+            }
+            stats.setMeshCount(meshParts.size());
+        }
+        stats.setGeometryCount(uniqueMeshes.size());
+        stats.setTriangleCount(triangleCount);
+
+        long meshBytes = 0;
+        for (TriangleMesh mesh : uniqueMeshes) {
+            meshBytes += 4L * (mesh.getPoints().size() + mesh.getNormals().size() + mesh.getTexCoords().size()
+                    + mesh.getFaces().size() + mesh.getFaceSmoothingGroups().size());
+        }
+        stats.setMeshBytes(meshBytes);
+    }
+
+    /**
+     * Hands the mesh parts that were read since the last call over to a new conversion task.
+     */
+    private void startConversion() {
+
+        if (convertedPartCount < meshParts.size()) {
+
+            List<FbxMeshPart> parts = new ArrayList<>(meshParts.subList(convertedPartCount, meshParts.size()));
+            MeshConversion conversion = new MeshConversion(parts, new MeshView[parts.size()], 0, parts.size());
+
+            conversions.add(conversion);
+            ForkJoinPool.commonPool().execute(conversion);
+
+            convertedPartCount = meshParts.size();
+        }
+    }
+
+    /**
+     * Creates the animator once all mesh views of an animated import exist, and stores it on the root.
+     * 
+     * <p>
+     * Every skinned geometry gets one {@link FbxSkinning} of its shared mesh, which is deformed in the coordinates of
+     * the first mesh view that shows it. Mesh views of animated nodes that are not skinned follow their node by the
+     * global transform they were created with. If a baker is set, the global transforms of the nodes the animator
+     * needs are baked.
+     * </p>
+     */
+    private void createAnimator() {
+
+        if (animation == null || animation.getCurveCount() == 0) {
+            return;
+        }
+
+        FbxAnimator newAnimator = new FbxAnimator(animation);
+        Map<Integer, TriangleMesh> skinnedMeshes = new HashMap<>();
+
+        for (MeshConversion conversion : conversions) {
+
+            List<MeshView> meshViews = conversion.getMeshViews();
+
+            for (int i = 0; i < meshViews.size(); i++) {
+
+                FbxMeshPart part = conversion.parts.get(i);
+                MeshView meshView = meshViews.get(i);
+                FbxSkin skin = skins.get(part.getGeometryIndex());
+
+                if (skin != null) {
+                    TriangleMesh mesh = meshes.get(part.getGeometryIndex());
+                    if (skinnedMeshes.put(part.getGeometryIndex(), mesh) == null) {
+                        newAnimator.addSkinning(new FbxSkinning(skin, mesh), getMeshTransform(part));
+                    }
+                } else if (part.getNodeIndex() >= 0 && part.getNodeIndex() < animation.getNodeCount()
+                        && animation.isAnimated(part.getNodeIndex()) && !meshView.getTransforms().isEmpty()
+                        && meshView.getTransforms().get(0) instanceof Affine) {
+                    newAnimator.addTransform(part.getNodeIndex(), (Affine) meshView.getTransforms().get(0));
+                }
+            }
+        }
+
+        if (!newAnimator.isEmpty()) {
+
+            if (animationBaker != null) {
+                long bakeStart = System.nanoTime();
+                FbxBakedAnimation bakedAnimation = animationBaker.bake(animation, newAnimator.getNodes());
+                newAnimator.setBakedAnimation(bakedAnimation);
+                stats.add(FbxImportPhase.ANIMATION, System.nanoTime() - bakeStart, bakedAnimation.getSize(), 0);
+            }
+
+            newAnimator.attach(root);
+            animator = newAnimator;
+        }
+    }
+
+    /**
+     * Gets the inverse of the transform of the mesh view of a mesh part, see
+     * {@link #addTransforms(MeshView, FbxMeshPart)}.
+     * 
+     * @param part the mesh part
+     * @return the transform from global coordinates to the coordinates of the mesh, in column order
+     */
+    private static double[] getMeshTransform(FbxMeshPart part) {
+
+        double[] transform = part.getGlobalTransform() != null ? part.getGlobalTransform() : FbxMatrices.identity();
+        if (part.getGeometricTranslation() != null) {
+            transform = FbxMatrices.multiply(transform, FbxMatrices.translation(part.getGeometricTranslation()));
+        }
+        return FbxMatrices.invert(transform);
+    }
+
+    /**
+     * Merges all mesh parts by material, and waits until the mesh views of the merged meshes are created.
+     */
+    private void batchMeshParts() {
+
+        for (List<FbxMeshPart> parts : batcher.group(meshParts, geometries)) {
+            batches.add(new MeshBatch(parts));
+        }
+
+        ForkJoinTask.invokeAll(batches);
+
+        if (meshViewConsumer == null) {
+            for (MeshBatch batch : batches) {
+                root.getChildren().add(batch.meshView);
+            }
+        }
+    }
+
+    /**
+     * Reads a node of the FBX file.
+     * 
+     * <p>
+     * Only the raw data of the node is extracted here, JavaFX objects are created by the conversion tasks. Geometry
+     * that is shared by several nodes is only read for the first of them. In a lazy import, only the bounds of the
+     * geometry and the name of the material are read. The library is only moved to the node if a geometry or material
+     * is read from it.
+     * </p>
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param nodeTable the node table of the file
+     * @param node the index of the node in the node table
+     */
+    private void readNode(FbxLib jFbxLib, FbxNodeTable nodeTable, int node) {
+        
+        // Stop between nodes if the import was cancelled, the library is closed on the way out.
+        cancellationToken.checkCancelled();
+        nodeCount++;
+        boolean selected = false;
         
-        // Loop over all attributes of the current FBX node (usually there should be just 1?).
-        for (int i=0; i< jFbxLib.getNodeAttributeCount(); i++) {
+        // Loop over all attributes of the FBX node (usually there should be just 1?).
+        for (int i=0; i< nodeTable.getAttributeCount(node); i++) {
             
-            String type = jFbxLib.getNodeAttributeType(i);
+            String type = nodeTable.getAttributeType(node, i);
             
             // The following types can all be converted to triangle meshes by the FBX SDK.
             if (MESH.equals(type) || PATCH.equals(type) || NURBS.equals(type) || NURBS_SURFACE.equals(type)) {
-                               
-                MeshView meshView = new MeshView();
-                meshView.setId(jFbxLib.getNodeName());
 
-                if (!jFbxLib.isTriangleMesh(i)) {
-                    jFbxLib.triangulate(i);
+                long attributeId = nodeTable.getAttributeId(node, i);
+                Integer geometryIndex = geometryIndices.get(attributeId);
+                if (geometryIndex == null) {
+                    if (!selected) {
+                        selectNode(jFbxLib, nodeTable, node);
+                        selected = true;
+                    }
+                    geometryIndex = lazy ? readGeometryBounds(jFbxLib, i, attributeId)
+                            : readGeometry(jFbxLib, i, attributeId);
                 }
                 
-                float vertices[]      = jFbxLib.getMeshVertices(i);
-                float texCoords[]     = jFbxLib.getMeshTexCoords(i);
-                int faces[]           = jFbxLib.getMeshFaces(i);
-                int smoothingGroups[] = jFbxLib.getMeshFaceSmoothingGroups(i);
+                // Are there materials attached to the node? If so, use the first one.
+                int materialIndex = -1;
+                if (nodeTable.getMaterialCount(node)>0) {
 
-                TriangleMesh mesh = new TriangleMesh();
-                
-                // Vertices & faces must be non-null to have a sensible mesh.
-                if (vertices!=null && faces!=null) {
-                    mesh.getPoints().setAll(vertices);
-                    mesh.getFaces().setAll(faces);
-                    
-                    // If no UV coordinates are found, set (u,v)=(0,0) to stop JavaFX spazzing out.
-                    if (texCoords!=null) {
-                        mesh.getTexCoords().setAll(texCoords);
-                    } else {
-                        mesh.getTexCoords().setAll(new float[]{0, 0});
-                    }
-                    
-                    // Smoothing groups are optional.
-                    if (smoothingGroups!=null) {
-                        mesh.getFaceSmoothingGroups().setAll(smoothingGroups);
+                    String name = nodeTable.getMaterialName(node);
+
+                    // Only read the material if we didn't already.
+                    Integer index = materialIndices.get(name);
+                    if (index == null) {
+                        long readStart = System.nanoTime();
+                        index = materialData.size();
+                        if (!lazy && !selected) {
+                            selectNode(jFbxLib, nodeTable, node);
+                            selected = true;
+                        }
+                        materialData.add(lazy ? null : FbxMaterialData.read(jFbxLib, 0));
+                        materialIndices.put(name, index);
+                        stats.add(FbxImportPhase.MATERIAL_READ, System.nanoTime() - readStart, 0, lazy ? 0 : 1);
                     }
+                    materialIndex = index;
                 }
 
-                meshView.setMesh(mesh);
-                
-                // Are there materials attached to the current node? If so, use the first one.
-                if (jFbxLib.getMaterialCount()>0) {
-
-                    String name = jFbxLib.getMaterialName(0);
-
-                    // Only load the material if we didn't already.
-                    if (!materials.containsKey(name)) {
-
-                        PhongMaterial material = new PhongMaterial();
-                        
-                        double[] diffuseColorArray = jFbxLib.getMaterialDiffuseColor(0);
-                        if (diffuseColorArray!=null) {
-                            material.setDiffuseColor(createColor(diffuseColorArray));
-                         }
-                        
-                        double[] specularColorArray = jFbxLib.getMaterialSpecularColor(0);
-                        if (specularColorArray!=null) {
-                            material.setSpecularColor(createColor(specularColorArray));
-                        }
-                        
-                        double specularPower = jFbxLib.getMaterialSpecularPower(0);
-                        if (specularPower!=-1) {
-                            material.setSpecularPower(specularPower);
-                        }
-                        
-                        String diffuseMapFile = jFbxLib.getMaterialDiffuseMap(0);
-                        if (diffuseMapFile!=null) {
-                            material.setDiffuseMap(createImage(diffuseMapFile));
-                        }
-                        
-                        String specularMapFile = jFbxLib.getMaterialSpecularMap(0);
-                        if (specularMapFile!=null) {
-                            material.setSpecularMap(createImage(specularMapFile));
-                        }
-                        
-                        String bumpMapFile = jFbxLib.getMaterialBumpMap(0);
-                        if (bumpMapFile!=null) {
-                            material.setBumpMap(createImage(bumpMapFile));
-                        }
-                        
-                        String selfIlluminationMapFile = jFbxLib.getMaterialSelfIlluminationMap(0);
-                        if (selfIlluminationMapFile!=null) {
-                            material.setSelfIlluminationMap(createImage(selfIlluminationMapFile));
-                        }
+                FbxMeshPart part = new FbxMeshPart(nodeTable.getName(node), node, geometryIndex, materialIndex,
+                        nodeTable.getGlobalTransform(node), nodeTable.getGeometricTranslation(node));
+                meshParts.add(part);
+
+                if (lazy) {
+                    lazyScene.add(new FbxLazyNode(lazyScene, part, node, i, createPlaceholder(part)));
+                } else if (!batched && meshParts.size() - convertedPartCount >= MESH_BATCH_SIZE) {
+                    // Merged mesh parts are only converted once the traversal is done.
+                    startConversion();
+                }
+            } 
+        }
+    }
+
+    /**
+     * Moves the library to a node, so that its geometry and material can be read.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param nodeTable the node table of the file
+     * @param node the index of the node in the node table
+     * @throws IllegalStateException if the library cannot find the node, and would read from another node instead
+     */
+    private static void selectNode(FbxLib jFbxLib, FbxNodeTable nodeTable, int node) {
+
+        if (!jFbxLib.selectNode(node)) {
+            throw new IllegalStateException("Node not found [" + nodeTable.getName(node) + "]");
+        }
+    }
+
+    /**
+     * Reads the bounds of a geometry that was not seen before, leaving its mesh data to be read on request.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     * @param attributeId the unique id of the attribute
+     * @return the index of the geometry in the geometry list
+     */
+    private int readGeometryBounds(FbxLib jFbxLib, int i, long attributeId) {
+
+        int geometryIndex = geometries.size();
+        geometryIndices.put(attributeId, geometryIndex);
+
+        geometries.add(null);
+        geometryBounds.put(geometryIndex, jFbxLib.getMeshBounds(i));
+
+        return geometryIndex;
+    }
+
+    /**
+     * Resolves lazy nodes, reading their geometry and material from the file that is still open.
+     * 
+     * <p>
+     * The library is moved directly to the node of every lazy node, by its index in the node table. Must only be
+     * called by the resolve thread of the lazy scene.
+     * </p>
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param nodes the nodes to resolve, sorted by node index
+     */
+    void resolve(FbxLib jFbxLib, List<FbxLazyNode> nodes) {
+
+        long traversalStart = System.nanoTime();
+        long allocationStart = FbxImportStats.getThreadAllocatedBytes();
+        staging = FbxStagingBuffers.getInstance().acquire();
+        long directSize = staging.getDirectSize();
+
+        try {
+            for (FbxLazyNode node : nodes) {
+                if (!jFbxLib.selectNode(node.getNodeIndex())) {
+                    throw new IllegalStateException("Lazy node not found [" + node.getMeshView().getId() + "]");
+                }
+                resolveNode(jFbxLib, node);
+            }
+        } finally {
+            stats.addDirectBytes(staging.getDirectSize() - directSize);
+            FbxStagingBuffers.getInstance().release(staging);
+            staging = null;
+        }
+
+        stats.add(FbxImportPhase.TRAVERSAL, System.nanoTime() - traversalStart, 0, 0);
+        stats.addAllocatedBytes(allocationStart);
+    }
+
+    /**
+     * Reads the geometry and material of a lazy node if this was not done yet, and creates its mesh and material.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance positioned on the FBX node of the lazy node
+     * @param node the lazy node
+     */
+    private void resolveNode(FbxLib jFbxLib, FbxLazyNode node) {
+
+        FbxMeshPart part = node.getPart();
+
+        if (geometries.get(part.getGeometryIndex()) == null) {
+            if (directMeshes) {
+                meshes.put(part.getGeometryIndex(), readMesh(jFbxLib, node.getAttributeIndex()));
+                geometries.set(part.getGeometryIndex(), new FbxMeshData(null, null, null, null));
+            } else {
+                geometries.set(part.getGeometryIndex(), readGeometryData(jFbxLib, node.getAttributeIndex()));
+            }
+        }
+
+        Material material = null;
+        if (part.getMaterialIndex() >= 0) {
+
+            if (materialData.get(part.getMaterialIndex()) == null) {
+                long readStart = System.nanoTime();
+                materialData.set(part.getMaterialIndex(), FbxMaterialData.read(jFbxLib, 0));
+                stats.add(FbxImportPhase.MATERIAL_READ, System.nanoTime() - readStart, 0, 1);
+            }
+            material = getMaterial(part.getMaterialIndex());
+        }
+
+        TriangleMesh mesh = getMesh(part.getGeometryIndex());
+        lazyScene.complete(node, mesh, material, levelsOfDetail.get(part.getGeometryIndex()));
+    }
+
+    /**
+     * Creates the placeholder mesh views of a lazy import and adds them to the root, or passes them to the mesh view
+     * consumer.
+     * 
+     * @return the number of placeholder mesh views
+     */
+    private int addLazyMeshViews() {
+
+        if (lazyScene == null) {
+            return 0;
+        }
+
+        List<MeshView> meshViews = new ArrayList<>();
+        for (FbxLazyNode node : lazyScene.getNodes()) {
+            meshViews.add(node.getMeshView());
+        }
+
+        if (meshViewConsumer != null) {
+            meshViewConsumer.accept(Collections.unmodifiableList(meshViews));
+        } else {
+            root.getChildren().addAll(meshViews);
+        }
+        return meshViews.size();
+    }
+
+    /**
+     * Reads a geometry that was not read before, triangulating it if necessary.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     * @param attributeId the unique id of the attribute in the node table
+     * @return the index of the geometry in the geometry list
+     */
+    private int readGeometry(FbxLib jFbxLib, int i, long attributeId) {
+
+        int geometryIndex = geometries.size();
+        geometryIndices.put(attributeId, geometryIndex);
+
+        // The node table keeps the id of the original geometry, even if triangulation replaces it in all nodes that
+        // share it. Meshes that are created directly from the staging buffer leave no mesh data behind.
+        FbxMeshData meshData;
+        if (directMeshes) {
+            meshes.put(geometryIndex, readMesh(jFbxLib, i));
+            meshData = new FbxMeshData(null, null, null, null);
+        } else {
+            meshData = readGeometryData(jFbxLib, i);
+        }
 
-                        materials.put(name, material);
+        // The skin refers to the control points, so it is read after triangulation, which keeps them.
+        if (animated) {
+            long skinStart = System.nanoTime();
+            FbxSkin skin = jFbxLib.getMeshSkin(i);
+            if (skin != null) {
+                skins.put(geometryIndex, skin);
+            }
+            stats.add(FbxImportPhase.ANIMATION, System.nanoTime() - skinStart, 0, skin != null ? 1 : 0);
+        }
+        geometries.add(meshData);
+
+        return geometryIndex;
+    }
+
+    /**
+     * Triangulates a geometry if necessary, and reads its mesh data.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     * @return the mesh data of the geometry
+     */
+    private FbxMeshData readGeometryData(FbxLib jFbxLib, int i) {
+
+        triangulate(jFbxLib, i);
+
+        // Transfer all mesh data in a single call rather than one per array.
+        long transferStart = System.nanoTime();
+        FbxMeshData meshData = readMeshData(jFbxLib, i);
+        stats.add(FbxImportPhase.MESH_TRANSFER, System.nanoTime() - transferStart, getSize(meshData), 1);
+
+        return meshData;
+    }
+
+    /**
+     * Triangulates a geometry if the library did not triangulate the whole scene and the geometry is not a triangle
+     * mesh yet.
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     */
+    private void triangulate(FbxLib jFbxLib, int i) {
+
+        if (!triangulated && !jFbxLib.isTriangleMesh(i)) {
+            long triangulationStart = System.nanoTime();
+            jFbxLib.triangulate(i);
+            stats.add(FbxImportPhase.TRIANGULATION, System.nanoTime() - triangulationStart, 0, 1);
+        }
+    }
+
+    /**
+     * Triangulates a geometry if necessary, and creates its mesh directly from the staging buffers.
+     * 
+     * <p>
+     * The data is copied once from the direct buffer into the pooled arrays, and once from there into the mesh, so no
+     * arrays are allocated for the mesh data itself. Must only be used if the mesh data is neither optimized nor
+     * simplified, and is not needed by the cache or the batcher.
+     * </p>
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     * @return the {@link TriangleMesh} of the geometry
+     */
+    private TriangleMesh readMesh(FbxLib jFbxLib, int i) {
+
+        triangulate(jFbxLib, i);
+
+        long transferStart = System.nanoTime();
+        int size = jFbxLib.getMeshDataSize(i);
+        ByteBuffer buffer = size > 0 ? staging.getBuffer(size) : null;
+
+        if (buffer == null || !jFbxLib.getMeshData(i, buffer)) {
+            stats.add(FbxImportPhase.MESH_TRANSFER, System.nanoTime() - transferStart, FbxMeshData.HEADER_SIZE, 1);
+            return new TriangleMesh();
+        }
+        stats.add(FbxImportPhase.MESH_TRANSFER, System.nanoTime() - transferStart, size, 1);
+
+        long creationStart = System.nanoTime();
+
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.nativeOrder());
+        source.clear();
+
+        int vertexCount = source.getInt();
+        int texCoordCount = source.getInt();
+        int faceCount = source.getInt();
+        int smoothingGroupCount = source.getInt();
+
+        TriangleMesh mesh = new TriangleMesh();
+
+        // The same rules as for decoded mesh data, see createMesh(FbxMeshData).
+        if (vertexCount > 0 && faceCount > 0) {
+
+            float[] floats = staging.getFloats(Math.max(vertexCount, texCoordCount));
+            source.asFloatBuffer().get(floats, 0, vertexCount);
+            source.position(source.position() + 4 * vertexCount);
+            mesh.getPoints().setAll(floats, 0, vertexCount);
+
+            if (texCoordCount > 0) {
+                source.asFloatBuffer().get(floats, 0, texCoordCount);
+                mesh.getTexCoords().setAll(floats, 0, texCoordCount);
+            } else {
+                mesh.getTexCoords().setAll(0, 0);
+            }
+            source.position(source.position() + 4 * texCoordCount);
+
+            int[] ints = staging.getInts(Math.max(faceCount, smoothingGroupCount));
+            source.asIntBuffer().get(ints, 0, faceCount);
+            source.position(source.position() + 4 * faceCount);
+            mesh.getFaces().setAll(ints, 0, faceCount);
+
+            if (smoothingGroupCount > 0) {
+                source.asIntBuffer().get(ints, 0, smoothingGroupCount);
+                mesh.getFaceSmoothingGroups().setAll(ints, 0, smoothingGroupCount);
+            }
+        }
+
+        stats.add(FbxImportPhase.MESH_CREATION, System.nanoTime() - creationStart, size - FbxMeshData.HEADER_SIZE, 1);
+        return mesh;
+    }
+
+    /**
+     * Gets the triangle mesh for a geometry, creating it if this was not done yet.
+     * 
+     * <p>
+     * The mesh is shared by all mesh views of nodes that use the geometry. If a simplifier is set, the levels of detail
+     * of the mesh are built at the same time.
+     * </p>
+     * 
+     * @param geometryIndex the index of the geometry
+     * @return the {@link TriangleMesh} of the geometry
+     */
+    private TriangleMesh getMesh(int geometryIndex) {
+
+        FbxMeshData meshData = geometries.get(geometryIndex);
+
+        synchronized (meshData) {
+
+            TriangleMesh mesh = meshes.get(geometryIndex);
+            if (mesh == null) {
+
+                // Skinned meshes must keep their control points, and their normals change with every pose.
+                boolean skinned = skins.containsKey(geometryIndex);
+                if (!skinned) {
+                    meshData = optimize(meshData);
+                }
+
+                long creationStart = System.nanoTime();
+                mesh = createMesh(meshData, computeNormals && !skinned);
+                stats.add(FbxImportPhase.MESH_CREATION, System.nanoTime() - creationStart, getSize(meshData)
+                        - FbxMeshData.HEADER_SIZE, 1);
+
+                if (simplifier != null && !skinned) {
+                    FbxLevelOfDetail levelOfDetail = createLevelOfDetail(meshData, mesh);
+                    if (levelOfDetail != null) {
+                        levelsOfDetail.put(geometryIndex, levelOfDetail);
                     }
-                    meshView.setMaterial(materials.get(name));
                 }
+                meshes.put(geometryIndex, mesh);
 
-                double g[] = jFbxLib.getNodeGlobalAffineTransformation();
-                if (g!=null) {
-                    // In the FBX SDK the indices go *down* the columns of the affine matrix.
-                    meshView.getTransforms().add(Transform.affine(g[0],g[4],g[8],g[12],g[1],g[5],g[9],g[13],g[2],g[6],g[10],g[14]));
+                // Only once the mesh can be found, other tasks then lock the empty data instead.
+                if (releaseMeshData) {
+                    geometries.set(geometryIndex, new FbxMeshData(null, null, null, null));
                 }
-                
-                double t[] = jFbxLib.getNodeGeometricTranslation();
-                if (t!=null) {
-                    meshView.getTransforms().add(new Translate(t[0], t[1], t[2]));
+            }
+            return mesh;
+        }
+    }
+
+    /**
+     * Applies the optimizer to mesh data, if one is set.
+     * 
+     * @param meshData the raw data of a mesh
+     * @return the optimized mesh data, or the given data if no optimizer is set
+     */
+    private FbxMeshData optimize(FbxMeshData meshData) {
+
+        if (optimizer == null) {
+            return meshData;
+        }
+
+        long optimizationStart = System.nanoTime();
+        long size = getSize(meshData);
+        FbxMeshData optimized = optimizer.optimize(meshData);
+        stats.add(FbxImportPhase.OPTIMIZATION, System.nanoTime() - optimizationStart, size - getSize(optimized), 1);
+
+        return optimized;
+    }
+
+    /**
+     * Builds the simplified levels of a mesh, if it is large enough.
+     * 
+     * @param meshData the raw data of the mesh
+     * @param mesh the full mesh
+     * @return the levels of detail, or <tt>null</tt> if the mesh is too small to be simplified
+     */
+    private FbxLevelOfDetail createLevelOfDetail(FbxMeshData meshData, TriangleMesh mesh) {
+
+        long simplificationStart = System.nanoTime();
+        List<FbxMeshData> levels = simplifier.simplify(meshData);
+
+        if (levels.isEmpty()) {
+            return null;
+        }
+
+        List<TriangleMesh> levelMeshes = new ArrayList<>(levels.size() + 1);
+        levelMeshes.add(mesh);
+
+        long bytes = 0;
+        for (FbxMeshData level : levels) {
+            levelMeshes.add(createMesh(level, computeNormals));
+            bytes += getSize(level) - FbxMeshData.HEADER_SIZE;
+        }
+
+        stats.add(FbxImportPhase.SIMPLIFICATION, System.nanoTime() - simplificationStart, bytes, levels.size());
+        return new FbxLevelOfDetail(levelMeshes);
+    }
+
+    /**
+     * Gets the material with the given index, creating it if this was not done yet.
+     * 
+     * @param materialIndex the index of the material
+     * @return the {@link Material} for the index
+     */
+    private Material getMaterial(int materialIndex) {
+
+        FbxMaterialData data = materialData.get(materialIndex);
+
+        synchronized (data) {
+
+            Material material = materials.get(materialIndex);
+            if (material == null) {
+
+                long creationStart = System.nanoTime();
+                PhongMaterial phongMaterial = createMaterial(data);
+                stats.add(FbxImportPhase.MATERIAL_CREATION, System.nanoTime() - creationStart, 0, 1);
+
+                if (loadTextures) {
+                    try {
+                        loadTextureMaps(phongMaterial, data);
+                    } catch (MalformedURLException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 }
 
-                root.getChildren().add(meshView);
-            } 
+                material = phongMaterial;
+                materials.put(materialIndex, material);
+            }
+            return material;
         }
+    }
+
+    /**
+     * Creates the triangle mesh for a geometry.
+     * 
+     * @param meshData the raw data of the geometry
+     * @param computeNormals <tt>true</tt> to create the mesh with normals computed by {@link FbxMeshNormals}
+     * @return a new {@link TriangleMesh}
+     */
+    static TriangleMesh createMesh(FbxMeshData meshData, boolean computeNormals) {
+        return computeNormals ? FbxMeshNormals.createMesh(meshData) : createMesh(meshData);
+    }
+
+    /**
+     * Counts the triangles of a mesh.
+     * 
+     * @param mesh a triangle mesh of any vertex format
+     * @return the number of triangles
+     */
+    static int getTriangleCount(TriangleMesh mesh) {
+        return mesh.getFaces().size() / (3 * mesh.getVertexFormat().getVertexIndexSize());
+    }
+
+    /**
+     * Creates the JavaFX mesh for the raw data of a geometry, leaving the normals to JavaFX.
+     * 
+     * @param meshData the raw data of the geometry
+     * @return the {@link TriangleMesh} of the geometry
+     */
+    static TriangleMesh createMesh(FbxMeshData meshData) {
+
+        float vertices[]      = meshData.getVertices();
+        float texCoords[]     = meshData.getTexCoords();
+        int faces[]           = meshData.getFaces();
+        int smoothingGroups[] = meshData.getSmoothingGroups();
 
-        // Repeat this process for the next node in the graph.
-        if (jFbxLib.nextChild()) {
-            readNode(jFbxLib);
+        TriangleMesh mesh = new TriangleMesh();
+        
+        // Vertices & faces must be non-null to have a sensible mesh.
+        if (vertices!=null && faces!=null) {
+            mesh.getPoints().setAll(vertices);
+            mesh.getFaces().setAll(faces);
+            
+            // If no UV coordinates are found, set (u,v)=(0,0) to stop JavaFX spazzing out.
+            if (texCoords!=null) {
+                mesh.getTexCoords().setAll(texCoords);
+            } else {
+                mesh.getTexCoords().setAll(new float[]{0, 0});
+            }
+            
+            // Smoothing groups are optional.
+            if (smoothingGroups!=null) {
+                mesh.getFaceSmoothingGroups().setAll(smoothingGroups);
+            }
         }
-        else if (jFbxLib.nextSibling()) {
-            readNode(jFbxLib);
+
+        return mesh;
+    }
+
+    /**
+     * Creates the mesh view for a mesh part.
+     * 
+     * @param part the raw data of the mesh
+     * @return a new {@link MeshView} for the mesh part
+     */
+    private MeshView createMeshView(FbxMeshPart part) {
+
+        MeshView meshView = new MeshView();
+        meshView.setId(part.getNodeName());
+        meshView.setMesh(getMesh(part.getGeometryIndex()));
+
+        FbxLevelOfDetail levelOfDetail = levelsOfDetail.get(part.getGeometryIndex());
+        if (levelOfDetail != null) {
+            levelOfDetail.attach(meshView);
+        }
+
+        if (part.getMaterialIndex()>=0) {
+            meshView.setMaterial(getMaterial(part.getMaterialIndex()));
         }
-        while (jFbxLib.nextParent()) {
-            if (jFbxLib.nextSibling()) {
-                readNode(jFbxLib);
+
+        addTransforms(meshView, part);
+        return meshView;
+    }
+
+    /**
+     * Creates the placeholder mesh view for a mesh part of a lazy import.
+     * 
+     * <p>
+     * The two points of the placeholder mesh span the bounds of the geometry. They form a single triangle without area,
+     * as JavaFX ignores the points of a mesh without faces, so nothing is rendered.
+     * </p>
+     * 
+     * @param part the mesh part, whose geometry has not been read yet
+     * @return a new {@link MeshView} for the mesh part
+     */
+    private MeshView createPlaceholder(FbxMeshPart part) {
+
+        TriangleMesh mesh = new TriangleMesh();
+
+        double[] bounds = geometryBounds.get(part.getGeometryIndex());
+        if (bounds != null) {
+            for (double value : bounds) {
+                mesh.getPoints().addAll((float) value);
             }
+            mesh.getTexCoords().addAll(0, 0);
+            mesh.getFaces().addAll(0, 0, 1, 0, 1, 0);
+        }
+
+        MeshView meshView = new MeshView(mesh);
+        meshView.setId(part.getNodeName());
+
+        addTransforms(meshView, part);
+        return meshView;
+    }
+
+    /**
+     * Adds the global transformation and geometric translation of the FBX node to a mesh view.
+     * 
+     * @param meshView the mesh view of a mesh part
+     * @param part the mesh part
+     */
+    private static void addTransforms(MeshView meshView, FbxMeshPart part) {
+
+        double g[] = part.getGlobalTransform();
+        if (g!=null) {
+            // In the FBX SDK the indices go *down* the columns of the affine matrix.
+            meshView.getTransforms().add(Transform.affine(g[0],g[4],g[8],g[12],g[1],g[5],g[9],g[13],g[2],g[6],g[10],g[14]));
+        }
+        
+        double t[] = part.getGeometricTranslation();
+        if (t!=null) {
+            meshView.getTransforms().add(new Translate(t[0], t[1], t[2]));
+        }
+    }
+
+    /**
+     * Creates the JavaFX material for the given material data.
+     * 
+     * <p>
+     * Texture maps are set separately by {@link #loadTextureMaps(PhongMaterial, FbxMaterialData)}.
+     * </p>
+     * 
+     * @param data the raw parameters of the material
+     * @return a new {@link PhongMaterial}
+     */
+    static PhongMaterial createMaterial(FbxMaterialData data) {
+
+        PhongMaterial material = new PhongMaterial();
+        
+        double[] diffuseColorArray = data.getDiffuseColor();
+        if (diffuseColorArray!=null) {
+            material.setDiffuseColor(createColor(diffuseColorArray));
+        }
+        
+        double[] specularColorArray = data.getSpecularColor();
+        if (specularColorArray!=null) {
+            material.setSpecularColor(createColor(specularColorArray));
+        }
+        
+        double specularPower = data.getSpecularPower();
+        if (specularPower!=-1) {
+            material.setSpecularPower(specularPower);
+        }
+        
+        return material;
+    }
+
+    /**
+     * Sets the texture maps of the given material data on a material.
+     * 
+     * @param material the material created for the data
+     * @param data the raw parameters of the material
+     * @throws MalformedURLException if a texture-map file path could not be transformed to a valid URL
+     */
+    private void loadTextureMaps(PhongMaterial material, FbxMaterialData data) throws MalformedURLException {
+
+        String diffuseMapFile = data.getDiffuseMap();
+        if (diffuseMapFile!=null) {
+            material.setDiffuseMap(createImage(FbxTextureType.DIFFUSE, diffuseMapFile));
+        }
+        
+        String specularMapFile = data.getSpecularMap();
+        if (specularMapFile!=null) {
+            material.setSpecularMap(createImage(FbxTextureType.SPECULAR, specularMapFile));
+        }
+        
+        String bumpMapFile = data.getBumpMap();
+        if (bumpMapFile!=null) {
+            material.setBumpMap(createImage(FbxTextureType.BUMP, bumpMapFile));
+        }
+        
+        String selfIlluminationMapFile = data.getSelfIlluminationMap();
+        if (selfIlluminationMapFile!=null) {
+            material.setSelfIlluminationMap(createImage(FbxTextureType.SELF_ILLUMINATION, selfIlluminationMapFile));
+        }
+    }
+
+    /**
+     * Reads the data of a mesh attribute via the bulk transfer of {@link FbxLib#getMeshData(int, ByteBuffer)}.
+     * 
+     * <p>
+     * The direct buffer is taken from the {@link FbxStagingBuffers}, so it is reused for all meshes of the file and by
+     * later imports, and only grows when a larger mesh is found.
+     * </p>
+     * 
+     * @param jFbxLib the {@link FbxLib} instance that has the file open
+     * @param i the index of the attribute
+     * @return the mesh data, with all arrays <tt>null</tt> if the attribute has no mesh data
+     */
+    private FbxMeshData readMeshData(FbxLib jFbxLib, int i) {
+
+        int size = jFbxLib.getMeshDataSize(i);
+
+        if (size <= 0) {
+            return new FbxMeshData(null, null, null, null);
+        }
+
+        ByteBuffer buffer = staging.getBuffer(size);
+
+        if (!jFbxLib.getMeshData(i, buffer)) {
+            return new FbxMeshData(null, null, null, null);
         }
+        return FbxMeshData.decode(buffer);
+    }
+
+    /**
+     * Gets the size of the packed form of mesh data.
+     * 
+     * @param meshData the mesh data
+     * @return the size in bytes
+     */
+    private static long getSize(FbxMeshData meshData) {
+        return FbxMeshData.getSize(meshData.getVertices(), meshData.getTexCoords(), meshData.getFaces(),
+                meshData.getSmoothingGroups());
     }
 
     /**
@@ -223,7 +1281,7 @@ public class FbxImporter {
      * @param colorArray the rgba values for the new color
      * @return the new {@link Color} instance
      */
-    private Color createColor(double[] colorArray) {
+    static Color createColor(double[] colorArray) {
         
         for (int i=0; i<colorArray.length; i++) {
             if (colorArray[i]<0) {
@@ -238,13 +1296,177 @@ public class FbxImporter {
     }
     
     /**
-     * Creates a new image for the given texture-map file path.
+     * Gets the image for the given texture-map file path from the shared {@link FbxTextureCache}.
+     * 
+     * <p>
+     * If a texture policy is set, the image is decoded at the level selected by the policy. A texture file that is used
+     * by several materials of the import is only selected, and counted against the budget, once.
+     * </p>
      * 
+     * @param type the type of the texture map
      * @param mapFile the file path of a texture map
-     * @return an {@link Image} of the texture
+     * @return an {@link Image} of the texture, which may still be loading in the background
      * @throws MalformedURLException if the given file path could not be transformed to a valid URL
      */
-    private Image createImage(String mapFile) throws MalformedURLException {
-        return new Image(new File(mapFile).toURI().toURL().toString());
+    private Image createImage(FbxTextureType type, String mapFile) throws MalformedURLException {
+
+        long textureStart = System.nanoTime();
+        FbxTextureCache textureCache = FbxTextureCache.getInstance();
+
+        if (texturePolicy == null) {
+            Image image = textureCache.getImage(mapFile);
+            stats.add(FbxImportPhase.TEXTURE, System.nanoTime() - textureStart, 0, 1);
+            return image;
+        }
+
+        // Read outside of the lock, the size of every file is only read once.
+        int[] fileSize = textureCache.getImageSize(mapFile);
+
+        Image image;
+        long size = 0;
+
+        synchronized (textureImages) {
+
+            image = textureImages.get(mapFile);
+            if (image == null) {
+
+                if (fileSize != null) {
+                    int level = texturePolicy.getLevel(type, fileSize[0], fileSize[1], textureSize);
+                    size = FbxTexturePolicy.getSize(fileSize[0], fileSize[1], level);
+
+                    // Textures at full size share the cached image of imports without a policy.
+                    image = level == 0 ? textureCache.getImage(mapFile) : textureCache.getImage(mapFile,
+                            FbxTexturePolicy.getDimension(fileSize[0], level),
+                            FbxTexturePolicy.getDimension(fileSize[1], level));
+                } else {
+                    // JavaFX cannot decode files that have no readable header either, so they show as errors anyway.
+                    image = textureCache.getImage(mapFile);
+                }
+
+                textureImages.put(mapFile, image);
+                textureSize += size;
+            }
+        }
+
+        stats.add(FbxImportPhase.TEXTURE, System.nanoTime() - textureStart, size, 1);
+        return image;
+    }
+
+    /**
+     * Creates the mesh views for a range of mesh parts, splitting the range in half until it is small enough.
+     */
+    private class MeshConversion extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<FbxMeshPart> parts;
+        private final MeshView[] meshViews;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a new conversion task.
+         * 
+         * @param parts the mesh parts
+         * @param meshViews the array that the mesh views are stored in, with the same indices as the parts
+         * @param from the first index of the range (inclusive)
+         * @param to the last index of the range (exclusive)
+         */
+        MeshConversion(List<FbxMeshPart> parts, MeshView[] meshViews, int from, int to) {
+            this.parts = parts;
+            this.meshViews = meshViews;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Gets the mesh views created by this task. Only valid once the task is done.
+         * 
+         * @return the mesh views, in the order of the mesh parts
+         */
+        List<MeshView> getMeshViews() {
+            return Arrays.asList(meshViews).subList(from, to);
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= MESH_BATCH_SIZE) {
+                cancellationToken.checkCancelled();
+                long allocationStart = FbxImportStats.getThreadAllocatedBytes();
+                for (int i=from; i<to; i++) {
+                    meshViews[i] = createMeshView(parts.get(i));
+                }
+                stats.addAllocatedBytes(allocationStart);
+                if (meshViewConsumer != null) {
+                    meshViewConsumer.accept(Collections.unmodifiableList(getMeshViews()));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MeshConversion(parts, meshViews, from, middle),
+                        new MeshConversion(parts, meshViews, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Merges a batch of mesh parts and creates the mesh view of the merged mesh.
+     */
+    private class MeshBatch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<FbxMeshPart> parts;
+        private TriangleMesh mesh;
+        private MeshView meshView;
+
+        /**
+         * Creates a new batch task.
+         * 
+         * @param parts the mesh parts to merge, which all have the same material
+         */
+        MeshBatch(List<FbxMeshPart> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        protected void compute() {
+
+            cancellationToken.checkCancelled();
+
+            long allocationStart = FbxImportStats.getThreadAllocatedBytes();
+            long mergeStart = System.nanoTime();
+            FbxMeshData meshData = FbxMeshBatcher.merge(parts, geometries);
+            stats.add(FbxImportPhase.BATCHING, System.nanoTime() - mergeStart, getSize(meshData)
+                    - FbxMeshData.HEADER_SIZE, parts.size());
+
+            meshData = optimize(meshData);
+
+            long creationStart = System.nanoTime();
+            mesh = createMesh(meshData, computeNormals);
+            stats.add(FbxImportPhase.MESH_CREATION, System.nanoTime() - creationStart, getSize(meshData)
+                    - FbxMeshData.HEADER_SIZE, 1);
+
+            meshView = new MeshView(mesh);
+
+            if (simplifier != null) {
+                FbxLevelOfDetail levelOfDetail = createLevelOfDetail(meshData, mesh);
+                if (levelOfDetail != null) {
+                    levelOfDetail.attach(meshView);
+                }
+            }
+
+            int materialIndex = parts.get(0).getMaterialIndex();
+            if (materialIndex >= 0) {
+                meshView.setId(materialData.get(materialIndex).getName());
+                meshView.setMaterial(getMaterial(materialIndex));
+            }
+
+            stats.addAllocatedBytes(allocationStart);
+
+            if (meshViewConsumer != null) {
+                meshViewConsumer.accept(Collections.singletonList(meshView));
+            }
+        }
     }
-}
\ No newline at end of file
+}
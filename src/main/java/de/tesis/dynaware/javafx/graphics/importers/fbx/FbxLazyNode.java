@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.concurrent.CompletableFuture;
+
+import javafx.scene.paint.Material;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * A mesh view of a lazy import whose geometry and material have not been read yet.
+ *
+ * <p>
+ * Until it is resolved, the mesh view has the name and transforms of its FBX node and a placeholder mesh without
+ * triangles that only spans the bounds of the geometry. Resolving reads the geometry and material from the file that
+ * is still held open by the {@link FbxLazyScene}, and sets them on the mesh view.
+ * </p>
+ */
+public final class FbxLazyNode {
+
+    private static final String PROPERTY_KEY = FbxLazyNode.class.getName();
+
+    private final FbxLazyScene scene;
+    private final FbxMeshPart part;
+    private final int nodeIndex;
+    private final int attributeIndex;
+    private final MeshView meshView;
+
+    // Guarded by the scene.
+    private CompletableFuture<MeshView> future;
+    private boolean released;
+
+    /**
+     * Creates a new lazy node and stores it in the properties of its mesh view.
+     *
+     * @param scene the lazy scene the node belongs to
+     * @param part the mesh part, whose geometry and material may not have been read yet
+     * @param nodeIndex the index of the FBX node in traversal order
+     * @param attributeIndex the index of the geometry attribute of the FBX node
+     * @param meshView the mesh view with the placeholder mesh
+     */
+    FbxLazyNode(FbxLazyScene scene, FbxMeshPart part, int nodeIndex, int attributeIndex, MeshView meshView) {
+        this.scene = scene;
+        this.part = part;
+        this.nodeIndex = nodeIndex;
+        this.attributeIndex = attributeIndex;
+        this.meshView = meshView;
+        meshView.getProperties().put(PROPERTY_KEY, this);
+    }
+
+    /**
+     * Gets the lazy node of a mesh view.
+     *
+     * @param meshView a mesh view
+     * @return the lazy node, or <tt>null</tt> if the mesh view is not part of a lazy import
+     */
+    public static FbxLazyNode get(MeshView meshView) {
+
+        if (!meshView.hasProperties()) {
+            return null;
+        }
+        Object node = meshView.getProperties().get(PROPERTY_KEY);
+        return node instanceof FbxLazyNode ? (FbxLazyNode) node : null;
+    }
+
+    /**
+     * Gets the lazy scene that this node belongs to.
+     *
+     * @return the lazy scene
+     */
+    public FbxLazyScene getScene() {
+        return scene;
+    }
+
+    /**
+     * Gets the mesh view of this node.
+     *
+     * @return the mesh view
+     */
+    public MeshView getMeshView() {
+        return meshView;
+    }
+
+    /**
+     * Requests the geometry and material of this node, unless this was done before.
+     *
+     * <p>
+     * They are read in the background. If the mesh view is part of a scene, its mesh and material are then set on the
+     * JavaFX application thread, which is also where the returned future completes.
+     * </p>
+     *
+     * @return a future that completes with the resolved mesh view
+     * @throws IllegalStateException if the node was released before
+     */
+    public CompletableFuture<MeshView> resolve() {
+        return scene.resolve(this);
+    }
+
+    /**
+     * Releases this node without resolving it, so that the file can be closed once all nodes are resolved or
+     * released. Has no effect if the node was already requested.
+     */
+    public void release() {
+        scene.release(this);
+    }
+
+    /**
+     * Checks whether the geometry and material of this node have been requested.
+     *
+     * @return <tt>true</tt> if {@link #resolve()} was called
+     */
+    public boolean isRequested() {
+        synchronized (scene) {
+            return future != null;
+        }
+    }
+
+    /**
+     * Checks whether the geometry and material of this node are set on its mesh view.
+     *
+     * @return <tt>true</tt> if the node is resolved
+     */
+    public boolean isResolved() {
+        synchronized (scene) {
+            return future != null && future.isDone() && !future.isCompletedExceptionally();
+        }
+    }
+
+    FbxMeshPart getPart() {
+        return part;
+    }
+
+    int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    int getAttributeIndex() {
+        return attributeIndex;
+    }
+
+    CompletableFuture<MeshView> getFuture() {
+        return future;
+    }
+
+    void setFuture(CompletableFuture<MeshView> future) {
+        this.future = future;
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void setReleased(boolean released) {
+        this.released = released;
+    }
+
+    /**
+     * Sets the resolved mesh and material on the mesh view.
+     *
+     * @param mesh the mesh of the geometry
+     * @param material the material, or <tt>null</tt> if the node has none
+     * @param levelOfDetail the levels of detail of the mesh, or <tt>null</tt>
+     */
+    void apply(TriangleMesh mesh, Material material, FbxLevelOfDetail levelOfDetail) {
+
+        meshView.setMesh(mesh);
+        if (material != null) {
+            meshView.setMaterial(material);
+        }
+        if (levelOfDetail != null) {
+            levelOfDetail.attach(meshView);
+        }
+    }
+}
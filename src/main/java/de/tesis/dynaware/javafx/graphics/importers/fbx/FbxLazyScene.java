@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javafx.application.Platform;
+import javafx.scene.paint.Material;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * The open file of a lazy import, which resolves the {@link FbxLazyNode}s of the import on request.
+ *
+ * <p>
+ * The file stays open until every lazy node has been resolved or released, and is then closed. All reading is done
+ * by a single background thread, as a {@link FbxLib} must not be used concurrently. Requests that arrive while it is
+ * busy are collected and resolved together in the traversal order of the FBX graph.
+ * </p>
+ */
+public final class FbxLazyScene {
+
+    private static final String RESOLVE_THREAD_NAME = "fbx-lazy-resolve";
+
+    private final FbxImporter importer;
+    private final FbxLib fbxLib;
+    private final List<FbxLazyNode> nodes = new ArrayList<>();
+    private final List<FbxLazyNode> requested = new ArrayList<>();
+    private int openCount;
+    private boolean closed;
+
+    // The nodes of the current pass that were handed to complete, only used by the resolve thread.
+    private final Set<FbxLazyNode> completed = new HashSet<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, RESOLVE_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Creates a new lazy scene, which takes over the open library.
+     *
+     * @param importer the importer that resolves the nodes
+     * @param fbxLib the library that has the file open
+     */
+    FbxLazyScene(FbxImporter importer, FbxLib fbxLib) {
+        this.importer = importer;
+        this.fbxLib = fbxLib;
+    }
+
+    /**
+     * Gets all lazy nodes of the import.
+     *
+     * @return an unmodifiable list of the lazy nodes, in traversal order
+     */
+    public List<FbxLazyNode> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Gets the number of lazy nodes that are neither resolved nor released yet.
+     *
+     * @return the number of nodes that keep the file open
+     */
+    public synchronized int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Checks whether the file has been closed.
+     *
+     * @return <tt>true</tt> if all lazy nodes were resolved or released
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases all lazy nodes that have not been requested, e.g. when the content of the import is discarded. The file
+     * is closed once the requested nodes are resolved.
+     */
+    public void release() {
+
+        for (FbxLazyNode node : nodes) {
+            release(node);
+        }
+    }
+
+    /**
+     * Adds a node while the import is still running.
+     *
+     * @param node the new lazy node
+     */
+    synchronized void add(FbxLazyNode node) {
+        nodes.add(node);
+        openCount++;
+    }
+
+    /**
+     * Requests a node to be resolved.
+     *
+     * @param node a node of this scene
+     * @return the future of the node
+     */
+    synchronized CompletableFuture<MeshView> resolve(FbxLazyNode node) {
+
+        if (node.getFuture() != null) {
+            return node.getFuture();
+        }
+        if (node.isReleased()) {
+            throw new IllegalStateException("Lazy node was released [" + node.getMeshView().getId() + "]");
+        }
+
+        node.setFuture(new CompletableFuture<MeshView>());
+        requested.add(node);
+
+        // A pass that is already running or scheduled picks up the node as well.
+        if (requested.size() == 1) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    resolveRequested();
+                }
+            });
+        }
+        return node.getFuture();
+    }
+
+    /**
+     * Releases a node, unless it was requested or released before.
+     *
+     * @param node a node of this scene
+     */
+    synchronized void release(FbxLazyNode node) {
+
+        if (node.isReleased() || node.getFuture() != null) {
+            return;
+        }
+        node.setReleased(true);
+        closeReference();
+    }
+
+    /**
+     * Sets the resolved mesh and material on the mesh view of a node, and completes its future.
+     *
+     * <p>
+     * Mesh views that are part of a scene are only changed on the JavaFX application thread. Must only be called by
+     * the resolve thread.
+     * </p>
+     *
+     * @param node the node
+     * @param mesh the mesh of the geometry
+     * @param material the material, or <tt>null</tt> if the node has none
+     * @param levelOfDetail the levels of detail of the mesh, or <tt>null</tt>
+     */
+    void complete(final FbxLazyNode node, final TriangleMesh mesh, final Material material,
+            final FbxLevelOfDetail levelOfDetail) {
+
+        completed.add(node);
+
+        Runnable apply = new Runnable() {
+
+            @Override
+            public void run() {
+                node.apply(mesh, material, levelOfDetail);
+                node.getFuture().complete(node.getMeshView());
+            }
+        };
+
+        if (node.getMeshView().getScene() != null) {
+            Platform.runLater(apply);
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Resolves all requested nodes in traversal order. Runs on the resolve thread.
+     */
+    private void resolveRequested() {
+
+        List<FbxLazyNode> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(requested);
+            requested.clear();
+        }
+
+        Collections.sort(batch, new Comparator<FbxLazyNode>() {
+
+            @Override
+            public int compare(FbxLazyNode node1, FbxLazyNode node2) {
+                return Integer.compare(node1.getNodeIndex(), node2.getNodeIndex());
+            }
+        });
+
+        completed.clear();
+
+        try {
+            importer.resolve(fbxLib, batch);
+        } catch (RuntimeException e) {
+            // Nodes that were completed before the failure still get their mesh, only the others fail.
+            for (FbxLazyNode node : batch) {
+                if (!completed.contains(node)) {
+                    node.getFuture().completeExceptionally(e);
+                }
+            }
+        } finally {
+            completed.clear();
+
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    closeReference();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the reference of a resolved or released node, and closes the file after the last one.
+     */
+    private void closeReference() {
+
+        if (--openCount > 0 || closed) {
+            return;
+        }
+        closed = true;
+
+        // Passes that are still scheduled run first.
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                fbxLib.close();
+            }
+        });
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * The levels of detail of an imported mesh, built by a {@link FbxMeshSimplifier}.
+ *
+ * <p>
+ * The levels are stored in the properties of every {@link MeshView} that uses the mesh, so that a viewer can switch
+ * between them, e.g. depending on the size of the mesh on screen. Level 0 is the full mesh.
+ * </p>
+ */
+public final class FbxLevelOfDetail {
+
+    private static final String PROPERTY_KEY = FbxLevelOfDetail.class.getName();
+
+    private final List<TriangleMesh> meshes;
+
+    /**
+     * Creates new levels of detail.
+     *
+     * @param meshes the meshes of all levels, starting with the full mesh
+     */
+    FbxLevelOfDetail(List<TriangleMesh> meshes) {
+        this.meshes = Collections.unmodifiableList(new ArrayList<>(meshes));
+    }
+
+    /**
+     * Gets the levels of detail of a mesh view.
+     *
+     * @param meshView a mesh view
+     * @return the levels of detail, or <tt>null</tt> if none were built for the mesh of the view
+     */
+    public static FbxLevelOfDetail get(MeshView meshView) {
+
+        if (!meshView.hasProperties()) {
+            return null;
+        }
+        Object levelOfDetail = meshView.getProperties().get(PROPERTY_KEY);
+        return levelOfDetail instanceof FbxLevelOfDetail ? (FbxLevelOfDetail) levelOfDetail : null;
+    }
+
+    /**
+     * Gets the number of levels.
+     *
+     * @return the number of levels including the full mesh
+     */
+    public int getLevelCount() {
+        return meshes.size();
+    }
+
+    /**
+     * Gets the mesh of a level.
+     *
+     * @param level the level, 0 for the full mesh
+     * @return the mesh of the level
+     */
+    public TriangleMesh getMesh(int level) {
+        return meshes.get(level);
+    }
+
+    /**
+     * Gets the number of triangles of a level.
+     *
+     * @param level the level, 0 for the full mesh
+     * @return the number of triangles
+     */
+    public int getTriangleCount(int level) {
+        return FbxImporter.getTriangleCount(meshes.get(level));
+    }
+
+    /**
+     * Stores these levels of detail in the properties of a mesh view.
+     *
+     * @param meshView a mesh view showing the full mesh
+     */
+    void attach(MeshView meshView) {
+        meshView.getProperties().put(PROPERTY_KEY, this);
+    }
+}
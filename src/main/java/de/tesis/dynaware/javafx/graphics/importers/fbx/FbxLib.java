@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Cursor-style access to the node graph of an FBX file.
+ *
+ * <p>
+ * Implemented by the native wrapper {@link JFbxLib} and by the pure-Java {@link BinaryFbxLib}. After a successful call
+ * to {@link #open(String)} the current node is the root node of the FBX graph. All node, attribute and material
+ * queries refer to the current node.
+ * </p>
+ */
+public interface FbxLib {
+
+    /**
+     * Opens the FBX file and sets the current node to the root node of the FBX graph.
+     *
+     * @param filePath the absolute path to the FBX file
+     * @return <tt>true</tt> if the file was opened successfully
+     * @throws IOException if the file is corrupt or cannot be read
+     */
+    boolean open(String filePath) throws IOException;
+
+    /**
+     * Releases all resources held for the open file. This must be called when everything has been loaded and the
+     * library is no longer needed.
+     */
+    void close();
+
+    /**
+     * Iterates to the next child in the FBX node graph, if it exists. Does nothing otherwise.
+     *
+     * @return <tt>true</tt> if the child was found
+     */
+    boolean nextChild();
+
+    /**
+     * Iterates to the next sibling in the FBX node graph, if it exists. Does nothing otherwise.
+     *
+     * @return <tt>true</tt> if the sibling was found
+     */
+    boolean nextSibling();
+
+    /**
+     * Iterates to the next parent in the FBX node graph, if it exists. Does nothing otherwise.
+     *
+     * @return <tt>true</tt> if the parent was found
+     */
+    boolean nextParent();
+
+    /**
+     * Gets all nodes of the FBX graph in traversal order, i.e. every node before its children and the children in
+     * order.
+     *
+     * <p>
+     * The default implementation walks the graph iteratively with {@link #nextChild()}, {@link #nextSibling()} and
+     * {@link #nextParent()}, querying every node. The current node is the root node afterwards.
+     * </p>
+     *
+     * @return the node table
+     */
+    default FbxNodeTable getNodeTable() {
+
+        while (nextParent()) {
+            // Move up to the root.
+        }
+
+        FbxNodeTable.Builder builder = new FbxNodeTable.Builder();
+        Deque<Integer> ancestors = new ArrayDeque<>();
+        int parent = -1;
+
+        while (true) {
+
+            int node = builder.add(this, parent);
+
+            if (nextChild()) {
+                ancestors.push(parent);
+                parent = node;
+                continue;
+            }
+
+            // Move up until a node has a next sibling, or the root is reached.
+            while (!nextSibling()) {
+                if (!nextParent()) {
+                    return builder.build();
+                }
+                parent = ancestors.pop();
+            }
+        }
+    }
+
+    /**
+     * Sets the current node to the node with the given index in the table of {@link #getNodeTable()}.
+     *
+     * <p>
+     * The default implementation walks the graph from the root in traversal order, so it takes time linear in the
+     * index.
+     * </p>
+     *
+     * @param node the index of the node in traversal order
+     * @return <tt>true</tt> if the node was found
+     */
+    default boolean selectNode(int node) {
+
+        while (nextParent()) {
+            // Move up to the root.
+        }
+
+        for (int i = 0; i < node; i++) {
+            if (nextChild()) {
+                continue;
+            }
+            while (!nextSibling()) {
+                if (!nextParent()) {
+                    return false;
+                }
+            }
+        }
+        return node >= 0;
+    }
+
+    /**
+     * Gets the name of the current node in the FBX node graph.
+     *
+     * @return the name of the current node
+     */
+    String getNodeName();
+
+    /**
+     * Gets the global affine transformation associated to the current node in the FBX graph.
+     *
+     * <p>
+     * For the affine matrix
+     * </p>
+     *
+     * <pre>
+     *   [  mxx  mxy  mxz  tx  ]
+     *   [  myx  myy  myz  ty  ]
+     *   [  mzx  mzy  mzz  tz  ]
+     *   [  0    0    0    1   ]
+     * </pre>
+     * <p>
+     * a 1D array is returned consisting of the 4 columns stacked on top of each other.
+     * </p>
+     *
+     * @return the 16 elements of the affine transformation matrix
+     */
+    double[] getNodeGlobalAffineTransformation();
+
+    /**
+     * Gets the geometric translation of the node.
+     *
+     * <p>
+     * This should be applied <b>in addition to</b> the global affine transformation.
+     * </p>
+     *
+     * @return the x, y, and z values of the node's geometric translation
+     */
+    double[] getNodeGeometricTranslation();
+
+    /**
+     * Gets the number of attributes attached to the current node.
+     *
+     * @return the number of attributes
+     */
+    int getNodeAttributeCount();
+
+    /**
+     * Gets the name of an attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the name of the i'th attribute
+     */
+    String getNodeAttributeName(int i);
+
+    /**
+     * Gets the type of an attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the type of the i'th attribute
+     */
+    String getNodeAttributeType(int i);
+
+    /**
+     * Gets an id of the object behind an attribute attached to the current node.
+     *
+     * <p>
+     * Nodes that share the same geometry return the same id, so the geometry only has to be read once. Ids are
+     * unique while the file is open. Note that {@link #triangulate(int)} may replace the attribute by a new object
+     * with a different id.
+     * </p>
+     *
+     * @param i the index of the attribute
+     * @return the id of the i'th attribute
+     */
+    long getNodeAttributeId(int i);
+
+    /**
+     * Indicates whether all geometry of the open file is already a triangle mesh with polygon smoothing, so that
+     * {@link #isTriangleMesh(int)} and {@link #triangulate(int)} need not be called.
+     *
+     * <p>
+     * The default implementation returns <tt>false</tt>.
+     * </p>
+     *
+     * @return <tt>true</tt> if all geometry was triangulated when the file was opened
+     */
+    default boolean isTriangulated() {
+        return false;
+    }
+
+    /**
+     * Gets the settings of this library that change the data it reads, e.g. how the smoothing of meshes is read.
+     *
+     * <p>
+     * Part of the keys of the {@link FbxSceneCache}, so that files read with different settings get different entries.
+     * The default implementation returns an empty string, for a library without such settings.
+     * </p>
+     *
+     * @return a short name for the settings, which is valid in file names
+     */
+    default String getConfiguration() {
+        return "";
+    }
+
+    /**
+     * Indicates whether an attribute attached to the current node is a triangle mesh.
+     *
+     * @param i the index of the attribute
+     * @return <tt>true</tt> if the i'th attribute is a triangular mesh, otherwise <tt>false</tt>
+     */
+    boolean isTriangleMesh(int i);
+
+    /**
+     * Converts a patch, NURBS, NURBS surface, or a higher-order polygon mesh to a triangle mesh for an attribute
+     * attached to the current node.
+     *
+     * @param i the index of the attribute
+     */
+    void triangulate(int i);
+
+    /**
+     * Gets the vertices of a mesh attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the array of vertices in the form (x1, y1, z1, x2, y2, z2, ... )
+     */
+    float[] getMeshVertices(int i);
+
+    /**
+     * Gets the UV texture coordinates of a mesh attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the array of texture coordinates in the form (u1, v1, u2, v2, ... )
+     */
+    float[] getMeshTexCoords(int i);
+
+    /**
+     * Gets the face coordinates of a mesh attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the array of face coordinates in the form ( p1, t1, p2, t2, p3, t3, ... ) where the p's are vertex
+     *         indices and the t's are texture coordinate indices.
+     */
+    int[] getMeshFaces(int i);
+
+    /**
+     * Gets the face smoothing groups of a mesh attribute attached to the current node.
+     *
+     * @param i the index of the attribute
+     * @return the array of face smoothing groups, or <tt>null</tt> if no smoothing is defined
+     */
+    int[] getMeshFaceSmoothingGroups(int i);
+
+    /**
+     * Gets the number of bytes needed to transfer all data of a mesh attribute with
+     * {@link #getMeshData(int, ByteBuffer)}.
+     *
+     * @param i the index of the attribute
+     * @return an upper bound for the size of the packed mesh data, or 0 if the attribute is not a mesh
+     */
+    int getMeshDataSize(int i);
+
+    /**
+     * Copies the vertices, texture coordinates, faces and face smoothing groups of a mesh attribute attached to the
+     * current node into a direct buffer in a single call.
+     *
+     * <p>
+     * The data is written from index 0 of the buffer, in native byte order, ignoring the buffer's position. It starts
+     * with a header of four ints holding the number of vertex floats, texture coordinate floats, face ints and
+     * smoothing group ints, followed by the four arrays in that order, in the same form as the individual getters
+     * return them. A count of 0 means that the array is not defined.
+     * </p>
+     *
+     * @param i the index of the attribute
+     * @param buffer a direct buffer with a capacity of at least {@link #getMeshDataSize(int)} bytes
+     * @return <tt>true</tt> if the buffer was filled, <tt>false</tt> if the attribute is not a mesh
+     */
+    boolean getMeshData(int i, ByteBuffer buffer);
+
+    /**
+     * Gets the bounds of a geometry attribute attached to the current node, without transferring its mesh data.
+     *
+     * <p>
+     * The default implementation computes the bounds from {@link #getMeshVertices(int)}.
+     * </p>
+     *
+     * @param i the index of the attribute
+     * @return the bounds in the form (minX, minY, minZ, maxX, maxY, maxZ), or <tt>null</tt> if the attribute has no
+     *         points
+     */
+    default double[] getMeshBounds(int i) {
+
+        float[] vertices = getMeshVertices(i);
+        if (vertices == null || vertices.length < 3) {
+            return null;
+        }
+
+        double[] bounds = { vertices[0], vertices[1], vertices[2], vertices[0], vertices[1], vertices[2] };
+        for (int j = 3; j < vertices.length; j += 3) {
+            for (int k = 0; k < 3; k++) {
+                bounds[k] = Math.min(bounds[k], vertices[j + k]);
+                bounds[k + 3] = Math.max(bounds[k + 3], vertices[j + k]);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the skin of a mesh attribute attached to the current node, which binds its control points to bones.
+     *
+     * <p>
+     * Only the first skin deformer of the mesh is read. The default implementation returns <tt>null</tt>.
+     * </p>
+     *
+     * @param i the index of the attribute
+     * @return the skin, or <tt>null</tt> if the attribute is not a skinned mesh
+     */
+    default FbxSkin getMeshSkin(int i) {
+        return null;
+    }
+
+    /**
+     * Gets the animation of all nodes of the open file, from the first layer of its first animation stack.
+     *
+     * <p>
+     * The nodes are in the order of {@link #getNodeTable()}. The default implementation returns <tt>null</tt>.
+     * </p>
+     *
+     * @return the animation, or <tt>null</tt> if the file has no animation stack
+     */
+    default FbxAnimation getAnimation() {
+        return null;
+    }
+
+    /**
+     * Gets the number of materials attached to the current node.
+     *
+     * @return the number of materials
+     */
+    int getMaterialCount();
+
+    /**
+     * Gets the name of a material attached to the current node.
+     *
+     * @param j the index of the material
+     * @return the name of the j'th material
+     */
+    String getMaterialName(int j);
+
+    /**
+     * Gets the diffuse color of a material attached to the current node.
+     *
+     * @param j the index of the material
+     * @return the diffuse color of the j'th material in the form (r, g, b, o) where o is the opacity, or <tt>null</tt>
+     *         if no diffuse color is defined
+     */
+    double[] getMaterialDiffuseColor(int j);
+
+    /**
+     * Gets the specular color of a material attached to the current node.
+     *
+     * @param j the index of the material
+     * @return the specular color of the j'th material in the form (r, g, b, o) where o is the opacity, or
+     *         <tt>null</tt> if no specular color is defined
+     */
+    double[] getMaterialSpecularColor(int j);
+
+    /**
+     * Gets the specular power (shininess) of a material attached to the current node.
+     *
+     * @param j the index of the material
+     * @return the specular power of the j'th material, or -1 if no specular power is defined
+     */
+    double getMaterialSpecularPower(int j);
+
+    /**
+     * Gets the absolute path to the texture file for the (first-layer) diffuse map of a material attached to the
+     * current node.
+     *
+     * @param j the index of the material
+     * @return the absolute path to the diffuse texture map of the j'th material, or <tt>null</tt> if no diffuse texture
+     *         map is defined
+     */
+    String getMaterialDiffuseMap(int j);
+
+    /**
+     * Gets the absolute path to the texture file for the (first-layer) specular map of a material attached to the
+     * current node.
+     *
+     * @param j the index of the material
+     * @return the absolute path to the specular texture map of the j'th material, or <tt>null</tt> if no specular
+     *         texture map is defined
+     */
+    String getMaterialSpecularMap(int j);
+
+    /**
+     * Gets the absolute path to the texture file for the (first-layer) bump map of a material attached to the current
+     * node.
+     *
+     * @param j the index of the material
+     * @return the absolute path to the bump map of the j'th material, or <tt>null</tt> if no bump map is defined
+     */
+    String getMaterialBumpMap(int j);
+
+    /**
+     * Gets the absolute path to the texture file for the (first-layer) self-illumination map of a material attached to
+     * the current node.
+     *
+     * @param j the index of the material
+     * @return the absolute path to the self-illumination map of the j'th material, or <tt>null</tt> if no
+     *         self-illumination map is defined
+     */
+    String getMaterialSelfIlluminationMap(int j);
+}
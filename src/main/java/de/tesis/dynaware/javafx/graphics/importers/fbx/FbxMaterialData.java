@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * The raw parameters of a material, as read from an {@link FbxLib} before any JavaFX objects are created.
+ */
+final class FbxMaterialData {
+
+    private final String name;
+    private final double[] diffuseColor;
+    private final double[] specularColor;
+    private final double specularPower;
+    private final String diffuseMap;
+    private final String specularMap;
+    private final String bumpMap;
+    private final String selfIlluminationMap;
+
+    /**
+     * Creates new material data.
+     *
+     * @param name the name of the material
+     * @param diffuseColor the diffuse color (r, g, b, o), or <tt>null</tt>
+     * @param specularColor the specular color (r, g, b, o), or <tt>null</tt>
+     * @param specularPower the specular power, or -1 if not defined
+     * @param diffuseMap the path of the diffuse map, or <tt>null</tt>
+     * @param specularMap the path of the specular map, or <tt>null</tt>
+     * @param bumpMap the path of the bump map, or <tt>null</tt>
+     * @param selfIlluminationMap the path of the self-illumination map, or <tt>null</tt>
+     */
+    FbxMaterialData(String name, double[] diffuseColor, double[] specularColor, double specularPower,
+            String diffuseMap, String specularMap, String bumpMap, String selfIlluminationMap) {
+        this.name = name;
+        this.diffuseColor = diffuseColor;
+        this.specularColor = specularColor;
+        this.specularPower = specularPower;
+        this.diffuseMap = diffuseMap;
+        this.specularMap = specularMap;
+        this.bumpMap = bumpMap;
+        this.selfIlluminationMap = selfIlluminationMap;
+    }
+
+    /**
+     * Reads the parameters of a material attached to the current node.
+     *
+     * @param fbxLib the {@link FbxLib} instance that has the file open
+     * @param j the index of the material
+     * @return the material data
+     */
+    static FbxMaterialData read(FbxLib fbxLib, int j) {
+        return new FbxMaterialData(fbxLib.getMaterialName(j), fbxLib.getMaterialDiffuseColor(j),
+                fbxLib.getMaterialSpecularColor(j), fbxLib.getMaterialSpecularPower(j),
+                fbxLib.getMaterialDiffuseMap(j), fbxLib.getMaterialSpecularMap(j), fbxLib.getMaterialBumpMap(j),
+                fbxLib.getMaterialSelfIlluminationMap(j));
+    }
+
+    String getName() {
+        return name;
+    }
+
+    double[] getDiffuseColor() {
+        return diffuseColor;
+    }
+
+    double[] getSpecularColor() {
+        return specularColor;
+    }
+
+    double getSpecularPower() {
+        return specularPower;
+    }
+
+    String getDiffuseMap() {
+        return diffuseMap;
+    }
+
+    String getSpecularMap() {
+        return specularMap;
+    }
+
+    String getBumpMap() {
+        return bumpMap;
+    }
+
+    String getSelfIlluminationMap() {
+        return selfIlluminationMap;
+    }
+}
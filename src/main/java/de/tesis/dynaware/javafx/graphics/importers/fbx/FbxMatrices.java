@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * Helper methods for 4x4 affine matrices stored as 16 doubles in column-major order, the layout used by
+ * {@link FbxLib#getNodeGlobalAffineTransformation()}.
+ */
+final class FbxMatrices {
+
+    /**
+     * The order in which the Euler rotations are applied, indexed by the FBX <tt>RotationOrder</tt> enum value.
+     */
+    private static final String[] ROTATION_ORDERS = { "XYZ", "XZY", "YZX", "YXZ", "ZXY", "ZYX", "XYZ" };
+
+    private FbxMatrices() {
+    }
+
+    /**
+     * Creates an identity matrix.
+     *
+     * @return a new identity matrix
+     */
+    static double[] identity() {
+        return scaling(new double[] { 1, 1, 1 });
+    }
+
+    /**
+     * Creates a translation matrix.
+     *
+     * @param t the x, y and z translation
+     * @return a new translation matrix
+     */
+    static double[] translation(double[] t) {
+
+        double[] m = identity();
+        m[12] = t[0];
+        m[13] = t[1];
+        m[14] = t[2];
+        return m;
+    }
+
+    /**
+     * Creates a scaling matrix.
+     *
+     * @param s the x, y and z scale factors
+     * @return a new scaling matrix
+     */
+    static double[] scaling(double[] s) {
+
+        double[] m = new double[16];
+        m[0] = s[0];
+        m[5] = s[1];
+        m[10] = s[2];
+        m[15] = 1;
+        return m;
+    }
+
+    /**
+     * Creates a rotation matrix from Euler angles.
+     *
+     * @param degrees the rotation angles around the x, y and z axes in degrees
+     * @param order the FBX rotation order, 0 for XYZ (rotate around x first)
+     * @return a new rotation matrix
+     */
+    static double[] rotation(double[] degrees, int order) {
+
+        String axes = ROTATION_ORDERS[order >= 0 && order < ROTATION_ORDERS.length ? order : 0];
+
+        double[] m = identity();
+        for (int i = 0; i < 3; i++) {
+            int axis = axes.charAt(i) - 'X';
+            m = multiply(axisRotation(axis, Math.toRadians(degrees[axis])), m);
+        }
+        return m;
+    }
+
+    /**
+     * Multiplies two matrices.
+     *
+     * @param a the left matrix
+     * @param b the right matrix
+     * @return the product <tt>a * b</tt>
+     */
+    static double[] multiply(double[] a, double[] b) {
+
+        double[] m = new double[16];
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += a[4 * k + row] * b[4 * column + k];
+                }
+                m[4 * column + row] = sum;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Multiplies two matrices stored in larger arrays, without allocating.
+     *
+     * @param a the array holding the left matrix
+     * @param aOffset the index of the first element of the left matrix
+     * @param b the array holding the right matrix
+     * @param bOffset the index of the first element of the right matrix
+     * @param target the array that the product <tt>a * b</tt> is written to, which must not overlap either matrix
+     * @param targetOffset the index of the first element of the product
+     */
+    static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] target, int targetOffset) {
+
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += a[aOffset + 4 * k + row] * b[bOffset + 4 * column + k];
+                }
+                target[targetOffset + 4 * column + row] = sum;
+            }
+        }
+    }
+
+    /**
+     * Writes a rotation matrix from Euler angles into a larger array, without allocating.
+     *
+     * @param x the rotation angle around the x axis in degrees
+     * @param y the rotation angle around the y axis in degrees
+     * @param z the rotation angle around the z axis in degrees
+     * @param order the FBX rotation order, 0 for XYZ (rotate around x first)
+     * @param target the array that the rotation matrix is written to
+     * @param offset the index of the first element of the matrix
+     */
+    static void rotation(double x, double y, double z, int order, double[] target, int offset) {
+
+        String axes = ROTATION_ORDERS[order >= 0 && order < ROTATION_ORDERS.length ? order : 0];
+
+        for (int i = 0; i < 16; i++) {
+            target[offset + i] = i % 5 == 0 ? 1 : 0;
+        }
+
+        for (int i = 0; i < 3; i++) {
+
+            int axis = axes.charAt(i) - 'X';
+            double radians = Math.toRadians(axis == 0 ? x : axis == 1 ? y : z);
+            double c = Math.cos(radians);
+            double s = Math.sin(radians);
+            int u = (axis + 1) % 3;
+            int v = (axis + 2) % 3;
+
+            // Multiplies the rotation around the axis from the left, which only changes two rows.
+            for (int column = 0; column < 4; column++) {
+                double mu = target[offset + 4 * column + u];
+                double mv = target[offset + 4 * column + v];
+                target[offset + 4 * column + u] = c * mu - s * mv;
+                target[offset + 4 * column + v] = s * mu + c * mv;
+            }
+        }
+    }
+
+    /**
+     * Inverts an affine matrix.
+     *
+     * @param a the matrix, whose last row is (0, 0, 0, 1)
+     * @return a new matrix with the inverse, or the identity if the matrix is not invertible
+     */
+    static double[] invert(double[] a) {
+
+        double c00 = a[5] * a[10] - a[9] * a[6];
+        double c01 = a[8] * a[6] - a[4] * a[10];
+        double c02 = a[4] * a[9] - a[8] * a[5];
+
+        double determinant = a[0] * c00 + a[1] * c01 + a[2] * c02;
+        if (determinant == 0) {
+            return identity();
+        }
+
+        double[] m = new double[16];
+        m[0] = c00 / determinant;
+        m[4] = c01 / determinant;
+        m[8] = c02 / determinant;
+        m[1] = (a[9] * a[2] - a[1] * a[10]) / determinant;
+        m[5] = (a[0] * a[10] - a[8] * a[2]) / determinant;
+        m[9] = (a[8] * a[1] - a[0] * a[9]) / determinant;
+        m[2] = (a[1] * a[6] - a[5] * a[2]) / determinant;
+        m[6] = (a[4] * a[2] - a[0] * a[6]) / determinant;
+        m[10] = (a[0] * a[5] - a[4] * a[1]) / determinant;
+
+        for (int row = 0; row < 3; row++) {
+            m[12 + row] = -(m[row] * a[12] + m[4 + row] * a[13] + m[8 + row] * a[14]);
+        }
+        m[15] = 1;
+        return m;
+    }
+
+    /**
+     * Transposes a matrix, which inverts it if it is a pure rotation.
+     *
+     * @param a the matrix
+     * @return the transposed matrix
+     */
+    static double[] transpose(double[] a) {
+
+        double[] m = new double[16];
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                m[4 * column + row] = a[4 * row + column];
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Negates a vector.
+     *
+     * @param v the vector
+     * @return a new vector pointing in the opposite direction
+     */
+    static double[] negate(double[] v) {
+        return new double[] { -v[0], -v[1], -v[2] };
+    }
+
+    /**
+     * Creates a rotation around one of the coordinate axes.
+     *
+     * @param axis 0, 1 or 2 for the x, y or z axis
+     * @param radians the rotation angle
+     * @return a new rotation matrix
+     */
+    private static double[] axisRotation(int axis, double radians) {
+
+        double c = Math.cos(radians);
+        double s = Math.sin(radians);
+
+        double[] m = identity();
+        int u = (axis + 1) % 3;
+        int v = (axis + 2) % 3;
+
+        m[4 * u + u] = c;
+        m[4 * u + v] = s;
+        m[4 * v + u] = -s;
+        m[4 * v + v] = c;
+        return m;
+    }
+}
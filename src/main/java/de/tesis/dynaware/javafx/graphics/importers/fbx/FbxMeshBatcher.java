@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An optional batching stage for imported meshes, which replaces the mesh view of every FBX node by a few merged mesh
+ * views.
+ *
+ * <p>
+ * The mesh parts are grouped by material. The points of every part are transformed by the global transformation and
+ * geometric translation of its node, and the parts of a group are merged into a single mesh. A group is split into
+ * several meshes when the merged mesh would exceed the maximum number of points. A part that exceeds it on its own
+ * gets a mesh of its own.
+ * </p>
+ *
+ * <p>
+ * All nodes are treated as static. The merged mesh views have no transforms, and the names of the FBX nodes are lost.
+ * A batcher can be shared by several imports, also concurrently.
+ * </p>
+ */
+public class FbxMeshBatcher {
+
+    /**
+     * The default maximum number of points of a merged mesh.
+     */
+    public static final int DEFAULT_MAX_POINT_COUNT = 1 << 16;
+
+    private static final int POINT_SIZE = 3;
+    private static final int TEX_COORD_SIZE = 2;
+    private static final int FACE_SIZE = 6;
+
+    // Smoothing group for the faces of parts without smoothing groups, which are smoothed as a whole in JavaFX.
+    private static final int DEFAULT_SMOOTHING_GROUP = 1;
+
+    private final int maxPointCount;
+
+    /**
+     * Creates a new batcher with the default maximum number of points per merged mesh.
+     */
+    public FbxMeshBatcher() {
+        this(DEFAULT_MAX_POINT_COUNT);
+    }
+
+    /**
+     * Creates a new batcher.
+     *
+     * @param maxPointCount the maximum number of points of a merged mesh
+     */
+    public FbxMeshBatcher(int maxPointCount) {
+
+        if (maxPointCount < 1) {
+            throw new IllegalArgumentException("Maximum point count must be at least 1 [" + maxPointCount + "]");
+        }
+        this.maxPointCount = maxPointCount;
+    }
+
+    /**
+     * Gets the maximum number of points of a merged mesh.
+     *
+     * @return the maximum number of points
+     */
+    public int getMaxPointCount() {
+        return maxPointCount;
+    }
+
+    /**
+     * Groups mesh parts into batches that are merged into one mesh each.
+     *
+     * <p>
+     * Every batch holds parts of a single material, in traversal order. Parts without mesh data are left out.
+     * </p>
+     *
+     * @param parts the mesh parts of an import
+     * @param geometries the geometries of the import, indexed by the geometry index of the parts
+     * @return the batches
+     */
+    List<List<FbxMeshPart>> group(List<FbxMeshPart> parts, List<FbxMeshData> geometries) {
+
+        Map<Integer, List<FbxMeshPart>> partsByMaterial = new LinkedHashMap<>();
+
+        for (FbxMeshPart part : parts) {
+
+            FbxMeshData meshData = geometries.get(part.getGeometryIndex());
+            if (meshData.getVertices() == null || meshData.getFaces() == null) {
+                continue;
+            }
+
+            List<FbxMeshPart> materialParts = partsByMaterial.get(part.getMaterialIndex());
+            if (materialParts == null) {
+                materialParts = new ArrayList<>();
+                partsByMaterial.put(part.getMaterialIndex(), materialParts);
+            }
+            materialParts.add(part);
+        }
+
+        List<List<FbxMeshPart>> batches = new ArrayList<>();
+
+        for (List<FbxMeshPart> materialParts : partsByMaterial.values()) {
+
+            List<FbxMeshPart> batch = new ArrayList<>();
+            int pointCount = 0;
+
+            for (FbxMeshPart part : materialParts) {
+
+                int partPointCount = geometries.get(part.getGeometryIndex()).getVertices().length / POINT_SIZE;
+
+                if (!batch.isEmpty() && pointCount + partPointCount > maxPointCount) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    pointCount = 0;
+                }
+                batch.add(part);
+                pointCount += partPointCount;
+            }
+            batches.add(batch);
+        }
+
+        return batches;
+    }
+
+    /**
+     * Merges a batch of mesh parts into the data of a single mesh, transforming their points into global coordinates.
+     *
+     * @param batch the mesh parts, all with mesh data
+     * @param geometries the geometries of the import, indexed by the geometry index of the parts
+     * @return the merged mesh data
+     */
+    static FbxMeshData merge(List<FbxMeshPart> batch, List<FbxMeshData> geometries) {
+
+        int pointCount = 0;
+        int texCoordCount = 0;
+        int triangleCount = 0;
+        boolean hasSmoothingGroups = false;
+
+        for (FbxMeshPart part : batch) {
+
+            FbxMeshData meshData = geometries.get(part.getGeometryIndex());
+            pointCount += meshData.getVertices().length / POINT_SIZE;
+            texCoordCount += meshData.getTexCoords() != null ? meshData.getTexCoords().length / TEX_COORD_SIZE : 1;
+            triangleCount += meshData.getFaces().length / FACE_SIZE;
+            hasSmoothingGroups |= meshData.getSmoothingGroups() != null;
+        }
+
+        float[] points = new float[pointCount * POINT_SIZE];
+        float[] texCoords = new float[texCoordCount * TEX_COORD_SIZE];
+        int[] faces = new int[triangleCount * FACE_SIZE];
+        int[] smoothingGroups = hasSmoothingGroups ? new int[triangleCount] : null;
+
+        int pointOffset = 0;
+        int texCoordOffset = 0;
+        int triangleOffset = 0;
+
+        for (FbxMeshPart part : batch) {
+
+            FbxMeshData meshData = geometries.get(part.getGeometryIndex());
+
+            float[] partPoints = meshData.getVertices();
+            transform(partPoints, points, pointOffset * POINT_SIZE, part.getGlobalTransform(),
+                    part.getGeometricTranslation());
+
+            // Faces of parts without texture coordinates refer to a single (0, 0) texture coordinate.
+            float[] partTexCoords = meshData.getTexCoords();
+            if (partTexCoords != null) {
+                System.arraycopy(partTexCoords, 0, texCoords, texCoordOffset * TEX_COORD_SIZE, partTexCoords.length);
+            }
+
+            int[] partFaces = meshData.getFaces();
+            int faceOffset = triangleOffset * FACE_SIZE;
+            for (int i = 0; i < partFaces.length; i += 2) {
+                faces[faceOffset + i] = partFaces[i] + pointOffset;
+                faces[faceOffset + i + 1] = partFaces[i + 1] + texCoordOffset;
+            }
+
+            int partTriangleCount = partFaces.length / FACE_SIZE;
+            if (smoothingGroups != null) {
+                int[] partSmoothingGroups = meshData.getSmoothingGroups();
+                int copied = partSmoothingGroups != null ? Math.min(partSmoothingGroups.length, partTriangleCount) : 0;
+                if (copied > 0) {
+                    System.arraycopy(partSmoothingGroups, 0, smoothingGroups, triangleOffset, copied);
+                }
+                Arrays.fill(smoothingGroups, triangleOffset + copied, triangleOffset + partTriangleCount,
+                        DEFAULT_SMOOTHING_GROUP);
+            }
+
+            pointOffset += partPoints.length / POINT_SIZE;
+            texCoordOffset += partTexCoords != null ? partTexCoords.length / TEX_COORD_SIZE : 1;
+            triangleOffset += partTriangleCount;
+        }
+
+        return new FbxMeshData(points, texCoords, faces, smoothingGroups);
+    }
+
+    /**
+     * Transforms points into global coordinates, first by the geometric translation and then by the global
+     * transformation, like the transforms of an unbatched mesh view.
+     *
+     * @param source the points in the coordinates of the geometry
+     * @param target the array that the transformed points are written to
+     * @param offset the index in the target array of the first coordinate
+     * @param g the global affine transformation in FBX column order, or <tt>null</tt>
+     * @param t the geometric translation, or <tt>null</tt>
+     */
+    private static void transform(float[] source, float[] target, int offset, double[] g, double[] t) {
+
+        double tx = t != null ? t[0] : 0;
+        double ty = t != null ? t[1] : 0;
+        double tz = t != null ? t[2] : 0;
+
+        for (int i = 0; i < source.length; i += POINT_SIZE) {
+
+            double x = source[i] + tx;
+            double y = source[i + 1] + ty;
+            double z = source[i + 2] + tz;
+
+            if (g != null) {
+                // In the FBX SDK the indices go *down* the columns of the affine matrix.
+                target[offset + i] = (float) (g[0] * x + g[4] * y + g[8] * z + g[12]);
+                target[offset + i + 1] = (float) (g[1] * x + g[5] * y + g[9] * z + g[13]);
+                target[offset + i + 2] = (float) (g[2] * x + g[6] * y + g[10] * z + g[14]);
+            } else {
+                target[offset + i] = (float) x;
+                target[offset + i + 1] = (float) y;
+                target[offset + i + 2] = (float) z;
+            }
+        }
+    }
+}
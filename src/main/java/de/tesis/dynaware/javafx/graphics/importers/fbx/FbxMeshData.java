@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The raw data of a mesh attribute, as transferred in one block by {@link FbxLib#getMeshData(int, ByteBuffer)}.
+ *
+ * <p>
+ * The packed layout, in native byte order, is
+ * </p>
+ *
+ * <pre>
+ *   int     vertex count           (number of floats)
+ *   int     texture coordinate count (number of floats)
+ *   int     face count             (number of ints)
+ *   int     smoothing group count  (number of ints)
+ *   float[] vertices
+ *   float[] texture coordinates
+ *   int[]   faces
+ *   int[]   smoothing groups
+ * </pre>
+ */
+final class FbxMeshData {
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    private final float[] vertices;
+    private final float[] texCoords;
+    private final int[] faces;
+    private final int[] smoothingGroups;
+
+    /**
+     * Creates new mesh data.
+     *
+     * @param vertices the vertices, or <tt>null</tt>
+     * @param texCoords the texture coordinates, or <tt>null</tt>
+     * @param faces the faces, or <tt>null</tt>
+     * @param smoothingGroups the face smoothing groups, or <tt>null</tt>
+     */
+    FbxMeshData(float[] vertices, float[] texCoords, int[] faces, int[] smoothingGroups) {
+        this.vertices = vertices;
+        this.texCoords = texCoords;
+        this.faces = faces;
+        this.smoothingGroups = smoothingGroups;
+    }
+
+    /**
+     * Allocates a buffer that {@link FbxLib#getMeshData(int, ByteBuffer)} can write into.
+     *
+     * @param size the capacity of the buffer in bytes
+     * @return a new direct buffer in native byte order
+     */
+    static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Gets the size of the packed form of the given arrays.
+     *
+     * @param vertices the vertices, or <tt>null</tt>
+     * @param texCoords the texture coordinates, or <tt>null</tt>
+     * @param faces the faces, or <tt>null</tt>
+     * @param smoothingGroups the face smoothing groups, or <tt>null</tt>
+     * @return the number of bytes needed by {@link #encode}
+     */
+    static int getSize(float[] vertices, float[] texCoords, int[] faces, int[] smoothingGroups) {
+        return HEADER_SIZE + 4 * (length(vertices) + length(texCoords) + length(faces) + length(smoothingGroups));
+    }
+
+    /**
+     * Writes the given arrays into a buffer in the packed form.
+     *
+     * @param buffer the target buffer, written from index 0
+     * @param vertices the vertices, or <tt>null</tt>
+     * @param texCoords the texture coordinates, or <tt>null</tt>
+     * @param faces the faces, or <tt>null</tt>
+     * @param smoothingGroups the face smoothing groups, or <tt>null</tt>
+     */
+    static void encode(ByteBuffer buffer, float[] vertices, float[] texCoords, int[] faces, int[] smoothingGroups) {
+
+        ByteBuffer target = buffer.duplicate().order(ByteOrder.nativeOrder());
+        target.clear();
+
+        target.putInt(length(vertices));
+        target.putInt(length(texCoords));
+        target.putInt(length(faces));
+        target.putInt(length(smoothingGroups));
+
+        if (vertices != null) {
+            target.asFloatBuffer().put(vertices);
+            target.position(target.position() + 4 * vertices.length);
+        }
+        if (texCoords != null) {
+            target.asFloatBuffer().put(texCoords);
+            target.position(target.position() + 4 * texCoords.length);
+        }
+        if (faces != null) {
+            target.asIntBuffer().put(faces);
+            target.position(target.position() + 4 * faces.length);
+        }
+        if (smoothingGroups != null) {
+            target.asIntBuffer().put(smoothingGroups);
+        }
+    }
+
+    /**
+     * Reads mesh data from a buffer in the packed form.
+     *
+     * @param buffer the source buffer, read from index 0
+     * @return the decoded mesh data
+     */
+    static FbxMeshData decode(ByteBuffer buffer) {
+
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.nativeOrder());
+        source.clear();
+
+        float[] vertices = new float[source.getInt()];
+        float[] texCoords = new float[source.getInt()];
+        int[] faces = new int[source.getInt()];
+        int[] smoothingGroups = new int[source.getInt()];
+
+        source.asFloatBuffer().get(vertices);
+        source.position(source.position() + 4 * vertices.length);
+        source.asFloatBuffer().get(texCoords);
+        source.position(source.position() + 4 * texCoords.length);
+        source.asIntBuffer().get(faces);
+        source.position(source.position() + 4 * faces.length);
+        source.asIntBuffer().get(smoothingGroups);
+
+        return new FbxMeshData(nullIfEmpty(vertices), nullIfEmpty(texCoords), nullIfEmpty(faces),
+                nullIfEmpty(smoothingGroups));
+    }
+
+    /**
+     * Gets the vertices of the mesh.
+     *
+     * @return the array of vertices in the form (x1, y1, z1, x2, y2, z2, ... ), or <tt>null</tt>
+     */
+    float[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Gets the texture coordinates of the mesh.
+     *
+     * @return the array of texture coordinates in the form (u1, v1, u2, v2, ... ), or <tt>null</tt>
+     */
+    float[] getTexCoords() {
+        return texCoords;
+    }
+
+    /**
+     * Gets the faces of the mesh.
+     *
+     * @return the array of face coordinates in the form ( p1, t1, p2, t2, p3, t3, ... ), or <tt>null</tt>
+     */
+    int[] getFaces() {
+        return faces;
+    }
+
+    /**
+     * Gets the face smoothing groups of the mesh.
+     *
+     * @return the array of face smoothing groups, or <tt>null</tt>
+     */
+    int[] getSmoothingGroups() {
+        return smoothingGroups;
+    }
+
+    private static int length(float[] array) {
+        return array != null ? array.length : 0;
+    }
+
+    private static int length(int[] array) {
+        return array != null ? array.length : 0;
+    }
+
+    private static float[] nullIfEmpty(float[] array) {
+        return array.length > 0 ? array : null;
+    }
+
+    private static int[] nullIfEmpty(int[] array) {
+        return array.length > 0 ? array : null;
+    }
+}
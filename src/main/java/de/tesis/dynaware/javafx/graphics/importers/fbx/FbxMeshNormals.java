@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.concurrent.RecursiveAction;
+
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+
+/**
+ * Computes the vertex normals of meshes, and creates meshes with the {@link VertexFormat#POINT_NORMAL_TEXCOORD} vertex
+ * format from them, so that JavaFX does not have to compute the normals from the smoothing groups.
+ *
+ * <p>
+ * The normals follow the rules of JavaFX. The normal of a face is the normalized cross product of its edges from the
+ * first to the second and third point. At every point, the normal of a face is the average of the normals of all faces
+ * at the point that share at least one smoothing group with it. Faces without smoothing groups are flat, and a mesh
+ * without smoothing groups is smoothed as a whole. Faces with the same smoothing groups at a point share one normal.
+ * </p>
+ *
+ * <p>
+ * Large meshes are split into ranges of triangles and points that are computed in parallel.
+ * </p>
+ */
+final class FbxMeshNormals {
+
+    // Number of triangles or points below which a range is not split any further.
+    private static final int MIN_RANGE_SIZE = 1 << 13;
+
+    private static final int POINT_SIZE = 3;
+    private static final int FACE_SIZE = 6;
+    private static final int NORMAL_FACE_SIZE = 9;
+
+    // The smoothing group of all faces of a mesh without smoothing groups.
+    private static final int DEFAULT_SMOOTHING_GROUP = 1;
+
+    private final float[] points;
+    private final int[] faces;
+    private final int[] smoothingGroups;
+    private final int triangleCount;
+
+    // The normalized normals of the faces.
+    private final float[] faceNormals;
+
+    // The corners (3 * triangle + vertex) at every point, in ascending order.
+    private final int[] pointCornerOffsets;
+    private final int[] pointCorners;
+
+    // The first corner at the same point with the same smoothing groups, and the normal of every such first corner.
+    private final int[] sharedCorners;
+    private final float[] cornerNormals;
+
+    private FbxMeshNormals(float[] points, int[] faces, int[] smoothingGroups) {
+
+        this.points = points;
+        this.faces = faces;
+        this.smoothingGroups = smoothingGroups;
+
+        triangleCount = faces.length / FACE_SIZE;
+        faceNormals = new float[POINT_SIZE * triangleCount];
+        sharedCorners = new int[3 * triangleCount];
+        cornerNormals = new float[POINT_SIZE * 3 * triangleCount];
+
+        int pointCount = points.length / POINT_SIZE;
+        pointCornerOffsets = new int[pointCount + 1];
+        pointCorners = new int[3 * triangleCount];
+
+        for (int corner = 0; corner < pointCorners.length; corner++) {
+            pointCornerOffsets[getPoint(corner) + 1]++;
+        }
+        for (int point = 0; point < pointCount; point++) {
+            pointCornerOffsets[point + 1] += pointCornerOffsets[point];
+        }
+
+        int[] next = new int[pointCount];
+        System.arraycopy(pointCornerOffsets, 0, next, 0, pointCount);
+        for (int corner = 0; corner < pointCorners.length; corner++) {
+            pointCorners[next[getPoint(corner)]++] = corner;
+        }
+    }
+
+    /**
+     * Creates a triangle mesh with computed normals.
+     *
+     * <p>
+     * Mesh data without points or faces gives an empty mesh, like {@link FbxImporter#createMesh(FbxMeshData)}.
+     * </p>
+     *
+     * @param meshData the mesh data, whose faces only refer to existing points
+     * @return a new mesh with the {@link VertexFormat#POINT_NORMAL_TEXCOORD} vertex format
+     */
+    static TriangleMesh createMesh(FbxMeshData meshData) {
+
+        float[] vertices = meshData.getVertices();
+        float[] texCoords = meshData.getTexCoords();
+        int[] faces = meshData.getFaces();
+
+        TriangleMesh mesh = new TriangleMesh(VertexFormat.POINT_NORMAL_TEXCOORD);
+
+        if (vertices == null || faces == null) {
+            return mesh;
+        }
+
+        FbxMeshNormals normals = new FbxMeshNormals(vertices, faces, meshData.getSmoothingGroups());
+        normals.compute();
+
+        mesh.getPoints().setAll(vertices);
+        normals.setNormalsAndFaces(mesh);
+
+        // If no UV coordinates are found, set (u,v)=(0,0) to stop JavaFX spazzing out.
+        if (texCoords != null) {
+            mesh.getTexCoords().setAll(texCoords);
+        } else {
+            mesh.getTexCoords().setAll(new float[] { 0, 0 });
+        }
+
+        return mesh;
+    }
+
+    /**
+     * Computes the face normals, then the normals at the points.
+     */
+    private void compute() {
+
+        new Range(true, 0, triangleCount).invoke();
+        new Range(false, 0, pointCornerOffsets.length - 1).invoke();
+    }
+
+    /**
+     * Numbers the shared normals in the order of their first corner, and sets the normals and the faces with normal
+     * indices on the mesh.
+     *
+     * @param mesh a mesh with the {@link VertexFormat#POINT_NORMAL_TEXCOORD} vertex format
+     */
+    private void setNormalsAndFaces(TriangleMesh mesh) {
+
+        int[] normalIndices = new int[sharedCorners.length];
+        int normalCount = 0;
+
+        for (int corner = 0; corner < sharedCorners.length; corner++) {
+            int shared = sharedCorners[corner];
+            normalIndices[corner] = shared == corner ? normalCount++ : normalIndices[shared];
+        }
+
+        float[] normals = new float[POINT_SIZE * normalCount];
+        for (int corner = 0; corner < sharedCorners.length; corner++) {
+            if (sharedCorners[corner] == corner) {
+                System.arraycopy(cornerNormals, POINT_SIZE * corner, normals, POINT_SIZE * normalIndices[corner],
+                        POINT_SIZE);
+            }
+        }
+
+        int[] normalFaces = new int[NORMAL_FACE_SIZE * triangleCount];
+        for (int corner = 0; corner < sharedCorners.length; corner++) {
+            normalFaces[3 * corner] = faces[2 * corner];
+            normalFaces[3 * corner + 1] = normalIndices[corner];
+            normalFaces[3 * corner + 2] = faces[2 * corner + 1];
+        }
+
+        mesh.getNormals().setAll(normals);
+        mesh.getFaces().setAll(normalFaces);
+    }
+
+    /**
+     * Computes the normalized normals of a range of faces.
+     *
+     * @param from the first triangle
+     * @param to the triangle after the last one
+     */
+    private void computeFaceNormals(int from, int to) {
+
+        for (int triangle = from; triangle < to; triangle++) {
+
+            int p0 = POINT_SIZE * faces[FACE_SIZE * triangle];
+            int p1 = POINT_SIZE * faces[FACE_SIZE * triangle + 2];
+            int p2 = POINT_SIZE * faces[FACE_SIZE * triangle + 4];
+
+            float ax = points[p1] - points[p0];
+            float ay = points[p1 + 1] - points[p0 + 1];
+            float az = points[p1 + 2] - points[p0 + 2];
+            float bx = points[p2] - points[p0];
+            float by = points[p2 + 1] - points[p0 + 1];
+            float bz = points[p2 + 2] - points[p0 + 2];
+
+            setNormalized(faceNormals, POINT_SIZE * triangle, ay * bz - az * by, az * bx - ax * bz, ax * by - ay * bx);
+        }
+    }
+
+    /**
+     * Computes the normals at a range of points.
+     *
+     * @param from the first point
+     * @param to the point after the last one
+     */
+    private void computePointNormals(int from, int to) {
+
+        for (int point = from; point < to; point++) {
+
+            int first = pointCornerOffsets[point];
+            int end = pointCornerOffsets[point + 1];
+
+            for (int i = first; i < end; i++) {
+
+                int corner = pointCorners[i];
+                int group = getSmoothingGroup(corner);
+
+                // Faces with the same smoothing groups get the same normal, flat faces get their face normal.
+                int shared = corner;
+                if (group != 0) {
+                    for (int j = first; j < i; j++) {
+                        if (getSmoothingGroup(pointCorners[j]) == group) {
+                            shared = sharedCorners[pointCorners[j]];
+                            break;
+                        }
+                    }
+                }
+                sharedCorners[corner] = shared;
+
+                if (shared != corner) {
+                    continue;
+                }
+
+                float x = 0, y = 0, z = 0;
+                for (int j = first; j < end; j++) {
+
+                    int other = pointCorners[j];
+                    if (other == corner || (group & getSmoothingGroup(other)) != 0) {
+                        int normal = POINT_SIZE * (other / 3);
+                        x += faceNormals[normal];
+                        y += faceNormals[normal + 1];
+                        z += faceNormals[normal + 2];
+                    }
+                }
+                setNormalized(cornerNormals, POINT_SIZE * corner, x, y, z);
+            }
+        }
+    }
+
+    private int getPoint(int corner) {
+        return faces[2 * corner];
+    }
+
+    private int getSmoothingGroup(int corner) {
+
+        if (smoothingGroups == null) {
+            return DEFAULT_SMOOTHING_GROUP;
+        }
+        int triangle = corner / 3;
+        return triangle < smoothingGroups.length ? smoothingGroups[triangle] : 0;
+    }
+
+    /**
+     * Writes a normalized vector, or the zero vector if it has no length, e.g. for a degenerate face.
+     */
+    private static void setNormalized(float[] target, int offset, float x, float y, float z) {
+
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length > 0) {
+            target[offset] = x / length;
+            target[offset + 1] = y / length;
+            target[offset + 2] = z / length;
+        } else {
+            target[offset] = 0;
+            target[offset + 1] = 0;
+            target[offset + 2] = 0;
+        }
+    }
+
+    /**
+     * Computes the face normals of a range of triangles or the normals at a range of points, splitting the range in half
+     * until it is small enough.
+     */
+    private class Range extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean faces;
+        private final int from;
+        private final int to;
+
+        Range(boolean faces, int from, int to) {
+            this.faces = faces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > MIN_RANGE_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Range(faces, from, middle), new Range(faces, middle, to));
+            } else if (faces) {
+                computeFaceNormals(from, to);
+            } else {
+                computePointNormals(from, to);
+            }
+        }
+    }
+}
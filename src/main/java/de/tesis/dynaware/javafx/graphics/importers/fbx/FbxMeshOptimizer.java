@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An optional optimisation stage for imported meshes, applied before the mesh data is put into a
+ * {@link javafx.scene.shape.TriangleMesh}.
+ *
+ * <p>
+ * Points and texture coordinates that are equal within a tolerance are welded, triangles that become degenerate are
+ * dropped, data that is no longer referenced is removed and the faces are remapped onto the compacted arrays.
+ * </p>
+ *
+ * <p>
+ * An optimizer can be shared by several imports, also concurrently. It accumulates how many bytes it saved.
+ * </p>
+ */
+public class FbxMeshOptimizer {
+
+    private static final int POINT_SIZE = 3;
+    private static final int TEX_COORD_SIZE = 2;
+    private static final int FACE_SIZE = 6;
+
+    private final float pointTolerance;
+    private final float texCoordTolerance;
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong removedTriangles = new AtomicLong();
+
+    /**
+     * Creates a new optimizer that only welds exactly equal points and texture coordinates.
+     */
+    public FbxMeshOptimizer() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a new optimizer.
+     *
+     * @param pointTolerance the distance per axis within which points are welded, 0 to weld only equal points
+     * @param texCoordTolerance the distance per axis within which texture coordinates are welded, 0 to weld only equal
+     *            texture coordinates
+     */
+    public FbxMeshOptimizer(float pointTolerance, float texCoordTolerance) {
+
+        if (pointTolerance < 0 || texCoordTolerance < 0) {
+            throw new IllegalArgumentException("Tolerances must not be negative [" + pointTolerance + ", "
+                    + texCoordTolerance + "]");
+        }
+
+        this.pointTolerance = pointTolerance;
+        this.texCoordTolerance = texCoordTolerance;
+    }
+
+    /**
+     * Gets the number of bytes removed from the mesh arrays by all optimisations so far.
+     *
+     * @return the number of bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Gets the number of degenerate triangles removed by all optimisations so far.
+     *
+     * @return the number of removed triangles
+     */
+    public long getRemovedTriangles() {
+        return removedTriangles.get();
+    }
+
+    /**
+     * Optimizes the given mesh data.
+     *
+     * @param meshData the mesh data as read from the FBX file
+     * @return the optimized mesh data, or the given instance if it has no points or faces
+     */
+    FbxMeshData optimize(FbxMeshData meshData) {
+
+        float[] points = meshData.getVertices();
+        float[] texCoords = meshData.getTexCoords();
+        int[] faces = meshData.getFaces();
+        int[] smoothingGroups = meshData.getSmoothingGroups();
+
+        if (points == null || faces == null) {
+            return meshData;
+        }
+
+        int[] pointMap = weld(points, POINT_SIZE, pointTolerance);
+        int[] texCoordMap = texCoords != null ? weld(texCoords, TEX_COORD_SIZE, texCoordTolerance) : null;
+
+        // Remap the faces onto the welded data and drop triangles whose corners have collapsed.
+        int triangleCount = faces.length / FACE_SIZE;
+        int[] newFaces = new int[faces.length];
+        int[] newSmoothingGroups = smoothingGroups != null ? new int[triangleCount] : null;
+        int newTriangleCount = 0;
+
+        for (int t = 0; t < triangleCount; t++) {
+
+            int p0 = pointMap[faces[FACE_SIZE * t]];
+            int p1 = pointMap[faces[FACE_SIZE * t + 2]];
+            int p2 = pointMap[faces[FACE_SIZE * t + 4]];
+
+            if (p0 == p1 || p1 == p2 || p2 == p0) {
+                continue;
+            }
+
+            int target = FACE_SIZE * newTriangleCount;
+            for (int c = 0; c < 3; c++) {
+                int texCoord = faces[FACE_SIZE * t + 2 * c + 1];
+                newFaces[target + 2 * c] = pointMap[faces[FACE_SIZE * t + 2 * c]];
+                newFaces[target + 2 * c + 1] = texCoordMap != null ? texCoordMap[texCoord] : texCoord;
+            }
+            if (newSmoothingGroups != null && t < smoothingGroups.length) {
+                newSmoothingGroups[newTriangleCount] = smoothingGroups[t];
+            }
+            newTriangleCount++;
+        }
+
+        FbxMeshData optimized = compact(points, texCoords, newFaces, newSmoothingGroups, newTriangleCount);
+
+        bytesSaved.addAndGet(getSize(meshData) - getSize(optimized));
+        removedTriangles.addAndGet(triangleCount - newTriangleCount);
+
+        return optimized;
+    }
+
+    /**
+     * Removes the points and texture coordinates that are not referenced by the given faces.
+     *
+     * @param points the points
+     * @param texCoords the texture coordinates, or <tt>null</tt>
+     * @param faces the faces, of which only the first <tt>triangleCount</tt> triangles are used and which are
+     *            renumbered in place
+     * @param smoothingGroups the smoothing groups of the faces, or <tt>null</tt>
+     * @param triangleCount the number of valid triangles
+     * @return the compacted mesh data
+     */
+    static FbxMeshData compact(float[] points, float[] texCoords, int[] faces, int[] smoothingGroups,
+            int triangleCount) {
+
+        // Compact the data so that only what the remaining faces reference is kept.
+        int[] pointIndices = compact(faces, triangleCount, 0, points.length / POINT_SIZE);
+        float[] newPoints = select(points, POINT_SIZE, pointIndices);
+
+        float[] newTexCoords = null;
+        if (texCoords != null) {
+            int[] texCoordIndices = compact(faces, triangleCount, 1, texCoords.length / TEX_COORD_SIZE);
+            newTexCoords = select(texCoords, TEX_COORD_SIZE, texCoordIndices);
+        }
+
+        int[] newFaces = copyOf(faces, FACE_SIZE * triangleCount);
+        int[] newSmoothingGroups = smoothingGroups != null ? copyOf(smoothingGroups, triangleCount) : null;
+
+        return new FbxMeshData(newPoints, newTexCoords, newFaces, newSmoothingGroups);
+    }
+
+    /**
+     * Finds equal elements of a flat array.
+     *
+     * <p>
+     * With a tolerance, values are snapped to a grid of that size, so elements are welded if they fall into the same
+     * grid cell.
+     * </p>
+     *
+     * @param values the elements, each one made of <tt>size</tt> values
+     * @param size the number of values per element
+     * @param tolerance the grid size, or 0 to only weld equal elements
+     * @return for each element, the index of the first element that is equal to it
+     */
+    private static int[] weld(float[] values, int size, float tolerance) {
+
+        int count = values.length / size;
+
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = quantize(values[i], tolerance);
+        }
+
+        // Open addressing hash table of element indices + 1, with 0 marking an empty slot.
+        int capacity = Integer.highestOneBit(Math.max(1, 2 * count - 1)) << 1;
+        int[] table = new int[capacity];
+        int[] map = new int[count];
+
+        for (int e = 0; e < count; e++) {
+
+            int slot = hash(keys, e * size, size) & (capacity - 1);
+
+            while (true) {
+                int existing = table[slot] - 1;
+                if (existing < 0) {
+                    table[slot] = e + 1;
+                    map[e] = e;
+                    break;
+                }
+                if (equal(keys, existing * size, e * size, size)) {
+                    map[e] = existing;
+                    break;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Renumbers the indices of one kind in the faces so that they are consecutive.
+     *
+     * @param faces the faces, which are updated in place
+     * @param triangleCount the number of valid triangles in the faces array
+     * @param offset 0 to renumber point indices, 1 to renumber texture coordinate indices
+     * @param count the number of elements before compaction
+     * @return for each new index, the old index
+     */
+    private static int[] compact(int[] faces, int triangleCount, int offset, int count) {
+
+        int[] newIndex = new int[count];
+        boolean[] used = new boolean[count];
+
+        for (int i = offset; i < FACE_SIZE * triangleCount; i += 2) {
+            used[faces[i]] = true;
+        }
+
+        int newCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (used[i]) {
+                newIndex[i] = newCount++;
+            }
+        }
+
+        int[] oldIndex = new int[newCount];
+        for (int i = 0; i < count; i++) {
+            if (used[i]) {
+                oldIndex[newIndex[i]] = i;
+            }
+        }
+
+        for (int i = offset; i < FACE_SIZE * triangleCount; i += 2) {
+            faces[i] = newIndex[faces[i]];
+        }
+        return oldIndex;
+    }
+
+    private static float[] select(float[] values, int size, int[] indices) {
+
+        float[] result = new float[size * indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(values, size * indices[i], result, size * i, size);
+        }
+        return result;
+    }
+
+    private static long quantize(float value, float tolerance) {
+
+        if (tolerance > 0) {
+            return Math.round(value / (double) tolerance);
+        }
+
+        // Treat -0 and 0 as equal.
+        return value == 0 ? 0 : Float.floatToIntBits(value);
+    }
+
+    private static int hash(long[] keys, int from, int size) {
+
+        long hash = 0;
+        for (int i = from; i < from + size; i++) {
+            hash = 31 * hash + keys[i];
+        }
+        // Fibonacci hashing, so that the low bits used for the slot depend on all bits of the keys.
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private static boolean equal(long[] keys, int first, int second, int size) {
+
+        for (int i = 0; i < size; i++) {
+            if (keys[first + i] != keys[second + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+
+    private static long getSize(FbxMeshData meshData) {
+        return FbxMeshData.getSize(meshData.getVertices(), meshData.getTexCoords(), meshData.getFaces(),
+                meshData.getSmoothingGroups());
+    }
+}
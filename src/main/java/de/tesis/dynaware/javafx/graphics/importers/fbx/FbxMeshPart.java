@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * Everything needed to build one {@link javafx.scene.shape.MeshView}, extracted from a mesh attribute of an FBX node.
+ *
+ * <p>
+ * The mesh data itself is referenced by index, since several nodes can be instances of the same geometry.
+ * </p>
+ */
+final class FbxMeshPart {
+
+    private final String nodeName;
+    private final int nodeIndex;
+    private final int geometryIndex;
+    private final int materialIndex;
+    private final double[] globalTransform;
+    private final double[] geometricTranslation;
+
+    /**
+     * Creates a new mesh part whose node index is not known, e.g. one loaded from the {@link FbxSceneCache}.
+     *
+     * @param nodeName the name of the FBX node
+     * @param geometryIndex the index of the mesh data in the importer's geometry list
+     * @param materialIndex the index of the material in the importer's material list, or -1 if there is none
+     * @param globalTransform the global affine transformation of the node, or <tt>null</tt>
+     * @param geometricTranslation the geometric translation of the node, or <tt>null</tt>
+     */
+    FbxMeshPart(String nodeName, int geometryIndex, int materialIndex, double[] globalTransform,
+            double[] geometricTranslation) {
+        this(nodeName, -1, geometryIndex, materialIndex, globalTransform, geometricTranslation);
+    }
+
+    /**
+     * Creates a new mesh part.
+     *
+     * @param nodeName the name of the FBX node
+     * @param nodeIndex the index of the FBX node in the node table, or -1 if it is not known
+     * @param geometryIndex the index of the mesh data in the importer's geometry list
+     * @param materialIndex the index of the material in the importer's material list, or -1 if there is none
+     * @param globalTransform the global affine transformation of the node, or <tt>null</tt>
+     * @param geometricTranslation the geometric translation of the node, or <tt>null</tt>
+     */
+    FbxMeshPart(String nodeName, int nodeIndex, int geometryIndex, int materialIndex, double[] globalTransform,
+            double[] geometricTranslation) {
+        this.nodeName = nodeName;
+        this.nodeIndex = nodeIndex;
+        this.geometryIndex = geometryIndex;
+        this.materialIndex = materialIndex;
+        this.globalTransform = globalTransform;
+        this.geometricTranslation = geometricTranslation;
+    }
+
+    String getNodeName() {
+        return nodeName;
+    }
+
+    int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    int getGeometryIndex() {
+        return geometryIndex;
+    }
+
+    int getMaterialIndex() {
+        return materialIndex;
+    }
+
+    double[] getGlobalTransform() {
+        return globalTransform;
+    }
+
+    double[] getGeometricTranslation() {
+        return geometricTranslation;
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds simplified levels of detail for imported meshes by quadric error edge collapse.
+ *
+ * <p>
+ * Every point accumulates the planes of the triangles around it in a quadric. Edges are collapsed into the end point
+ * where the combined quadric has the smallest error, cheapest edge first, until the target triangle count is reached.
+ * Collapses that would flip a triangle are skipped, and open borders are kept in place by additional planes
+ * perpendicular to them. Texture coordinates are kept per corner, so textures are slightly stretched around collapsed
+ * edges.
+ * </p>
+ *
+ * <p>
+ * Each level is simplified from the previous one. Meshes with fewer triangles than a minimum are not simplified. A
+ * simplifier can be shared by several imports, also concurrently.
+ * </p>
+ */
+public class FbxMeshSimplifier {
+
+    /**
+     * The default number of triangles below which a mesh is not simplified.
+     */
+    public static final int DEFAULT_MIN_TRIANGLE_COUNT = 1000;
+
+    // Triangle ratios of the default levels relative to the full mesh.
+    private static final double[] DEFAULT_RATIOS = { 0.25, 0.0625 };
+
+    private static final int POINT_SIZE = 3;
+    private static final int FACE_SIZE = 6;
+    private static final int QUADRIC_SIZE = 10;
+
+    // Weight of the planes that keep open borders in place, relative to the planes of the triangles.
+    private static final double BORDER_WEIGHT = 1000;
+
+    private final double[] ratios;
+    private final int minTriangleCount;
+
+    /**
+     * Creates a new simplifier with two simplified levels of a quarter and a sixteenth of the triangles, for meshes
+     * with at least {@link #DEFAULT_MIN_TRIANGLE_COUNT} triangles.
+     */
+    public FbxMeshSimplifier() {
+        this(DEFAULT_RATIOS, DEFAULT_MIN_TRIANGLE_COUNT);
+    }
+
+    /**
+     * Creates a new simplifier.
+     *
+     * @param ratios the triangle ratios of the simplified levels relative to the full mesh, decreasing and between 0
+     *            and 1
+     * @param minTriangleCount the number of triangles below which a mesh is not simplified
+     */
+    public FbxMeshSimplifier(double[] ratios, int minTriangleCount) {
+
+        double previous = 1;
+        for (double ratio : ratios) {
+            if (ratio <= 0 || ratio >= previous) {
+                throw new IllegalArgumentException("Ratios must be decreasing between 0 and 1 "
+                        + Arrays.toString(ratios));
+            }
+            previous = ratio;
+        }
+
+        this.ratios = ratios.clone();
+        this.minTriangleCount = minTriangleCount;
+    }
+
+    /**
+     * Gets the number of levels of detail including the full mesh.
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return ratios.length + 1;
+    }
+
+    /**
+     * Builds the simplified levels of a mesh.
+     *
+     * @param meshData the full mesh data
+     * @return the mesh data of the simplified levels, coarsest last, or an empty list if the mesh is too small
+     */
+    List<FbxMeshData> simplify(FbxMeshData meshData) {
+
+        if (meshData.getVertices() == null || meshData.getFaces() == null) {
+            return Collections.emptyList();
+        }
+
+        int triangleCount = meshData.getFaces().length / FACE_SIZE;
+        if (triangleCount < minTriangleCount) {
+            return Collections.emptyList();
+        }
+
+        List<FbxMeshData> levels = new ArrayList<>(ratios.length);
+        FbxMeshData level = meshData;
+
+        for (double ratio : ratios) {
+
+            FbxMeshData simplified = simplify(level, (int) Math.ceil(ratio * triangleCount));
+
+            // Stop if the mesh cannot be simplified any further.
+            if (simplified.getFaces().length >= level.getFaces().length) {
+                break;
+            }
+            levels.add(simplified);
+            level = simplified;
+        }
+        return levels;
+    }
+
+    /**
+     * Simplifies a mesh down to a number of triangles.
+     *
+     * @param meshData the mesh data, which is not modified
+     * @param targetTriangleCount the number of triangles to reach, if possible
+     * @return the simplified mesh data
+     */
+    static FbxMeshData simplify(FbxMeshData meshData, int targetTriangleCount) {
+        return new Simplification(meshData).run(targetTriangleCount);
+    }
+
+    /**
+     * The state of a single simplification.
+     */
+    private static class Simplification {
+
+        private final float[] points;
+        private final float[] texCoords;
+        private final int[] faces;
+        private final int[] smoothingGroups;
+        private final int triangleCount;
+        private final int pointCount;
+
+        private final double[] quadrics;
+        private final boolean[] removedTriangles;
+        private final boolean[] removedPoints;
+        private final int[] versions;
+
+        // The triangles around every point. Lists of collapsed points are appended to the point they collapse into.
+        private final int[][] pointTriangles;
+        private final int[] pointTriangleCounts;
+
+        // Marks the neighbors of a point that were already visited, by the stamp of the visit.
+        private final int[] marks;
+        private int stamp;
+
+        private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+
+        // Reused by the flip test.
+        private final double[] normalBefore = new double[3];
+        private final double[] normalAfter = new double[3];
+
+        Simplification(FbxMeshData meshData) {
+
+            points = meshData.getVertices();
+            texCoords = meshData.getTexCoords();
+            faces = meshData.getFaces().clone();
+            smoothingGroups = meshData.getSmoothingGroups();
+            triangleCount = faces.length / FACE_SIZE;
+            pointCount = points.length / POINT_SIZE;
+
+            quadrics = new double[QUADRIC_SIZE * pointCount];
+            removedTriangles = new boolean[triangleCount];
+            removedPoints = new boolean[pointCount];
+            versions = new int[pointCount];
+            pointTriangles = new int[pointCount][];
+            pointTriangleCounts = new int[pointCount];
+            marks = new int[pointCount];
+        }
+
+        FbxMeshData run(int targetTriangleCount) {
+
+            int liveTriangleCount = triangleCount - buildAdjacency();
+            addTrianglePlanes();
+            addEdges();
+
+            while (liveTriangleCount > targetTriangleCount && !queue.isEmpty()) {
+
+                Collapse collapse = queue.poll();
+
+                if (!isValid(collapse) || flips(collapse.from, collapse.to)) {
+                    continue;
+                }
+                liveTriangleCount -= collapse(collapse.from, collapse.to);
+            }
+
+            return compact(liveTriangleCount);
+        }
+
+        /**
+         * Builds the lists of triangles around every point.
+         *
+         * @return the number of triangles that were degenerate from the start
+         */
+        private int buildAdjacency() {
+
+            int degenerateCount = 0;
+
+            for (int t = 0; t < triangleCount; t++) {
+                for (int c = 0; c < 3; c++) {
+                    pointTriangleCounts[faces[FACE_SIZE * t + 2 * c]]++;
+                }
+            }
+            for (int p = 0; p < pointCount; p++) {
+                pointTriangles[p] = new int[pointTriangleCounts[p]];
+                pointTriangleCounts[p] = 0;
+            }
+            for (int t = 0; t < triangleCount; t++) {
+
+                int p0 = faces[FACE_SIZE * t];
+                int p1 = faces[FACE_SIZE * t + 2];
+                int p2 = faces[FACE_SIZE * t + 4];
+
+                // Triangles that are already degenerate are dropped right away.
+                if (p0 == p1 || p1 == p2 || p2 == p0) {
+                    removedTriangles[t] = true;
+                    degenerateCount++;
+                }
+                for (int c = 0; c < 3; c++) {
+                    int p = faces[FACE_SIZE * t + 2 * c];
+                    pointTriangles[p][pointTriangleCounts[p]++] = t;
+                }
+            }
+            return degenerateCount;
+        }
+
+        private void addTrianglePlanes() {
+
+            double[] normal = new double[3];
+
+            for (int t = 0; t < triangleCount; t++) {
+
+                if (removedTriangles[t]) {
+                    continue;
+                }
+
+                int p0 = faces[FACE_SIZE * t];
+                double area = getNormal(p0, faces[FACE_SIZE * t + 2], faces[FACE_SIZE * t + 4], normal);
+                if (area == 0) {
+                    continue;
+                }
+
+                for (int c = 0; c < 3; c++) {
+                    addPlane(faces[FACE_SIZE * t + 2 * c], normal, p0, area);
+                }
+            }
+        }
+
+        /**
+         * Finds all edges, adds planes to keep the border edges in place and queues a collapse for every edge.
+         */
+        private void addEdges() {
+
+            long[] edges = new long[3 * triangleCount];
+            int edgeCount = 0;
+
+            for (int t = 0; t < triangleCount; t++) {
+                if (!removedTriangles[t]) {
+                    for (int c = 0; c < 3; c++) {
+                        int a = faces[FACE_SIZE * t + 2 * c];
+                        int b = faces[FACE_SIZE * t + 2 * ((c + 1) % 3)];
+                        edges[edgeCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                    }
+                }
+            }
+            Arrays.sort(edges, 0, edgeCount);
+
+            for (int i = 0; i < edgeCount;) {
+
+                int j = i + 1;
+                while (j < edgeCount && edges[j] == edges[i]) {
+                    j++;
+                }
+
+                int a = (int) (edges[i] >>> 32);
+                int b = (int) edges[i];
+
+                // An edge with a single triangle is on an open border.
+                if (j - i == 1) {
+                    addBorderPlane(a, b);
+                }
+                i = j;
+            }
+
+            for (int i = 0; i < edgeCount; i++) {
+                if (i == 0 || edges[i] != edges[i - 1]) {
+                    queue.add(createCollapse((int) (edges[i] >>> 32), (int) edges[i]));
+                }
+            }
+        }
+
+        private void addBorderPlane(int a, int b) {
+
+            int t = findTriangle(a, b);
+            if (t < 0) {
+                return;
+            }
+
+            double[] normal = new double[3];
+            if (getNormal(faces[FACE_SIZE * t], faces[FACE_SIZE * t + 2], faces[FACE_SIZE * t + 4], normal) == 0) {
+                return;
+            }
+
+            double ex = points[POINT_SIZE * b] - points[POINT_SIZE * a];
+            double ey = points[POINT_SIZE * b + 1] - points[POINT_SIZE * a + 1];
+            double ez = points[POINT_SIZE * b + 2] - points[POINT_SIZE * a + 2];
+
+            // The plane contains the edge and is perpendicular to the triangle.
+            double[] borderNormal = { ey * normal[2] - ez * normal[1], ez * normal[0] - ex * normal[2],
+                    ex * normal[1] - ey * normal[0] };
+            double length = Math.sqrt(borderNormal[0] * borderNormal[0] + borderNormal[1] * borderNormal[1]
+                    + borderNormal[2] * borderNormal[2]);
+            if (length == 0) {
+                return;
+            }
+            for (int i = 0; i < 3; i++) {
+                borderNormal[i] /= length;
+            }
+
+            double weight = BORDER_WEIGHT * (ex * ex + ey * ey + ez * ez);
+            addPlane(a, borderNormal, a, weight);
+            addPlane(b, borderNormal, a, weight);
+        }
+
+        private int findTriangle(int a, int b) {
+
+            for (int i = 0; i < pointTriangleCounts[a]; i++) {
+                int t = pointTriangles[a][i];
+                if (!removedTriangles[t] && contains(t, b)) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+
+        private Collapse createCollapse(int a, int b) {
+
+            double costAtA = getError(a, b, a);
+            double costAtB = getError(a, b, b);
+
+            if (costAtB <= costAtA) {
+                return new Collapse(a, b, costAtB, versions[a], versions[b]);
+            } else {
+                return new Collapse(b, a, costAtA, versions[b], versions[a]);
+            }
+        }
+
+        private boolean isValid(Collapse collapse) {
+            return !removedPoints[collapse.from] && !removedPoints[collapse.to]
+                    && versions[collapse.from] == collapse.fromVersion && versions[collapse.to] == collapse.toVersion;
+        }
+
+        /**
+         * Checks whether moving a point onto another one would turn any of its triangles upside down.
+         */
+        private boolean flips(int from, int to) {
+
+            for (int i = 0; i < pointTriangleCounts[from]; i++) {
+
+                int t = pointTriangles[from][i];
+                if (removedTriangles[t] || contains(t, to)) {
+                    continue;
+                }
+
+                int p0 = faces[FACE_SIZE * t];
+                int p1 = faces[FACE_SIZE * t + 2];
+                int p2 = faces[FACE_SIZE * t + 4];
+
+                double[] before = normalBefore;
+                double[] after = normalAfter;
+                getNormal(p0, p1, p2, before);
+                getNormal(p0 == from ? to : p0, p1 == from ? to : p1, p2 == from ? to : p2, after);
+
+                if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Collapses a point into another one.
+         *
+         * @return the number of triangles that were removed
+         */
+        private int collapse(int from, int to) {
+
+            int removedCount = 0;
+
+            for (int i = 0; i < pointTriangleCounts[from]; i++) {
+
+                int t = pointTriangles[from][i];
+                if (removedTriangles[t]) {
+                    continue;
+                }
+
+                if (contains(t, to)) {
+                    removedTriangles[t] = true;
+                    removedCount++;
+                } else {
+                    for (int c = 0; c < 3; c++) {
+                        if (faces[FACE_SIZE * t + 2 * c] == from) {
+                            faces[FACE_SIZE * t + 2 * c] = to;
+                        }
+                    }
+                    addTriangle(to, t);
+                }
+            }
+
+            for (int i = 0; i < QUADRIC_SIZE; i++) {
+                quadrics[QUADRIC_SIZE * to + i] += quadrics[QUADRIC_SIZE * from + i];
+            }
+            removedPoints[from] = true;
+            pointTriangles[from] = null;
+            pointTriangleCounts[from] = 0;
+            versions[to]++;
+
+            queueNeighbors(to);
+            return removedCount;
+        }
+
+        private void addTriangle(int p, int t) {
+
+            if (pointTriangleCounts[p] == pointTriangles[p].length) {
+                removeDeadTriangles(p);
+                if (pointTriangleCounts[p] == pointTriangles[p].length) {
+                    pointTriangles[p] = Arrays.copyOf(pointTriangles[p], 2 * pointTriangles[p].length + 1);
+                }
+            }
+            pointTriangles[p][pointTriangleCounts[p]++] = t;
+        }
+
+        private void removeDeadTriangles(int p) {
+
+            int count = 0;
+            for (int i = 0; i < pointTriangleCounts[p]; i++) {
+                int t = pointTriangles[p][i];
+                if (!removedTriangles[t]) {
+                    pointTriangles[p][count++] = t;
+                }
+            }
+            pointTriangleCounts[p] = count;
+        }
+
+        /**
+         * Queues new collapses for all edges around a point whose quadric has changed.
+         */
+        private void queueNeighbors(int p) {
+
+            stamp++;
+            marks[p] = stamp;
+
+            for (int i = 0; i < pointTriangleCounts[p]; i++) {
+
+                int t = pointTriangles[p][i];
+                if (removedTriangles[t]) {
+                    continue;
+                }
+
+                for (int c = 0; c < 3; c++) {
+                    int neighbor = faces[FACE_SIZE * t + 2 * c];
+                    if (marks[neighbor] != stamp) {
+                        marks[neighbor] = stamp;
+                        queue.add(createCollapse(p, neighbor));
+                    }
+                }
+            }
+        }
+
+        private FbxMeshData compact(int liveTriangleCount) {
+
+            int[] newFaces = new int[FACE_SIZE * liveTriangleCount];
+            int[] newSmoothingGroups = smoothingGroups != null ? new int[liveTriangleCount] : null;
+            int count = 0;
+
+            for (int t = 0; t < triangleCount; t++) {
+                if (!removedTriangles[t]) {
+                    System.arraycopy(faces, FACE_SIZE * t, newFaces, FACE_SIZE * count, FACE_SIZE);
+                    if (newSmoothingGroups != null && t < smoothingGroups.length) {
+                        newSmoothingGroups[count] = smoothingGroups[t];
+                    }
+                    count++;
+                }
+            }
+            return FbxMeshOptimizer.compact(points, texCoords, newFaces, newSmoothingGroups, count);
+        }
+
+        private boolean contains(int t, int p) {
+            return faces[FACE_SIZE * t] == p || faces[FACE_SIZE * t + 2] == p || faces[FACE_SIZE * t + 4] == p;
+        }
+
+        /**
+         * Computes the unit normal of a triangle.
+         *
+         * @return twice the area of the triangle, 0 if it is degenerate and the normal is undefined
+         */
+        private double getNormal(int p0, int p1, int p2, double[] normal) {
+
+            double ax = points[POINT_SIZE * p1] - points[POINT_SIZE * p0];
+            double ay = points[POINT_SIZE * p1 + 1] - points[POINT_SIZE * p0 + 1];
+            double az = points[POINT_SIZE * p1 + 2] - points[POINT_SIZE * p0 + 2];
+            double bx = points[POINT_SIZE * p2] - points[POINT_SIZE * p0];
+            double by = points[POINT_SIZE * p2 + 1] - points[POINT_SIZE * p0 + 1];
+            double bz = points[POINT_SIZE * p2 + 2] - points[POINT_SIZE * p0 + 2];
+
+            normal[0] = ay * bz - az * by;
+            normal[1] = az * bx - ax * bz;
+            normal[2] = ax * by - ay * bx;
+
+            double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+            if (length > 0) {
+                normal[0] /= length;
+                normal[1] /= length;
+                normal[2] /= length;
+            }
+            return length;
+        }
+
+        /**
+         * Adds the quadric of a plane to a point.
+         *
+         * @param p the point
+         * @param normal the unit normal of the plane
+         * @param onPlane a point on the plane
+         * @param weight the weight of the plane
+         */
+        private void addPlane(int p, double[] normal, int onPlane, double weight) {
+
+            double a = normal[0];
+            double b = normal[1];
+            double c = normal[2];
+            double d = -(a * points[POINT_SIZE * onPlane] + b * points[POINT_SIZE * onPlane + 1] + c
+                    * points[POINT_SIZE * onPlane + 2]);
+
+            int q = QUADRIC_SIZE * p;
+            quadrics[q] += weight * a * a;
+            quadrics[q + 1] += weight * a * b;
+            quadrics[q + 2] += weight * a * c;
+            quadrics[q + 3] += weight * a * d;
+            quadrics[q + 4] += weight * b * b;
+            quadrics[q + 5] += weight * b * c;
+            quadrics[q + 6] += weight * b * d;
+            quadrics[q + 7] += weight * c * c;
+            quadrics[q + 8] += weight * c * d;
+            quadrics[q + 9] += weight * d * d;
+        }
+
+        /**
+         * Evaluates the sum of the quadrics of two points at a position.
+         */
+        private double getError(int first, int second, int at) {
+
+            double x = points[POINT_SIZE * at];
+            double y = points[POINT_SIZE * at + 1];
+            double z = points[POINT_SIZE * at + 2];
+
+            int q1 = QUADRIC_SIZE * first;
+            int q2 = QUADRIC_SIZE * second;
+            double[] q = quadrics;
+
+            return (q[q1] + q[q2]) * x * x + 2 * (q[q1 + 1] + q[q2 + 1]) * x * y + 2 * (q[q1 + 2] + q[q2 + 2]) * x * z
+                    + 2 * (q[q1 + 3] + q[q2 + 3]) * x + (q[q1 + 4] + q[q2 + 4]) * y * y + 2 * (q[q1 + 5] + q[q2 + 5])
+                    * y * z + 2 * (q[q1 + 6] + q[q2 + 6]) * y + (q[q1 + 7] + q[q2 + 7]) * z * z + 2
+                    * (q[q1 + 8] + q[q2 + 8]) * z + q[q1 + 9] + q[q2 + 9];
+        }
+    }
+
+    /**
+     * A queued edge collapse. It is outdated if either point has changed since it was queued.
+     */
+    private static class Collapse implements Comparable<Collapse> {
+
+        private final int from;
+        private final int to;
+        private final double cost;
+        private final int fromVersion;
+        private final int toVersion;
+
+        Collapse(int from, int to, double cost, int fromVersion, int toVersion) {
+            this.from = from;
+            this.to = to;
+            this.cost = cost;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+}
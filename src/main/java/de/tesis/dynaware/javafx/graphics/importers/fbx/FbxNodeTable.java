@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The nodes of an FBX graph in packed arrays, in the traversal order of the graph.
+ *
+ * <p>
+ * The table is read in a single call by {@link FbxLib#getNodeTable()}, so the graph can be traversed without further
+ * calls into the library. Node and material names are only decoded when they are requested, and attribute types are
+ * shared constants.
+ * </p>
+ *
+ * <p>
+ * The packed form written by <tt>jfbxlib</tt> has a header of four ints: the node count, the attribute count, the
+ * string byte count and a padding int. It is followed by the global transforms (16 doubles per node), the geometric
+ * translations (3 doubles per node), the attribute ids (longs), the parent indices, the string offsets (ints, the name
+ * and first material name of every node followed by the end offset), the material counts, the attribute offsets (ints,
+ * one per node followed by the end offset), the attribute type codes (ints) and the UTF-8 bytes of all strings, all in
+ * native byte order.
+ * </p>
+ */
+public final class FbxNodeTable {
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    // The attribute types, indexed by their codes in the packed form.
+    private static final String[] ATTRIBUTE_TYPES = { "unknown", "null", "marker", "skeleton", "mesh", "nurbs", "patch",
+            "camera", "stereo", "camera switcher", "light", "optical reference", "nurbs curve", "trim nurbs surface",
+            "boundary", "nurbs surface", "shape", "lodgroup", "subdiv" };
+
+    private static final int TRANSFORM_SIZE = 16;
+    private static final int TRANSLATION_SIZE = 3;
+
+    private final int[] parents;
+    private final int[] stringOffsets;
+    private final byte[] strings;
+    private final int[] materialCounts;
+    private final int[] attributeOffsets;
+    private final int[] attributeTypes;
+    private final long[] attributeIds;
+    private final double[] transforms;
+    private final double[] translations;
+
+    private FbxNodeTable(int[] parents, int[] stringOffsets, byte[] strings, int[] materialCounts,
+            int[] attributeOffsets, int[] attributeTypes, long[] attributeIds, double[] transforms,
+            double[] translations) {
+        this.parents = parents;
+        this.stringOffsets = stringOffsets;
+        this.strings = strings;
+        this.materialCounts = materialCounts;
+        this.attributeOffsets = attributeOffsets;
+        this.attributeTypes = attributeTypes;
+        this.attributeIds = attributeIds;
+        this.transforms = transforms;
+        this.translations = translations;
+    }
+
+    /**
+     * Decodes a node table from its packed form.
+     *
+     * @param buffer a buffer holding the packed table, starting at position 0
+     * @return the node table
+     */
+    static FbxNodeTable decode(ByteBuffer buffer) {
+
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.nativeOrder());
+        source.clear();
+
+        int nodeCount = source.getInt();
+        int attributeCount = source.getInt();
+        int stringByteCount = source.getInt();
+        source.getInt();
+
+        double[] transforms = new double[TRANSFORM_SIZE * nodeCount];
+        double[] translations = new double[TRANSLATION_SIZE * nodeCount];
+        long[] attributeIds = new long[attributeCount];
+        int[] parents = new int[nodeCount];
+        int[] stringOffsets = new int[2 * nodeCount + 1];
+        int[] materialCounts = new int[nodeCount];
+        int[] attributeOffsets = new int[nodeCount + 1];
+        int[] attributeTypes = new int[attributeCount];
+        byte[] strings = new byte[stringByteCount];
+
+        source.asDoubleBuffer().get(transforms);
+        source.position(source.position() + 8 * transforms.length);
+        source.asDoubleBuffer().get(translations);
+        source.position(source.position() + 8 * translations.length);
+        source.asLongBuffer().get(attributeIds);
+        source.position(source.position() + 8 * attributeIds.length);
+
+        for (int[] array : new int[][] { parents, stringOffsets, materialCounts, attributeOffsets, attributeTypes }) {
+            source.asIntBuffer().get(array);
+            source.position(source.position() + 4 * array.length);
+        }
+        source.get(strings);
+
+        return new FbxNodeTable(parents, stringOffsets, strings, materialCounts, attributeOffsets, attributeTypes,
+                attributeIds, transforms, translations);
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return the number of nodes, including the root node
+     */
+    public int getNodeCount() {
+        return parents.length;
+    }
+
+    /**
+     * Gets the parent of a node.
+     *
+     * @param node the index of a node
+     * @return the index of the parent node, or -1 for the root node
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * Gets the name of a node.
+     *
+     * @param node the index of a node
+     * @return the name of the node
+     */
+    public String getName(int node) {
+        return getString(2 * node);
+    }
+
+    /**
+     * Gets the global affine transformation of a node, see {@link FbxLib#getNodeGlobalAffineTransformation()}.
+     *
+     * @param node the index of a node
+     * @return a new array of 16 values in column order
+     */
+    public double[] getGlobalTransform(int node) {
+        return Arrays.copyOfRange(transforms, TRANSFORM_SIZE * node, TRANSFORM_SIZE * (node + 1));
+    }
+
+    /**
+     * Gets the geometric translation of a node, see {@link FbxLib#getNodeGeometricTranslation()}.
+     *
+     * @param node the index of a node
+     * @return a new array of 3 values
+     */
+    public double[] getGeometricTranslation(int node) {
+        return Arrays.copyOfRange(translations, TRANSLATION_SIZE * node, TRANSLATION_SIZE * (node + 1));
+    }
+
+    /**
+     * Gets the number of attributes of a node.
+     *
+     * @param node the index of a node
+     * @return the number of attributes
+     */
+    public int getAttributeCount(int node) {
+        return attributeOffsets[node + 1] - attributeOffsets[node];
+    }
+
+    /**
+     * Gets the type of an attribute of a node, see {@link FbxLib#getNodeAttributeType(int)}.
+     *
+     * @param node the index of a node
+     * @param i the index of the attribute
+     * @return the type of the attribute
+     */
+    public String getAttributeType(int node, int i) {
+
+        int code = attributeTypes[attributeOffsets[node] + i];
+        return code >= 0 && code < ATTRIBUTE_TYPES.length ? ATTRIBUTE_TYPES[code] : ATTRIBUTE_TYPES[0];
+    }
+
+    /**
+     * Gets the unique id of an attribute of a node, see {@link FbxLib#getNodeAttributeId(int)}.
+     *
+     * @param node the index of a node
+     * @param i the index of the attribute
+     * @return the unique id of the attribute
+     */
+    public long getAttributeId(int node, int i) {
+        return attributeIds[attributeOffsets[node] + i];
+    }
+
+    /**
+     * Gets the number of materials of a node.
+     *
+     * @param node the index of a node
+     * @return the number of materials
+     */
+    public int getMaterialCount(int node) {
+        return materialCounts[node];
+    }
+
+    /**
+     * Gets the name of the first material of a node.
+     *
+     * @param node the index of a node
+     * @return the name of the first material, or <tt>null</tt> if the node has no materials
+     */
+    public String getMaterialName(int node) {
+        return materialCounts[node] > 0 ? getString(2 * node + 1) : null;
+    }
+
+    private String getString(int index) {
+
+        int offset = stringOffsets[index];
+        return new String(strings, offset, stringOffsets[index + 1] - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a node table from the queries of a {@link FbxLib}, for libraries that cannot provide it in one call.
+     */
+    static final class Builder {
+
+        private final List<String> strings = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+        private final List<Integer> materialCounts = new ArrayList<>();
+        private final List<Integer> attributeOffsets = new ArrayList<>();
+        private final List<Integer> attributeTypes = new ArrayList<>();
+        private final List<Long> attributeIds = new ArrayList<>();
+        private final List<double[]> transforms = new ArrayList<>();
+        private final List<double[]> translations = new ArrayList<>();
+
+        /**
+         * Adds the current node of a library.
+         *
+         * @param fbxLib the library, positioned on the node
+         * @param parent the index of the parent node, or -1 for the root node
+         * @return the index of the new node
+         */
+        int add(FbxLib fbxLib, int parent) {
+
+            int materialCount = fbxLib.getMaterialCount();
+
+            strings.add(fbxLib.getNodeName());
+            strings.add(materialCount > 0 ? fbxLib.getMaterialName(0) : "");
+            parents.add(parent);
+            materialCounts.add(materialCount);
+            attributeOffsets.add(attributeTypes.size());
+
+            for (int i = 0; i < fbxLib.getNodeAttributeCount(); i++) {
+                attributeTypes.add(getAttributeTypeCode(fbxLib.getNodeAttributeType(i)));
+                attributeIds.add(fbxLib.getNodeAttributeId(i));
+            }
+
+            double[] transform = fbxLib.getNodeGlobalAffineTransformation();
+            transforms.add(transform != null ? transform : FbxMatrices.identity());
+            translations.add(fbxLib.getNodeGeometricTranslation());
+
+            return parents.size() - 1;
+        }
+
+        /**
+         * Builds the table of all nodes that were added.
+         *
+         * @return the node table
+         */
+        FbxNodeTable build() {
+
+            int nodeCount = parents.size();
+
+            byte[][] stringBytes = new byte[strings.size()][];
+            int[] stringOffsets = new int[strings.size() + 1];
+            for (int i = 0; i < stringBytes.length; i++) {
+                stringBytes[i] = strings.get(i) != null ? strings.get(i).getBytes(StandardCharsets.UTF_8) : new byte[0];
+                stringOffsets[i + 1] = stringOffsets[i] + stringBytes[i].length;
+            }
+
+            byte[] packedStrings = new byte[stringOffsets[stringBytes.length]];
+            for (int i = 0; i < stringBytes.length; i++) {
+                System.arraycopy(stringBytes[i], 0, packedStrings, stringOffsets[i], stringBytes[i].length);
+            }
+
+            int[] packedAttributeOffsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                packedAttributeOffsets[node] = attributeOffsets.get(node);
+            }
+            packedAttributeOffsets[nodeCount] = attributeTypes.size();
+
+            double[] packedTransforms = new double[TRANSFORM_SIZE * nodeCount];
+            double[] packedTranslations = new double[TRANSLATION_SIZE * nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                copy(transforms.get(node), packedTransforms, TRANSFORM_SIZE * node, TRANSFORM_SIZE);
+                copy(translations.get(node), packedTranslations, TRANSLATION_SIZE * node, TRANSLATION_SIZE);
+            }
+
+            long[] packedAttributeIds = new long[attributeIds.size()];
+            for (int i = 0; i < packedAttributeIds.length; i++) {
+                packedAttributeIds[i] = attributeIds.get(i);
+            }
+
+            return new FbxNodeTable(toArray(parents), stringOffsets, packedStrings, toArray(materialCounts),
+                    packedAttributeOffsets, toArray(attributeTypes), packedAttributeIds, packedTransforms,
+                    packedTranslations);
+        }
+
+        private static int getAttributeTypeCode(String type) {
+            return Math.max(0, Arrays.asList(ATTRIBUTE_TYPES).indexOf(type));
+        }
+
+        private static void copy(double[] source, double[] target, int offset, int length) {
+            if (source != null) {
+                System.arraycopy(source, 0, target, offset, Math.min(source.length, length));
+            }
+        }
+
+        private static int[] toArray(List<Integer> list) {
+
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+}
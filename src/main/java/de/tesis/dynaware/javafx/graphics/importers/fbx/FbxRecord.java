@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node record of a binary FBX file, consisting of a name, a list of properties and a list of nested records.
+ *
+ * <p>
+ * Scalar and string properties are decoded when the file is read. Array and raw properties are kept as
+ * {@link FbxArrayProperty} references into the mapped file and are only decoded when requested.
+ * </p>
+ */
+final class FbxRecord {
+
+    private final String name;
+    private final Object[] properties;
+    private List<FbxRecord> children = Collections.emptyList();
+
+    /**
+     * Creates a new record.
+     *
+     * @param name the name of the record
+     * @param properties the properties of the record
+     */
+    FbxRecord(String name, Object[] properties) {
+        this.name = name;
+        this.properties = properties;
+    }
+
+    /**
+     * Gets the name of the record.
+     *
+     * @return the record name, e.g. <tt>Geometry</tt>
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of properties of the record.
+     *
+     * @return the number of properties
+     */
+    int getPropertyCount() {
+        return properties.length;
+    }
+
+    /**
+     * Gets a property of the record.
+     *
+     * @param i the index of the property
+     * @return the i'th property, or <tt>null</tt> if the index is out of range
+     */
+    Object getProperty(int i) {
+        return i < properties.length ? properties[i] : null;
+    }
+
+    /**
+     * Gets a string property of the record.
+     *
+     * @param i the index of the property
+     * @return the i'th property as a string, or <tt>null</tt> if it is not a string
+     */
+    String getString(int i) {
+        Object property = getProperty(i);
+        return property instanceof String ? (String) property : null;
+    }
+
+    /**
+     * Gets a numeric property of the record as a long.
+     *
+     * @param i the index of the property
+     * @param defaultValue the value returned if the property is not numeric
+     * @return the i'th property as a long
+     */
+    long getLong(int i, long defaultValue) {
+        Object property = getProperty(i);
+        return property instanceof Number ? ((Number) property).longValue() : defaultValue;
+    }
+
+    /**
+     * Gets a numeric property of the record as a double.
+     *
+     * @param i the index of the property
+     * @param defaultValue the value returned if the property is not numeric
+     * @return the i'th property as a double
+     */
+    double getDouble(int i, double defaultValue) {
+        Object property = getProperty(i);
+        return property instanceof Number ? ((Number) property).doubleValue() : defaultValue;
+    }
+
+    /**
+     * Gets an array property of the record.
+     *
+     * @param i the index of the property
+     * @return the i'th property as an array, or <tt>null</tt> if it is not an array
+     */
+    FbxArrayProperty getArray(int i) {
+        Object property = getProperty(i);
+        return property instanceof FbxArrayProperty ? (FbxArrayProperty) property : null;
+    }
+
+    /**
+     * Gets the nested records.
+     *
+     * @return the list of nested records
+     */
+    List<FbxRecord> getChildren() {
+        return children;
+    }
+
+    /**
+     * Adds a nested record.
+     *
+     * @param child the record to add
+     */
+    void addChild(FbxRecord child) {
+        if (children.isEmpty()) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    /**
+     * Gets the first nested record with the given name.
+     *
+     * @param childName the name of the nested record
+     * @return the first matching record, or <tt>null</tt> if none exists
+     */
+    FbxRecord getChild(String childName) {
+        for (FbxRecord child : children) {
+            if (child.name.equals(childName)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the first property of the first nested record with the given name as an array.
+     *
+     * @param childName the name of the nested record
+     * @return the array, or <tt>null</tt> if no such record or array exists
+     */
+    FbxArrayProperty getChildArray(String childName) {
+        FbxRecord child = getChild(childName);
+        return child != null ? child.getArray(0) : null;
+    }
+
+    /**
+     * Gets the first property of the first nested record with the given name as a string.
+     *
+     * @param childName the name of the nested record
+     * @return the string, or <tt>null</tt> if no such record or string exists
+     */
+    String getChildString(String childName) {
+        FbxRecord child = getChild(childName);
+        return child != null ? child.getString(0) : null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
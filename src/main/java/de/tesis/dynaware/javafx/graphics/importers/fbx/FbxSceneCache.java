@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent cache for the converted content of FBX files.
+ *
+ * <p>
+ * An entry stores the flattened meshes, shared geometries, material parameters, texture paths and global transforms that
+ * {@link FbxImporter} extracts from a file, so that a second import of the same file does not need to run the FBX
+ * reader again. Entries are keyed by a hash of the file content, the format version of the cache and the reader that
+ * produced them, including its settings. Moving or renaming a file does not invalidate its entry, while changing its
+ * content does.
+ * </p>
+ *
+ * <p>
+ * The total size of all entries is limited. When a new entry would exceed the limit, the least recently used entries
+ * are deleted. The same cache directory can be shared by several importers, also across processes.
+ * </p>
+ */
+public class FbxSceneCache {
+
+    /**
+     * The version of the cache format. Must be increased whenever the layout or the content of an entry changes.
+     */
+    public static final int FORMAT_VERSION = 3;
+
+    private static final String ENTRY_EXTENSION = ".fbxc";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int MAGIC = 0x46425843; // "FBXC"
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    // Loads of different entries run concurrently, they only lock the stripe of their key.
+    private static final int ENTRY_LOCK_COUNT = 16;
+
+    private final File directory;
+    private final long maxSize;
+    private final Object[] entryLocks = new Object[ENTRY_LOCK_COUNT];
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory the directory that the entries are stored in, created if it does not exist
+     * @param maxSize the maximum total size of all entries in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public FbxSceneCache(File directory, long maxSize) throws IOException {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative [" + maxSize + "]");
+        }
+
+        Files.createDirectories(directory.toPath());
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        for (int i = 0; i < entryLocks.length; i++) {
+            entryLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Gets the directory that the entries are stored in.
+     *
+     * @return the cache directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the maximum total size of all entries.
+     *
+     * @return the size limit in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the current total size of all entries.
+     *
+     * @return the size of the cache in bytes
+     */
+    public synchronized long getSize() {
+
+        long size = 0;
+        for (File entry : listEntries()) {
+            size += entry.length();
+        }
+        return size;
+    }
+
+    /**
+     * Removes all entries for the given file, for every reader and format version.
+     *
+     * @param filePath the path of an FBX file
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void invalidate(String filePath) throws IOException {
+
+        String prefix = hashContent(filePath) + "-";
+
+        for (File entry : listEntries()) {
+            if (entry.getName().startsWith(prefix)) {
+                delete(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+
+        for (File entry : listEntries()) {
+            delete(entry);
+        }
+    }
+
+    /**
+     * Gets the key of the entry for a file.
+     *
+     * @param filePath the path of an FBX file
+     * @param fbxLib the library that reads the file on a cache miss
+     * @return the key of the entry
+     * @throws IOException if the file cannot be read
+     */
+    String getKey(String filePath, FbxLib fbxLib) throws IOException {
+
+        String configuration = fbxLib.getConfiguration();
+        String key = hashContent(filePath) + "-v" + FORMAT_VERSION + "-" + fbxLib.getClass().getSimpleName();
+
+        return configuration.isEmpty() ? key : key + "-" + configuration;
+    }
+
+    /**
+     * Loads an entry into the given lists.
+     *
+     * <p>
+     * The entry is memory-mapped and its arrays are copied in bulk into the arrays of the mesh data, which the meshes
+     * are then created from. An entry that cannot be decoded is removed and treated as missing. Only loads and stores
+     * of the same entry wait for each other, entries are replaced atomically and stay readable while they are mapped.
+     * </p>
+     *
+     * @param key the key of the entry
+     * @param materials the list that the materials are added to
+     * @param geometries the list that the geometries are added to
+     * @param meshParts the list that the meshes are added to
+     * @return <tt>true</tt> if the entry was found, <tt>false</tt> if the lists were not changed
+     */
+    boolean load(String key, List<FbxMaterialData> materials, List<FbxMeshData> geometries,
+            List<FbxMeshPart> meshParts) {
+
+        synchronized (getEntryLock(key)) {
+            return loadEntry(key, materials, geometries, meshParts);
+        }
+    }
+
+    /**
+     * Loads an entry while holding the lock of its key.
+     */
+    private boolean loadEntry(String key, List<FbxMaterialData> materials, List<FbxMeshData> geometries,
+            List<FbxMeshPart> meshParts) {
+
+        File entry = getEntry(key);
+        if (!entry.isFile()) {
+            return false;
+        }
+
+        List<FbxMaterialData> loadedMaterials = new ArrayList<>();
+        List<FbxMeshData> loadedGeometries = new ArrayList<>();
+        List<FbxMeshPart> loadedMeshParts = new ArrayList<>();
+
+        try (RandomAccessFile file = new RandomAccessFile(entry, "r")) {
+
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Invalid cache entry [" + entry + "]");
+            }
+
+            int materialCount = buffer.getInt();
+            int geometryCount = buffer.getInt();
+            int meshCount = buffer.getInt();
+
+            for (int i = 0; i < materialCount; i++) {
+                loadedMaterials.add(readMaterial(buffer));
+            }
+            for (int i = 0; i < geometryCount; i++) {
+                loadedGeometries.add(readGeometry(buffer));
+            }
+            for (int i = 0; i < meshCount; i++) {
+                loadedMeshParts.add(readMeshPart(buffer, materialCount, geometryCount));
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            delete(entry);
+            return false;
+        }
+
+        // Mark the entry as recently used.
+        entry.setLastModified(System.currentTimeMillis());
+
+        materials.addAll(loadedMaterials);
+        geometries.addAll(loadedGeometries);
+        meshParts.addAll(loadedMeshParts);
+        return true;
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used entries if the size limit would be exceeded.
+     *
+     * <p>
+     * The entry is first written to a temporary file and then moved into place, so concurrent readers never see a
+     * partially written entry.
+     * </p>
+     *
+     * @param key the key of the entry
+     * @param materials the materials of the file
+     * @param geometries the geometries of the file
+     * @param meshParts the meshes of the file
+     * @throws IOException if the entry cannot be written
+     */
+    void store(String key, List<FbxMaterialData> materials, List<FbxMeshData> geometries,
+            List<FbxMeshPart> meshParts) throws IOException {
+
+        File temp = File.createTempFile(key, TEMP_EXTENSION, directory);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(materials.size());
+                output.writeInt(geometries.size());
+                output.writeInt(meshParts.size());
+
+                for (FbxMaterialData material : materials) {
+                    writeMaterial(output, material);
+                }
+                for (FbxMeshData geometry : geometries) {
+                    writeGeometry(output, geometry);
+                }
+                for (FbxMeshPart meshPart : meshParts) {
+                    writeMeshPart(output, meshPart);
+                }
+            }
+
+            synchronized (this) {
+
+                if (temp.length() > maxSize) {
+                    return;
+                }
+
+                evict(maxSize - temp.length());
+
+                synchronized (getEntryLock(key)) {
+                    Files.move(temp.toPath(), getEntry(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size is at most the given size.
+     *
+     * @param size the size that the cache should be reduced to
+     */
+    private void evict(long size) {
+
+        File[] entries = listEntries();
+        Arrays.sort(entries, new Comparator<File>() {
+
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        long totalSize = 0;
+        for (File entry : entries) {
+            totalSize += entry.length();
+        }
+
+        for (int i = 0; i < entries.length && totalSize > size; i++) {
+            long length = entries[i].length();
+            if (delete(entries[i])) {
+                totalSize -= length;
+            }
+        }
+    }
+
+    private Object getEntryLock(String key) {
+        return entryLocks[(key.hashCode() & Integer.MAX_VALUE) % ENTRY_LOCK_COUNT];
+    }
+
+    private File getEntry(String key) {
+        return new File(directory, key + ENTRY_EXTENSION);
+    }
+
+    private File[] listEntries() {
+
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return new File[0];
+        }
+
+        List<File> result = new ArrayList<>();
+        for (File entry : entries) {
+            if (entry.isFile() && entry.getName().endsWith(ENTRY_EXTENSION)) {
+                result.add(entry);
+            }
+        }
+        return result.toArray(new File[result.size()]);
+    }
+
+    /**
+     * Deletes an entry. On some platforms this fails while the entry is still mapped, it is then evicted later.
+     *
+     * @param entry the entry file
+     * @return <tt>true</tt> if the entry was deleted
+     */
+    private static boolean delete(File entry) {
+        return entry.delete() || !entry.exists();
+    }
+
+    /**
+     * Computes the hash of the content of a file.
+     *
+     * @param filePath the path of the file
+     * @return the hash as a hexadecimal string
+     * @throws IOException if the file cannot be read
+     */
+    private static String hashContent(String filePath) throws IOException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not supported", e);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    private static void writeMaterial(DataOutputStream output, FbxMaterialData material) throws IOException {
+
+        writeString(output, material.getName());
+        writeDoubles(output, material.getDiffuseColor());
+        writeDoubles(output, material.getSpecularColor());
+        output.writeDouble(material.getSpecularPower());
+        writeString(output, material.getDiffuseMap());
+        writeString(output, material.getSpecularMap());
+        writeString(output, material.getBumpMap());
+        writeString(output, material.getSelfIlluminationMap());
+    }
+
+    private static FbxMaterialData readMaterial(ByteBuffer buffer) {
+
+        String name = readString(buffer);
+        double[] diffuseColor = readDoubles(buffer);
+        double[] specularColor = readDoubles(buffer);
+        double specularPower = buffer.getDouble();
+
+        return new FbxMaterialData(name, diffuseColor, specularColor, specularPower, readString(buffer),
+                readString(buffer), readString(buffer), readString(buffer));
+    }
+
+    private static void writeGeometry(DataOutputStream output, FbxMeshData geometry) throws IOException {
+
+        writeFloats(output, geometry.getVertices());
+        writeFloats(output, geometry.getTexCoords());
+        writeInts(output, geometry.getFaces());
+        writeInts(output, geometry.getSmoothingGroups());
+    }
+
+    private static FbxMeshData readGeometry(ByteBuffer buffer) {
+        return new FbxMeshData(readFloats(buffer), readFloats(buffer), readInts(buffer), readInts(buffer));
+    }
+
+    private static void writeMeshPart(DataOutputStream output, FbxMeshPart meshPart) throws IOException {
+
+        writeString(output, meshPart.getNodeName());
+        output.writeInt(meshPart.getGeometryIndex());
+        output.writeInt(meshPart.getMaterialIndex());
+        writeDoubles(output, meshPart.getGlobalTransform());
+        writeDoubles(output, meshPart.getGeometricTranslation());
+    }
+
+    private static FbxMeshPart readMeshPart(ByteBuffer buffer, int materialCount, int geometryCount) {
+
+        String nodeName = readString(buffer);
+        int geometryIndex = buffer.getInt();
+        int materialIndex = buffer.getInt();
+        double[] globalTransform = readDoubles(buffer);
+        double[] geometricTranslation = readDoubles(buffer);
+
+        if (geometryIndex < 0 || geometryIndex >= geometryCount) {
+            throw new IllegalArgumentException("Invalid geometry index [" + geometryIndex + "]");
+        }
+        if (materialIndex >= materialCount) {
+            throw new IllegalArgumentException("Invalid material index [" + materialIndex + "]");
+        }
+
+        return new FbxMeshPart(nodeName, geometryIndex, materialIndex, globalTransform, geometricTranslation);
+    }
+
+    // Strings and arrays are stored with their length, where -1 stands for null.
+
+    private static int readLength(ByteBuffer buffer, int elementSize) {
+
+        int length = buffer.getInt();
+
+        // Fail before allocating if the entry is truncated or corrupt.
+        if ((long) length * elementSize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+
+        int length = readLength(buffer, 1);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDoubles(DataOutputStream output, double[] values) throws IOException {
+
+        output.writeInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (double value : values) {
+                output.writeDouble(value);
+            }
+        }
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer) {
+
+        int length = readLength(buffer, 8);
+        if (length < 0) {
+            return null;
+        }
+
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * length);
+        return values;
+    }
+
+    private static void writeFloats(DataOutputStream output, float[] values) throws IOException {
+
+        output.writeInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (float value : values) {
+                output.writeFloat(value);
+            }
+        }
+    }
+
+    private static float[] readFloats(ByteBuffer buffer) {
+
+        int length = readLength(buffer, 4);
+        if (length < 0) {
+            return null;
+        }
+
+        float[] values = new float[length];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+
+        output.writeInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (int value : values) {
+                output.writeInt(value);
+            }
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+
+        int length = readLength(buffer, 4);
+        if (length < 0) {
+            return null;
+        }
+
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+}
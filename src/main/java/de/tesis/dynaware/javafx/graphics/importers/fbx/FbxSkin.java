@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The skin of a mesh, which binds its control points to the bones of a skeleton.
+ *
+ * <p>
+ * FBX stores a skin as clusters, one per bone, each listing the control points it moves and their weights. Here the
+ * weights are inverted into struct-of-arrays form ordered by point: for every point the range of its influences, and
+ * for every influence the bone and the weight, in three primitive arrays. The weights of every point are normalized.
+ * Skinning then reads all arrays sequentially, see {@link FbxSkinning}.
+ * </p>
+ *
+ * <p>
+ * Every bone has a bind transform, which takes a point of the mesh from the coordinates of the geometry into the
+ * coordinates of the bone in the bind pose. It is <tt>TransformLink^-1 * Transform * Geometry</tt>, from the global
+ * transforms of the bone and the mesh node stored in the cluster when the skin was bound, and the geometric transform
+ * of the mesh node.
+ * </p>
+ *
+ * <p>
+ * The packed form written by <tt>jfbxlib</tt> has a header of four ints: the point count, the cluster count, the
+ * count of the cluster indices and a padding int. It is followed by the bind transforms (16 doubles per cluster in
+ * column order), the weights (doubles), the node indices of the bones (ints, one per cluster, -1 if the bone is not a
+ * node of the graph), the cluster offsets (ints, one per cluster followed by the end offset) and the point indices
+ * (ints), all in native byte order.
+ * </p>
+ */
+public final class FbxSkin {
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    private static final int TRANSFORM_SIZE = 16;
+
+    private final int pointCount;
+    private final int[] boneNodes;
+    private final double[] bindTransforms;
+
+    // The influences of point p are the range from influenceOffsets[p] to influenceOffsets[p + 1].
+    private final int[] influenceOffsets;
+    private final int[] influenceBones;
+    private final float[] influenceWeights;
+
+    // The first and end point of every run of consecutive points that have influences.
+    private final int[] pointRanges;
+
+    /**
+     * Creates a new skin from its clusters.
+     *
+     * <p>
+     * Influences with a weight that is not positive, with a point outside of the mesh or with a bone that is not a node
+     * of the graph are left out.
+     * </p>
+     *
+     * @param pointCount the number of control points of the mesh
+     * @param boneNodes the node index of the bone of every cluster in the order of {@link FbxLib#getNodeTable()}, or
+     *            -1 if the bone is not a node of the graph
+     * @param bindTransforms the bind transform of every cluster, 16 values each in column order
+     * @param clusterOffsets the offset of the first point index of every cluster, followed by the end offset
+     * @param clusterPoints the point indices of all clusters
+     * @param clusterWeights the weights of all clusters, one per point index
+     */
+    FbxSkin(int pointCount, int[] boneNodes, double[] bindTransforms, int[] clusterOffsets, int[] clusterPoints,
+            double[] clusterWeights) {
+
+        this.pointCount = pointCount;
+        this.boneNodes = boneNodes;
+        this.bindTransforms = bindTransforms;
+
+        influenceOffsets = new int[pointCount + 1];
+
+        for (int bone = 0; bone < boneNodes.length; bone++) {
+            for (int i = clusterOffsets[bone]; i < clusterOffsets[bone + 1]; i++) {
+                if (isValid(bone, clusterPoints[i], clusterWeights[i])) {
+                    influenceOffsets[clusterPoints[i] + 1]++;
+                }
+            }
+        }
+        for (int point = 0; point < pointCount; point++) {
+            influenceOffsets[point + 1] += influenceOffsets[point];
+        }
+
+        influenceBones = new int[influenceOffsets[pointCount]];
+        influenceWeights = new float[influenceOffsets[pointCount]];
+
+        int[] next = new int[pointCount];
+        System.arraycopy(influenceOffsets, 0, next, 0, pointCount);
+
+        for (int bone = 0; bone < boneNodes.length; bone++) {
+            for (int i = clusterOffsets[bone]; i < clusterOffsets[bone + 1]; i++) {
+                if (isValid(bone, clusterPoints[i], clusterWeights[i])) {
+                    int influence = next[clusterPoints[i]]++;
+                    influenceBones[influence] = bone;
+                    influenceWeights[influence] = (float) clusterWeights[i];
+                }
+            }
+        }
+
+        normalizeWeights();
+        pointRanges = findPointRanges();
+    }
+
+    /**
+     * Decodes the packed form of a skin.
+     *
+     * @param buffer a buffer holding the packed skin from index 0
+     * @return the skin
+     */
+    static FbxSkin decode(ByteBuffer buffer) {
+
+        ByteBuffer source = buffer.duplicate().order(ByteOrder.nativeOrder());
+        source.clear();
+
+        int pointCount = source.getInt();
+        int clusterCount = source.getInt();
+        int indexCount = source.getInt();
+        source.getInt();
+
+        double[] bindTransforms = new double[TRANSFORM_SIZE * clusterCount];
+        double[] weights = new double[indexCount];
+        int[] boneNodes = new int[clusterCount];
+        int[] clusterOffsets = new int[clusterCount + 1];
+        int[] points = new int[indexCount];
+
+        source.asDoubleBuffer().get(bindTransforms).get(weights);
+        source.position(source.position() + (bindTransforms.length + weights.length) * Double.BYTES);
+        source.asIntBuffer().get(boneNodes).get(clusterOffsets).get(points);
+
+        return new FbxSkin(pointCount, boneNodes, bindTransforms, clusterOffsets, points, weights);
+    }
+
+    /**
+     * Gets the number of control points of the mesh.
+     *
+     * @return the number of points
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Gets the number of bones, one per cluster of the skin.
+     *
+     * @return the number of bones
+     */
+    public int getBoneCount() {
+        return boneNodes.length;
+    }
+
+    /**
+     * Gets the node of a bone.
+     *
+     * @param bone the index of the bone
+     * @return the index of the node in the order of {@link FbxLib#getNodeTable()}, or -1 if it is not known
+     */
+    public int getBoneNode(int bone) {
+        return boneNodes[bone];
+    }
+
+    /**
+     * Gets the total number of influences of bones on points.
+     *
+     * @return the number of influences
+     */
+    public int getInfluenceCount() {
+        return influenceBones.length;
+    }
+
+    double[] getBindTransforms() {
+        return bindTransforms;
+    }
+
+    int[] getInfluenceOffsets() {
+        return influenceOffsets;
+    }
+
+    int[] getInfluenceBones() {
+        return influenceBones;
+    }
+
+    float[] getInfluenceWeights() {
+        return influenceWeights;
+    }
+
+    int[] getPointRanges() {
+        return pointRanges;
+    }
+
+    private boolean isValid(int bone, int point, double weight) {
+        return boneNodes[bone] >= 0 && point >= 0 && point < pointCount && weight > 0;
+    }
+
+    /**
+     * Scales the weights of every point so that they sum up to 1.
+     */
+    private void normalizeWeights() {
+
+        for (int point = 0; point < pointCount; point++) {
+
+            float sum = 0;
+            for (int i = influenceOffsets[point]; i < influenceOffsets[point + 1]; i++) {
+                sum += influenceWeights[i];
+            }
+            if (sum > 0 && sum != 1) {
+                for (int i = influenceOffsets[point]; i < influenceOffsets[point + 1]; i++) {
+                    influenceWeights[i] /= sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the runs of consecutive points with influences, which are the only points that skinning moves.
+     *
+     * @return the first and end point of every run
+     */
+    private int[] findPointRanges() {
+
+        int rangeCount = 0;
+        for (int point = 0; point < pointCount; point++) {
+            if (hasInfluences(point) && (point == 0 || !hasInfluences(point - 1))) {
+                rangeCount++;
+            }
+        }
+
+        int[] ranges = new int[2 * rangeCount];
+        int range = 0;
+        for (int point = 0; point < pointCount; point++) {
+            if (hasInfluences(point) && (point == 0 || !hasInfluences(point - 1))) {
+                ranges[2 * range] = point;
+            }
+            if (hasInfluences(point) && (point == pointCount - 1 || !hasInfluences(point + 1))) {
+                ranges[2 * range++ + 1] = point + 1;
+            }
+        }
+        return ranges;
+    }
+
+    private boolean hasInfluences(int point) {
+        return influenceOffsets[point + 1] > influenceOffsets[point];
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javafx.collections.ObservableFloatArray;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Deforms the points of a mesh by the bones of its {@link FbxSkin}, with linear blend skinning on the CPU.
+ *
+ * <p>
+ * Every update first combines the current global transform of every bone with its bind transform into one 3x4 matrix
+ * of floats. The skinned points are then computed from the bind points, reading the influences of the skin in point
+ * order. Points without influences keep their bind position, so only the runs of points with influences are computed
+ * and written to the mesh, each with a single call. JavaFX then only uploads the changed part of the points.
+ * </p>
+ *
+ * <p>
+ * Skins with many influences are split into ranges of points that are computed in parallel in the common fork-join
+ * pool. The mesh must not be shared with other skinnings, and {@link #update(double[], double[])} must be called on the
+ * JavaFX application thread once the mesh is part of a scene.
+ * </p>
+ */
+public final class FbxSkinning {
+
+    // Number of influences below which the points are computed on the calling thread.
+    private static final int MIN_PARALLEL_INFLUENCE_COUNT = 1 << 14;
+
+    // Number of points below which a range is not split any further.
+    private static final int MIN_RANGE_SIZE = 1 << 12;
+
+    private static final int POINT_SIZE = 3;
+    private static final int TRANSFORM_SIZE = 16;
+    private static final int BONE_MATRIX_SIZE = 12;
+
+    private final FbxSkin skin;
+    private final TriangleMesh mesh;
+    private final int pointCount;
+    private final float[] bindPoints;
+    private final float[] points;
+    private final float[] boneMatrices;
+    private final double[] boneTransform = new double[2 * TRANSFORM_SIZE];
+
+    /**
+     * Creates a new skinning for a mesh, whose current points are taken as the bind points.
+     *
+     * @param skin the skin of the mesh
+     * @param mesh a mesh whose points are the control points of the skinned geometry, in the same order
+     */
+    public FbxSkinning(FbxSkin skin, TriangleMesh mesh) {
+
+        this.skin = skin;
+        this.mesh = mesh;
+
+        bindPoints = mesh.getPoints().toArray(null);
+        points = bindPoints.clone();
+        pointCount = Math.min(skin.getPointCount(), bindPoints.length / POINT_SIZE);
+        boneMatrices = new float[BONE_MATRIX_SIZE * skin.getBoneCount()];
+    }
+
+    /**
+     * Gets the skin.
+     *
+     * @return the skin of the mesh
+     */
+    public FbxSkin getSkin() {
+        return skin;
+    }
+
+    /**
+     * Gets the mesh whose points are deformed.
+     *
+     * @return the mesh
+     */
+    public TriangleMesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Deforms the points of the mesh for the current pose of the skeleton.
+     *
+     * @param globalTransforms the global transforms of all nodes, 16 values each in column order, as evaluated by
+     *            {@link FbxAnimation#evaluate(double, double[])}
+     * @param meshTransform the inverse of the transform from the coordinates of the mesh to global coordinates, in
+     *            column order
+     */
+    public void update(double[] globalTransforms, double[] meshTransform) {
+
+        updateBoneMatrices(globalTransforms, meshTransform);
+
+        if (skin.getInfluenceCount() >= MIN_PARALLEL_INFLUENCE_COUNT) {
+            ForkJoinPool.commonPool().invoke(new Range(0, pointCount));
+        } else {
+            skin(0, pointCount);
+        }
+
+        ObservableFloatArray meshPoints = mesh.getPoints();
+        int[] ranges = skin.getPointRanges();
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            int first = Math.min(ranges[i], pointCount);
+            int end = Math.min(ranges[i + 1], pointCount);
+            if (end > first) {
+                meshPoints.set(POINT_SIZE * first, points, POINT_SIZE * first, POINT_SIZE * (end - first));
+            }
+        }
+    }
+
+    /**
+     * Combines the mesh transform, the global transform and the bind transform of every bone into a 3x4 matrix.
+     */
+    private void updateBoneMatrices(double[] globalTransforms, double[] meshTransform) {
+
+        double[] bindTransforms = skin.getBindTransforms();
+
+        for (int bone = 0; bone < skin.getBoneCount(); bone++) {
+
+            int node = skin.getBoneNode(bone);
+            if (node < 0) {
+                continue;
+            }
+
+            FbxMatrices.multiply(globalTransforms, TRANSFORM_SIZE * node, bindTransforms, TRANSFORM_SIZE * bone,
+                    boneTransform, 0);
+            FbxMatrices.multiply(meshTransform, 0, boneTransform, 0, boneTransform, TRANSFORM_SIZE);
+
+            // Row by row, leaving out the last row (0, 0, 0, 1).
+            int offset = BONE_MATRIX_SIZE * bone;
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 4; column++) {
+                    boneMatrices[offset + 4 * row + column] = (float) boneTransform[TRANSFORM_SIZE + 4 * column + row];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the skinned position of a range of points from their bind position.
+     *
+     * @param from the first point
+     * @param to the point after the last one
+     */
+    private void skin(int from, int to) {
+
+        int[] offsets = skin.getInfluenceOffsets();
+        int[] bones = skin.getInfluenceBones();
+        float[] weights = skin.getInfluenceWeights();
+
+        for (int point = from; point < to; point++) {
+
+            int first = offsets[point];
+            int end = offsets[point + 1];
+            if (first == end) {
+                continue;
+            }
+
+            int p = POINT_SIZE * point;
+            float x = bindPoints[p];
+            float y = bindPoints[p + 1];
+            float z = bindPoints[p + 2];
+            float sx = 0, sy = 0, sz = 0;
+
+            for (int i = first; i < end; i++) {
+                int m = BONE_MATRIX_SIZE * bones[i];
+                float w = weights[i];
+                sx += w * (boneMatrices[m] * x + boneMatrices[m + 1] * y + boneMatrices[m + 2] * z
+                        + boneMatrices[m + 3]);
+                sy += w * (boneMatrices[m + 4] * x + boneMatrices[m + 5] * y + boneMatrices[m + 6] * z
+                        + boneMatrices[m + 7]);
+                sz += w * (boneMatrices[m + 8] * x + boneMatrices[m + 9] * y + boneMatrices[m + 10] * z
+                        + boneMatrices[m + 11]);
+            }
+
+            points[p] = sx;
+            points[p + 1] = sy;
+            points[p + 2] = sz;
+        }
+    }
+
+    /**
+     * Skins a range of points, splitting the range in half until it is small enough.
+     */
+    private class Range extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > MIN_RANGE_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Range(from, middle), new Range(middle, to));
+            } else {
+                skin(from, to);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of the staging buffers that mesh data is transferred through, shared by all imports.
+ *
+ * <p>
+ * Every import takes a set of buffers from the pool while it reads the file and returns it afterwards. A set holds the
+ * direct buffer that the {@link FbxLib} writes the packed mesh data into, and the arrays that the data is unpacked
+ * into before it is copied into a {@link javafx.scene.shape.TriangleMesh}. Every buffer only grows, to the size of the
+ * largest mesh it has held, so consecutive imports of files of a similar size allocate no staging memory at all.
+ * </p>
+ *
+ * <p>
+ * The pool keeps one set for every import that ran at the same time. {@link #clear()} drops them, e.g. after an
+ * unusually large file.
+ * </p>
+ */
+public final class FbxStagingBuffers {
+
+    private static final FbxStagingBuffers INSTANCE = new FbxStagingBuffers();
+
+    private final Deque<Staging> free = new ArrayDeque<>();
+
+    private FbxStagingBuffers() {
+    }
+
+    /**
+     * Gets the pool shared by all imports.
+     *
+     * @return the singleton {@link FbxStagingBuffers} instance
+     */
+    public static FbxStagingBuffers getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the size of the buffers that are kept for later imports.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getRetainedSize() {
+
+        long size = 0;
+        for (Staging staging : free) {
+            size += staging.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Drops all buffers that are not in use, so that they can be garbage collected.
+     */
+    public synchronized void clear() {
+        free.clear();
+    }
+
+    /**
+     * Takes a set of buffers from the pool, or creates an empty one.
+     *
+     * @return a set of buffers that only the caller uses until it is released
+     */
+    synchronized Staging acquire() {
+
+        Staging staging = free.pollFirst();
+        return staging != null ? staging : new Staging();
+    }
+
+    /**
+     * Returns a set of buffers to the pool.
+     *
+     * @param staging a set of buffers from {@link #acquire()}, which the caller must not use any more
+     */
+    synchronized void release(Staging staging) {
+        free.addFirst(staging);
+    }
+
+    /**
+     * A set of staging buffers, each as large as the largest content it has held.
+     */
+    static final class Staging {
+
+        private ByteBuffer buffer;
+        private float[] floats = new float[0];
+        private int[] ints = new int[0];
+        private long directSize;
+
+        /**
+         * Gets the direct buffer for packed mesh data.
+         *
+         * @param size the number of bytes needed
+         * @return a direct buffer in native byte order with at least the given capacity
+         */
+        ByteBuffer getBuffer(int size) {
+
+            if (buffer == null || buffer.capacity() < size) {
+                buffer = FbxMeshData.allocate(size);
+                directSize += size;
+            }
+            return buffer;
+        }
+
+        /**
+         * Gets the array for points and texture coordinates.
+         *
+         * @param length the number of values needed
+         * @return an array of at least the given length
+         */
+        float[] getFloats(int length) {
+
+            if (floats.length < length) {
+                floats = new float[length];
+            }
+            return floats;
+        }
+
+        /**
+         * Gets the array for faces and smoothing groups.
+         *
+         * @param length the number of values needed
+         * @return an array of at least the given length
+         */
+        int[] getInts(int length) {
+
+            if (ints.length < length) {
+                ints = new int[length];
+            }
+            return ints;
+        }
+
+        /**
+         * Gets the direct memory allocated for this set so far, including buffers it has outgrown. Unlike the arrays,
+         * it is not part of the heap.
+         *
+         * @return the allocated size in bytes
+         */
+        long getDirectSize() {
+            return directSize;
+        }
+
+        /**
+         * Gets the current size of the buffers.
+         *
+         * @return the size in bytes
+         */
+        long getSize() {
+            return (buffer != null ? buffer.capacity() : 0) + 4L * (floats.length + ints.length);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+
+/**
+ * A process-wide cache for the texture maps of FBX materials.
+ *
+ * <p>
+ * Images are keyed by the canonical path and modification time of the texture file, so the same texture is only
+ * decoded once even if it is referenced from different materials or files. Images are decoded in the background,
+ * which means an import returns before its textures are ready and they appear once they are loaded.
+ * </p>
+ *
+ * <p>
+ * Images that are decoded at a reduced size are cached separately for every size, so a texture that is downscaled by
+ * a {@link FbxTexturePolicy} is never decoded at full size. The sizes of texture files are read from their headers,
+ * without decoding them, and are kept as long as an image of the file is cached.
+ * </p>
+ *
+ * <p>
+ * The decoded size of all cached images is limited by a budget. When the budget is exceeded, the least recently used
+ * images are removed from the cache. Materials that already use a removed image keep it. The images and sizes of a
+ * texture file are also removed once the file was modified.
+ * </p>
+ */
+public final class FbxTextureCache {
+
+    /**
+     * The default budget of 512 MB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 512L << 20;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final FbxTextureCache INSTANCE = new FbxTextureCache(new ImageLoader() {
+
+        @Override
+        public Image load(String url, int width, int height) {
+            return new Image(url, width, height, false, true, true);
+        }
+    });
+
+    private final ImageLoader imageLoader;
+
+    // Access-ordered, so iteration starts with the least recently used image.
+    private final Map<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, int[]> imageSizes = new HashMap<>();
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Creates a new texture cache. Only used for the single instance and in tests.
+     *
+     * @param imageLoader the loader that creates the images of texture files
+     */
+    FbxTextureCache(ImageLoader imageLoader) {
+        this.imageLoader = imageLoader;
+    }
+
+    /**
+     * Gets the texture cache.
+     *
+     * @return the single texture cache instance of this process
+     */
+    public static FbxTextureCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the budget for the decoded size of all cached images.
+     *
+     * @return the budget in bytes
+     */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the budget for the decoded size of all cached images, evicting images if necessary.
+     *
+     * @param maxSize the budget in bytes
+     */
+    public synchronized void setMaxSize(long maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative [" + maxSize + "]");
+        }
+
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Gets the decoded size of all cached images that have finished loading.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+
+        long size = 0;
+        for (Image image : images.values()) {
+            size += getSize(image);
+        }
+        return size;
+    }
+
+    /**
+     * Gets the image for a texture file, starting to load it in the background if it is not cached.
+     *
+     * @param mapFile the file path of a texture map
+     * @return an {@link Image} of the texture, which may still be loading
+     * @throws MalformedURLException if the given file path could not be transformed to a valid URL
+     */
+    public Image getImage(String mapFile) throws MalformedURLException {
+        return getImage(mapFile, 0, 0);
+    }
+
+    /**
+     * Gets the image for a texture file decoded at the given size, starting to load it in the background if it is not
+     * cached.
+     *
+     * @param mapFile the file path of a texture map
+     * @param width the width to decode the image at, or 0 for the width of the file
+     * @param height the height to decode the image at, or 0 for the height of the file
+     * @return an {@link Image} of the texture, which may still be loading
+     * @throws MalformedURLException if the given file path could not be transformed to a valid URL
+     */
+    public synchronized Image getImage(String mapFile, int width, int height) throws MalformedURLException {
+
+        File file = getCanonicalFile(new File(mapFile));
+        String fileKey = getKey(file);
+        final String key = width > 0 || height > 0 ? fileKey + "@" + width + "x" + height : fileKey;
+
+        Image image = images.get(key);
+        if (image != null) {
+            return image;
+        }
+
+        removeModified(file, fileKey);
+        image = imageLoader.load(file.toURI().toURL().toString(), width, height);
+        images.put(key, image);
+
+        // The size is only known once loading has finished. Failed images are not kept, so they are tried again.
+        final Image loadingImage = image;
+        image.progressProperty().addListener(new ChangeListener<Number>() {
+
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+
+                if (newValue.doubleValue() >= 1) {
+                    loadingImage.progressProperty().removeListener(this);
+                    loaded(key, loadingImage);
+                }
+            }
+        });
+
+        if (image.getProgress() >= 1) {
+            loaded(key, image);
+        } else {
+            evict();
+        }
+        return image;
+    }
+
+    /**
+     * Gets the size of a texture file from its header.
+     *
+     * @param mapFile the file path of a texture map
+     * @return the width and height in pixels, or <tt>null</tt> if the file cannot be read or has an unknown format
+     */
+    public int[] getImageSize(String mapFile) {
+
+        File file = getCanonicalFile(new File(mapFile));
+        String key = getKey(file);
+
+        synchronized (this) {
+            if (imageSizes.containsKey(key)) {
+                return imageSizes.get(key);
+            }
+        }
+
+        int[] size = readImageSize(file);
+
+        synchronized (this) {
+            removeModified(file, key);
+            imageSizes.put(key, size);
+        }
+        return size;
+    }
+
+    /**
+     * Removes all images from the cache.
+     */
+    public synchronized void clear() {
+        images.clear();
+        imageSizes.clear();
+    }
+
+    /**
+     * Called when an image has finished loading.
+     *
+     * @param key the key of the image
+     * @param image the image
+     */
+    private synchronized void loaded(String key, Image image) {
+
+        if (image.isError()) {
+            if (images.get(key) == image) {
+                images.remove(key);
+                imageSizes.remove(getFileKey(key));
+            }
+        } else {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used images, and the sizes of their files, until the cached images fit into the
+     * budget.
+     */
+    private void evict() {
+
+        long size = getSize();
+
+        Iterator<Map.Entry<String, Image>> iterator = images.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Image> entry = iterator.next();
+            size -= getSize(entry.getValue());
+            imageSizes.remove(getFileKey(entry.getKey()));
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes the images and the size of a texture file that were cached before it was last modified.
+     *
+     * @param file the canonical file
+     * @param fileKey the current key of the file
+     */
+    private void removeModified(File file, String fileKey) {
+
+        removeModified(images.keySet(), file, fileKey);
+        removeModified(imageSizes.keySet(), file, fileKey);
+    }
+
+    private static void removeModified(Set<String> keys, File file, String fileKey) {
+
+        String path = file.getPath();
+
+        for (Iterator<String> iterator = keys.iterator(); iterator.hasNext();) {
+
+            // Keys of other files whose paths start with the same characters have their '@' further back.
+            String otherFileKey = getFileKey(iterator.next());
+            if (otherFileKey.startsWith(path) && otherFileKey.lastIndexOf('@') == path.length()
+                    && !otherFileKey.equals(fileKey)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the decoded size of an image.
+     *
+     * @param image an image
+     * @return the size in bytes, or 0 if the image is still loading
+     */
+    private static long getSize(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Reads the size of an image file from its header.
+     *
+     * @param file an image file
+     * @return the width and height in pixels, or <tt>null</tt> if the file cannot be read or has an unknown format
+     */
+    private static int[] readImageSize(File file) {
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+
+            if (input == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the key of a texture file, which changes when the file is modified.
+     *
+     * @param file the canonical file
+     * @return the key
+     */
+    private static String getKey(File file) {
+        return file.getPath() + "@" + file.lastModified();
+    }
+
+    /**
+     * Gets the key of the texture file of an image, leaving out the size the image is decoded at.
+     *
+     * @param key the key of an image
+     * @return the key of its file
+     */
+    private static String getFileKey(String key) {
+
+        // The modification time of the file key has no 'x', the size of an image has.
+        int separator = key.lastIndexOf('@');
+        return key.indexOf('x', separator) >= 0 ? key.substring(0, separator) : key;
+    }
+
+    /**
+     * Gets the canonical form of a file, so that different paths to the same file share an image.
+     *
+     * @param file a file
+     * @return the canonical file, or the absolute file if it cannot be resolved
+     */
+    private static File getCanonicalFile(File file) {
+
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Creates the images of texture files.
+     */
+    interface ImageLoader {
+
+        /**
+         * Creates an image that loads a texture file, possibly in the background.
+         *
+         * @param url the URL of the texture file
+         * @param width the width to decode the image at, or 0 for the width of the file
+         * @param height the height to decode the image at, or 0 for the height of the file
+         * @return the image
+         */
+        Image load(String url, int width, int height);
+    }
+}
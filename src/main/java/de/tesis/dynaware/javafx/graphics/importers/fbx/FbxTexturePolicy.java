@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Limits the size of the texture maps that are loaded by an import.
+ *
+ * <p>
+ * Every texture is loaded at a level of a mipmap chain, i.e. with its width and height halved a number of times, and
+ * is decoded directly at that size. The level is the first one that fits the maximum dimension of the type of map, and
+ * a coarser one if the texture does not fit into what is left of the memory budget of the import. No texture is
+ * reduced below {@value #MIN_DIMENSION} pixels by the budget alone.
+ * </p>
+ *
+ * <p>
+ * The budget applies to the decoded size of all textures of a single import. Textures are selected in the order in
+ * which their materials are created, so the textures that are reduced by the budget vary between imports of the same
+ * file. A policy can be shared by several imports once it is configured.
+ * </p>
+ */
+public class FbxTexturePolicy {
+
+    /**
+     * The default budget of 256 MB for the textures of an import.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L << 20;
+
+    /**
+     * The default maximum width and height of diffuse maps.
+     */
+    public static final int DEFAULT_MAX_DIFFUSE_DIMENSION = 4096;
+
+    /**
+     * The default maximum width and height of all other maps, which contribute less detail.
+     */
+    public static final int DEFAULT_MAX_DIMENSION = 2048;
+
+    /**
+     * The size below which textures are not reduced to fit into the budget.
+     */
+    public static final int MIN_DIMENSION = 64;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final long maxSize;
+    private final Map<FbxTextureType, Integer> maxDimensions = new EnumMap<>(FbxTextureType.class);
+
+    /**
+     * Creates a new policy with the default budget and maximum dimensions.
+     */
+    public FbxTexturePolicy() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new policy with the default maximum dimensions.
+     *
+     * @param maxSize the budget for the decoded size of all textures of an import, in bytes
+     */
+    public FbxTexturePolicy(long maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Texture budget must not be negative [" + maxSize + "]");
+        }
+        this.maxSize = maxSize;
+
+        for (FbxTextureType type : FbxTextureType.values()) {
+            maxDimensions.put(type, type == FbxTextureType.DIFFUSE ? DEFAULT_MAX_DIFFUSE_DIMENSION
+                    : DEFAULT_MAX_DIMENSION);
+        }
+    }
+
+    /**
+     * Gets the budget for the decoded size of all textures of an import.
+     *
+     * @return the budget in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the maximum width and height of a type of map.
+     *
+     * @param type the type of map
+     * @return the maximum dimension in pixels
+     */
+    public int getMaxDimension(FbxTextureType type) {
+        return maxDimensions.get(type);
+    }
+
+    /**
+     * Sets the maximum width and height of a type of map.
+     *
+     * @param type the type of map
+     * @param maxDimension the maximum dimension in pixels
+     */
+    public void setMaxDimension(FbxTextureType type, int maxDimension) {
+
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("Maximum dimension must be at least 1 [" + maxDimension + "]");
+        }
+        maxDimensions.put(type, maxDimension);
+    }
+
+    /**
+     * Selects the level at which a texture is loaded.
+     *
+     * @param type the type of map
+     * @param width the width of the texture file
+     * @param height the height of the texture file
+     * @param usedSize the decoded size of the textures that were already selected for the import
+     * @return the number of times the width and height are halved
+     */
+    int getLevel(FbxTextureType type, int width, int height, long usedSize) {
+
+        int maxDimension = getMaxDimension(type);
+
+        int level = 0;
+        while (getDimension(width, level) > maxDimension || getDimension(height, level) > maxDimension) {
+            level++;
+        }
+
+        while (usedSize + getSize(width, height, level) > maxSize
+                && Math.max(getDimension(width, level), getDimension(height, level)) > MIN_DIMENSION) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Gets the width or height of a texture at a level.
+     *
+     * @param dimension the width or height of the texture file
+     * @param level the level
+     * @return the width or height in pixels, at least 1
+     */
+    static int getDimension(int dimension, int level) {
+        return Math.max(1, dimension >> Math.min(level, Integer.SIZE - 1));
+    }
+
+    /**
+     * Gets the decoded size of a texture at a level.
+     *
+     * @param width the width of the texture file
+     * @param height the height of the texture file
+     * @param level the level
+     * @return the size in bytes
+     */
+    static long getSize(int width, int height, int level) {
+        return (long) getDimension(width, level) * getDimension(height, level) * BYTES_PER_PIXEL;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+/**
+ * The texture maps of a material, which can be limited to different sizes by a {@link FbxTexturePolicy}.
+ */
+public enum FbxTextureType {
+
+    /**
+     * The diffuse color map.
+     */
+    DIFFUSE,
+
+    /**
+     * The specular color map.
+     */
+    SPECULAR,
+
+    /**
+     * The bump or normal map.
+     */
+    BUMP,
+
+    /**
+     * The self-illumination map.
+     */
+    SELF_ILLUMINATION
+}
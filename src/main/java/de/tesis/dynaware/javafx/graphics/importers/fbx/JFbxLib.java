@@ -7,20 +7,98 @@
  */
 package de.tesis.dynaware.javafx.graphics.importers.fbx;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Wrapper class for the C++ library <b>jfbxlib</b>.
  * 
  * <p>
  * The native methods here are implemented in src/main/cpp/JFbxLib.cpp.
  * </p>
+ * 
+ * <p>
+ * Each instance keeps its own native state, so different instances can read different files on different threads. A
+ * single instance must not be used by more than one thread at a time.
+ * </p>
  */
-public class JFbxLib {
+public class JFbxLib implements FbxLib {
+
+    private static final String LIBRARY_NAME = "jfbxlib";
+
+    private static Boolean available;
+
+    /**
+     * Pointer to the native state of this instance. Set by {@link #open(String)} and cleared by {@link #close()}.
+     */
+    @SuppressWarnings("unused")
+    private long peer;
+
+    private final boolean preprocess;
+    private final boolean computeNormals;
 
     /**
      * Creates a new JFbxLib instance, which can be used to load data from FBX files.
+     * 
+     * <p>
+     * Geometry is only triangulated on request, see {@link #triangulate(int)}.
+     * </p>
      */
     public JFbxLib() {
-        System.loadLibrary("jfbxlib");
+        this(false);
+    }
+
+    /**
+     * Creates a new JFbxLib instance, which can be used to load data from FBX files.
+     * 
+     * <p>
+     * If preprocessing is enabled, all meshes, patches and NURBS of a file are triangulated and their smoothing is
+     * converted to polygon smoothing when the file is opened. This is done in one pass over the whole scene with a
+     * single geometry converter, so the geometry does not have to be triangulated node by node. It is wasted work if
+     * only part of the geometry is read, e.g. in a lazy import.
+     * </p>
+     * 
+     * @param preprocess <tt>true</tt> to triangulate all geometry when a file is opened
+     */
+    public JFbxLib(boolean preprocess) {
+        this(preprocess, false);
+    }
+
+    /**
+     * Creates a new JFbxLib instance, which can be used to load data from FBX files.
+     * 
+     * <p>
+     * If the importer computes the normals itself (see {@link FbxImportOptions#setComputeNormals(boolean)}), the
+     * smoothing of meshes that only define normals or edge smoothing is not converted to polygon smoothing, which is
+     * the most expensive part of reading a mesh. Only smoothing groups that the file defines per polygon are read, and
+     * meshes without them are smoothed as a whole.
+     * </p>
+     * 
+     * @param preprocess <tt>true</tt> to triangulate all geometry when a file is opened
+     * @param computeNormals <tt>true</tt> if the normals are computed by the importer
+     */
+    public JFbxLib(boolean preprocess, boolean computeNormals) {
+        System.loadLibrary(LIBRARY_NAME);
+        this.preprocess = preprocess;
+        this.computeNormals = computeNormals;
+    }
+
+    /**
+     * Checks whether the native library can be loaded on this machine.
+     * 
+     * @return <tt>true</tt> if <b>jfbxlib</b> was found and loaded, otherwise <tt>false</tt>
+     */
+    public static synchronized boolean isAvailable() {
+
+        if (available == null) {
+            try {
+                System.loadLibrary(LIBRARY_NAME);
+                available = true;
+            } catch (UnsatisfiedLinkError e) {
+                available = false;
+            }
+        }
+        return available;
     }
 
     /**
@@ -28,20 +106,56 @@ public class JFbxLib {
      * 
      * @param filePath the absolute path to the FBX file
      * @return <tt>true</tt> if the file was opened successfully
+     * @throws IOException if the FBX SDK cannot import the file
      */
-    public native boolean open(String filePath);
+    @Override
+    public boolean open(String filePath) throws IOException {
+        return open(filePath, preprocess, !computeNormals);
+    }
 
     /**
-     * Deallocates the memory used by the library. This must be called when everything has been loaded and the library
-     * is no longer needed. Do not forget this or there will be a memory leak!
+     * Opens the FBX file and sets the current node to the root node of the FBX graph.
+     * 
+     * @param filePath the absolute path to the FBX file
+     * @param preprocess <tt>true</tt> to triangulate all geometry of the file
+     * @param convertSmoothing <tt>true</tt> to convert normals and edge smoothing to polygon smoothing
+     * @return <tt>true</tt> if the file was opened successfully
+     * @throws IOException if the FBX SDK cannot import the file
      */
+    private native boolean open(String filePath, boolean preprocess, boolean convertSmoothing) throws IOException;
+
+    /**
+     * Deallocates the memory used by this instance. This must be called when everything has been loaded and the
+     * library is no longer needed. Do not forget this or there will be a memory leak!
+     */
+    @Override
     public native void close();
 
+    /**
+     * Indicates whether all geometry of the open file was triangulated when it was opened.
+     * 
+     * @return <tt>true</tt> if preprocessing is enabled and all geometry could be triangulated
+     */
+    @Override
+    public native boolean isTriangulated();
+
+    /**
+     * Gets the settings of this instance that change the data it reads.
+     * 
+     * @return <tt>convertSmoothing</tt> if the smoothing of all meshes is converted to polygon smoothing, otherwise
+     *         <tt>polygonSmoothing</tt>
+     */
+    @Override
+    public String getConfiguration() {
+        return computeNormals ? "polygonSmoothing" : "convertSmoothing";
+    }
+
     /**
      * Iterates to the next child in the FBX node graph, if it exists. Does nothing otherwise.
      * 
      * @return <tt>true</tt> if the child was found
      */
+    @Override
     public native boolean nextChild();
 
     /**
@@ -49,6 +163,7 @@ public class JFbxLib {
      * 
      * @return <tt>true</tt> if the sibling was found
      */
+    @Override
     public native boolean nextSibling();
 
     /**
@@ -56,13 +171,41 @@ public class JFbxLib {
      * 
      * @return <tt>true</tt> if the parent was found
      */
+    @Override
     public native boolean nextParent();
 
+    /**
+     * Gets all nodes of the FBX graph in traversal order, packed into a single array by one native call.
+     * 
+     * @return the node table
+     */
+    @Override
+    public FbxNodeTable getNodeTable() {
+        return FbxNodeTable.decode(ByteBuffer.wrap(getNodeTableData()));
+    }
+
+    /**
+     * Gets all nodes of the FBX graph in the packed form described in {@link FbxNodeTable}.
+     * 
+     * @return the packed node table
+     */
+    private native byte[] getNodeTableData();
+
+    /**
+     * Sets the current node to the node with the given index in the table of {@link #getNodeTable()}.
+     * 
+     * @param node the index of the node in traversal order
+     * @return <tt>true</tt> if the node was found
+     */
+    @Override
+    public native boolean selectNode(int node);
+
     /**
      * Gets the name of the current node in the FBX node graph.
      * 
      * @return the name of the current node
      */
+    @Override
     public native String getNodeName();
 
     /**
@@ -84,6 +227,7 @@ public class JFbxLib {
      * 
      * @return the 16 elements of the affine transformation matrix
      */
+    @Override
     public native double[] getNodeGlobalAffineTransformation();
     
     /**
@@ -95,6 +239,7 @@ public class JFbxLib {
      *
      * @return the x, y, and z values of the node's geometric translation
      */
+    @Override
     public native double[] getNodeGeometricTranslation();
 
     /**
@@ -102,6 +247,7 @@ public class JFbxLib {
      * 
      * @return the number of attributes
      */
+    @Override
     public native int getNodeAttributeCount();
 
     /**
@@ -110,6 +256,7 @@ public class JFbxLib {
      * @param i the index of the attribute
      * @return the name of the i'th attribute
      */
+    @Override
     public native String getNodeAttributeName(int i);
 
     /**
@@ -118,14 +265,31 @@ public class JFbxLib {
      * @param i the index of the attribute
      * @return the type of the i'th attribute
      */
+    @Override
     public native String getNodeAttributeType(int i);
 
+    /**
+     * Gets an id of the object behind an attribute attached to the current node.
+     * 
+     * <p>
+     * Nodes that share the same geometry return the same id, so the geometry only has to be read once. Ids are
+     * unique while the file is open. Note that {@link #triangulate(int)} may replace the attribute by a new object
+     * with a different id.
+     * </p>
+     * 
+     * @param i the index of the attribute
+     * @return the id of the i'th attribute
+     */
+    @Override
+    public native long getNodeAttributeId(int i);
+
     /**
      * Indicates whether an attribute attached to the current node is a triangle mesh.
      * 
      * @param i the index of the attribute
      * @return <tt>true</tt> if the i'th attribute is a triangular mesh, otherwise <tt>false</tt>
      */
+    @Override
     public native boolean isTriangleMesh(int i);
 
     /**
@@ -134,6 +298,7 @@ public class JFbxLib {
      * 
      * @param i the index of the attribute
      */
+    @Override
     public native void triangulate(int i);
 
     /**
@@ -142,6 +307,7 @@ public class JFbxLib {
      * @param i the index of the attribute
      * @return the array of vertices in the form (x1, y1, z1, x2, y2, z2, ... )
      */
+    @Override
     public native float[] getMeshVertices(int i);
 
     /**
@@ -150,6 +316,7 @@ public class JFbxLib {
      * @param i the index of the attribute
      * @return the array of texture coordinates in the form (u1, v1, u2, v2, ... )
      */
+    @Override
     public native float[] getMeshTexCoords(int i);
 
     /**
@@ -159,6 +326,7 @@ public class JFbxLib {
      * @return the array of face coordinates in the form ( p1, t1, p2, t2, p3, t3, ... ) where the p's are vertex
      *         indices and the t's are texture coordinate indices.
      */
+    @Override
     public native int[] getMeshFaces(int i);
 
     /**
@@ -166,19 +334,98 @@ public class JFbxLib {
      * 
      * <p>
      * If face smoothing groups are not defined for the mesh, but normals or edge smoothing groups <b>are</b> defined,
-     * then these will automatically be converted to face smoothing groups.
+     * then these will automatically be converted to face smoothing groups, unless the normals are computed by the
+     * importer.
      * </p>
      * 
      * @param i the index of the attribute
      * @return the array of face smoothing groups, or <tt>null</tt> if no smoothing is defined
      */
+    @Override
     public native int[] getMeshFaceSmoothingGroups(int i);
 
+    /**
+     * Gets the number of bytes needed to transfer all data of a mesh attribute with
+     * {@link #getMeshData(int, ByteBuffer)}.
+     * 
+     * @param i the index of the attribute
+     * @return an upper bound for the size of the packed mesh data, or 0 if the attribute is not a mesh
+     */
+    @Override
+    public native int getMeshDataSize(int i);
+
+    /**
+     * Copies the vertices, texture coordinates, faces and face smoothing groups of a mesh attribute attached to the
+     * current node into a direct buffer in a single native call.
+     * 
+     * <p>
+     * The layout of the buffer is described in {@link FbxLib#getMeshData(int, ByteBuffer)}.
+     * </p>
+     * 
+     * @param i the index of the attribute
+     * @param buffer a direct buffer with a capacity of at least {@link #getMeshDataSize(int)} bytes
+     * @return <tt>true</tt> if the buffer was filled, <tt>false</tt> if the attribute is not a mesh
+     */
+    @Override
+    public native boolean getMeshData(int i, ByteBuffer buffer);
+
+    /**
+     * Gets the bounds of a geometry attribute attached to the current node from its control points, without
+     * triangulating it or transferring its mesh data.
+     * 
+     * @param i the index of the attribute
+     * @return the bounds in the form (minX, minY, minZ, maxX, maxY, maxZ), or <tt>null</tt> if the attribute has no
+     *         control points
+     */
+    @Override
+    public native double[] getMeshBounds(int i);
+
+    /**
+     * Gets the skin of a mesh attribute attached to the current node, packed into a single array by one native call.
+     * 
+     * @param i the index of the attribute
+     * @return the skin, or <tt>null</tt> if the attribute is not a skinned mesh
+     */
+    @Override
+    public FbxSkin getMeshSkin(int i) {
+
+        byte[] data = getMeshSkinData(i);
+        return data != null ? FbxSkin.decode(ByteBuffer.wrap(data)) : null;
+    }
+
+    /**
+     * Gets the skin of a mesh attribute attached to the current node in the packed form described in {@link FbxSkin}.
+     * 
+     * @param i the index of the attribute
+     * @return the packed skin, or <tt>null</tt> if the attribute is not a skinned mesh
+     */
+    private native byte[] getMeshSkinData(int i);
+
+    /**
+     * Gets the animation of all nodes of the open file, packed into a single array by one native call.
+     * 
+     * @return the animation, or <tt>null</tt> if the file has no animation stack
+     */
+    @Override
+    public FbxAnimation getAnimation() {
+
+        byte[] data = getAnimationData();
+        return data != null ? FbxAnimation.decode(ByteBuffer.wrap(data)) : null;
+    }
+
+    /**
+     * Gets the animation of all nodes of the open file in the packed form described in {@link FbxAnimation}.
+     * 
+     * @return the packed animation, or <tt>null</tt> if the file has no animation stack
+     */
+    private native byte[] getAnimationData();
+
     /**
      * Gets the number of materials attached to the current node.
      * 
      * @return the number of materials
      */
+    @Override
     public native int getMaterialCount();
 
     /**
@@ -187,6 +434,7 @@ public class JFbxLib {
      * @param j the index of the material
      * @return the name of the j'th material
      */
+    @Override
     public native String getMaterialName(int j);
 
     /**
@@ -196,6 +444,7 @@ public class JFbxLib {
      * @return the diffuse color of the j'th material in the form (r, g, b, o) where o is the opacity, or <tt>null</tt>
      *         if no diffuse color is defined
      */
+    @Override
     public native double[] getMaterialDiffuseColor(int j);
 
     /**
@@ -205,6 +454,7 @@ public class JFbxLib {
      * @return the diffuse color of the j'th material in the form (r, g, b, o) where o is the opacity, or <tt>null</tt>
      *         if no specular color is defined
      */
+    @Override
     public native double[] getMaterialSpecularColor(int j);
 
     /**
@@ -213,6 +463,7 @@ public class JFbxLib {
      * @param j the index of the material
      * @return the specular power of the j'th material, or <tt>null</tt> if no specular power is defined
      */
+    @Override
     public native double getMaterialSpecularPower(int j);
 
     /**
@@ -223,6 +474,7 @@ public class JFbxLib {
      * @return the absolute path to the diffuse texture map of the j'th material, or <tt>null</tt> if no diffuse texture
      *         map is defined
      */
+    @Override
     public native String getMaterialDiffuseMap(int j);
 
     /**
@@ -233,6 +485,7 @@ public class JFbxLib {
      * @return the absolute path to the specular texture map of the j'th material, or <tt>null</tt> if no specular
      *         texture map is defined
      */
+    @Override
     public native String getMaterialSpecularMap(int j);
 
     /**
@@ -242,6 +495,7 @@ public class JFbxLib {
      * @param j the index of the material
      * @return the absolute path to the bump map of the j'th material, or <tt>null</tt> if no bump map is defined
      */
+    @Override
     public native String getMaterialBumpMap(int j);
 
     /**
@@ -252,5 +506,6 @@ public class JFbxLib {
      * @return the absolute path to the self-illumination map of the j'th material, or <tt>null</tt> if no
      *         self-illumination map is defined
      */
+    @Override
     public native String getMaterialSelfIlluminationMap(int j);
 }
\ No newline at end of file
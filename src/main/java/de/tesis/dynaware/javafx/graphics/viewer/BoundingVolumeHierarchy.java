@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+
+/**
+ * A bounding volume hierarchy over nodes of the content, for hiding the nodes outside of the view frustum and finding
+ * the nodes along a picking ray.
+ *
+ * <p>
+ * The hierarchy is a binary tree of axis-aligned boxes, split at the median along the longest axis, and is rebuilt
+ * after nodes were added. Whole subtrees outside of the frustum are hidden without testing their nodes, and whole
+ * subtrees inside of it are shown, so a cull only visits the cells along the boundary of the frustum. Likewise, a ray
+ * only visits the cells whose bounding spheres it passes through. Must only be used on the JavaFX application thread.
+ * </p>
+ */
+class BoundingVolumeHierarchy {
+
+    private static final int MAX_LEAF_SIZE = 8;
+
+    // The visibility of all nodes of a cell, which lets unchanged subtrees be skipped.
+    private static final int MIXED = 0;
+    private static final int VISIBLE = 1;
+    private static final int HIDDEN = 2;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private Entry[] sortedEntries;
+    private Cell root;
+    private int culledCount;
+
+    /**
+     * Adds a node to the hierarchy.
+     *
+     * @param node a visible node of the content
+     * @param bounds the bounds of the node in the coordinates of the content
+     */
+    void add(Node node, Bounds bounds) {
+        entries.add(new Entry(node, bounds));
+        root = null;
+    }
+
+    /**
+     * Removes all nodes from the hierarchy, without changing their visibility.
+     */
+    void clear() {
+        entries.clear();
+        sortedEntries = null;
+        root = null;
+        culledCount = 0;
+    }
+
+    /**
+     * Gets the number of nodes in the hierarchy.
+     *
+     * @return the number of nodes
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Shows all nodes that were hidden by {@link #cull(Frustum)}.
+     */
+    void showAll() {
+
+        for (Entry entry : entries) {
+            entry.node.setVisible(true);
+        }
+        if (root != null) {
+            setState(root, VISIBLE);
+        }
+        culledCount = 0;
+    }
+
+    /**
+     * Hides the nodes outside of the frustum and shows all other nodes.
+     *
+     * @param frustum the frustum in the coordinates of the content
+     * @return the number of hidden nodes
+     */
+    int cull(Frustum frustum) {
+
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        if (root == null) {
+            sortedEntries = entries.toArray(new Entry[entries.size()]);
+            root = build(0, sortedEntries.length);
+        }
+
+        culledCount = 0;
+        cull(root, frustum);
+        return culledCount;
+    }
+
+    /**
+     * Finds the visible nodes whose bounding spheres a ray passes through.
+     *
+     * <p>
+     * The ray is <tt>origin + t * direction</tt> for <tt>t &gt;= 0</tt>, in the coordinates of the content.
+     * </p>
+     *
+     * @param ray the origin and direction of the ray, 6 values
+     * @return the nodes, ordered by the <tt>t</tt> at which the ray enters their bounding spheres
+     */
+    List<RayEntry> findAlongRay(double[] ray) {
+
+        List<RayEntry> rayEntries = new ArrayList<>();
+
+        if (!entries.isEmpty()) {
+            if (root == null) {
+                sortedEntries = entries.toArray(new Entry[entries.size()]);
+                root = build(0, sortedEntries.length);
+            }
+            findAlongRay(root, ray, rayEntries);
+        }
+
+        Collections.sort(rayEntries, new Comparator<RayEntry>() {
+
+            @Override
+            public int compare(RayEntry entry1, RayEntry entry2) {
+                return Double.compare(entry1.distance, entry2.distance);
+            }
+        });
+        return rayEntries;
+    }
+
+    /**
+     * Gets the nodes in the hierarchy, e.g. to test them all once they moved away from their bounds.
+     *
+     * @return the nodes in the order they were added
+     */
+    List<Node> getNodes() {
+
+        List<Node> nodes = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            nodes.add(entry.node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Builds the cell for a range of the sorted entries, sorting the range as it is split.
+     *
+     * @param first the index of the first entry
+     * @param end the index after the last entry
+     * @return the new cell
+     */
+    private Cell build(int first, int end) {
+
+        Cell cell = new Cell(first, end);
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        double minCenterX = Double.POSITIVE_INFINITY, minCenterY = Double.POSITIVE_INFINITY;
+        double minCenterZ = Double.POSITIVE_INFINITY;
+        double maxCenterX = Double.NEGATIVE_INFINITY, maxCenterY = Double.NEGATIVE_INFINITY;
+        double maxCenterZ = Double.NEGATIVE_INFINITY;
+
+        for (int i = first; i < end; i++) {
+
+            Entry entry = sortedEntries[i];
+            Bounds bounds = entry.bounds;
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            minZ = Math.min(minZ, bounds.getMinZ());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+            maxZ = Math.max(maxZ, bounds.getMaxZ());
+
+            minCenterX = Math.min(minCenterX, entry.x);
+            minCenterY = Math.min(minCenterY, entry.y);
+            minCenterZ = Math.min(minCenterZ, entry.z);
+            maxCenterX = Math.max(maxCenterX, entry.x);
+            maxCenterY = Math.max(maxCenterY, entry.y);
+            maxCenterZ = Math.max(maxCenterZ, entry.z);
+        }
+
+        cell.x = (minX + maxX) / 2;
+        cell.y = (minY + maxY) / 2;
+        cell.z = (minZ + maxZ) / 2;
+        cell.radius = getRadius(maxX - minX, maxY - minY, maxZ - minZ);
+
+        if (end - first <= MAX_LEAF_SIZE) {
+            return cell;
+        }
+
+        double extentX = maxCenterX - minCenterX;
+        double extentY = maxCenterY - minCenterY;
+        double extentZ = maxCenterZ - minCenterZ;
+
+        Comparator<Entry> comparator;
+        if (extentX >= extentY && extentX >= extentZ) {
+            comparator = new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry entry1, Entry entry2) {
+                    return Double.compare(entry1.x, entry2.x);
+                }
+            };
+        } else if (extentY >= extentZ) {
+            comparator = new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry entry1, Entry entry2) {
+                    return Double.compare(entry1.y, entry2.y);
+                }
+            };
+        } else {
+            comparator = new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry entry1, Entry entry2) {
+                    return Double.compare(entry1.z, entry2.z);
+                }
+            };
+        }
+
+        Arrays.sort(sortedEntries, first, end, comparator);
+
+        int middle = (first + end) >>> 1;
+        cell.left = build(first, middle);
+        cell.right = build(middle, end);
+
+        return cell;
+    }
+
+    /**
+     * Culls the nodes of a cell.
+     *
+     * @param cell the cell
+     * @param frustum the frustum
+     */
+    private void cull(Cell cell, Frustum frustum) {
+
+        int result = frustum.test(cell.x, cell.y, cell.z, cell.radius);
+
+        if (result == Frustum.OUTSIDE) {
+            setState(cell, HIDDEN);
+            culledCount += cell.end - cell.first;
+            return;
+        } else if (result == Frustum.INSIDE) {
+            setState(cell, VISIBLE);
+            return;
+        }
+
+        cell.state = MIXED;
+
+        if (cell.left == null) {
+            for (int i = cell.first; i < cell.end; i++) {
+
+                Entry entry = sortedEntries[i];
+                boolean visible = frustum.test(entry.x, entry.y, entry.z, entry.radius) != Frustum.OUTSIDE;
+
+                setVisible(entry, visible);
+                if (!visible) {
+                    culledCount++;
+                }
+            }
+        } else {
+            cull(cell.left, frustum);
+            cull(cell.right, frustum);
+        }
+    }
+
+    /**
+     * Collects the visible nodes of a cell whose bounding spheres a ray passes through.
+     *
+     * @param cell the cell
+     * @param ray the ray
+     * @param rayEntries the list the nodes are added to
+     */
+    private void findAlongRay(Cell cell, double[] ray, List<RayEntry> rayEntries) {
+
+        // Hidden cells are outside of the frustum, so nothing in them can be seen along the ray.
+        if (cell.state == HIDDEN || enterSphere(ray, cell.x, cell.y, cell.z, cell.radius) < 0) {
+            return;
+        }
+
+        if (cell.left == null) {
+            for (int i = cell.first; i < cell.end; i++) {
+
+                Entry entry = sortedEntries[i];
+                double distance = enterSphere(ray, entry.x, entry.y, entry.z, entry.radius);
+                if (distance >= 0 && entry.node.isVisible()) {
+                    rayEntries.add(new RayEntry(entry.node, distance));
+                }
+            }
+        } else {
+            findAlongRay(cell.left, ray, rayEntries);
+            findAlongRay(cell.right, ray, rayEntries);
+        }
+    }
+
+    /**
+     * Shows or hides all nodes of a cell, unless they already are.
+     *
+     * @param cell the cell
+     * @param state {@link #VISIBLE} or {@link #HIDDEN}
+     */
+    private void setState(Cell cell, int state) {
+
+        if (cell.state == state) {
+            return;
+        }
+        cell.state = state;
+
+        if (cell.left == null) {
+            for (int i = cell.first; i < cell.end; i++) {
+                setVisible(sortedEntries[i], state == VISIBLE);
+            }
+        } else {
+            setState(cell.left, state);
+            setState(cell.right, state);
+        }
+    }
+
+    /**
+     * Shows or hides the node of an entry, unless it already is.
+     *
+     * @param entry the entry
+     * @param visible <tt>true</tt> to show the node
+     */
+    private static void setVisible(Entry entry, boolean visible) {
+
+        if (entry.node.isVisible() != visible) {
+            entry.node.setVisible(visible);
+        }
+    }
+
+    /**
+     * Gets the <tt>t</tt> at which a ray enters a sphere.
+     *
+     * @return the <tt>t</tt> of the entry point, 0 if the origin is inside of the sphere, or -1 if it is missed
+     */
+    private static double enterSphere(double[] ray, double x, double y, double z, double radius) {
+
+        double ox = ray[0] - x, oy = ray[1] - y, oz = ray[2] - z;
+        double a = ray[3] * ray[3] + ray[4] * ray[4] + ray[5] * ray[5];
+        double b = ray[3] * ox + ray[4] * oy + ray[5] * oz;
+        double c = ox * ox + oy * oy + oz * oz - radius * radius;
+
+        double discriminant = b * b - a * c;
+        if (a == 0 || discriminant < 0) {
+            return c <= 0 ? 0 : -1;
+        }
+
+        double root = Math.sqrt(discriminant);
+        if ((-b + root) / a < 0) {
+            return -1;
+        }
+        return Math.max(0, (-b - root) / a);
+    }
+
+    private static double getRadius(double width, double height, double depth) {
+        return Math.sqrt(width * width + height * height + depth * depth) / 2;
+    }
+
+    /**
+     * A node with its bounds and bounding sphere.
+     */
+    private static class Entry {
+
+        private final Node node;
+        private final Bounds bounds;
+        private final double x, y, z, radius;
+
+        Entry(Node node, Bounds bounds) {
+            this.node = node;
+            this.bounds = bounds;
+            x = (bounds.getMinX() + bounds.getMaxX()) / 2;
+            y = (bounds.getMinY() + bounds.getMaxY()) / 2;
+            z = (bounds.getMinZ() + bounds.getMaxZ()) / 2;
+            radius = getRadius(bounds.getWidth(), bounds.getHeight(), bounds.getDepth());
+        }
+    }
+
+    /**
+     * A node that a ray passes through the bounding sphere of.
+     */
+    static class RayEntry {
+
+        private final Node node;
+        private final double distance;
+
+        RayEntry(Node node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        /**
+         * Gets the node.
+         *
+         * @return the node
+         */
+        Node getNode() {
+            return node;
+        }
+
+        /**
+         * Gets the <tt>t</tt> at which the ray enters the bounding sphere of the node, which no hit on the node is
+         * closer than.
+         *
+         * @return the <tt>t</tt> of the entry point
+         */
+        double getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * A cell of the hierarchy, which holds a range of the sorted entries and, unless it is a leaf, two child cells
+     * splitting the range.
+     */
+    private static class Cell {
+
+        private final int first, end;
+        private double x, y, z, radius;
+        private Cell left, right;
+        private int state = MIXED;
+
+        Cell(int first, int end) {
+            this.first = first;
+            this.end = end;
+        }
+    }
+}
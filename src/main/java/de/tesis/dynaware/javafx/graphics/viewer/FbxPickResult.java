@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import javafx.geometry.Point3D;
+import javafx.scene.shape.MeshView;
+
+/**
+ * The triangle of the content that was hit by {@link FbxViewerModel#pick(double, double)}.
+ */
+public class FbxPickResult {
+
+    private final MeshView node;
+    private final int faceIndex;
+    private final Point3D barycentricCoordinates;
+    private final Point3D point;
+    private final double distance;
+
+    /**
+     * Creates a new pick result.
+     *
+     * @param node the mesh view that was hit
+     * @param faceIndex the index of the face of its mesh that was hit
+     * @param barycentricCoordinates the weights of the three vertices of the face at the hit point
+     * @param point the hit point in the coordinates of the mesh view
+     * @param distance the depth of the hit point in front of the camera
+     */
+    FbxPickResult(MeshView node, int faceIndex, Point3D barycentricCoordinates, Point3D point, double distance) {
+        this.node = node;
+        this.faceIndex = faceIndex;
+        this.barycentricCoordinates = barycentricCoordinates;
+        this.point = point;
+        this.distance = distance;
+    }
+
+    /**
+     * Gets the mesh view that was hit.
+     *
+     * @return the mesh view
+     */
+    public MeshView getNode() {
+        return node;
+    }
+
+    /**
+     * Gets the face that was hit, of the mesh that the mesh view showed at the time, which may be a level of detail.
+     *
+     * @return the index of the face
+     */
+    public int getFaceIndex() {
+        return faceIndex;
+    }
+
+    /**
+     * Gets the barycentric coordinates of the hit point.
+     *
+     * @return the weights of the first, second and third vertex of the face, which add up to 1
+     */
+    public Point3D getBarycentricCoordinates() {
+        return barycentricCoordinates;
+    }
+
+    /**
+     * Gets the hit point.
+     *
+     * @return the point in the coordinates of the mesh view
+     */
+    public Point3D getPoint() {
+        return point;
+    }
+
+    /**
+     * Gets the distance of the hit point along the view direction of the camera.
+     *
+     * @return the depth in the coordinates of the camera
+     */
+    public double getDistance() {
+        return distance;
+    }
+}
@@ -16,6 +16,9 @@ import javafx.scene.Scene;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
+import de.tesis.dynaware.javafx.graphics.importers.Importer3D;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxTexturePolicy;
+
 /**
  * Viewer application for FBX files.
  */
@@ -24,6 +27,26 @@ public class FbxViewer extends Application {
 	@Override
 	public void start(Stage stage) throws IOException {
 
+        // The viewer switches between levels of detail, so build them unless they were switched off.
+        if (System.getProperty(Importer3D.FBX_LEVEL_OF_DETAIL_PROPERTY) == null) {
+            System.setProperty(Importer3D.FBX_LEVEL_OF_DETAIL_PROPERTY, "true");
+        }
+
+        // The viewer plays animations, so import and bake them unless this was switched off.
+        if (System.getProperty(Importer3D.FBX_ANIMATION_PROPERTY) == null) {
+            System.setProperty(Importer3D.FBX_ANIMATION_PROPERTY, "true");
+        }
+        if (System.getProperty(Importer3D.FBX_ANIMATION_BAKE_PROPERTY) == null) {
+            System.setProperty(Importer3D.FBX_ANIMATION_BAKE_PROPERTY, "30");
+        }
+
+        // The viewer keeps large scenes within a texture budget, unless limits were given.
+        if (System.getProperty(Importer3D.FBX_TEXTURE_BUDGET_PROPERTY) == null
+                && System.getProperty(Importer3D.FBX_TEXTURE_MAX_DIMENSION_PROPERTY) == null) {
+            System.setProperty(Importer3D.FBX_TEXTURE_BUDGET_PROPERTY,
+                    String.valueOf(FbxTexturePolicy.DEFAULT_MAX_SIZE));
+        }
+
         final URL location = getClass().getResource("FbxViewer.fxml");
         final FXMLLoader loader = new FXMLLoader();
         final VBox root = (VBox) loader.load(location.openStream());
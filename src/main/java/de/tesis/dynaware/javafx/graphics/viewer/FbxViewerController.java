@@ -35,14 +35,25 @@ import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
 
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -55,9 +66,12 @@ import javafx.scene.input.Dragboard;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.scene.shape.MeshView;
 import javafx.stage.FileChooser;
 
 import de.tesis.dynaware.javafx.graphics.importers.Importer3D;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxAnimator;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxCancellationToken;
 
 /**
  * Controller for FbxViewer.fxml.
@@ -70,9 +84,12 @@ public class FbxViewerController implements Initializable {
     
     private static final String NEAR_CLIP_TOOLTIP_TEXT = "Camera near-clip value";
     private static final String FAR_CLIP_TOOLTIP_TEXT = "Camera far-clip value";
+    private static final String CULLING_TEXT = "Culled %d of %d meshes";
+    private static final String PICK_TEXT = "Picked %s, face %d at (%.3f, %.3f, %.3f)";
     
     private static final String SUPPORTED_FILES = "Supported files";
     private static final String SELECT_FILE_TO_LOAD = "Select file to load";
+    private static final String LOAD_THREAD_NAME = "fbx-viewer-load";
     
     private static final double MIN_NEAR_CLIP = 0.01;
     private static final double MAX_NEAR_CLIP = 10;
@@ -101,10 +118,24 @@ public class FbxViewerController implements Initializable {
     private ProgressIndicator progressIndicator;
     @FXML
     private Label status;
+    @FXML
+    private Label cullingLabel;
 
     private File loadedPath;
     private FbxViewerModel model;
     
+    // Loads run one at a time, a new load cancels the current one.
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, LOAD_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private FbxCancellationToken currentLoad;
+    
     @Override
     public void initialize(final URL location, final ResourceBundle resources) {
 
@@ -120,8 +151,12 @@ public class FbxViewerController implements Initializable {
         
         initializeClipSliders();
         initializeProgressIndicator();
+        
+        cullingLabel.textProperty().bind(Bindings.format(CULLING_TEXT, model.culledNodeCountProperty(),
+                model.cullableNodeCountProperty()));
      
         addDragDropHandlers();
+        addPickListener();
 
         loadSample();
     }
@@ -275,7 +310,12 @@ public class FbxViewerController implements Initializable {
      * Attemps to load a file using {@link Importer3D}.
      * 
      * <p>
-     * The loading is done in a background thread so the viewer doesn't appear to hang.
+     * The loading is done in a background thread so the viewer doesn't appear to hang. Meshes are displayed as soon
+     * as they are converted, while the rest of the file is still loading.
+     * </p>
+     * 
+     * <p>
+     * A load that is still running is cancelled, so only the most recent file is loaded and displayed.
      * </p>
      * 
      * @param file the file to be loaded
@@ -284,29 +324,71 @@ public class FbxViewerController implements Initializable {
         
         loadedPath = file;
 
+        if (currentLoad != null) {
+            currentLoad.cancel();
+        }
+        final FbxCancellationToken token = new FbxCancellationToken();
+        currentLoad = token;
+
         updateStatus("");
         disableControls(true);
-        model.setContent(null);
         progressIndicator.setVisible(true);
         
-        new Thread(new Runnable() {
+        final Group content = model.startStreamedContent();
+        
+        loadExecutor.execute(new Runnable() {
             
             @Override public void run() {
+                
+                // Superseded before it could start.
+                if (token.isCancelled()) {
+                    return;
+                }
+                
                 try {
-                    Group content = Importer3D.load(file.toURI().toURL().toString());
-                    handleLoadResult(content, "Loaded file " + loadedPath);
+                    String url = file.toURI().toURL().toString();
+                    Group importRoot = Importer3D.load(url, new Consumer<List<MeshView>>() {
+                        
+                        @Override
+                        public void accept(List<MeshView> meshViews) {
+                            model.addStreamedNodes(content, meshViews);
+                        }
+                    }, token);
+                    handleLoadResult(token, content, FbxAnimator.get(importRoot), "Loaded file " + file);
+                } catch (CancellationException e) {
+                    // Superseded by a newer load, which handles the result.
                 } catch (OutOfMemoryError e) {
-                    handleLoadResult(null, "Not enough memory to load file " + loadedPath);
+                    handleLoadResult(token, null, null, "Not enough memory to load file " + file);
                     e.printStackTrace();
                 } catch (UnsatisfiedLinkError e) {
-                    handleLoadResult(null, "Dependency jfbxlib could not be loaded");
+                    handleLoadResult(token, null, null, "Dependency jfbxlib could not be loaded");
                     e.printStackTrace();
                 } catch (Throwable e) {
-                    handleLoadResult(null, "Failed to load file " + loadedPath);
+                    handleLoadResult(token, null, null, "Failed to load file " + file);
                     e.printStackTrace();
                 }
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Shows the mesh view and face that were last clicked in the status bar.
+     */
+    private void addPickListener() {
+        
+        model.pickResultProperty().addListener(new ChangeListener<FbxPickResult>() {
+            
+            @Override
+            public void changed(ObservableValue<? extends FbxPickResult> observable, FbxPickResult oldResult,
+                    FbxPickResult newResult) {
+                
+                if (newResult != null) {
+                    Point3D point = newResult.getPoint();
+                    updateStatus(String.format(Locale.ROOT, PICK_TEXT, newResult.getNode().getId(),
+                            newResult.getFaceIndex(), point.getX(), point.getY(), point.getZ()));
+                }
+            }
+        });
     }
 
     /**
@@ -319,18 +401,31 @@ public class FbxViewerController implements Initializable {
     }
     
     /**
-     * Handles the result of the load action.
+     * Handles the result of the load action, unless the load was superseded in the meantime.
      * 
+     * @param token the cancellation token of the load
      * @param content the loaded content
+     * @param animator the animator of the loaded content, or <tt>null</tt> if it is not animated
      * @param status the new status text
      */
-    private void handleLoadResult(Group content, String status) {
+    private void handleLoadResult(FbxCancellationToken token, Group content, FbxAnimator animator, String status) {
         
         Platform.runLater(new Runnable() {
 
             @Override
             public void run() {
-                model.setContent(content);
+                if (token != currentLoad) {
+                    if (content != null) {
+                        model.discardStreamedContent(content);
+                    }
+                    return;
+                }
+                if (content != null) {
+                    model.finishStreamedContent();
+                    model.setAnimator(animator);
+                } else {
+                    model.setContent(null);
+                }
                 updateStatus(status);
                 disableControls(false);
                 progressIndicator.setVisible(false);
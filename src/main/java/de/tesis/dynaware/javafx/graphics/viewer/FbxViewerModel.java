@@ -31,31 +31,75 @@
  */
 package de.tesis.dynaware.javafx.graphics.viewer;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
 import javafx.animation.Interpolator;
-import javafx.animation.RotateTransition;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.EventHandler;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.Parent;
 import javafx.scene.PerspectiveCamera;
 import javafx.scene.SceneAntialiasing;
 import javafx.scene.SubScene;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
 import javafx.util.Duration;
 
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxAnimator;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLazyNode;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLazyScene;
+import de.tesis.dynaware.javafx.graphics.importers.fbx.FbxLevelOfDetail;
+
 /**
  * Stores the content of the 3D scene including meshes, lights, and cameras.
  */
 public class FbxViewerModel {
     
+    // Maximum number of streamed nodes attached to the scene per pulse, so the FX thread stays responsive.
+    private static final int STREAMED_NODES_PER_PULSE = 200;
+    
+    // Projected sizes in pixels below which the next coarser level of detail is shown.
+    private static final double[] LEVEL_OF_DETAIL_PIXEL_SIZES = { 160, 40 };
+    
+    // Minimum time in nanoseconds between two updates of the levels of detail.
+    private static final long LEVEL_OF_DETAIL_UPDATE_INTERVAL = 100_000_000L;
+    
     private final ObjectProperty<Node> contentProperty = new SimpleObjectProperty<>();
     private final Group root = new Group();
     private final SubScene subScene;
@@ -64,9 +108,33 @@ public class FbxViewerModel {
     private final Rotate cameraYRotate = new Rotate(-20, 0, 0, 0, Rotate.Y_AXIS);
     private final Translate cameraPosition = new Translate(0, 0, -20);
     private double dragStartX, dragStartY, dragStartRotateX, dragStartRotateY;
-    private RotateTransition rotateTransition;
+    private Rotate contentRotate;
+    private Timeline rotateTimeline;
     private boolean isRotating;
     private double scaleFactor = 1;
+    private final Queue<StreamedNodes> streamedNodes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean streamingScheduled = new AtomicBoolean();
+    private Bounds streamedBounds;
+    private boolean streamedContentFitted;
+    private final List<LevelOfDetailView> levelOfDetailViews = new ArrayList<>();
+    private long lastLevelOfDetailUpdate;
+    private final List<LazyView> lazyViews = new ArrayList<>();
+    private final Set<FbxLazyScene> lazyScenes = new HashSet<>();
+    private final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+    private final ReadOnlyIntegerWrapper culledNodeCount = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper cullableNodeCount = new ReadOnlyIntegerWrapper();
+    private boolean cullingInvalid;
+    private FbxAnimator animator;
+    private final Map<TriangleMesh, TriangleHierarchy> triangleHierarchies = new HashMap<>();
+    private final ReadOnlyObjectWrapper<FbxPickResult> pickResult = new ReadOnlyObjectWrapper<>();
+    
+    private final InvalidationListener cullingInvalidator = new InvalidationListener() {
+        
+        @Override
+        public void invalidated(final Observable observable) {
+            cullingInvalid = true;
+        }
+    };
 
     /**
      * Creates a content model for the 3D scene.
@@ -80,8 +148,22 @@ public class FbxViewerModel {
         camera.setFarClip(10000);
         camera.getTransforms().addAll(cameraXRotate, cameraYRotate, cameraPosition);
         
+        cameraXRotate.angleProperty().addListener(cullingInvalidator);
+        cameraYRotate.angleProperty().addListener(cullingInvalidator);
+        cameraPosition.xProperty().addListener(cullingInvalidator);
+        cameraPosition.yProperty().addListener(cullingInvalidator);
+        cameraPosition.zProperty().addListener(cullingInvalidator);
+        camera.fieldOfViewProperty().addListener(cullingInvalidator);
+        camera.nearClipProperty().addListener(cullingInvalidator);
+        camera.farClipProperty().addListener(cullingInvalidator);
+        subScene.widthProperty().addListener(cullingInvalidator);
+        subScene.heightProperty().addListener(cullingInvalidator);
+        
         subScene.setCamera(camera);
         root.getChildren().add(camera);
+        
+        // JavaFX would test every triangle under the mouse for every mouse event, clicks are picked by pick() instead.
+        root.setMouseTransparent(true);
 
         subScene.addEventHandler(MouseEvent.ANY, new EventHandler<MouseEvent>() {
             
@@ -98,6 +180,8 @@ public class FbxViewerModel {
                     double yDelta = event.getSceneY() - dragStartY;
                     cameraXRotate.setAngle(dragStartRotateX - (yDelta * 0.7));
                     cameraYRotate.setAngle(dragStartRotateY + (xDelta * 0.7));
+                } else if (event.getEventType() == MouseEvent.MOUSE_CLICKED && event.isStillSincePress()) {
+                    pickResult.set(pick(event.getX(), event.getY()));
                 }
             }
         });
@@ -119,28 +203,66 @@ public class FbxViewerModel {
             public void changed(final ObservableValue<? extends Node> ov, final Node oldContent, final Node newContent) {
                 
                 root.getChildren().remove(oldContent);
+                levelOfDetailViews.clear();
+                releaseLazyViews();
+                setAnimator(null);
+                hierarchy.clear();
+                streamedBounds = null;
+                streamedContentFitted = false;
+                triangleHierarchies.clear();
+                pickResult.set(null);
+                culledNodeCount.set(0);
+                cullableNodeCount.set(0);
+                
+                if (rotateTimeline != null) {
+                    rotateTimeline.stop();
+                    oldContent.getTransforms().remove(contentRotate);
+                }
                 
                 if (newContent!=null) {
+                    
+                    // Culled nodes leave the layout bounds, so the rotation pivot is set by adjustForSize instead.
+                    contentRotate = new Rotate(0, Rotate.Y_AXIS);
+                    contentRotate.angleProperty().addListener(cullingInvalidator);
+                    newContent.getTransforms().add(contentRotate);
+                    
                     root.getChildren().add(newContent);
+                    addMeshViews(newContent);
     
-                    adjustForSize();             
+                    adjustForSize();
                     
-                    rotateTransition = new RotateTransition();
-                    rotateTransition.setAxis(Rotate.Y_AXIS);
-                    rotateTransition.setDelay(Duration.millis(4));
-                    rotateTransition.setDuration(Duration.millis(5000));
-                    rotateTransition.setCycleCount(Animation.INDEFINITE);
-                    rotateTransition.setAutoReverse(false);
-                    rotateTransition.setInterpolator(Interpolator.LINEAR);
-                    rotateTransition.setByAngle(360);
-                    rotateTransition.setNode(newContent);
+                    rotateTimeline = new Timeline(new KeyFrame(Duration.millis(5000),
+                            new KeyValue(contentRotate.angleProperty(), 360, Interpolator.LINEAR)));
+                    rotateTimeline.setDelay(Duration.millis(4));
+                    rotateTimeline.setCycleCount(Animation.INDEFINITE);
+                    rotateTimeline.setAutoReverse(false);
     
                     if (isRotating) {
-                        rotateTransition.play();
+                        rotateTimeline.play();
                     }
+                } else {
+                    rotateTimeline = null;
                 }
             }
         });
+        
+        // Culls the content after the camera or the content moved, and checks the size of the meshes on screen.
+        new AnimationTimer() {
+            
+            @Override
+            public void handle(final long now) {
+                
+                if (cullingInvalid) {
+                    cullingInvalid = false;
+                    updateCulling();
+                }
+                
+                if (now - lastLevelOfDetailUpdate >= LEVEL_OF_DETAIL_UPDATE_INTERVAL) {
+                    lastLevelOfDetailUpdate = now;
+                    updateLevelsOfDetail();
+                }
+            }
+        }.start();
     }
 
     /**
@@ -170,6 +292,110 @@ public class FbxViewerModel {
         contentProperty.set(content);
     }
 
+    /**
+     * Starts displaying new content whose nodes are added while it is still being loaded.
+     * 
+     * <p>
+     * Must be called on the JavaFX application thread.
+     * </p>
+     * 
+     * @return the new, still empty, content group
+     */
+    public Group startStreamedContent() {
+        
+        Group content = new Group();
+        setContent(content);
+        return content;
+    }
+    
+    /**
+     * Adds nodes to streamed content. May be called from any thread.
+     * 
+     * <p>
+     * The nodes are attached to the scene in batches in later pulses. Nodes for content that is no longer displayed
+     * are dropped, and placeholders of a lazy import among them are released.
+     * </p>
+     * 
+     * @param content the content group returned by {@link #startStreamedContent()}
+     * @param nodes the nodes to add
+     */
+    public void addStreamedNodes(Group content, List<? extends Node> nodes) {
+        
+        streamedNodes.add(new StreamedNodes(content, nodes));
+        
+        if (streamingScheduled.compareAndSet(false, true)) {
+            Platform.runLater(new Runnable() {
+                
+                @Override
+                public void run() {
+                    attachStreamedNodes(STREAMED_NODES_PER_PULSE);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Drops the pending nodes of streamed content whose load was superseded, and releases their placeholders if the
+     * load was lazy, so that its file is closed.
+     * 
+     * <p>
+     * Must be called on the JavaFX application thread.
+     * </p>
+     * 
+     * @param content the content group returned by {@link #startStreamedContent()}
+     */
+    public void discardStreamedContent(Group content) {
+        
+        for (Iterator<StreamedNodes> iterator = streamedNodes.iterator(); iterator.hasNext();) {
+            
+            StreamedNodes batch = iterator.next();
+            if (batch.content == content) {
+                iterator.remove();
+                releaseLazyNodes(batch.nodes);
+            }
+        }
+    }
+    
+    /**
+     * Attaches all nodes of streamed content that are still pending and adjusts the view to the complete content.
+     * 
+     * <p>
+     * Must be called on the JavaFX application thread after the last call to
+     * {@link #addStreamedNodes(Group, List)}.
+     * </p>
+     */
+    public void finishStreamedContent() {
+        
+        attachStreamedNodes(Integer.MAX_VALUE);
+        
+        if (getContent() != null && streamedBounds != null) {
+            fitView(streamedBounds);
+        }
+    }
+
+    /**
+     * Plays the animation of the current content, stopping the animation played before.
+     * 
+     * <p>
+     * Animated mesh views move away from the bounds they were added to the culling hierarchy with, so nothing is
+     * culled while an animation is played. Must be called on the JavaFX application thread.
+     * </p>
+     * 
+     * @param animator the animator of the current content, or <tt>null</tt> to stop the animation
+     */
+    public void setAnimator(FbxAnimator animator) {
+        
+        if (this.animator != null) {
+            this.animator.stop();
+        }
+        this.animator = animator;
+        
+        if (animator != null) {
+            animator.play();
+            cullingInvalid = true;
+        }
+    }
+
     /**
      * Gets the sub-scene that the 3D model is displayed in.
      * 
@@ -185,14 +411,105 @@ public class FbxViewerModel {
     public void toggleRotation() {
         
         if (isRotating) {
-            rotateTransition.pause();
+            rotateTimeline.pause();
             isRotating = false;
         } else {
-            rotateTransition.play();
+            rotateTimeline.play();
             isRotating = true;
         }
     }
     
+    /**
+     * Property for the number of nodes that were hidden in the last frame because they are outside of the camera's
+     * view frustum.
+     * 
+     * @return the read-only property for the number of culled nodes
+     */
+    public ReadOnlyIntegerProperty culledNodeCountProperty() {
+        return culledNodeCount.getReadOnlyProperty();
+    }
+    
+    /**
+     * Property for the number of nodes of the content that are checked against the camera's view frustum.
+     * 
+     * @return the read-only property for the number of nodes that can be culled
+     */
+    public ReadOnlyIntegerProperty cullableNodeCountProperty() {
+        return cullableNodeCount.getReadOnlyProperty();
+    }
+    
+    /**
+     * Property for the result of the last click on the content.
+     * 
+     * @return the read-only property for the last {@link FbxPickResult}, whose value is <tt>null</tt> if nothing was
+     *         hit
+     */
+    public ReadOnlyObjectProperty<FbxPickResult> pickResultProperty() {
+        return pickResult.getReadOnlyProperty();
+    }
+    
+    /**
+     * Finds the triangle of the content that is visible at a point of the sub-scene.
+     * 
+     * <p>
+     * The mesh views whose bounds the ray through the point passes through are taken from the culling hierarchy, and
+     * tested in the order of their distance until no closer hit is possible. The triangles of every mesh are found in
+     * a {@link TriangleHierarchy}, which is built the first time a ray passes through the bounds of the mesh view.
+     * While an animation is played, the mesh views move away from their bounds, so all of them are tested, and the triangle
+     * hierarchies of skinned meshes are refitted to their current points. Must be called on the JavaFX application
+     * thread.
+     * </p>
+     * 
+     * @param x the x coordinate in the sub-scene
+     * @param y the y coordinate in the sub-scene
+     * @return the {@link FbxPickResult}, or <tt>null</tt> if no triangle is visible at the point
+     */
+    public FbxPickResult pick(double x, double y) {
+        
+        Node content = getContent();
+        if (content == null || subScene.getWidth() <= 0 || subScene.getHeight() <= 0) {
+            return null;
+        }
+        
+        double[] ray;
+        try {
+            ray = getPickRay(content, x, y);
+        } catch (NonInvertibleTransformException e) {
+            return null;
+        }
+        
+        List<BoundingVolumeHierarchy.RayEntry> rayEntries;
+        if (animator != null) {
+            rayEntries = new ArrayList<>();
+            for (Node node : hierarchy.getNodes()) {
+                rayEntries.add(new BoundingVolumeHierarchy.RayEntry(node, 0));
+            }
+        } else {
+            rayEntries = hierarchy.findAlongRay(ray);
+        }
+        
+        FbxPickResult result = null;
+        double[] hit = new double[3];
+        
+        for (BoundingVolumeHierarchy.RayEntry rayEntry : rayEntries) {
+            
+            double maxDistance = result != null ? result.getDistance() : Double.POSITIVE_INFINITY;
+            if (rayEntry.getDistance() >= maxDistance) {
+                break;
+            }
+            
+            try {
+                FbxPickResult meshViewResult = pick((MeshView) rayEntry.getNode(), content, ray, maxDistance, hit);
+                if (meshViewResult != null) {
+                    result = meshViewResult;
+                }
+            } catch (NonInvertibleTransformException e) {
+                // A mesh view scaled to nothing cannot be hit.
+            }
+        }
+        return result;
+    }
+    
     /**
      * Gets the 3D scene's camera.
      * 
@@ -202,6 +519,308 @@ public class FbxViewerModel {
         return camera;
     }
     
+    /**
+     * Attaches pending streamed nodes to their content, and schedules another pass if any are left.
+     * 
+     * @param maxCount the maximum number of nodes to attach in this pass
+     */
+    private void attachStreamedNodes(int maxCount) {
+        
+        int count = 0;
+        boolean contentChanged = false;
+        
+        while (count < maxCount && !streamedNodes.isEmpty()) {
+            
+            StreamedNodes batch = streamedNodes.poll();
+            
+            if (batch.content == getContent()) {
+                batch.content.getChildren().addAll(batch.nodes);
+                for (Node node : batch.nodes) {
+                    addMeshViews(node);
+                    streamedBounds = union(streamedBounds, node.getBoundsInParent());
+                }
+                contentChanged = true;
+            } else {
+                releaseLazyNodes(batch.nodes);
+            }
+            count += batch.nodes.size();
+        }
+        
+        // The view is fitted to the first nodes only, moving it on every pass would undo the user's navigation.
+        if (contentChanged && !streamedContentFitted && streamedBounds != null) {
+            fitView(streamedBounds);
+            streamedContentFitted = true;
+        }
+        
+        streamingScheduled.set(false);
+        
+        // Nodes may have been added after the queue was found empty, or the limit was reached.
+        if (!streamedNodes.isEmpty() && streamingScheduled.compareAndSet(false, true)) {
+            Platform.runLater(new Runnable() {
+                
+                @Override
+                public void run() {
+                    attachStreamedNodes(STREAMED_NODES_PER_PULSE);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Adds the mesh views in the given node and its descendants to the culling hierarchy, those with levels of detail
+     * to the level of detail switching, and placeholders of a lazy import to the nodes resolved once visible.
+     * 
+     * @param node a node of the current content
+     */
+    private void addMeshViews(Node node) {
+        
+        if (node instanceof MeshView) {
+            
+            MeshView meshView = (MeshView) node;
+            
+            // The bounds are taken once in the coordinates of the content, which is only rotated and translated.
+            Bounds bounds = getContent().sceneToLocal(meshView.localToScene(meshView.getBoundsInLocal()));
+            hierarchy.add(meshView, bounds);
+            cullableNodeCount.set(hierarchy.size());
+            cullingInvalid = true;
+            
+            FbxLevelOfDetail levelOfDetail = FbxLevelOfDetail.get(meshView);
+            if (levelOfDetail != null) {
+                levelOfDetailViews.add(new LevelOfDetailView(meshView, levelOfDetail, bounds));
+            }
+            
+            FbxLazyNode lazyNode = FbxLazyNode.get(meshView);
+            if (lazyNode != null) {
+                lazyScenes.add(lazyNode.getScene());
+                if (!lazyNode.isRequested()) {
+                    lazyViews.add(new LazyView(meshView, lazyNode, bounds));
+                }
+            }
+        } else if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                addMeshViews(child);
+            }
+        }
+    }
+    
+    /**
+     * Gets the ray through a point of the sub-scene in the coordinates of the content.
+     * 
+     * <p>
+     * The ray starts at the camera and its direction has a length of 1 along the view direction of the camera, so the
+     * <tt>t</tt> of a point on the ray is its depth in the coordinates of the camera.
+     * </p>
+     * 
+     * @param content the content
+     * @param x the x coordinate in the sub-scene
+     * @param y the y coordinate in the sub-scene
+     * @return the origin and direction of the ray, 6 values
+     * @throws NonInvertibleTransformException if the transform of the content cannot be inverted
+     */
+    private double[] getPickRay(Node content, double x, double y) throws NonInvertibleTransformException {
+        
+        double width = subScene.getWidth();
+        double height = subScene.getHeight();
+        
+        // The same frustum as in Frustum, in the coordinates of the camera.
+        double tanHalfAngle = Math.tan(Math.toRadians(camera.getFieldOfView() / 2));
+        double tanX = camera.isVerticalFieldOfView() ? tanHalfAngle * width / height : tanHalfAngle;
+        double tanY = camera.isVerticalFieldOfView() ? tanHalfAngle : tanHalfAngle * height / width;
+        
+        Transform cameraToContent = content.getLocalToSceneTransform().createInverse()
+                .createConcatenation(camera.getLocalToSceneTransform());
+        
+        Point3D origin = cameraToContent.transform(Point3D.ZERO);
+        Point3D direction = cameraToContent.deltaTransform((2 * x / width - 1) * tanX, (2 * y / height - 1) * tanY, 1);
+        
+        return new double[] { origin.getX(), origin.getY(), origin.getZ(), direction.getX(), direction.getY(),
+                direction.getZ() };
+    }
+    
+    /**
+     * Finds the triangle of a mesh view that a ray hits first.
+     * 
+     * @param meshView the mesh view
+     * @param content the content
+     * @param ray the ray in the coordinates of the content
+     * @param maxDistance the <tt>t</tt> of the closest hit so far
+     * @param hit the array for the hit
+     * @return the {@link FbxPickResult}, or <tt>null</tt> if no triangle is hit before the maximum distance
+     * @throws NonInvertibleTransformException if the transform of the mesh view cannot be inverted
+     */
+    private FbxPickResult pick(MeshView meshView, Node content, double[] ray, double maxDistance, double[] hit)
+            throws NonInvertibleTransformException {
+        
+        if (!meshView.isVisible() || !(meshView.getMesh() instanceof TriangleMesh)) {
+            return null;
+        }
+        
+        // The t of a point on the ray is the same in all coordinates, as long as the direction is transformed as well.
+        Transform contentToMeshView = meshView.getLocalToSceneTransform().createInverse()
+                .createConcatenation(content.getLocalToSceneTransform());
+        Point3D origin = contentToMeshView.transform(ray[0], ray[1], ray[2]);
+        Point3D direction = contentToMeshView.deltaTransform(ray[3], ray[4], ray[5]);
+        
+        double[] meshViewRay = { origin.getX(), origin.getY(), origin.getZ(), direction.getX(), direction.getY(),
+                direction.getZ() };
+        
+        TriangleHierarchy triangleHierarchy = getTriangleHierarchy((TriangleMesh) meshView.getMesh());
+        int faceIndex = triangleHierarchy.intersect(meshViewRay, maxDistance, hit);
+        if (faceIndex < 0) {
+            return null;
+        }
+        
+        double t = hit[0];
+        Point3D point = origin.add(direction.multiply(t));
+        return new FbxPickResult(meshView, faceIndex, new Point3D(1 - hit[1] - hit[2], hit[1], hit[2]), point, t);
+    }
+    
+    /**
+     * Gets the triangle hierarchy of a mesh, building it if the mesh was not picked before.
+     * 
+     * <p>
+     * Only meshes whose bounds a pick ray passed through get a hierarchy, so the points and faces of the other meshes
+     * are never copied. The copy is taken in the event handler of the pick rather than while content is attached in
+     * a pulse.
+     * </p>
+     * 
+     * @param mesh the mesh
+     * @return the {@link TriangleHierarchy} of the mesh
+     */
+    private TriangleHierarchy getTriangleHierarchy(TriangleMesh mesh) {
+        
+        TriangleHierarchy triangleHierarchy = triangleHierarchies.get(mesh);
+        
+        if (triangleHierarchy == null) {
+            triangleHierarchy = new TriangleHierarchy(mesh).build();
+            triangleHierarchies.put(mesh, triangleHierarchy);
+        }
+        return triangleHierarchy;
+    }
+    
+    /**
+     * Hides the mesh views of the content that are outside of the camera's view frustum, and shows all others.
+     */
+    private void updateCulling() {
+        
+        Node content = getContent();
+        if (content == null || subScene.getWidth() <= 0 || subScene.getHeight() <= 0) {
+            return;
+        }
+        
+        if (animator != null) {
+            hierarchy.showAll();
+            culledNodeCount.set(0);
+            resolveVisibleLazyViews();
+            return;
+        }
+        
+        try {
+            Frustum frustum = new Frustum(camera, content, subScene.getWidth(), subScene.getHeight());
+            culledNodeCount.set(hierarchy.cull(frustum));
+        } catch (NonInvertibleTransformException e) {
+            hierarchy.showAll();
+            culledNodeCount.set(0);
+        }
+        
+        resolveVisibleLazyViews();
+    }
+    
+    /**
+     * Requests the geometry and material of all placeholders of a lazy import that were not culled.
+     */
+    private void resolveVisibleLazyViews() {
+        
+        final Node content = getContent();
+        
+        for (Iterator<LazyView> iterator = lazyViews.iterator(); iterator.hasNext();) {
+            
+            final LazyView view = iterator.next();
+            if (!view.meshView.isVisible()) {
+                continue;
+            }
+            iterator.remove();
+            
+            // The levels of detail are only known once the geometry was read.
+            view.lazyNode.resolve().thenAccept(new Consumer<MeshView>() {
+                
+                @Override
+                public void accept(final MeshView meshView) {
+                    
+                    FbxLevelOfDetail levelOfDetail = FbxLevelOfDetail.get(meshView);
+                    if (levelOfDetail != null && content == getContent()) {
+                        levelOfDetailViews.add(new LevelOfDetailView(meshView, levelOfDetail, view.bounds));
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Releases the placeholders of the lazy imports of the content that were never requested, including those that
+     * were not attached yet, so that their files can be closed.
+     */
+    private void releaseLazyViews() {
+        
+        for (FbxLazyScene lazyScene : lazyScenes) {
+            lazyScene.release();
+        }
+        lazyScenes.clear();
+        lazyViews.clear();
+    }
+    
+    /**
+     * Releases the placeholders of a lazy import among nodes that are dropped before they were attached.
+     * 
+     * @param nodes the dropped nodes
+     */
+    private static void releaseLazyNodes(List<? extends Node> nodes) {
+        
+        for (Node node : nodes) {
+            if (node instanceof MeshView) {
+                FbxLazyNode lazyNode = FbxLazyNode.get((MeshView) node);
+                if (lazyNode != null) {
+                    lazyNode.release();
+                }
+            } else if (node instanceof Parent) {
+                releaseLazyNodes(((Parent) node).getChildrenUnmodifiable());
+            }
+        }
+    }
+    
+    /**
+     * Shows the level of detail of every mesh view that matches its projected size on screen.
+     */
+    private void updateLevelsOfDetail() {
+        
+        Node content = getContent();
+        if (content == null || levelOfDetailViews.isEmpty()) {
+            return;
+        }
+        
+        Point3D cameraLocation = content.sceneToLocal(camera.localToScene(Point3D.ZERO));
+        
+        double viewportSize = camera.isVerticalFieldOfView() ? subScene.getHeight() : subScene.getWidth();
+        double pixelsPerUnit = viewportSize / 2 / Math.tan(Math.toRadians(camera.getFieldOfView() / 2));
+        
+        for (LevelOfDetailView view : levelOfDetailViews) {
+            
+            double distance = Math.max(view.center.distance(cameraLocation), camera.getNearClip());
+            double pixelSize = 2 * view.radius * pixelsPerUnit / distance;
+            
+            int level = 0;
+            while (level < LEVEL_OF_DETAIL_PIXEL_SIZES.length && pixelSize < LEVEL_OF_DETAIL_PIXEL_SIZES[level]) {
+                level++;
+            }
+            level = Math.min(level, view.levelOfDetail.getLevelCount() - 1);
+            
+            if (level != view.level) {
+                view.meshView.setMesh(view.levelOfDetail.getMesh(level));
+                view.level = level;
+            }
+        }
+    }
+    
     /**
      * Sets initial translate values and camera settings based on the size of the model.
      */
@@ -209,16 +828,114 @@ public class FbxViewerModel {
         
         Node content = contentProperty.get();
         
-        double width = content.getLayoutBounds().getWidth();
-        double height = content.getLayoutBounds().getHeight();
-        double depth = content.getLayoutBounds().getDepth();
+        // Hidden nodes are left out of the layout bounds, so they are culled again in the next pulse.
+        hierarchy.showAll();
+        culledNodeCount.set(0);
+        
+        // Streamed content starts out empty.
+        if (!content.getLayoutBounds().isEmpty()) {
+            fitView(content.getLayoutBounds());
+        }
+        cullingInvalid = true;
+    }
+    
+    /**
+     * Sets translate values and camera settings so that the given bounds are centered and fill the view.
+     * 
+     * @param bounds the bounds to fit in the coordinates of the content, without its own transforms
+     */
+    private void fitView(Bounds bounds) {
+        
+        Node content = contentProperty.get();
+        
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        double depth = bounds.getDepth();
+        
+        content.setTranslateX(-bounds.getMinX() - width / 2);
+        content.setTranslateY(-bounds.getMinY() - height / 2);
+        content.setTranslateZ(-bounds.getMinZ() - depth / 2);
         
-        content.setTranslateX(-content.getLayoutBounds().getMinX() - width / 2);
-        content.setTranslateY(-content.getLayoutBounds().getMinY() - height / 2);
-        content.setTranslateZ(-content.getLayoutBounds().getMinZ() - depth / 2);
+        contentRotate.setPivotX(bounds.getMinX() + width / 2);
+        contentRotate.setPivotY(bounds.getMinY() + height / 2);
+        contentRotate.setPivotZ(bounds.getMinZ() + depth / 2);
         
         scaleFactor = Math.max(Math.max(width, height), depth)/25;
         
         cameraPosition.setZ(-60*scaleFactor);
+        cullingInvalid = true;
+    }
+    
+    /**
+     * Gets the smallest bounds that contain two bounds.
+     * 
+     * @param first the first bounds, or <tt>null</tt>
+     * @param second the second bounds, ignored if empty
+     * @return the union of both bounds, or <tt>null</tt> if both are missing or empty
+     */
+    private static Bounds union(Bounds first, Bounds second) {
+        
+        if (second.isEmpty()) {
+            return first;
+        } else if (first == null) {
+            return second;
+        }
+        
+        double minX = Math.min(first.getMinX(), second.getMinX());
+        double minY = Math.min(first.getMinY(), second.getMinY());
+        double minZ = Math.min(first.getMinZ(), second.getMinZ());
+        
+        return new BoundingBox(minX, minY, minZ, Math.max(first.getMaxX(), second.getMaxX()) - minX,
+                Math.max(first.getMaxY(), second.getMaxY()) - minY, Math.max(first.getMaxZ(), second.getMaxZ()) - minZ);
+    }
+    
+    /**
+     * A mesh view whose mesh is switched between levels of detail.
+     */
+    private static class LevelOfDetailView {
+        
+        private final MeshView meshView;
+        private final FbxLevelOfDetail levelOfDetail;
+        private final Point3D center;
+        private final double radius;
+        private int level;
+        
+        LevelOfDetailView(MeshView meshView, FbxLevelOfDetail levelOfDetail, Bounds bounds) {
+            this.meshView = meshView;
+            this.levelOfDetail = levelOfDetail;
+            center = new Point3D((bounds.getMinX() + bounds.getMaxX()) / 2, (bounds.getMinY() + bounds.getMaxY()) / 2,
+                    (bounds.getMinZ() + bounds.getMaxZ()) / 2);
+            radius = new Point3D(bounds.getWidth(), bounds.getHeight(), bounds.getDepth()).magnitude() / 2;
+        }
+    }
+    
+    /**
+     * A placeholder of a lazy import that has not been requested yet.
+     */
+    private static class LazyView {
+        
+        private final MeshView meshView;
+        private final FbxLazyNode lazyNode;
+        private final Bounds bounds;
+        
+        LazyView(MeshView meshView, FbxLazyNode lazyNode, Bounds bounds) {
+            this.meshView = meshView;
+            this.lazyNode = lazyNode;
+            this.bounds = bounds;
+        }
+    }
+    
+    /**
+     * A batch of nodes for streamed content.
+     */
+    private static class StreamedNodes {
+        
+        private final Group content;
+        private final List<? extends Node> nodes;
+        
+        StreamedNodes(Group content, List<? extends Node> nodes) {
+            this.content = content;
+            this.nodes = nodes;
+        }
     }
 }
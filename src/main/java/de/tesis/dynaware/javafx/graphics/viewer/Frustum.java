@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+
+/**
+ * The view frustum of a {@link PerspectiveCamera}, for testing bounding spheres given in the coordinates of a node.
+ *
+ * <p>
+ * The spheres are transformed into the coordinates of the camera, where the camera looks along the z axis and the
+ * frustum is bounded by the near and far clip planes and four planes through the origin.
+ * </p>
+ */
+class Frustum {
+
+    /**
+     * The sphere is completely outside of the frustum.
+     */
+    static final int OUTSIDE = 0;
+
+    /**
+     * The sphere intersects the boundary of the frustum.
+     */
+    static final int INTERSECTING = 1;
+
+    /**
+     * The sphere is completely inside of the frustum.
+     */
+    static final int INSIDE = 2;
+
+    // The transform from the coordinates of the node into the coordinates of the camera.
+    private final double mxx, mxy, mxz, tx;
+    private final double myx, myy, myz, ty;
+    private final double mzx, mzy, mzz, tz;
+    private final double scale;
+
+    private final double nearClip;
+    private final double farClip;
+
+    // Tangents of the half angles of view, and the normalization factors of the side planes.
+    private final double tanX, tanY;
+    private final double normX, normY;
+
+    /**
+     * Creates the frustum of a camera for spheres in the coordinates of a node.
+     *
+     * @param camera the camera
+     * @param node the node that the spheres are given in, which must be in the same scene as the camera
+     * @param width the width of the viewport, greater than 0
+     * @param height the height of the viewport, greater than 0
+     * @throws NonInvertibleTransformException if the transform of the camera cannot be inverted
+     */
+    Frustum(PerspectiveCamera camera, Node node, double width, double height)
+            throws NonInvertibleTransformException {
+
+        Transform nodeToCamera = camera.getLocalToSceneTransform().createInverse()
+                .createConcatenation(node.getLocalToSceneTransform());
+
+        mxx = nodeToCamera.getMxx();
+        mxy = nodeToCamera.getMxy();
+        mxz = nodeToCamera.getMxz();
+        tx = nodeToCamera.getTx();
+        myx = nodeToCamera.getMyx();
+        myy = nodeToCamera.getMyy();
+        myz = nodeToCamera.getMyz();
+        ty = nodeToCamera.getTy();
+        mzx = nodeToCamera.getMzx();
+        mzy = nodeToCamera.getMzy();
+        mzz = nodeToCamera.getMzz();
+        tz = nodeToCamera.getTz();
+
+        // A radius is scaled by the longest axis of the transform, which keeps the sphere conservative.
+        scale = Math.sqrt(Math.max(Math.max(mxx * mxx + myx * myx + mzx * mzx, mxy * mxy + myy * myy + mzy * mzy),
+                mxz * mxz + myz * myz + mzz * mzz));
+
+        nearClip = camera.getNearClip();
+        farClip = camera.getFarClip();
+
+        double tanHalfAngle = Math.tan(Math.toRadians(camera.getFieldOfView() / 2));
+        if (camera.isVerticalFieldOfView()) {
+            tanY = tanHalfAngle;
+            tanX = tanHalfAngle * width / height;
+        } else {
+            tanX = tanHalfAngle;
+            tanY = tanHalfAngle * height / width;
+        }
+        normX = 1 / Math.sqrt(1 + tanX * tanX);
+        normY = 1 / Math.sqrt(1 + tanY * tanY);
+    }
+
+    /**
+     * Tests a sphere against the frustum.
+     *
+     * @param x the x coordinate of the center, in the coordinates of the node
+     * @param y the y coordinate of the center, in the coordinates of the node
+     * @param z the z coordinate of the center, in the coordinates of the node
+     * @param radius the radius, in the coordinates of the node
+     * @return {@link #OUTSIDE}, {@link #INTERSECTING} or {@link #INSIDE}
+     */
+    int test(double x, double y, double z, double radius) {
+
+        double cameraX = mxx * x + mxy * y + mxz * z + tx;
+        double cameraY = myx * x + myy * y + myz * z + ty;
+        double cameraZ = mzx * x + mzy * y + mzz * z + tz;
+        double cameraRadius = radius * scale;
+
+        // The signed distances from the planes, positive inside of the frustum.
+        double near = cameraZ - nearClip;
+        double far = farClip - cameraZ;
+        double right = (cameraZ * tanX - cameraX) * normX;
+        double left = (cameraZ * tanX + cameraX) * normX;
+        double bottom = (cameraZ * tanY - cameraY) * normY;
+        double top = (cameraZ * tanY + cameraY) * normY;
+
+        double distance = Math.min(Math.min(Math.min(near, far), Math.min(right, left)), Math.min(bottom, top));
+
+        if (distance < -cameraRadius) {
+            return OUTSIDE;
+        }
+        return distance >= cameraRadius ? INSIDE : INTERSECTING;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import javafx.collections.ArrayChangeListener;
+import javafx.collections.ObservableFloatArray;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * A bounding volume hierarchy over the triangles of a mesh, for finding the triangle that a ray hits first.
+ *
+ * <p>
+ * The hierarchy is a binary tree of axis-aligned boxes, split at the median of the triangle centers along their longest
+ * axis, stored in flat arrays in depth-first order. It is built from a copy of the points and faces of the mesh, so it
+ * can be built on any thread. If the points of the mesh change later, e.g. by skinning, the boxes are refitted to the
+ * new points before the next ray is tested, keeping the tree. Rays are tested against both sides of the triangles.
+ * </p>
+ */
+class TriangleHierarchy {
+
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final int MAX_DEPTH = 64;
+
+    // Values per point, and per box (min x, y, z, max x, y, z).
+    private static final int POINT_SIZE = 3;
+    private static final int BOX_SIZE = 6;
+
+    // Triangles with a smaller determinant are parallel to the ray.
+    private static final double EPSILON = 1e-12;
+
+    private final TriangleMesh mesh;
+    private final int triangleCount;
+    private final int[] triangles;
+    private float[] points;
+
+    // The triangles of cell c are order[first[c]] to order[first[c] + count[c] - 1] for a leaf, whose count is > 0.
+    // The left child of an inner cell follows it, the right child is at first[c].
+    private final int[] order;
+    private float[] boxes;
+    private int[] first;
+    private int[] count;
+    private int cellCount;
+
+    private volatile boolean pointsChanged;
+
+    /**
+     * Creates a hierarchy for a mesh, copying its points and faces. Must be called on the thread that owns the mesh.
+     *
+     * @param mesh the mesh, of any vertex format
+     */
+    TriangleHierarchy(TriangleMesh mesh) {
+
+        this.mesh = mesh;
+
+        int vertexSize = mesh.getVertexFormat().getVertexIndexSize();
+        int[] faces = mesh.getFaces().toArray(null);
+        triangleCount = faces.length / (3 * vertexSize);
+
+        // Only the point index of every vertex is needed, it comes first.
+        triangles = new int[3 * triangleCount];
+        for (int i = 0; i < triangles.length; i++) {
+            triangles[i] = faces[i * vertexSize];
+        }
+
+        points = mesh.getPoints().toArray(null);
+        order = new int[triangleCount];
+
+        mesh.getPoints().addListener(new ArrayChangeListener<ObservableFloatArray>() {
+
+            @Override
+            public void onChanged(ObservableFloatArray array, boolean sizeChanged, int from, int to) {
+                pointsChanged = true;
+            }
+        });
+    }
+
+    /**
+     * Builds the tree. Can be called on any thread, before the hierarchy is used.
+     *
+     * @return this hierarchy
+     */
+    TriangleHierarchy build() {
+
+        for (int i = 0; i < triangleCount; i++) {
+            order[i] = i;
+        }
+
+        float[] centers = new float[POINT_SIZE * triangleCount];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            for (int axis = 0; axis < POINT_SIZE; axis++) {
+                centers[POINT_SIZE * triangle + axis] = (getCoordinate(triangle, 0, axis)
+                        + getCoordinate(triangle, 1, axis) + getCoordinate(triangle, 2, axis)) / 3;
+            }
+        }
+
+        // Only ranges of more than MAX_LEAF_SIZE triangles are split, so every leaf holds at least two of them.
+        int maxCellCount = Math.max(1, triangleCount);
+        boxes = new float[BOX_SIZE * maxCellCount];
+        first = new int[maxCellCount];
+        count = new int[maxCellCount];
+        cellCount = 0;
+
+        build(centers, 0, triangleCount, 0);
+        return this;
+    }
+
+    /**
+     * Gets the mesh that this hierarchy was created for.
+     *
+     * @return the mesh
+     */
+    TriangleMesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Finds the first triangle hit by a ray, in the coordinates of the mesh. Must be called on the thread that owns the
+     * mesh.
+     *
+     * <p>
+     * The ray is <tt>origin + t * direction</tt> for <tt>t &gt;= 0</tt>. The direction need not be normalized, and
+     * the distances are given as <tt>t</tt>, so they stay comparable between meshes with different transforms.
+     * </p>
+     *
+     * @param ray the origin and direction of the ray, 6 values
+     * @param maxDistance the largest <tt>t</tt> of a hit that is of interest
+     * @param hit the array that the <tt>t</tt> of the hit and the barycentric coordinates of its second and third
+     *            vertex are written to, if a triangle is hit
+     * @return the index of the triangle, i.e. of the face, or -1 if no triangle is hit before the maximum distance
+     */
+    int intersect(double[] ray, double maxDistance, double[] hit) {
+
+        if (triangleCount == 0) {
+            return -1;
+        }
+        if (pointsChanged) {
+            refit();
+        }
+
+        double ox = ray[0], oy = ray[1], oz = ray[2];
+        double dx = ray[3], dy = ray[4], dz = ray[5];
+        double inverseX = getInverse(dx), inverseY = getInverse(dy), inverseZ = getInverse(dz);
+
+        int[] stack = new int[MAX_DEPTH + 1];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        double best = maxDistance;
+        int bestTriangle = -1;
+
+        while (stackSize > 0) {
+
+            // A missed box is entered at infinity, so it is skipped even before the first hit.
+            int cell = stack[--stackSize];
+            if (enter(cell, ox, oy, oz, inverseX, inverseY, inverseZ) >= best) {
+                continue;
+            }
+
+            if (count[cell] > 0) {
+                for (int i = first[cell]; i < first[cell] + count[cell]; i++) {
+                    // Only a closer hit is written, so the hit always belongs to the best triangle.
+                    double t = intersect(order[i], ox, oy, oz, dx, dy, dz, best, hit);
+                    if (t >= 0) {
+                        best = t;
+                        bestTriangle = order[i];
+                    }
+                }
+            } else {
+                // The cell depth is bounded by the build, so the stack cannot overflow.
+                stack[stackSize++] = first[cell];
+                stack[stackSize++] = cell + 1;
+            }
+        }
+        return bestTriangle;
+    }
+
+    /**
+     * Builds the cell for a range of the triangle order, partitioning the range as it is split.
+     */
+    private int build(float[] centers, int from, int to, int depth) {
+
+        int cell = cellCount++;
+        updateBox(cell, from, to);
+
+        int axis = -1;
+        double extent = 0;
+        if (to - from > MAX_LEAF_SIZE && depth < MAX_DEPTH) {
+            for (int a = 0; a < POINT_SIZE; a++) {
+                float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    min = Math.min(min, centers[POINT_SIZE * order[i] + a]);
+                    max = Math.max(max, centers[POINT_SIZE * order[i] + a]);
+                }
+                if (max - min > extent) {
+                    extent = max - min;
+                    axis = a;
+                }
+            }
+        }
+
+        // Triangles whose centers all coincide cannot be split.
+        if (axis < 0) {
+            first[cell] = from;
+            count[cell] = to - from;
+            return cell;
+        }
+
+        int middle = (from + to) >>> 1;
+        select(centers, axis, from, to - 1, middle);
+
+        build(centers, from, middle, depth + 1);
+        first[cell] = build(centers, middle, to, depth + 1);
+        count[cell] = 0;
+        return cell;
+    }
+
+    /**
+     * Partially sorts a range of the triangle order by the centers along an axis, so that the triangle at the given
+     * index is in its sorted place, with no larger triangle before and no smaller one after it.
+     */
+    private void select(float[] centers, int axis, int left, int right, int index) {
+
+        while (right > left) {
+
+            float pivot = centers[POINT_SIZE * order[(left + right) >>> 1] + axis];
+            int i = left, j = right;
+
+            while (i <= j) {
+                while (centers[POINT_SIZE * order[i] + axis] < pivot) {
+                    i++;
+                }
+                while (centers[POINT_SIZE * order[j] + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+
+            if (index <= j) {
+                right = j;
+            } else if (index >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies the changed points of the mesh and refits all boxes to them, children before their parents.
+     */
+    private void refit() {
+
+        pointsChanged = false;
+        points = mesh.getPoints().toArray(points);
+
+        for (int cell = cellCount - 1; cell >= 0; cell--) {
+
+            if (count[cell] > 0) {
+                updateBox(cell, first[cell], first[cell] + count[cell]);
+                continue;
+            }
+
+            int left = BOX_SIZE * (cell + 1);
+            int right = BOX_SIZE * first[cell];
+            int box = BOX_SIZE * cell;
+            for (int axis = 0; axis < POINT_SIZE; axis++) {
+                boxes[box + axis] = Math.min(boxes[left + axis], boxes[right + axis]);
+                boxes[box + POINT_SIZE + axis] = Math.max(boxes[left + POINT_SIZE + axis],
+                        boxes[right + POINT_SIZE + axis]);
+            }
+        }
+    }
+
+    /**
+     * Sets the box of a cell to the bounds of a range of the triangle order.
+     */
+    private void updateBox(int cell, int from, int to) {
+
+        int box = BOX_SIZE * cell;
+        for (int axis = 0; axis < POINT_SIZE; axis++) {
+            boxes[box + axis] = Float.POSITIVE_INFINITY;
+            boxes[box + POINT_SIZE + axis] = Float.NEGATIVE_INFINITY;
+        }
+
+        for (int i = from; i < to; i++) {
+            for (int vertex = 0; vertex < 3; vertex++) {
+                for (int axis = 0; axis < POINT_SIZE; axis++) {
+                    float value = getCoordinate(order[i], vertex, axis);
+                    boxes[box + axis] = Math.min(boxes[box + axis], value);
+                    boxes[box + POINT_SIZE + axis] = Math.max(boxes[box + POINT_SIZE + axis], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the distance at which a ray enters the box of a cell.
+     *
+     * @return the <tt>t</tt> of the entry point, 0 if the origin is inside, or infinity if the box is missed
+     */
+    private double enter(int cell, double ox, double oy, double oz, double inverseX, double inverseY,
+            double inverseZ) {
+
+        int box = BOX_SIZE * cell;
+
+        double x1 = (boxes[box] - ox) * inverseX, x2 = (boxes[box + 3] - ox) * inverseX;
+        double y1 = (boxes[box + 1] - oy) * inverseY, y2 = (boxes[box + 4] - oy) * inverseY;
+        double z1 = (boxes[box + 2] - oz) * inverseZ, z2 = (boxes[box + 5] - oz) * inverseZ;
+
+        double near = Math.max(0, Math.max(Math.min(x1, x2), Math.max(Math.min(y1, y2), Math.min(z1, z2))));
+        double far = Math.min(Math.max(x1, x2), Math.min(Math.max(y1, y2), Math.max(z1, z2)));
+
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Intersects a ray with a triangle, using the algorithm of Moeller and Trumbore.
+     *
+     * @return the <tt>t</tt> of the hit, or -1 if the triangle is missed or hit at or beyond the maximum distance
+     */
+    private double intersect(int triangle, double ox, double oy, double oz, double dx, double dy, double dz,
+            double maxDistance, double[] hit) {
+
+        int p0 = POINT_SIZE * triangles[3 * triangle];
+        int p1 = POINT_SIZE * triangles[3 * triangle + 1];
+        int p2 = POINT_SIZE * triangles[3 * triangle + 2];
+        if (Math.max(p0, Math.max(p1, p2)) + 2 >= points.length || Math.min(p0, Math.min(p1, p2)) < 0) {
+            return -1;
+        }
+
+        double e1x = points[p1] - points[p0], e1y = points[p1 + 1] - points[p0 + 1], e1z = points[p1 + 2]
+                - points[p0 + 2];
+        double e2x = points[p2] - points[p0], e2y = points[p2 + 1] - points[p0 + 1], e2z = points[p2 + 2]
+                - points[p0 + 2];
+
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double determinant = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(determinant) < EPSILON) {
+            return -1;
+        }
+        double inverse = 1 / determinant;
+
+        double sx = ox - points[p0], sy = oy - points[p0 + 1], sz = oz - points[p0 + 2];
+        double u = (sx * px + sy * py + sz * pz) * inverse;
+        if (u < 0 || u > 1) {
+            return -1;
+        }
+
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * inverse;
+        if (v < 0 || u + v > 1) {
+            return -1;
+        }
+
+        double t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+        if (t < 0 || t >= maxDistance) {
+            return -1;
+        }
+
+        hit[0] = t;
+        hit[1] = u;
+        hit[2] = v;
+        return t;
+    }
+
+    /**
+     * Gets the inverse of a component of a direction, a huge value instead of infinity for 0, so that a box side
+     * through the origin gives 0 rather than NaN.
+     */
+    private static double getInverse(double component) {
+        return component != 0 ? 1 / component : Double.MAX_VALUE;
+    }
+
+    private float getCoordinate(int triangle, int vertex, int axis) {
+
+        int point = POINT_SIZE * triangles[3 * triangle + vertex] + axis;
+        return point >= 0 && point < points.length ? points[point] : 0;
+    }
+}
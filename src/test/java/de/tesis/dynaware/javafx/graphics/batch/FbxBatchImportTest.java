@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for the command line arguments of {@link FbxBatchImport}.
+ */
+public class FbxBatchImportTest {
+
+    @Test
+    public void parseValidArguments() throws IOException {
+        new FbxBatchImport().parseArguments(new String[] { "--threads", "2", "--optimize", "0.001", "--textures",
+                "scene.fbx" });
+    }
+
+    @Test
+    public void nameOptionOfInvalidNumber() throws IOException {
+
+        checkRejected("Invalid value for option --threads [x]", "--threads", "x", "scene.fbx");
+        checkRejected("Invalid value for option --optimize [0.1.2]", "--optimize", "0.1.2", "scene.fbx");
+        checkRejected("Missing value for option [--optimize]", "--optimize");
+    }
+
+    @Test
+    public void rejectInvalidTolerance() throws IOException {
+
+        checkRejected("Value for option --optimize must be finite [NaN]", "--optimize", "NaN", "scene.fbx");
+        checkRejected("Value for option --optimize must be finite [Infinity]", "--optimize", "Infinity", "scene.fbx");
+        checkRejected("Tolerance must not be negative [-0.5]", "--optimize", "-0.5", "scene.fbx");
+    }
+
+    @Test
+    public void rejectInvalidThreadCount() throws IOException {
+        checkRejected("Thread count must be at least 1 [0]", "--threads", "0", "scene.fbx");
+    }
+
+    private static void checkRejected(String message, String... args) throws IOException {
+
+        try {
+            new FbxBatchImport().parseArguments(args);
+            fail("Arguments were accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
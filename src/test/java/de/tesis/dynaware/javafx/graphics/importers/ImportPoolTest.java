@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImportPool}.
+ */
+public class ImportPoolTest {
+
+    private ImportPool importPool;
+
+    @Before
+    public void setUp() {
+        importPool = new ImportPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        importPool.close();
+    }
+
+    @Test
+    public void loadNoFiles() throws IOException, InterruptedException {
+        assertTrue(importPool.loadAll(Collections.<String> emptyList()).isEmpty());
+    }
+
+    @Test
+    public void rethrowIOException() throws InterruptedException {
+
+        try {
+            importPool.loadAll(Arrays.asList("file:/scene.obj", "file:/scene"));
+            fail("Files were loaded");
+        } catch (IOException e) {
+            assertEquals("Unsupported 3D file format [obj]", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rethrowUncheckedException() throws IOException, InterruptedException {
+
+        try {
+            // The escape in the url is invalid.
+            importPool.loadAll(Arrays.asList("file:/scene%zz.fbx"));
+            fail("File was loaded");
+        } catch (IllegalArgumentException e) {
+            // Expected, rather than an IOException.
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidThreadCount() {
+        new ImportPool(0);
+    }
+}
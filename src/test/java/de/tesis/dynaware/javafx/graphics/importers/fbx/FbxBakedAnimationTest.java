@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxBakedAnimation} and {@link FbxAnimationBaker}.
+ */
+public class FbxBakedAnimationTest {
+
+    private static final double DELTA = 1e-4;
+
+    // The translation of a transform in column order.
+    private static final int TX = 12;
+    private static final int TY = 13;
+    private static final int TZ = 14;
+
+    @Test
+    public void sampleKeys() {
+
+        // Keys on frames 0, 3 and 4 of a track of node 1, translating along x, from 2 seconds at 1 frame per second.
+        float[] values = new float[3 * FbxBakedAnimation.KEY_SIZE];
+        setKey(values, 0, 0);
+        setKey(values, 1, 3);
+        setKey(values, 2, 5);
+
+        FbxBakedAnimation animation = new FbxBakedAnimation(new int[] { 1 }, 2, 1, 5, new int[] { 0, 3 },
+                new int[] { 3 }, values, null, null, null);
+
+        double[] globalTransforms = new double[32];
+        Arrays.fill(globalTransforms, Double.NaN);
+
+        animation.sample(3.5, globalTransforms);
+        assertEquals(1.5, globalTransforms[16 + TX], DELTA);
+
+        // The last interval is only one frame long.
+        animation.sample(5.5, globalTransforms);
+        assertEquals(4, globalTransforms[16 + TX], DELTA);
+
+        // Times outside of the frames are clamped.
+        animation.sample(0, globalTransforms);
+        assertEquals(0, globalTransforms[16 + TX], DELTA);
+        animation.sample(100, globalTransforms);
+        assertEquals(5, globalTransforms[16 + TX], DELTA);
+
+        // Only the transforms of the tracks are written.
+        double[] expected = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 5, 0, 0, 1 };
+        for (int i = 0; i < 16; i++) {
+            assertTrue(Double.isNaN(globalTransforms[i]));
+            assertEquals(expected[i], globalTransforms[16 + i], DELTA);
+        }
+    }
+
+    @Test
+    public void sampleQuantizedKeys() {
+
+        // Two keys of a track whose translation along x goes from 1 to 3, all other values are 0.
+        short[] quantizedValues = new short[2 * FbxBakedAnimation.KEY_SIZE];
+        Arrays.fill(quantizedValues, Short.MIN_VALUE);
+        quantizedValues[FbxBakedAnimation.KEY_SIZE + 3] = Short.MAX_VALUE;
+
+        float[] offsets = new float[FbxBakedAnimation.KEY_SIZE];
+        float[] scales = new float[FbxBakedAnimation.KEY_SIZE];
+        offsets[3] = 1;
+        scales[3] = 2f / 65535;
+
+        FbxBakedAnimation animation = new FbxBakedAnimation(new int[] { 0 }, 0, 10, 2, new int[] { 0, 2 },
+                new int[] { 1 }, null, quantizedValues, offsets, scales);
+        assertTrue(animation.isQuantized());
+
+        double[] globalTransforms = new double[16];
+        animation.sample(0.05, globalTransforms);
+        assertEquals(2, globalTransforms[TX], DELTA);
+        assertEquals(0, globalTransforms[0], DELTA);
+        assertEquals(1, globalTransforms[15], 0);
+    }
+
+    @Test
+    public void bakeLinearMotion() {
+
+        FbxAnimation animation = createAnimation(new float[] { 0, 1 }, new float[] { 0, 10 });
+        FbxBakedAnimation baked = new FbxAnimationBaker(30, false, DELTA).bake(animation, new int[] { 0, 1, 2 });
+
+        assertEquals(3, baked.getTrackCount());
+        assertEquals(31, baked.getFrameCount());
+        assertEquals(30, baked.getFrameRate(), 0);
+        assertFalse(baked.isQuantized());
+
+        // Linear motion needs a few keys only, the static node a single one.
+        assertTrue(baked.getKeyCount(0) <= 3);
+        assertTrue(baked.getKeyCount(1) <= 3);
+        assertEquals(1, baked.getKeyCount(2));
+
+        double[] globalTransforms = new double[48];
+        baked.sample(0.5, globalTransforms);
+
+        assertEquals(5, globalTransforms[TX], DELTA);
+        assertEquals(5, globalTransforms[16 + TX], DELTA);
+        assertEquals(5, globalTransforms[16 + TY], DELTA);
+        assertEquals(1, globalTransforms[32 + TX], DELTA);
+        assertEquals(2, globalTransforms[32 + TY], DELTA);
+        assertEquals(3, globalTransforms[32 + TZ], DELTA);
+    }
+
+    @Test
+    public void bakeMatchesEvaluation() {
+
+        FbxAnimation animation = createAnimation(new float[] { 0, 0.25f, 0.5f, 1 }, new float[] { 0, 4, -2, 8 });
+        int[] nodes = { 0, 1, 2 };
+
+        FbxBakedAnimation baked = new FbxAnimationBaker(30, false, 0).bake(animation, nodes);
+        FbxBakedAnimation quantized = new FbxAnimationBaker(30, true, 1e-3).bake(animation, nodes);
+
+        assertTrue(quantized.isQuantized());
+        assertTrue(quantized.getSize() < baked.getSize());
+
+        double[] expected = new double[48];
+        double[] actual = new double[48];
+        double[] actualQuantized = new double[48];
+
+        // On the frames, the baked tracks reproduce the animation within the tolerance and quantization error.
+        for (int frame = 0; frame <= 30; frame++) {
+
+            double time = frame / 30.0;
+            animation.evaluate(time, expected);
+            baked.sample(time, actual);
+            quantized.sample(time, actualQuantized);
+
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], actual[i], DELTA);
+                assertEquals(expected[i], actualQuantized[i], 1e-2);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidFrameRate() {
+        new FbxAnimationBaker(0, false, 0);
+    }
+
+    /**
+     * Sets a key with an identity rotation and a translation along x.
+     */
+    private static void setKey(float[] values, int key, float x) {
+
+        int offset = FbxBakedAnimation.KEY_SIZE * key;
+        values[offset] = 1;
+        values[offset + 3] = x;
+        values[offset + 5] = 1;
+        values[offset + 10] = 1;
+    }
+
+    /**
+     * Creates an animation of three nodes: a root translated along x by a curve, its child at (0, 5, 0), and a static
+     * root at (1, 2, 3).
+     */
+    private static FbxAnimation createAnimation(float[] keyTimes, float[] keyValues) {
+
+        double[] properties = new double[3 * FbxAnimation.PROPERTY_COUNT];
+        for (int node = 0; node < 3; node++) {
+            int offset = FbxAnimation.PROPERTY_COUNT * node;
+            Arrays.fill(properties, offset + 6, offset + 9, 1);
+        }
+        properties[FbxAnimation.PROPERTY_COUNT + 1] = 5;
+        properties[2 * FbxAnimation.PROPERTY_COUNT] = 1;
+        properties[2 * FbxAnimation.PROPERTY_COUNT + 1] = 2;
+        properties[2 * FbxAnimation.PROPERTY_COUNT + 2] = 3;
+
+        return new FbxAnimation(new int[] { -1, 0, -1 }, properties, new int[3], 0, 1, new int[] { 0 },
+                new int[] { 0 }, new int[] { 0, keyTimes.length }, keyTimes, keyValues);
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxBinaryReader} and {@link FbxArrayProperty}, on binary FBX files written in memory.
+ */
+public class FbxBinaryReaderTest {
+
+    private static final int VERSION_32_BIT = 7400;
+    private static final int VERSION_64_BIT = 7500;
+
+    private static final double[] VERTICES = { 0, 0, 0, 1, 0, 0, 0, 1, 0, 1.5, -2.25, 1e10 };
+    private static final int[] INDICES = { 0, 1, -3, 1, 3, -3 };
+    private static final long[] IDS = { 1L, 1L << 40, -7L };
+
+    @Test
+    public void read32BitHeaders() throws IOException {
+        checkDocument(VERSION_32_BIT, false);
+    }
+
+    @Test
+    public void read64BitHeaders() throws IOException {
+        checkDocument(VERSION_64_BIT, false);
+    }
+
+    @Test
+    public void readDeflatedArrays() throws IOException {
+        checkDocument(VERSION_32_BIT, true);
+        checkDocument(VERSION_64_BIT, true);
+    }
+
+    @Test
+    public void convertArrays() throws IOException {
+
+        FbxRecord geometry = read(writeDocument(VERSION_64_BIT, true)).getChild("Objects").getChild("Geometry");
+
+        FbxArrayProperty indices = geometry.getChildArray("PolygonVertexIndex");
+        assertArrayEquals(new double[] { 0, 1, -3, 1, 3, -3 }, indices.toDoubleArray(), 0);
+        assertArrayEquals(new long[] { 0, 1, -3, 1, 3, -3 }, indices.toLongArray());
+
+        FbxArrayProperty ids = geometry.getChildArray("Ids");
+        assertArrayEquals(new double[] { 1, 1L << 40, -7 }, ids.toDoubleArray(), 0);
+        assertArrayEquals(new int[] { 1, 0, -7 }, ids.toIntArray());
+
+        FbxArrayProperty vertices = geometry.getChildArray("Vertices");
+        assertArrayEquals(new long[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 1, -2, 10000000000L }, vertices.toLongArray());
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 1.5f, -2.25f, 1e10f }, vertices.toFloatArray(), 0);
+    }
+
+    @Test
+    public void rejectAsciiFile() {
+
+        ByteBuffer buffer = ByteBuffer.wrap("; FBX 7.4.0 project file\nFBXHeaderExtension: {\n}\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        assertFalse(FbxBinaryReader.isBinary(buffer));
+
+        try {
+            read(buffer);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("ASCII file was read");
+    }
+
+    @Test
+    public void rejectTruncatedFile() {
+
+        ByteBuffer buffer = writeDocument(VERSION_64_BIT, true);
+        buffer.limit(buffer.limit() - 40);
+
+        try {
+            read(buffer);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("Truncated file was read");
+    }
+
+    /**
+     * Writes a document and checks that every record and property is read back.
+     */
+    private static void checkDocument(int version, boolean deflate) throws IOException {
+
+        ByteBuffer buffer = writeDocument(version, deflate);
+        assertTrue(FbxBinaryReader.isBinary(buffer));
+
+        FbxBinaryReader reader = new FbxBinaryReader(buffer);
+        FbxRecord document = reader.read();
+        assertEquals(version, reader.getVersion());
+
+        assertEquals(2, document.getChildren().size());
+        assertEquals("FBXVersion", document.getChildren().get(0).getName());
+        assertEquals(version, document.getChildren().get(0).getLong(0, -1));
+
+        FbxRecord objects = document.getChild("Objects");
+        assertEquals(1, objects.getChildren().size());
+
+        FbxRecord geometry = objects.getChild("Geometry");
+        assertEquals(3, geometry.getPropertyCount());
+        assertEquals(42L, geometry.getLong(0, -1));
+        assertEquals("Cube\u0000\u0001Geometry", geometry.getString(1));
+        assertEquals("Mesh", geometry.getString(2));
+        assertEquals(4, geometry.getChildren().size());
+
+        FbxRecord scale = geometry.getChild("Scale");
+        assertEquals(2.5, scale.getDouble(0, 0), 0);
+        assertEquals(0.5f, ((Float) scale.getProperty(1)).floatValue(), 0);
+        assertEquals(Boolean.TRUE, scale.getProperty(2));
+        assertEquals((short) -3, scale.getProperty(3));
+        assertNull(scale.getProperty(4));
+
+        FbxArrayProperty vertices = geometry.getChildArray("Vertices");
+        assertEquals('d', vertices.getType());
+        assertEquals(VERTICES.length, vertices.getLength());
+        assertArrayEquals(VERTICES, vertices.toDoubleArray(), 0);
+
+        FbxArrayProperty indices = geometry.getChildArray("PolygonVertexIndex");
+        assertEquals('i', indices.getType());
+        assertArrayEquals(INDICES, indices.toIntArray());
+
+        assertArrayEquals(IDS, geometry.getChildArray("Ids").toLongArray());
+    }
+
+    private static FbxRecord read(ByteBuffer buffer) throws IOException {
+        return new FbxBinaryReader(buffer).read();
+    }
+
+    /**
+     * Writes a document with a version record and an object with scalar and array properties.
+     */
+    private static ByteBuffer writeDocument(int version, boolean deflate) {
+
+        FbxFileWriter writer = new FbxFileWriter(version);
+
+        writer.beginRecord("FBXVersion", 1);
+        writer.putInt(version);
+        writer.endRecord();
+
+        writer.beginRecord("Objects", 0);
+        writer.beginRecord("Geometry", 3);
+        writer.putLong(42);
+        writer.putString("Cube\u0000\u0001Geometry");
+        writer.putString("Mesh");
+
+        writer.beginRecord("Scale", 4);
+        writer.putDouble(2.5);
+        writer.putFloat(0.5f);
+        writer.putBoolean(true);
+        writer.putShort((short) -3);
+        writer.endRecord();
+
+        writer.beginRecord("Vertices", 1);
+        writer.putDoubles(VERTICES, deflate);
+        writer.endRecord();
+
+        writer.beginRecord("PolygonVertexIndex", 1);
+        writer.putInts(INDICES, deflate);
+        writer.endRecord();
+
+        writer.beginRecord("Ids", 1);
+        writer.putLongs(IDS, false);
+        writer.endRecord();
+
+        writer.endRecord();
+        writer.endRecord();
+
+        return writer.finish();
+    }
+
+    /**
+     * Writes a binary FBX file into a buffer, record by record.
+     */
+    private static final class FbxFileWriter {
+
+        private final int version;
+        private final Deque<int[]> openRecords = new ArrayDeque<>();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+
+        FbxFileWriter(int version) {
+
+            this.version = version;
+
+            buffer.put("Kaydara FBX Binary  \0".getBytes(StandardCharsets.US_ASCII));
+            buffer.put((byte) 0x1A).put((byte) 0);
+            buffer.putInt(version);
+        }
+
+        void beginRecord(String name, int propertyCount) {
+
+            // The property list of the parent ends where its first nested record starts.
+            int[] parent = openRecords.peek();
+            if (parent != null && parent[2] == 0) {
+                endProperties(parent);
+            }
+
+            int start = buffer.position();
+            putHeaderField(0);
+            putHeaderField(propertyCount);
+            putHeaderField(0);
+
+            byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+            buffer.put((byte) bytes.length).put(bytes);
+
+            // The offset of the record, the offset of its properties and whether they are complete.
+            openRecords.push(new int[] { start, buffer.position(), 0 });
+        }
+
+        void endRecord() {
+
+            // A list of nested records ends with a null record.
+            int[] record = openRecords.pop();
+            if (record[2] == 0) {
+                endProperties(record);
+            } else {
+                writeNullRecord();
+            }
+
+            setHeaderField(record[0], buffer.position());
+        }
+
+        private void endProperties(int[] record) {
+            record[2] = 1;
+            setHeaderField(record[0] + 2 * getHeaderFieldSize(), buffer.position() - record[1]);
+        }
+
+        ByteBuffer finish() {
+
+            writeNullRecord();
+            buffer.flip();
+            return buffer;
+        }
+
+        void putShort(short value) {
+            ensure(3);
+            buffer.put((byte) 'Y').putShort(value);
+        }
+
+        void putBoolean(boolean value) {
+            ensure(2);
+            buffer.put((byte) 'C').put((byte) (value ? 1 : 0));
+        }
+
+        void putInt(int value) {
+            ensure(5);
+            buffer.put((byte) 'I').putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(9);
+            buffer.put((byte) 'L').putLong(value);
+        }
+
+        void putFloat(float value) {
+            ensure(5);
+            buffer.put((byte) 'F').putFloat(value);
+        }
+
+        void putDouble(double value) {
+            ensure(9);
+            buffer.put((byte) 'D').putDouble(value);
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(5 + bytes.length);
+            buffer.put((byte) 'S').putInt(bytes.length).put(bytes);
+        }
+
+        void putDoubles(double[] values, boolean deflate) {
+            ByteBuffer data = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+            data.asDoubleBuffer().put(values);
+            putArray('d', values.length, data.array(), deflate);
+        }
+
+        void putInts(int[] values, boolean deflate) {
+            ByteBuffer data = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+            data.asIntBuffer().put(values);
+            putArray('i', values.length, data.array(), deflate);
+        }
+
+        void putLongs(long[] values, boolean deflate) {
+            ByteBuffer data = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+            data.asLongBuffer().put(values);
+            putArray('l', values.length, data.array(), deflate);
+        }
+
+        private void putArray(char type, int length, byte[] data, boolean deflate) {
+
+            byte[] stored = deflate ? deflate(data) : data;
+            ensure(13 + stored.length);
+            buffer.put((byte) type).putInt(length).putInt(deflate ? 1 : 0).putInt(stored.length).put(stored);
+        }
+
+        private void writeNullRecord() {
+            ensure(25);
+            putHeaderField(0);
+            putHeaderField(0);
+            putHeaderField(0);
+            buffer.put((byte) 0);
+        }
+
+        private int getHeaderFieldSize() {
+            return version >= VERSION_64_BIT ? 8 : 4;
+        }
+
+        private void putHeaderField(long value) {
+            ensure(8);
+            if (version >= VERSION_64_BIT) {
+                buffer.putLong(value);
+            } else {
+                buffer.putInt((int) value);
+            }
+        }
+
+        private void setHeaderField(int index, long value) {
+            if (version >= VERSION_64_BIT) {
+                buffer.putLong(index, value);
+            } else {
+                buffer.putInt(index, (int) value);
+            }
+        }
+
+        private void ensure(int size) {
+            if (buffer.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity() + size).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+        }
+
+        private static byte[] deflate(byte[] data) {
+
+            Deflater deflater = new Deflater();
+            deflater.setInput(data);
+            deflater.finish();
+
+            byte[] output = new byte[data.length + 64];
+            int length = deflater.deflate(output);
+            deflater.end();
+            return Arrays.copyOf(output, length);
+        }
+    }
+}
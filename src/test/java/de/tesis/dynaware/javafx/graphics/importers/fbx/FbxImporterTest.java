@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import javafx.scene.Node;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxImporter}.
+ */
+public class FbxImporterTest {
+
+    // More meshes than one conversion task converts, so the conversion is split.
+    private static final int MESH_COUNT = 40;
+    private static final String URL = "file:/scene.fbx";
+    private static final String FILE_PATH = new File("/scene.fbx").getPath();
+
+    private static final FbxMeshData TRIANGLE = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 },
+            new float[] { 0, 0, 1, 0, 0, 1 }, new int[] { 0, 0, 1, 1, 2, 2 }, new int[] { 1 });
+
+    @Test
+    public void addMeshViewsInTraversalOrder() throws IOException {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        List<Node> children = new FbxImporter(URL, fbxLib).getRoot().getChildren();
+
+        assertEquals(MESH_COUNT, children.size());
+        for (int i = 0; i < MESH_COUNT; i++) {
+            MeshView meshView = (MeshView) children.get(i);
+            assertEquals("mesh" + i, meshView.getId());
+            assertEquals(i, meshView.getLocalToParentTransform().getTx(), 0);
+            assertEquals(6, ((TriangleMesh) meshView.getMesh()).getFaces().size());
+        }
+
+        // All meshes share the same material, which is only created once.
+        assertSame(((MeshView) children.get(0)).getMaterial(), ((MeshView) children.get(1)).getMaterial());
+
+        assertFalse(fbxLib.isOpen());
+        assertEquals(1, fbxLib.getCloseCount());
+    }
+
+    @Test
+    public void shareMeshesOfInstances() throws IOException {
+
+        List<Node> children = new FbxImporter(URL, new InstancingFbxLib(MESH_COUNT, TRIANGLE)).getRoot().getChildren();
+
+        assertEquals(MESH_COUNT, children.size());
+        TriangleMesh mesh = (TriangleMesh) ((MeshView) children.get(0)).getMesh();
+        for (int i = 0; i < MESH_COUNT; i++) {
+            MeshView meshView = (MeshView) children.get(i);
+            assertSame(mesh, meshView.getMesh());
+            assertEquals(i, meshView.getLocalToParentTransform().getTx(), 0);
+        }
+
+        // Meshes of different geometries are not shared, even if their content is equal.
+        children = new FbxImporter(URL, new TestFbxLib(2, TRIANGLE)).getRoot().getChildren();
+        assertNotSame(((MeshView) children.get(0)).getMesh(), ((MeshView) children.get(1)).getMesh());
+    }
+
+    @Test
+    public void streamMeshViewsToConsumer() throws IOException {
+
+        final List<List<MeshView>> batches = Collections.synchronizedList(new ArrayList<List<MeshView>>());
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setMeshViewConsumer(new Consumer<List<MeshView>>() {
+
+            @Override
+            public void accept(List<MeshView> meshViews) {
+                batches.add(new ArrayList<>(meshViews));
+            }
+        });
+
+        // The consumer gets all mesh views instead of the root, in batches of consecutive mesh views.
+        assertTrue(new FbxImporter(URL, new TestFbxLib(MESH_COUNT, TRIANGLE), options).getRoot().getChildren()
+                .isEmpty());
+        assertTrue(batches.size() > 1);
+
+        Set<String> ids = new HashSet<>();
+        for (List<MeshView> batch : batches) {
+            int first = Integer.parseInt(batch.get(0).getId().substring(4));
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals("mesh" + (first + i), batch.get(i).getId());
+                assertTrue(ids.add(batch.get(i).getId()));
+            }
+        }
+        assertEquals(MESH_COUNT, ids.size());
+    }
+
+    @Test
+    public void stopCancelledImportBetweenNodes() throws IOException {
+
+        FbxCancellationToken cancellationToken = new FbxCancellationToken();
+        CancellingFbxLib fbxLib = new CancellingFbxLib(MESH_COUNT, TRIANGLE, cancellationToken, 5);
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setCancellationToken(cancellationToken);
+
+        try {
+            new FbxImporter(URL, fbxLib, options);
+            fail("Import was not cancelled");
+        } catch (CancellationException e) {
+            assertEquals(5, fbxLib.getMeshDataCount());
+            assertFalse(fbxLib.isOpen());
+            assertEquals(1, fbxLib.getCloseCount());
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void stopImportCancelledBeforeStart() throws IOException {
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setCancellationToken(new FbxCancellationToken());
+        options.getCancellationToken().cancel();
+
+        new FbxImporter(URL, new TestFbxLib(MESH_COUNT, TRIANGLE), options);
+    }
+
+    @Test
+    public void reportStatsToListeners() throws IOException {
+
+        RecordingListener listener = new RecordingListener();
+        FbxImportOptions options = new FbxImportOptions();
+        options.addImportListener(listener);
+
+        FbxImportStats stats = new FbxImporter(URL, new TestFbxLib(MESH_COUNT, TRIANGLE), options).getStats();
+
+        assertEquals(Arrays.asList("started " + FILE_PATH, "finished " + FILE_PATH), listener.events);
+        assertSame(stats, listener.stats);
+
+        assertEquals(MESH_COUNT + 1, stats.getNodeCount());
+        assertEquals(MESH_COUNT, stats.getMeshCount());
+        assertEquals(MESH_COUNT, stats.getGeometryCount());
+        assertEquals(1, stats.getMaterialCount());
+        assertEquals(MESH_COUNT, stats.getTriangleCount());
+
+        assertEquals(1, stats.getCount(FbxImportPhase.OPEN));
+        assertEquals(MESH_COUNT + 1, stats.getCount(FbxImportPhase.TRAVERSAL));
+        assertEquals(MESH_COUNT, stats.getCount(FbxImportPhase.MESH_TRANSFER));
+        assertEquals(MESH_COUNT, stats.getCount(FbxImportPhase.MESH_CREATION));
+        assertEquals(1, stats.getCount(FbxImportPhase.MATERIAL_READ));
+        assertEquals(1, stats.getCount(FbxImportPhase.MATERIAL_CREATION));
+        assertEquals(0, stats.getCount(FbxImportPhase.CACHE));
+        assertTrue(stats.getTotalTime() >= stats.getOpenTime() + stats.getTraversalTime());
+    }
+
+    @Test
+    public void reportFailureToListeners() throws IOException {
+
+        RecordingListener listener = new RecordingListener();
+        FbxImportOptions options = new FbxImportOptions();
+        options.addImportListener(listener);
+
+        final IllegalStateException failure = new IllegalStateException("Broken mesh");
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE) {
+
+            @Override
+            public boolean getMeshData(int i, ByteBuffer buffer) {
+                throw failure;
+            }
+        };
+
+        try {
+            new FbxImporter(URL, fbxLib, options);
+            fail("Import did not fail");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+
+        assertEquals(Arrays.asList("started " + FILE_PATH, "failed " + FILE_PATH), listener.events);
+        assertSame(failure, listener.cause);
+        assertEquals(1, listener.stats.getCount(FbxImportPhase.OPEN));
+        assertEquals(1, fbxLib.getCloseCount());
+    }
+
+    @Test
+    public void failWhenNodeCannotBeSelected() throws IOException {
+
+        // The node table starts with the root, so the third mesh node is node 3.
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        fbxLib.failNode(3);
+
+        try {
+            new FbxImporter(URL, fbxLib);
+            fail("Import did not fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Node not found [mesh2]", e.getMessage());
+            assertEquals(1, fbxLib.getCloseCount());
+        }
+    }
+
+    @Test
+    public void triangulateOnlyIfTheLibraryDidNot() throws IOException {
+
+        TriangulatingFbxLib fbxLib = new TriangulatingFbxLib(MESH_COUNT, TRIANGLE, false);
+        FbxImportStats stats = new FbxImporter(URL, fbxLib).getStats();
+
+        assertEquals(MESH_COUNT, fbxLib.getTriangulationCount());
+        assertEquals(MESH_COUNT, stats.getCount(FbxImportPhase.TRIANGULATION));
+
+        // A library that triangulated the whole scene is not asked for single geometries.
+        fbxLib = new TriangulatingFbxLib(MESH_COUNT, TRIANGLE, true);
+        stats = new FbxImporter(URL, fbxLib).getStats();
+
+        assertEquals(0, fbxLib.getTriangulationCount());
+        assertEquals(0, stats.getCount(FbxImportPhase.TRIANGULATION));
+        assertEquals(MESH_COUNT, stats.getTriangleCount());
+    }
+
+    /**
+     * A library whose mesh nodes are all instances of the same geometry.
+     */
+    private static class InstancingFbxLib extends TestFbxLib {
+
+        InstancingFbxLib(int meshCount, FbxMeshData meshData) {
+            super(meshCount, meshData);
+        }
+
+        @Override
+        public long getNodeAttributeId(int i) {
+            return 0;
+        }
+    }
+
+    /**
+     * A library that cancels the import once it has transferred the data of a given number of meshes.
+     */
+    private static class CancellingFbxLib extends TestFbxLib {
+
+        private final FbxCancellationToken cancellationToken;
+        private final int cancelCount;
+        private int meshDataCount;
+
+        CancellingFbxLib(int meshCount, FbxMeshData meshData, FbxCancellationToken cancellationToken,
+                int cancelCount) {
+            super(meshCount, meshData);
+            this.cancellationToken = cancellationToken;
+            this.cancelCount = cancelCount;
+        }
+
+        int getMeshDataCount() {
+            return meshDataCount;
+        }
+
+        @Override
+        public boolean getMeshData(int i, ByteBuffer buffer) {
+
+            if (++meshDataCount == cancelCount) {
+                cancellationToken.cancel();
+            }
+            return super.getMeshData(i, buffer);
+        }
+    }
+
+    /**
+     * Records the calls of an import listener.
+     */
+    private static class RecordingListener implements FbxImportListener {
+
+        private final List<String> events = new ArrayList<>();
+        private FbxImportStats stats;
+        private Throwable cause;
+
+        @Override
+        public void importStarted(String filePath) {
+            events.add("started " + filePath);
+        }
+
+        @Override
+        public void importFinished(String filePath, FbxImportStats stats) {
+            events.add("finished " + filePath);
+            this.stats = stats;
+        }
+
+        @Override
+        public void importFailed(String filePath, FbxImportStats stats, Throwable cause) {
+            events.add("failed " + filePath);
+            this.stats = stats;
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * A library whose geometries are not triangle meshes unless it triangulated the whole scene.
+     */
+    private static class TriangulatingFbxLib extends TestFbxLib {
+
+        private final boolean triangulated;
+        private int triangulationCount;
+
+        TriangulatingFbxLib(int meshCount, FbxMeshData meshData, boolean triangulated) {
+            super(meshCount, meshData);
+            this.triangulated = triangulated;
+        }
+
+        int getTriangulationCount() {
+            return triangulationCount;
+        }
+
+        @Override
+        public boolean isTriangulated() {
+            return triangulated;
+        }
+
+        @Override
+        public boolean isTriangleMesh(int i) {
+            return false;
+        }
+
+        @Override
+        public void triangulate(int i) {
+            triangulationCount++;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxLazyScene} and {@link FbxLazyNode}.
+ */
+public class FbxLazySceneTest {
+
+    private static final int MESH_COUNT = 4;
+    private static final long TIMEOUT = 10;
+
+    private static final FbxMeshData TRIANGLE = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 },
+            new float[] { 0, 0, 1, 0, 0, 1 }, new int[] { 0, 0, 1, 1, 2, 2 }, new int[] { 1 });
+
+    @Test
+    public void importPlaceholders() throws IOException {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        FbxLazyScene scene = importLazily(fbxLib);
+
+        assertEquals(MESH_COUNT, scene.getNodes().size());
+        assertEquals(MESH_COUNT, scene.getOpenCount());
+        assertFalse(scene.isClosed());
+        assertTrue(fbxLib.isOpen());
+
+        for (FbxLazyNode node : scene.getNodes()) {
+            assertSame(node, FbxLazyNode.get(node.getMeshView()));
+            assertSame(scene, node.getScene());
+            assertFalse(node.isRequested());
+            assertFalse(node.isResolved());
+        }
+    }
+
+    @Test
+    public void closeAfterAllNodesAreReleased() throws Exception {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        FbxLazyScene scene = importLazily(fbxLib);
+        List<FbxLazyNode> nodes = scene.getNodes();
+
+        nodes.get(0).release();
+        nodes.get(0).release();
+        assertEquals(MESH_COUNT - 1, scene.getOpenCount());
+
+        scene.release();
+        assertEquals(0, scene.getOpenCount());
+        assertTrue(scene.isClosed());
+        awaitClose(fbxLib);
+        assertEquals(1, fbxLib.getCloseCount());
+    }
+
+    @Test
+    public void closeAfterAllNodesAreResolved() throws Exception {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        FbxLazyScene scene = importLazily(fbxLib);
+
+        List<CompletableFuture<MeshView>> futures = new ArrayList<>();
+        for (FbxLazyNode node : scene.getNodes()) {
+            futures.add(node.resolve());
+            assertTrue(node.isRequested());
+            assertSame(futures.get(futures.size() - 1), node.resolve());
+        }
+
+        for (int i = 0; i < MESH_COUNT; i++) {
+            FbxLazyNode node = scene.getNodes().get(i);
+            assertSame(node.getMeshView(), futures.get(i).get(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(node.isResolved());
+            assertEquals(6, ((TriangleMesh) node.getMeshView().getMesh()).getFaces().size());
+        }
+
+        awaitClose(fbxLib);
+        assertTrue(scene.isClosed());
+        assertEquals(0, scene.getOpenCount());
+        assertEquals(1, fbxLib.getCloseCount());
+    }
+
+    @Test
+    public void keepRequestedNodesOnRelease() throws Exception {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        FbxLazyScene scene = importLazily(fbxLib);
+        FbxLazyNode node = scene.getNodes().get(1);
+
+        CompletableFuture<MeshView> future = node.resolve();
+        scene.release();
+        node.release();
+
+        assertSame(node.getMeshView(), future.get(TIMEOUT, TimeUnit.SECONDS));
+        awaitClose(fbxLib);
+        assertEquals(1, fbxLib.getCloseCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectResolveOfReleasedNode() throws IOException {
+
+        FbxLazyScene scene = importLazily(new TestFbxLib(MESH_COUNT, TRIANGLE));
+        FbxLazyNode node = scene.getNodes().get(0);
+
+        node.release();
+        node.resolve();
+    }
+
+    @Test
+    public void failOnlyNodesThatWereNotCompleted() throws Exception {
+
+        TestFbxLib fbxLib = new TestFbxLib(MESH_COUNT, TRIANGLE);
+        FbxLazyScene scene = importLazily(fbxLib);
+        List<FbxLazyNode> nodes = scene.getNodes();
+
+        // The node table starts with the root, so the third mesh node is node 3.
+        fbxLib.failNode(3);
+
+        // Requests made while holding the lock of the scene are resolved in a single pass.
+        List<CompletableFuture<MeshView>> futures = new ArrayList<>();
+        synchronized (scene) {
+            for (FbxLazyNode node : nodes) {
+                futures.add(node.resolve());
+            }
+        }
+
+        for (int i = 0; i < MESH_COUNT; i++) {
+            try {
+                futures.get(i).get(TIMEOUT, TimeUnit.SECONDS);
+                assertTrue("Node " + i + " should have failed", i < 2);
+            } catch (ExecutionException e) {
+                assertTrue("Node " + i + " should have been resolved", i >= 2);
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+
+        awaitClose(fbxLib);
+        assertTrue(scene.isClosed());
+    }
+
+    private static FbxLazyScene importLazily(FbxLib fbxLib) throws IOException {
+
+        FbxImportOptions options = new FbxImportOptions();
+        options.setLoadTextures(false);
+        options.setLazy(true);
+
+        FbxImporter importer = new FbxImporter("file:/lazy.fbx", fbxLib, options);
+        return importer.getLazyScene();
+    }
+
+    /**
+     * Waits until the file is closed, which happens on the resolve thread after the last reference is removed.
+     */
+    private static void awaitClose(TestFbxLib fbxLib) throws InterruptedException {
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (fbxLib.isOpen()) {
+            if (System.nanoTime() > end) {
+                fail("File was not closed");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
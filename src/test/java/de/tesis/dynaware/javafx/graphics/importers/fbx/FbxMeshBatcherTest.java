@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxMeshBatcher}.
+ */
+public class FbxMeshBatcherTest {
+
+    // A single triangle with texture coordinates and one without.
+    private static final FbxMeshData TRIANGLE = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 },
+            new float[] { 0, 0, 1, 0, 0, 1 }, new int[] { 0, 0, 1, 1, 2, 2 }, new int[] { 4 });
+    private static final FbxMeshData UNTEXTURED_TRIANGLE = new FbxMeshData(new float[] { 0, 0, 0, 0, 0, 1, 1, 0, 0 },
+            null, new int[] { 0, 0, 1, 0, 2, 0 }, null);
+    private static final FbxMeshData EMPTY = new FbxMeshData(null, null, null, null);
+
+    // Scales by 2 and translates by (10, 20, 30), in FBX column order.
+    private static final double[] TRANSFORM = { 2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 10, 20, 30, 1 };
+
+    @Test
+    public void groupByMaterial() {
+
+        List<FbxMeshData> geometries = Arrays.asList(TRIANGLE, EMPTY);
+        FbxMeshPart first = new FbxMeshPart("First", 0, 0, null, null);
+        FbxMeshPart second = new FbxMeshPart("Second", 0, 1, null, null);
+        FbxMeshPart third = new FbxMeshPart("Third", 0, 0, null, null);
+        FbxMeshPart empty = new FbxMeshPart("Empty", 1, 0, null, null);
+
+        List<List<FbxMeshPart>> batches = new FbxMeshBatcher().group(Arrays.asList(first, second, empty, third),
+                geometries);
+
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList(first, third), batches.get(0));
+        assertEquals(Arrays.asList(second), batches.get(1));
+    }
+
+    @Test
+    public void splitAtMaxPointCount() {
+
+        List<FbxMeshPart> parts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            parts.add(new FbxMeshPart("Part" + i, 0, 0, null, null));
+        }
+
+        // Three triangles of three points each fit into ten points.
+        List<List<FbxMeshPart>> batches = new FbxMeshBatcher(10).group(parts, Arrays.asList(TRIANGLE));
+
+        assertEquals(3, batches.size());
+        assertEquals(parts.subList(0, 3), batches.get(0));
+        assertEquals(parts.subList(3, 6), batches.get(1));
+        assertEquals(parts.subList(6, 7), batches.get(2));
+    }
+
+    @Test
+    public void keepLargePartsOnTheirOwn() {
+
+        FbxMeshPart first = new FbxMeshPart("First", 0, 0, null, null);
+        FbxMeshPart second = new FbxMeshPart("Second", 0, 0, null, null);
+
+        List<List<FbxMeshPart>> batches = new FbxMeshBatcher(2).group(Arrays.asList(first, second),
+                Arrays.asList(TRIANGLE));
+
+        assertEquals(2, batches.size());
+        assertSame(first, batches.get(0).get(0));
+        assertSame(second, batches.get(1).get(0));
+    }
+
+    @Test
+    public void mergeParts() {
+
+        List<FbxMeshData> geometries = Arrays.asList(TRIANGLE, UNTEXTURED_TRIANGLE);
+        List<FbxMeshPart> batch = Arrays.asList(
+                new FbxMeshPart("Plain", 0, 0, null, null),
+                new FbxMeshPart("Transformed", 0, 0, TRANSFORM, new double[] { 1, 1, 1 }),
+                new FbxMeshPart("Untextured", 1, 0, TRANSFORM, null));
+
+        FbxMeshData merged = FbxMeshBatcher.merge(batch, geometries);
+
+        assertArrayEquals(new float[] {
+                0, 0, 0, 1, 0, 0, 0, 1, 0,
+                12, 22, 32, 14, 22, 32, 12, 24, 32,
+                10, 20, 30, 10, 20, 32, 12, 20, 30 }, merged.getVertices(), 0);
+
+        // Parts without texture coordinates get a single (0, 0) texture coordinate.
+        assertArrayEquals(new float[] { 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0 }, merged.getTexCoords(), 0);
+
+        assertArrayEquals(new int[] {
+                0, 0, 1, 1, 2, 2,
+                3, 3, 4, 4, 5, 5,
+                6, 6, 7, 6, 8, 6 }, merged.getFaces());
+
+        // Parts without smoothing groups are smoothed as a whole.
+        assertArrayEquals(new int[] { 4, 4, 1 }, merged.getSmoothingGroups());
+    }
+
+    @Test
+    public void mergeWithoutSmoothingGroups() {
+
+        FbxMeshData merged = FbxMeshBatcher.merge(Arrays.asList(new FbxMeshPart("Untextured", 0, 0, null, null)),
+                Arrays.asList(UNTEXTURED_TRIANGLE));
+
+        assertArrayEquals(UNTEXTURED_TRIANGLE.getVertices(), merged.getVertices(), 0);
+        assertArrayEquals(UNTEXTURED_TRIANGLE.getFaces(), merged.getFaces());
+        assertNull(merged.getSmoothingGroups());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidMaxPointCount() {
+        new FbxMeshBatcher(0);
+    }
+}
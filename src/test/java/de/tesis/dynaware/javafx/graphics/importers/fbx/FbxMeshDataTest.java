@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxMeshData}.
+ */
+public class FbxMeshDataTest {
+
+    private static final float[] VERTICES = { 0, 0, 0, 1, 0, 0, 0, 1, 0.5f };
+    private static final float[] TEX_COORDS = { 0, 0, 1, 0, 0, 1 };
+    private static final int[] FACES = { 0, 0, 1, 1, 2, 2 };
+    private static final int[] SMOOTHING_GROUPS = { 3 };
+
+    @Test
+    public void encodeAndDecode() {
+
+        int size = FbxMeshData.getSize(VERTICES, TEX_COORDS, FACES, SMOOTHING_GROUPS);
+        assertEquals(FbxMeshData.HEADER_SIZE + 4 * (9 + 6 + 6 + 1), size);
+
+        ByteBuffer buffer = FbxMeshData.allocate(size);
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+
+        FbxMeshData.encode(buffer, VERTICES, TEX_COORDS, FACES, SMOOTHING_GROUPS);
+        FbxMeshData meshData = FbxMeshData.decode(buffer);
+
+        assertArrayEquals(VERTICES, meshData.getVertices(), 0);
+        assertArrayEquals(TEX_COORDS, meshData.getTexCoords(), 0);
+        assertArrayEquals(FACES, meshData.getFaces());
+        assertArrayEquals(SMOOTHING_GROUPS, meshData.getSmoothingGroups());
+    }
+
+    @Test
+    public void decodeMissingArraysAsNull() {
+
+        ByteBuffer buffer = FbxMeshData.allocate(FbxMeshData.getSize(VERTICES, null, FACES, null));
+        FbxMeshData.encode(buffer, VERTICES, null, FACES, null);
+        FbxMeshData meshData = FbxMeshData.decode(buffer);
+
+        assertArrayEquals(VERTICES, meshData.getVertices(), 0);
+        assertNull(meshData.getTexCoords());
+        assertArrayEquals(FACES, meshData.getFaces());
+        assertNull(meshData.getSmoothingGroups());
+    }
+
+    @Test
+    public void ignorePositionOfBuffer() {
+
+        // A larger buffer that was used before, as the staging buffers of an import are.
+        ByteBuffer buffer = FbxMeshData.allocate(2 * FbxMeshData.getSize(VERTICES, TEX_COORDS, FACES, null));
+        buffer.position(12);
+        buffer.limit(20);
+
+        FbxMeshData.encode(buffer, VERTICES, TEX_COORDS, FACES, null);
+        assertEquals(12, buffer.position());
+        assertEquals(20, buffer.limit());
+
+        buffer.position(4);
+        FbxMeshData meshData = FbxMeshData.decode(buffer);
+        assertArrayEquals(VERTICES, meshData.getVertices(), 0);
+        assertArrayEquals(FACES, meshData.getFaces());
+    }
+}
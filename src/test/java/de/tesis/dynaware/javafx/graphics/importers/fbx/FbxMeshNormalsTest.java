@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxMeshNormals}.
+ */
+public class FbxMeshNormalsTest {
+
+    private static final float DELTA = 1e-6f;
+    private static final float HALF_SQRT_2 = (float) Math.sqrt(0.5);
+
+    // Two triangles hinged at the edge from point 0 to point 1, one facing +z and one facing +y.
+    private static final float[] HINGE_POINTS = { 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+    private static final int[] HINGE_FACES = { 0, 0, 1, 0, 2, 0, 1, 0, 0, 0, 3, 0 };
+
+    private static final float[] UP = { 0, 0, 1 };
+    private static final float[] FRONT = { 0, 1, 0 };
+    private static final float[] BETWEEN = { 0, HALF_SQRT_2, HALF_SQRT_2 };
+
+    @Test
+    public void smoothFacesOfTheSameGroup() {
+
+        TriangleMesh mesh = createHinge(new int[] { 1, 1 });
+
+        assertEquals(VertexFormat.POINT_NORMAL_TEXCOORD, mesh.getVertexFormat());
+        assertEquals(4, mesh.getNormals().size() / 3);
+
+        checkNormals(mesh, 0, BETWEEN, BETWEEN, UP);
+        checkNormals(mesh, 1, BETWEEN, BETWEEN, FRONT);
+    }
+
+    @Test
+    public void smoothFacesThatShareAGroup() {
+
+        TriangleMesh mesh = createHinge(new int[] { 3, 6 });
+
+        checkNormals(mesh, 0, BETWEEN, BETWEEN, UP);
+        checkNormals(mesh, 1, BETWEEN, BETWEEN, FRONT);
+    }
+
+    @Test
+    public void keepFacesOfDifferentGroupsFlat() {
+
+        TriangleMesh mesh = createHinge(new int[] { 1, 2 });
+
+        assertEquals(6, mesh.getNormals().size() / 3);
+        checkNormals(mesh, 0, UP, UP, UP);
+        checkNormals(mesh, 1, FRONT, FRONT, FRONT);
+    }
+
+    @Test
+    public void keepFacesWithoutGroupFlat() {
+
+        TriangleMesh mesh = createHinge(new int[] { 0, 0 });
+
+        checkNormals(mesh, 0, UP, UP, UP);
+        checkNormals(mesh, 1, FRONT, FRONT, FRONT);
+    }
+
+    @Test
+    public void smoothMeshWithoutGroupsAsAWhole() {
+
+        TriangleMesh mesh = createHinge(null);
+
+        checkNormals(mesh, 0, BETWEEN, BETWEEN, UP);
+        checkNormals(mesh, 1, BETWEEN, BETWEEN, FRONT);
+    }
+
+    @Test
+    public void keepPointsAndTexCoords() {
+
+        TriangleMesh mesh = FbxMeshNormals.createMesh(new FbxMeshData(HINGE_POINTS, new float[] { 0.5f, 0.25f },
+                HINGE_FACES, null));
+
+        assertArrayEquals(HINGE_POINTS, mesh.getPoints().toArray(null), 0);
+        assertArrayEquals(new float[] { 0.5f, 0.25f }, mesh.getTexCoords().toArray(null), 0);
+
+        // Every vertex refers to its point, normal and texture coordinate.
+        int[] faces = mesh.getFaces().toArray(null);
+        for (int i = 0; i < HINGE_FACES.length; i += 2) {
+            assertEquals(HINGE_FACES[i], faces[3 * i / 2]);
+            assertEquals(HINGE_FACES[i + 1], faces[3 * i / 2 + 2]);
+        }
+    }
+
+    @Test
+    public void createEmptyMesh() {
+
+        TriangleMesh mesh = FbxMeshNormals.createMesh(new FbxMeshData(null, null, null, null));
+
+        assertEquals(VertexFormat.POINT_NORMAL_TEXCOORD, mesh.getVertexFormat());
+        assertEquals(0, mesh.getFaces().size());
+    }
+
+    @Test
+    public void computeLargeMeshInParallel() {
+
+        // A flat grid of 100 x 100 quads facing +z, large enough to be split into several ranges.
+        int size = 100;
+        int rowLength = size + 1;
+        float[] points = new float[3 * rowLength * rowLength];
+        for (int point = 0; point < rowLength * rowLength; point++) {
+            points[3 * point] = point % rowLength;
+            points[3 * point + 1] = point / rowLength;
+        }
+
+        int[] faces = new int[12 * size * size];
+        int i = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int p0 = y * rowLength + x;
+                for (int p : new int[] { p0, p0 + 1, p0 + rowLength + 1, p0, p0 + rowLength + 1, p0 + rowLength }) {
+                    faces[i++] = p;
+                    faces[i++] = 0;
+                }
+            }
+        }
+
+        TriangleMesh mesh = FbxMeshNormals.createMesh(new FbxMeshData(points, null, faces, null));
+
+        assertEquals(rowLength * rowLength, mesh.getNormals().size() / 3);
+        for (int triangle = 0; triangle < 2 * size * size; triangle++) {
+            checkNormals(mesh, triangle, UP, UP, UP);
+        }
+    }
+
+    private static TriangleMesh createHinge(int[] smoothingGroups) {
+        return FbxMeshNormals.createMesh(new FbxMeshData(HINGE_POINTS, null, HINGE_FACES, smoothingGroups));
+    }
+
+    /**
+     * Checks the normals of the three vertices of a triangle.
+     */
+    private static void checkNormals(TriangleMesh mesh, int triangle, float[]... expected) {
+
+        for (int vertex = 0; vertex < 3; vertex++) {
+
+            int normal = mesh.getFaces().get(9 * triangle + 3 * vertex + 1);
+            float[] actual = new float[3];
+            for (int k = 0; k < 3; k++) {
+                actual[k] = mesh.getNormals().get(3 * normal + k);
+            }
+            assertArrayEquals("Triangle " + triangle + ", vertex " + vertex, expected[vertex], actual, DELTA);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxMeshOptimizer}.
+ */
+public class FbxMeshOptimizerTest {
+
+    // A quad of two triangles that do not share points or texture coordinates.
+    private static final float[] QUAD_POINTS = { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 0, 0, 1, 1, 0, 0, 1, 0 };
+    private static final float[] QUAD_TEX_COORDS = { 0, 0, 1, 0, 1, 1, 0, 0, 1, 1, 0, 1 };
+    private static final int[] QUAD_FACES = { 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5 };
+
+    @Test
+    public void weldEqualPoints() {
+
+        FbxMeshData meshData = new FbxMeshData(QUAD_POINTS, QUAD_TEX_COORDS, QUAD_FACES, new int[] { 1, 1 });
+        FbxMeshData optimized = new FbxMeshOptimizer().optimize(meshData);
+
+        assertEquals(4, optimized.getVertices().length / 3);
+        assertEquals(4, optimized.getTexCoords().length / 2);
+        assertEquals(QUAD_FACES.length, optimized.getFaces().length);
+        checkCorners(meshData, optimized);
+    }
+
+    @Test
+    public void weldPointsWithinTolerance() {
+
+        float[] points = QUAD_POINTS.clone();
+        points[9] += 1e-4f;
+        points[13] -= 1e-4f;
+        FbxMeshData meshData = new FbxMeshData(points, null, QUAD_FACES, null);
+
+        // Without a tolerance, the moved points are kept apart.
+        assertEquals(6, new FbxMeshOptimizer().optimize(meshData).getVertices().length / 3);
+
+        FbxMeshData optimized = new FbxMeshOptimizer(1e-3f, 0).optimize(meshData);
+        assertEquals(4, optimized.getVertices().length / 3);
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 }, optimized.getVertices(), 0);
+    }
+
+    @Test
+    public void weldTexCoordsWithinTolerance() {
+
+        float[] texCoords = QUAD_TEX_COORDS.clone();
+        texCoords[6] += 1e-4f;
+        FbxMeshData meshData = new FbxMeshData(QUAD_POINTS, texCoords, QUAD_FACES, null);
+
+        assertEquals(5, new FbxMeshOptimizer().optimize(meshData).getTexCoords().length / 2);
+        assertEquals(4, new FbxMeshOptimizer(0, 1e-3f).optimize(meshData).getTexCoords().length / 2);
+    }
+
+    @Test
+    public void treatNegativeZeroAsZero() {
+
+        float[] points = QUAD_POINTS.clone();
+        points[9] = -0f;
+        points[10] = -0f;
+        points[11] = -0f;
+        FbxMeshData optimized = new FbxMeshOptimizer().optimize(new FbxMeshData(points, null, QUAD_FACES, null));
+
+        assertEquals(4, optimized.getVertices().length / 3);
+        assertEquals(optimized.getFaces()[0], optimized.getFaces()[6]);
+    }
+
+    @Test
+    public void removeCollapsedTriangles() {
+
+        // The middle triangle has two corners within the tolerance of each other.
+        float[] points = { 0, 0, 0, 1, 0, 0, 0, 1, 0, 5, 0, 0, 5.0001f, 0, 0, 5, 1, 0, 9, 0, 0, 10, 0, 0, 9, 1, 0 };
+        float[] texCoords = { 0, 0, 0.5f, 0.5f, 1, 1 };
+        int[] faces = { 0, 0, 1, 0, 2, 0, 3, 1, 4, 1, 5, 1, 6, 2, 7, 2, 8, 2 };
+        FbxMeshData meshData = new FbxMeshData(points, texCoords, faces, new int[] { 1, 2, 4 });
+
+        FbxMeshOptimizer optimizer = new FbxMeshOptimizer(1e-3f, 0);
+        FbxMeshData optimized = optimizer.optimize(meshData);
+
+        assertEquals(1, optimizer.getRemovedTriangles());
+        assertArrayEquals(new int[] { 1, 4 }, optimized.getSmoothingGroups());
+
+        // The points and the texture coordinate that only the removed triangle used are compacted away.
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 9, 0, 0, 10, 0, 0, 9, 1, 0 },
+                optimized.getVertices(), 0);
+        assertArrayEquals(new float[] { 0, 0, 1, 1 }, optimized.getTexCoords(), 0);
+        assertArrayEquals(new int[] { 0, 0, 1, 0, 2, 0, 3, 1, 4, 1, 5, 1 }, optimized.getFaces());
+    }
+
+    @Test
+    public void compactUnreferencedTexCoords() {
+
+        // Texture coordinate 1 is not used by any face.
+        float[] texCoords = { 0, 0, 0.5f, 0.5f, 1, 0, 1, 1 };
+        int[] faces = { 0, 0, 1, 2, 2, 3 };
+        FbxMeshData meshData = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0 }, texCoords, faces, null);
+
+        FbxMeshData optimized = new FbxMeshOptimizer().optimize(meshData);
+
+        assertArrayEquals(new float[] { 0, 0, 1, 0, 1, 1 }, optimized.getTexCoords(), 0);
+        assertArrayEquals(new int[] { 0, 0, 1, 1, 2, 2 }, optimized.getFaces());
+        checkCorners(meshData, optimized);
+    }
+
+    @Test
+    public void countBytesSaved() {
+
+        FbxMeshOptimizer optimizer = new FbxMeshOptimizer();
+        FbxMeshData meshData = new FbxMeshData(QUAD_POINTS, QUAD_TEX_COORDS, QUAD_FACES, new int[] { 1, 1 });
+
+        FbxMeshData optimized = optimizer.optimize(meshData);
+
+        // Two points of 3 floats and two texture coordinates of 2 floats.
+        long saved = getSize(meshData) - getSize(optimized);
+        assertEquals(4 * (2 * 3 + 2 * 2), saved);
+        assertEquals(saved, optimizer.getBytesSaved());
+
+        // The counts accumulate over all meshes, also those that cannot be optimized.
+        optimizer.optimize(meshData);
+        optimizer.optimize(optimized);
+        assertEquals(2 * saved, optimizer.getBytesSaved());
+        assertEquals(0, optimizer.getRemovedTriangles());
+    }
+
+    @Test
+    public void keepMeshDataWithoutFaces() {
+
+        FbxMeshData meshData = new FbxMeshData(QUAD_POINTS, null, null, null);
+        FbxMeshOptimizer optimizer = new FbxMeshOptimizer();
+
+        assertSame(meshData, optimizer.optimize(meshData));
+        assertEquals(0, optimizer.getBytesSaved());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNegativeTolerance() {
+        new FbxMeshOptimizer(-1, 0);
+    }
+
+    private static long getSize(FbxMeshData meshData) {
+        return FbxMeshData.getSize(meshData.getVertices(), meshData.getTexCoords(), meshData.getFaces(),
+                meshData.getSmoothingGroups());
+    }
+
+    /**
+     * Checks that every corner of every triangle has the same point and texture coordinate as before.
+     */
+    private static void checkCorners(FbxMeshData expected, FbxMeshData actual) {
+
+        int[] expectedFaces = expected.getFaces();
+        int[] actualFaces = actual.getFaces();
+        assertEquals(expectedFaces.length, actualFaces.length);
+
+        for (int i = 0; i < expectedFaces.length; i += 2) {
+            for (int k = 0; k < 3; k++) {
+                assertEquals(expected.getVertices()[3 * expectedFaces[i] + k],
+                        actual.getVertices()[3 * actualFaces[i] + k], 0);
+            }
+            if (expected.getTexCoords() != null) {
+                for (int k = 0; k < 2; k++) {
+                    assertEquals(expected.getTexCoords()[2 * expectedFaces[i + 1] + k],
+                            actual.getTexCoords()[2 * actualFaces[i + 1] + k], 0);
+                }
+            }
+        }
+    }
+}
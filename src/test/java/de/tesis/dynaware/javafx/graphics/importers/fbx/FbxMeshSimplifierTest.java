@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxMeshSimplifier}.
+ */
+public class FbxMeshSimplifierTest {
+
+    // A flat grid of 32 x 32 quads, 2048 triangles.
+    private static final int GRID_SIZE = 32;
+
+    @Test
+    public void simplifyToTarget() {
+
+        FbxMeshData grid = createGrid(GRID_SIZE);
+        FbxMeshData simplified = FbxMeshSimplifier.simplify(grid, 200);
+
+        int triangleCount = getTriangleCount(simplified);
+        assertTrue("Too many triangles [" + triangleCount + "]", triangleCount <= 200);
+        assertTrue("Too few triangles [" + triangleCount + "]", triangleCount > 100);
+
+        checkMesh(simplified);
+    }
+
+    @Test
+    public void keepBordersInPlace() {
+
+        FbxMeshData simplified = FbxMeshSimplifier.simplify(createGrid(GRID_SIZE), 50);
+        float[] points = simplified.getVertices();
+
+        // The points of the flat grid stay in its plane and the corners stay in place.
+        float[] bounds = { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for (int i = 0; i < points.length; i += 3) {
+            assertEquals(0, points[i + 2], 1e-4);
+            bounds[0] = Math.min(bounds[0], points[i]);
+            bounds[1] = Math.min(bounds[1], points[i + 1]);
+            bounds[2] = Math.max(bounds[2], points[i]);
+            bounds[3] = Math.max(bounds[3], points[i + 1]);
+        }
+        assertEquals(0, bounds[0], 1e-4);
+        assertEquals(0, bounds[1], 1e-4);
+        assertEquals(GRID_SIZE, bounds[2], 1e-4);
+        assertEquals(GRID_SIZE, bounds[3], 1e-4);
+
+        // The simplified triangles still cover the whole grid.
+        assertEquals((double) GRID_SIZE * GRID_SIZE, getArea(simplified), 1e-2);
+    }
+
+    @Test
+    public void buildLevels() {
+
+        FbxMeshSimplifier simplifier = new FbxMeshSimplifier();
+        assertEquals(3, simplifier.getLevelCount());
+
+        FbxMeshData grid = createGrid(GRID_SIZE);
+        List<FbxMeshData> levels = simplifier.simplify(grid);
+        assertEquals(2, levels.size());
+
+        int previous = getTriangleCount(grid);
+        for (FbxMeshData level : levels) {
+            int triangleCount = getTriangleCount(level);
+            assertTrue(triangleCount < previous);
+            checkMesh(level);
+            previous = triangleCount;
+        }
+        assertTrue(getTriangleCount(levels.get(1)) <= Math.ceil(0.0625 * getTriangleCount(grid)));
+    }
+
+    @Test
+    public void skipSmallMeshes() {
+
+        FbxMeshSimplifier simplifier = new FbxMeshSimplifier();
+        assertTrue(simplifier.simplify(createGrid(8)).isEmpty());
+        assertTrue(simplifier.simplify(new FbxMeshData(null, null, null, null)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectIncreasingRatios() {
+        new FbxMeshSimplifier(new double[] { 0.25, 0.5 }, 0);
+    }
+
+    /**
+     * Creates a flat grid in the xy plane whose triangles face +z, with a texture coordinate per point and a smoothing
+     * group per triangle.
+     */
+    private static FbxMeshData createGrid(int size) {
+
+        int rowLength = size + 1;
+        float[] points = new float[3 * rowLength * rowLength];
+        float[] texCoords = new float[2 * rowLength * rowLength];
+
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                int point = y * rowLength + x;
+                points[3 * point] = x;
+                points[3 * point + 1] = y;
+                texCoords[2 * point] = (float) x / size;
+                texCoords[2 * point + 1] = (float) y / size;
+            }
+        }
+
+        int[] faces = new int[12 * size * size];
+        int[] smoothingGroups = new int[2 * size * size];
+        Arrays.fill(smoothingGroups, 1);
+        int i = 0;
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int p0 = y * rowLength + x;
+                int p1 = p0 + 1;
+                int p2 = p0 + rowLength;
+                int p3 = p2 + 1;
+                for (int p : new int[] { p0, p1, p3, p0, p3, p2 }) {
+                    faces[i++] = p;
+                    faces[i++] = p;
+                }
+            }
+        }
+
+        return new FbxMeshData(points, texCoords, faces, smoothingGroups);
+    }
+
+    private static int getTriangleCount(FbxMeshData meshData) {
+        return meshData.getFaces().length / 6;
+    }
+
+    /**
+     * Checks that the faces refer to existing points and texture coordinates, that there is a smoothing group per
+     * triangle and that no triangle is degenerate or flipped.
+     */
+    private static void checkMesh(FbxMeshData meshData) {
+
+        float[] points = meshData.getVertices();
+        int[] faces = meshData.getFaces();
+
+        for (int i = 0; i < faces.length; i += 2) {
+            assertTrue(faces[i] >= 0 && 3 * faces[i] < points.length);
+            assertTrue(faces[i + 1] >= 0 && 2 * faces[i + 1] < meshData.getTexCoords().length);
+        }
+        assertEquals(getTriangleCount(meshData), meshData.getSmoothingGroups().length);
+
+        for (int i = 0; i < faces.length; i += 6) {
+            assertTrue("Flipped or degenerate triangle", getNormalZ(points, faces, i) > 0);
+        }
+    }
+
+    private static double getArea(FbxMeshData meshData) {
+
+        double area = 0;
+        for (int i = 0; i < meshData.getFaces().length; i += 6) {
+            area += getNormalZ(meshData.getVertices(), meshData.getFaces(), i) / 2;
+        }
+        return area;
+    }
+
+    /**
+     * Gets the z component of the cross product of two edges of a triangle, which is twice its signed area in the xy
+     * plane.
+     */
+    private static double getNormalZ(float[] points, int[] faces, int i) {
+
+        int a = 3 * faces[i];
+        int b = 3 * faces[i + 2];
+        int c = 3 * faces[i + 4];
+
+        return (points[b] - points[a]) * (points[c + 1] - points[a + 1])
+                - (points[b + 1] - points[a + 1]) * (points[c] - points[a]);
+    }
+}
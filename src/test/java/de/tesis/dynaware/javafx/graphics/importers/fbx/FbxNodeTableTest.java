@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxNodeTable}.
+ */
+public class FbxNodeTableTest {
+
+    private static final FbxMeshData TRIANGLE = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null,
+            new int[] { 0, 0, 1, 0, 2, 0 }, null);
+
+    // A name that is longer in UTF-8 than in characters.
+    private static final String JOINT = "Kn\u00f6chel";
+
+    @Test
+    public void decodePackedTable() {
+
+        // A root without attributes, a mesh node with a material, and a node below it with a skeleton attribute and
+        // one of an unknown type.
+        byte[] strings = ("rootmeshsteel" + JOINT).getBytes(StandardCharsets.UTF_8);
+        int[] stringOffsets = { 0, 4, 4, 8, 13, strings.length, strings.length };
+
+        double[] transforms = new double[3 * 16];
+        for (int node = 0; node < 3; node++) {
+            System.arraycopy(FbxMatrices.identity(), 0, transforms, 16 * node, 16);
+            transforms[16 * node + 12] = node;
+        }
+
+        ByteBuffer buffer = FbxMeshData.allocate(1024);
+        buffer.putInt(3).putInt(3).putInt(strings.length).putInt(0);
+        for (double value : transforms) {
+            buffer.putDouble(value);
+        }
+        for (double value : new double[] { 0, 0, 0, 1, 2, 3, 0, 0, 0 }) {
+            buffer.putDouble(value);
+        }
+        buffer.putLong(42).putLong(7).putLong(8);
+        putInts(buffer, -1, 0, 1);
+        putInts(buffer, stringOffsets);
+        putInts(buffer, 0, 1, 0);
+        putInts(buffer, 0, 0, 1, 3);
+        putInts(buffer, 4, 3, 99);
+        buffer.put(strings);
+
+        FbxNodeTable nodeTable = FbxNodeTable.decode(buffer);
+
+        assertEquals(3, nodeTable.getNodeCount());
+        assertEquals(-1, nodeTable.getParent(0));
+        assertEquals(0, nodeTable.getParent(1));
+        assertEquals(1, nodeTable.getParent(2));
+
+        assertEquals("root", nodeTable.getName(0));
+        assertEquals("mesh", nodeTable.getName(1));
+        assertEquals(JOINT, nodeTable.getName(2));
+
+        assertEquals(0, nodeTable.getMaterialCount(0));
+        assertNull(nodeTable.getMaterialName(0));
+        assertEquals(1, nodeTable.getMaterialCount(1));
+        assertEquals("steel", nodeTable.getMaterialName(1));
+        assertNull(nodeTable.getMaterialName(2));
+
+        assertEquals(0, nodeTable.getAttributeCount(0));
+        assertEquals(1, nodeTable.getAttributeCount(1));
+        assertEquals("mesh", nodeTable.getAttributeType(1, 0));
+        assertEquals(42, nodeTable.getAttributeId(1, 0));
+        assertEquals(2, nodeTable.getAttributeCount(2));
+        assertEquals("skeleton", nodeTable.getAttributeType(2, 0));
+        assertEquals(7, nodeTable.getAttributeId(2, 0));
+        assertEquals("unknown", nodeTable.getAttributeType(2, 1));
+        assertEquals(8, nodeTable.getAttributeId(2, 1));
+
+        assertEquals(2, nodeTable.getGlobalTransform(2)[12], 0);
+        assertArrayEquals(new double[] { 1, 2, 3 }, nodeTable.getGeometricTranslation(1), 0);
+    }
+
+    @Test
+    public void buildTableFromQueries() {
+
+        TestFbxLib fbxLib = new TestFbxLib(3, TRIANGLE);
+        fbxLib.open("scene.fbx");
+
+        // The table starts at the root, wherever the library is.
+        fbxLib.nextChild();
+
+        FbxNodeTable nodeTable = fbxLib.getNodeTable();
+
+        assertEquals(4, nodeTable.getNodeCount());
+        assertEquals("root", nodeTable.getName(0));
+        assertEquals(-1, nodeTable.getParent(0));
+        assertEquals(0, nodeTable.getAttributeCount(0));
+        assertEquals(0, nodeTable.getMaterialCount(0));
+
+        for (int node = 1; node < 4; node++) {
+            assertEquals("mesh" + (node - 1), nodeTable.getName(node));
+            assertEquals(0, nodeTable.getParent(node));
+            assertEquals(1, nodeTable.getAttributeCount(node));
+            assertEquals("mesh", nodeTable.getAttributeType(node, 0));
+            assertEquals(node - 1, nodeTable.getAttributeId(node, 0));
+            assertEquals("material", nodeTable.getMaterialName(node));
+            assertEquals(node - 1, nodeTable.getGlobalTransform(node)[12], 0);
+            assertArrayEquals(new double[3], nodeTable.getGeometricTranslation(node), 0);
+        }
+
+        // The library is left on the root node.
+        assertEquals("root", fbxLib.getNodeName());
+    }
+
+    private static void putInts(ByteBuffer buffer, int... values) {
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+    }
+}
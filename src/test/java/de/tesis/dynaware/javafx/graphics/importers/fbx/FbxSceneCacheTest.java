@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FbxSceneCache}.
+ */
+public class FbxSceneCacheTest {
+
+    private static final long MAX_SIZE = 1 << 20;
+
+    private static final double[] TRANSFORM = { 1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 3, 0, 4, 5, 6, 1 };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "cache");
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+
+        List<FbxMaterialData> materials = Arrays.asList(
+                new FbxMaterialData("Red", new double[] { 1, 0, 0, 1 }, new double[] { 0.5, 0.5, 0.5, 1 }, 20,
+                        "red.png", null, "bump.png", null),
+                new FbxMaterialData(null, null, null, -1, null, null, null, null));
+        List<FbxMeshData> geometries = Arrays.asList(
+                new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, new float[] { 0, 0, 1, 1 },
+                        new int[] { 0, 0, 1, 1, 2, 0 }, new int[] { 3 }),
+                new FbxMeshData(new float[] { 0, 0, 0, 1, 1, 1, 2, 2, 2 }, null, new int[] { 0, 0, 1, 0, 2, 0 },
+                        null));
+        List<FbxMeshPart> meshParts = Arrays.asList(
+                new FbxMeshPart("Cube", 0, 0, TRANSFORM, new double[] { 1, 2, 3 }),
+                new FbxMeshPart("Instance", 0, 1, null, null),
+                new FbxMeshPart("Plain", 1, -1, TRANSFORM, null));
+
+        cache.store("key-v3-Test", materials, geometries, meshParts);
+        assertEquals(1, directory.list().length);
+        assertTrue(cache.getSize() > 0);
+
+        List<FbxMaterialData> loadedMaterials = new ArrayList<>();
+        List<FbxMeshData> loadedGeometries = new ArrayList<>();
+        List<FbxMeshPart> loadedMeshParts = new ArrayList<>();
+        assertTrue(cache.load("key-v3-Test", loadedMaterials, loadedGeometries, loadedMeshParts));
+
+        assertEquals(materials.size(), loadedMaterials.size());
+        for (int i = 0; i < materials.size(); i++) {
+            checkMaterial(materials.get(i), loadedMaterials.get(i));
+        }
+
+        assertEquals(geometries.size(), loadedGeometries.size());
+        for (int i = 0; i < geometries.size(); i++) {
+            checkGeometry(geometries.get(i), loadedGeometries.get(i));
+        }
+
+        assertEquals(meshParts.size(), loadedMeshParts.size());
+        for (int i = 0; i < meshParts.size(); i++) {
+            checkMeshPart(meshParts.get(i), loadedMeshParts.get(i));
+        }
+    }
+
+    @Test
+    public void loadMissingEntry() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+        List<FbxMaterialData> materials = new ArrayList<>();
+        List<FbxMeshData> geometries = new ArrayList<>();
+        List<FbxMeshPart> meshParts = new ArrayList<>();
+
+        assertFalse(cache.load("missing-v3-Test", materials, geometries, meshParts));
+        assertTrue(materials.isEmpty() && geometries.isEmpty() && meshParts.isEmpty());
+    }
+
+    @Test
+    public void removeCorruptEntry() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+        storeEntry(cache, "corrupt-v3-Test", 10);
+
+        // Cut the entry in the middle of the geometry.
+        File entry = directory.listFiles()[0];
+        byte[] content = Files.readAllBytes(entry.toPath());
+        Files.write(entry.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        List<FbxMeshData> geometries = new ArrayList<>();
+        assertFalse(cache.load("corrupt-v3-Test", new ArrayList<FbxMaterialData>(), geometries,
+                new ArrayList<FbxMeshPart>()));
+        assertTrue(geometries.isEmpty());
+        assertFalse(entry.exists());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+
+        FbxSceneCache probe = new FbxSceneCache(new File(folder.getRoot(), "probe"), MAX_SIZE);
+        storeEntry(probe, "probe-v3-Test", 100);
+        long entrySize = probe.getSize();
+
+        FbxSceneCache cache = new FbxSceneCache(directory, 2 * entrySize);
+        storeEntry(cache, "first-v3-Test", 100);
+        storeEntry(cache, "second-v3-Test", 100);
+        assertEquals(2 * entrySize, cache.getSize());
+
+        // Loading the first entry marks it as the most recently used one.
+        setLastModified("first-v3-Test", 1000);
+        setLastModified("second-v3-Test", 2000);
+        assertTrue(cache.load("first-v3-Test", new ArrayList<FbxMaterialData>(), new ArrayList<FbxMeshData>(),
+                new ArrayList<FbxMeshPart>()));
+
+        storeEntry(cache, "third-v3-Test", 100);
+        assertEquals(2 * entrySize, cache.getSize());
+        assertTrue(new File(directory, "first-v3-Test.fbxc").isFile());
+        assertFalse(new File(directory, "second-v3-Test.fbxc").exists());
+        assertTrue(new File(directory, "third-v3-Test.fbxc").isFile());
+    }
+
+    @Test
+    public void skipEntryLargerThanLimit() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, 64);
+        storeEntry(cache, "large-v3-Test", 100);
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void keyDependsOnContent() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+        FbxLib fbxLib = new BinaryFbxLib();
+
+        File first = writeFile("first.fbx", "content");
+        File copy = writeFile("copy.fbx", "content");
+        File changed = writeFile("changed.fbx", "changed content");
+
+        String key = cache.getKey(first.getPath(), fbxLib);
+        assertTrue(key.endsWith("-v" + FbxSceneCache.FORMAT_VERSION + "-BinaryFbxLib"));
+        assertEquals(key, cache.getKey(copy.getPath(), fbxLib));
+        assertNotEquals(key, cache.getKey(changed.getPath(), fbxLib));
+    }
+
+    @Test
+    public void keyDependsOnConfiguration() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+        File file = writeFile("scene.fbx", "content");
+
+        String convertedKey = cache.getKey(file.getPath(), new ConfiguredFbxLib("convertSmoothing"));
+        String polygonKey = cache.getKey(file.getPath(), new ConfiguredFbxLib("polygonSmoothing"));
+        assertNotEquals(convertedKey, polygonKey);
+        assertTrue(convertedKey.endsWith("-ConfiguredFbxLib-convertSmoothing"));
+
+        // A file read with one configuration is not served to a reader with another one.
+        storeEntry(cache, convertedKey, 10);
+        assertFalse(cache.load(polygonKey, new ArrayList<FbxMaterialData>(), new ArrayList<FbxMeshData>(),
+                new ArrayList<FbxMeshPart>()));
+        assertTrue(cache.load(convertedKey, new ArrayList<FbxMaterialData>(), new ArrayList<FbxMeshData>(),
+                new ArrayList<FbxMeshPart>()));
+
+        // Invalidating a file removes the entries of all configurations.
+        storeEntry(cache, polygonKey, 10);
+        assertEquals(2, directory.list().length);
+        cache.invalidate(file.getPath());
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void invalidateAndClear() throws IOException {
+
+        FbxSceneCache cache = new FbxSceneCache(directory, MAX_SIZE);
+        File file = writeFile("scene.fbx", "content");
+
+        storeEntry(cache, cache.getKey(file.getPath(), new BinaryFbxLib()), 10);
+        storeEntry(cache, "other-v3-Test", 10);
+        assertEquals(2, directory.list().length);
+
+        cache.invalidate(file.getPath());
+        assertArrayEquals(new String[] { "other-v3-Test.fbxc" }, directory.list());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    /**
+     * A test library with a fixed configuration.
+     */
+    private static class ConfiguredFbxLib extends TestFbxLib {
+
+        private final String configuration;
+
+        ConfiguredFbxLib(String configuration) {
+            super(0, null);
+            this.configuration = configuration;
+        }
+
+        @Override
+        public String getConfiguration() {
+            return configuration;
+        }
+    }
+
+    private static void storeEntry(FbxSceneCache cache, String key, int pointCount) throws IOException {
+
+        FbxMeshData geometry = new FbxMeshData(new float[3 * pointCount], null, new int[] { 0, 0, 1, 0, 2, 0 }, null);
+        cache.store(key, new ArrayList<FbxMaterialData>(), Arrays.asList(geometry),
+                Arrays.asList(new FbxMeshPart("Node", 0, -1, null, null)));
+    }
+
+    private void setLastModified(String key, long time) {
+        assertTrue(new File(directory, key + ".fbxc").setLastModified(time));
+    }
+
+    private File writeFile(String name, String content) throws IOException {
+
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void checkMaterial(FbxMaterialData expected, FbxMaterialData actual) {
+
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expected.getDiffuseColor(), actual.getDiffuseColor(), 0);
+        assertArrayEquals(expected.getSpecularColor(), actual.getSpecularColor(), 0);
+        assertEquals(expected.getSpecularPower(), actual.getSpecularPower(), 0);
+        assertEquals(expected.getDiffuseMap(), actual.getDiffuseMap());
+        assertEquals(expected.getSpecularMap(), actual.getSpecularMap());
+        assertEquals(expected.getBumpMap(), actual.getBumpMap());
+        assertEquals(expected.getSelfIlluminationMap(), actual.getSelfIlluminationMap());
+    }
+
+    private static void checkGeometry(FbxMeshData expected, FbxMeshData actual) {
+
+        assertArrayEquals(expected.getVertices(), actual.getVertices(), 0);
+        assertArrayEquals(expected.getFaces(), actual.getFaces());
+
+        if (expected.getTexCoords() == null) {
+            assertNull(actual.getTexCoords());
+        } else {
+            assertArrayEquals(expected.getTexCoords(), actual.getTexCoords(), 0);
+        }
+        assertArrayEquals(expected.getSmoothingGroups(), actual.getSmoothingGroups());
+    }
+
+    private static void checkMeshPart(FbxMeshPart expected, FbxMeshPart actual) {
+
+        assertEquals(expected.getNodeName(), actual.getNodeName());
+        assertEquals(-1, actual.getNodeIndex());
+        assertEquals(expected.getGeometryIndex(), actual.getGeometryIndex());
+        assertEquals(expected.getMaterialIndex(), actual.getMaterialIndex());
+        assertArrayEquals(expected.getGlobalTransform(), actual.getGlobalTransform(), 0);
+        assertArrayEquals(expected.getGeometricTranslation(), actual.getGeometricTranslation(), 0);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.shape.TriangleMesh;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxSkinning}.
+ */
+public class FbxSkinningTest {
+
+    private static final float DELTA = 1e-5f;
+
+    // Bone 0 is node 0, translated by (1, 2, 3). Bone 1 is node 1, rotated by 90 degrees around z and translated by
+    // (0, 0, 5). All transforms in column order.
+    private static final double[] GLOBAL_TRANSFORMS = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 1, 2, 3, 1,
+            0, 1, 0, 0, -1, 0, 0, 0, 0, 0, 1, 0, 0, 0, 5, 1 };
+
+    // The bind transform of bone 0 is the identity, the one of bone 1 translates by (-1, 0, 0).
+    private static final double[] BIND_TRANSFORMS = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1,
+            1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, -1, 0, 0, 1 };
+
+    // Translates by (0, 10, 0).
+    private static final double[] MESH_TRANSFORM = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 10, 0, 1 };
+
+    @Test
+    public void skinPointsByTheirBones() {
+
+        // Point 0 follows bone 0, point 1 both bones with the weights 1 and 3, point 2 has no influences.
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(1, 0, 0, 2, 1, 0, 5, 5, 5);
+
+        FbxSkin skin = new FbxSkin(3, new int[] { 0, 1 }, BIND_TRANSFORMS, new int[] { 0, 2, 3 },
+                new int[] { 0, 1, 1 }, new double[] { 1, 1, 3 });
+        FbxSkinning skinning = new FbxSkinning(skin, mesh);
+
+        skinning.update(GLOBAL_TRANSFORMS, MESH_TRANSFORM);
+
+        // Bone 0 moves point 1 to (3, 13, 3), bone 1 moves it to (-1, 11, 5).
+        float[] expected = { 2, 12, 3, 0, 11.5f, 4.5f, 5, 5, 5 };
+        assertArrayEquals(expected, mesh.getPoints().toArray(null), DELTA);
+
+        // Every update starts from the bind points.
+        skinning.update(GLOBAL_TRANSFORMS, MESH_TRANSFORM);
+        assertArrayEquals(expected, mesh.getPoints().toArray(null), DELTA);
+    }
+
+    @Test
+    public void writeOnlyPointsWithInfluences() {
+
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(1, 0, 0, 2, 1, 0, 5, 5, 5);
+
+        FbxSkin skin = new FbxSkin(3, new int[] { 0, 1 }, BIND_TRANSFORMS, new int[] { 0, 1, 1 },
+                new int[] { 0 }, new double[] { 1 });
+        FbxSkinning skinning = new FbxSkinning(skin, mesh);
+
+        // Points without influences are never written, so a change made after the bind pose was taken is kept.
+        mesh.getPoints().set(3, 7);
+
+        skinning.update(GLOBAL_TRANSFORMS, MESH_TRANSFORM);
+        assertArrayEquals(new float[] { 2, 12, 3, 7, 1, 0, 5, 5, 5 }, mesh.getPoints().toArray(null), DELTA);
+    }
+
+    @Test
+    public void skinInParallelLikeSequentially() {
+
+        // Enough influences to be split into parallel ranges, and a small part of the same points skinned sequentially.
+        int pointCount = 30000;
+        int first = 12345;
+        int count = 1000;
+
+        TriangleMesh parallelMesh = createMesh(0, pointCount);
+        FbxSkinning parallel = new FbxSkinning(createSkin(0, pointCount), parallelMesh);
+        assertTrue(parallel.getSkin().getInfluenceCount() > 1 << 14);
+
+        TriangleMesh sequentialMesh = createMesh(first, count);
+        FbxSkinning sequential = new FbxSkinning(createSkin(first, count), sequentialMesh);
+        assertTrue(sequential.getSkin().getInfluenceCount() < 1 << 14);
+
+        parallel.update(GLOBAL_TRANSFORMS, MESH_TRANSFORM);
+        sequential.update(GLOBAL_TRANSFORMS, MESH_TRANSFORM);
+
+        float[] parallelPoints = parallelMesh.getPoints().toArray(null);
+        float[] sequentialPoints = sequentialMesh.getPoints().toArray(null);
+        float[] bindPoints = createMesh(0, pointCount).getPoints().toArray(null);
+
+        for (int point = 0; point < count; point++) {
+            for (int k = 0; k < 3; k++) {
+                int i = 3 * (first + point) + k;
+                assertEquals(sequentialPoints[3 * point + k], parallelPoints[i], 0);
+            }
+        }
+
+        // Every third point has no influences and stays at its bind position, all others move.
+        for (int point = 0; point < pointCount; point++) {
+            int i = 3 * point;
+            float[] actual = { parallelPoints[i], parallelPoints[i + 1], parallelPoints[i + 2] };
+            float[] bind = { bindPoints[i], bindPoints[i + 1], bindPoints[i + 2] };
+            if (point % 3 == 2) {
+                assertArrayEquals("Point " + point, bind, actual, 0);
+            } else {
+                assertFalse("Point " + point, Arrays.equals(bind, actual));
+            }
+        }
+    }
+
+    /**
+     * Creates a mesh whose points are a function of their index in a larger mesh.
+     */
+    private static TriangleMesh createMesh(int first, int count) {
+
+        float[] points = new float[3 * count];
+        for (int point = 0; point < count; point++) {
+            int index = first + point;
+            points[3 * point] = index % 100;
+            points[3 * point + 1] = index / 100 * 0.5f;
+            points[3 * point + 2] = index % 7;
+        }
+
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points);
+        return mesh;
+    }
+
+    /**
+     * Creates a skin whose influences are a function of the index of the point in a larger mesh. Every third point has
+     * no influences, the others follow bone 0 and every other of them bone 1 as well.
+     */
+    private static FbxSkin createSkin(int first, int count) {
+
+        List<Integer> bone0Points = new ArrayList<>();
+        List<Integer> bone1Points = new ArrayList<>();
+        for (int point = 0; point < count; point++) {
+            int index = first + point;
+            if (index % 3 != 2) {
+                bone0Points.add(point);
+            }
+            if (index % 3 == 1) {
+                bone1Points.add(point);
+            }
+        }
+
+        int[] clusterPoints = new int[bone0Points.size() + bone1Points.size()];
+        double[] clusterWeights = new double[clusterPoints.length];
+        for (int i = 0; i < clusterPoints.length; i++) {
+            boolean bone0 = i < bone0Points.size();
+            clusterPoints[i] = bone0 ? bone0Points.get(i) : bone1Points.get(i - bone0Points.size());
+            clusterWeights[i] = bone0 ? 1 + (first + clusterPoints[i]) % 5 : 2;
+        }
+
+        return new FbxSkin(count, new int[] { 0, 1 }, BIND_TRANSFORMS,
+                new int[] { 0, bone0Points.size(), clusterPoints.length }, clusterPoints, clusterWeights);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxStagingBuffers}.
+ */
+public class FbxStagingBuffersTest {
+
+    private final FbxStagingBuffers pool = FbxStagingBuffers.getInstance();
+
+    @Before
+    public void setUp() {
+        pool.clear();
+    }
+
+    @After
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Test
+    public void growBuffersOnlyWhenNeeded() {
+
+        FbxStagingBuffers.Staging staging = pool.acquire();
+
+        ByteBuffer buffer = staging.getBuffer(100);
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertSame(buffer, staging.getBuffer(50));
+        assertEquals(100, staging.getDirectSize());
+
+        // An outgrown buffer still counts as allocated.
+        assertNotSame(buffer, staging.getBuffer(200));
+        assertEquals(300, staging.getDirectSize());
+
+        float[] floats = staging.getFloats(10);
+        assertSame(floats, staging.getFloats(5));
+        int[] ints = staging.getInts(20);
+        assertSame(ints, staging.getInts(20));
+        assertEquals(200 + 4 * (10 + 20), staging.getSize());
+
+        pool.release(staging);
+    }
+
+    @Test
+    public void reuseReleasedBuffers() {
+
+        FbxStagingBuffers.Staging staging = pool.acquire();
+        staging.getBuffer(100);
+        assertEquals(0, pool.getRetainedSize());
+
+        pool.release(staging);
+        assertEquals(100, pool.getRetainedSize());
+        assertSame(staging, pool.acquire());
+        assertEquals(0, pool.getRetainedSize());
+
+        // Imports at the same time get a set each, and both are kept.
+        FbxStagingBuffers.Staging other = pool.acquire();
+        assertNotSame(staging, other);
+        other.getInts(10);
+        pool.release(staging);
+        pool.release(other);
+        assertEquals(100 + 4 * 10, pool.getRetainedSize());
+
+        pool.clear();
+        assertEquals(0, pool.getRetainedSize());
+    }
+
+    @Test
+    public void reuseBuffersOfPreviousImport() throws IOException {
+
+        FbxMeshData triangle = new FbxMeshData(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null,
+                new int[] { 0, 0, 1, 0, 2, 0 }, null);
+
+        new FbxImporter("file:/scene.fbx", new TestFbxLib(4, triangle));
+        long retainedSize = pool.getRetainedSize();
+        assertTrue(retainedSize > 0);
+
+        // The next import of a file of the same size takes the same buffers, without growing them.
+        new FbxImporter("file:/scene.fbx", new TestFbxLib(4, triangle));
+        assertEquals(retainedSize, pool.getRetainedSize());
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FbxTextureCache}.
+ *
+ * <p>
+ * Decoding images needs a running JavaFX toolkit, so the images are created as already loaded writable images of the
+ * requested size, or of 16 x 16 pixels at full size.
+ * </p>
+ */
+public class FbxTextureCacheTest {
+
+    private static final int SIZE = 16;
+    private static final long IMAGE_SIZE = SIZE * SIZE * 4;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> loadedUrls = new ArrayList<>();
+    private FbxTextureCache cache;
+
+    @Before
+    public void setUp() {
+
+        cache = new FbxTextureCache(new FbxTextureCache.ImageLoader() {
+
+            @Override
+            public Image load(String url, int width, int height) {
+                loadedUrls.add(url);
+                return new WritableImage(width > 0 ? width : SIZE, height > 0 ? height : SIZE);
+            }
+        });
+    }
+
+    @Test
+    public void shareImagesOfTheSameFile() throws IOException {
+
+        File file = writeImage("diffuse.png", SIZE, SIZE);
+        Image image = cache.getImage(file.getPath());
+
+        // Different paths to the same file share the image.
+        File otherPath = new File(new File(file.getParentFile(), "."), file.getName());
+        assertSame(image, cache.getImage(otherPath.getPath()));
+        assertSame(image, cache.getImage(file.getAbsolutePath()));
+
+        assertEquals(1, loadedUrls.size());
+        assertEquals(IMAGE_SIZE, cache.getSize());
+    }
+
+    @Test
+    public void reloadModifiedFile() throws IOException {
+
+        File file = writeImage("diffuse.png", SIZE, SIZE);
+        Image image = cache.getImage(file.getPath());
+
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertNotSame(image, cache.getImage(file.getPath()));
+        assertEquals(2, loadedUrls.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedImages() throws IOException {
+
+        cache.setMaxSize(2 * IMAGE_SIZE);
+
+        String first = writeImage("first.png", SIZE, SIZE).getPath();
+        String second = writeImage("second.png", SIZE, SIZE).getPath();
+        String third = writeImage("third.png", SIZE, SIZE).getPath();
+
+        Image firstImage = cache.getImage(first);
+        Image secondImage = cache.getImage(second);
+
+        // Using the first image again makes the second one the least recently used.
+        assertSame(firstImage, cache.getImage(first));
+        cache.getImage(third);
+
+        assertEquals(2 * IMAGE_SIZE, cache.getSize());
+        assertSame(firstImage, cache.getImage(first));
+        assertNotSame(secondImage, cache.getImage(second));
+        assertEquals(4, loadedUrls.size());
+    }
+
+    @Test
+    public void evictWhenBudgetIsReduced() throws IOException {
+
+        cache.getImage(writeImage("first.png", SIZE, SIZE).getPath());
+        cache.getImage(writeImage("second.png", SIZE, SIZE).getPath());
+        assertEquals(2 * IMAGE_SIZE, cache.getSize());
+
+        cache.setMaxSize(IMAGE_SIZE + 1);
+        assertEquals(IMAGE_SIZE, cache.getSize());
+        assertEquals(IMAGE_SIZE + 1, cache.getMaxSize());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void cacheImagesDecodedAtReducedSize() throws IOException {
+
+        String file = writeImage("diffuse.png", SIZE, SIZE).getPath();
+
+        Image image = cache.getImage(file);
+        Image reduced = cache.getImage(file, SIZE / 2, SIZE / 2);
+
+        assertNotSame(image, reduced);
+        assertSame(reduced, cache.getImage(file, SIZE / 2, SIZE / 2));
+        assertEquals(IMAGE_SIZE + IMAGE_SIZE / 4, cache.getSize());
+    }
+
+    @Test
+    public void readImageSizeOnce() throws IOException {
+
+        File file = writeImage("diffuse.png", 32, 8);
+        assertArrayEquals(new int[] { 32, 8 }, cache.getImageSize(file.getPath()));
+
+        // A different size written without changing the modification time is not noticed.
+        long lastModified = file.lastModified();
+        writeImage("diffuse.png", 4, 4);
+        assertTrue(file.setLastModified(lastModified));
+        assertArrayEquals(new int[] { 32, 8 }, cache.getImageSize(file.getPath()));
+
+        assertNull(cache.getImageSize(writeFile("notes.txt").getPath()));
+        assertNull(cache.getImageSize(new File(folder.getRoot(), "missing.png").getPath()));
+    }
+
+    @Test
+    public void evictImageSizesWithImages() throws IOException {
+
+        cache.setMaxSize(IMAGE_SIZE);
+
+        File first = writeImage("first.png", 32, 8);
+        String second = writeImage("second.png", SIZE, SIZE).getPath();
+
+        assertArrayEquals(new int[] { 32, 8 }, cache.getImageSize(first.getPath()));
+        cache.getImage(first.getPath());
+        cache.getImageSize(second);
+        cache.getImage(second);
+
+        // The size of the first file was removed with its image, so it is read again.
+        long lastModified = first.lastModified();
+        writeImage("first.png", 4, 4);
+        assertTrue(first.setLastModified(lastModified));
+        assertArrayEquals(new int[] { 4, 4 }, cache.getImageSize(first.getPath()));
+    }
+
+    @Test
+    public void removeImagesOfModifiedFile() throws IOException {
+
+        File file = writeImage("diffuse.png", 32, 8);
+        File otherFile = writeImage("diffuse.png@2.png", SIZE, SIZE);
+
+        cache.getImageSize(file.getPath());
+        cache.getImage(file.getPath());
+        cache.getImage(file.getPath(), SIZE / 2, SIZE / 2);
+        cache.getImage(otherFile.getPath());
+
+        writeImage("diffuse.png", 4, 4);
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+
+        // Only the images of the new version of the file and of the other file are left.
+        assertArrayEquals(new int[] { 4, 4 }, cache.getImageSize(file.getPath()));
+        cache.getImage(file.getPath());
+        assertEquals(2 * IMAGE_SIZE, cache.getSize());
+        assertEquals(4, loadedUrls.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNegativeBudget() {
+        cache.setMaxSize(-1);
+    }
+
+    private File writeFile(String name) throws IOException {
+
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        return file;
+    }
+
+    /**
+     * Writes an empty PNG file of the given size.
+     */
+    private File writeImage(String name, int width, int height) throws IOException {
+
+        File file = new File(folder.getRoot(), name);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+        return file;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FbxTexturePolicy}.
+ */
+public class FbxTexturePolicyTest {
+
+    private static final long LARGE_BUDGET = 1L << 40;
+
+    @Test
+    public void limitDimensionsPerType() {
+
+        FbxTexturePolicy policy = new FbxTexturePolicy(LARGE_BUDGET);
+
+        // Diffuse maps may be up to 4096 pixels wide or high, all other maps up to 2048.
+        assertEquals(1, policy.getLevel(FbxTextureType.DIFFUSE, 8192, 8192, 0));
+        assertEquals(0, policy.getLevel(FbxTextureType.DIFFUSE, 4096, 1024, 0));
+        assertEquals(2, policy.getLevel(FbxTextureType.BUMP, 8192, 8192, 0));
+        assertEquals(1, policy.getLevel(FbxTextureType.SPECULAR, 1024, 4096, 0));
+        assertEquals(0, policy.getLevel(FbxTextureType.SELF_ILLUMINATION, 2048, 2048, 0));
+
+        policy.setMaxDimension(FbxTextureType.SPECULAR, 512);
+        assertEquals(512, policy.getMaxDimension(FbxTextureType.SPECULAR));
+        assertEquals(3, policy.getLevel(FbxTextureType.SPECULAR, 1024, 4096, 0));
+        assertEquals(2, policy.getLevel(FbxTextureType.BUMP, 8192, 8192, 0));
+    }
+
+    @Test
+    public void reduceTexturesToFitIntoBudget() {
+
+        // A budget of 1 MB holds one texture of 512 x 512 pixels.
+        FbxTexturePolicy policy = new FbxTexturePolicy(1 << 20);
+
+        assertEquals(1, policy.getLevel(FbxTextureType.DIFFUSE, 1024, 1024, 0));
+        assertEquals(2, policy.getLevel(FbxTextureType.DIFFUSE, 1024, 1024, 1));
+        assertEquals(0, policy.getLevel(FbxTextureType.DIFFUSE, 256, 256, 3 << 18));
+    }
+
+    @Test
+    public void keepMinimumDimension() {
+
+        FbxTexturePolicy policy = new FbxTexturePolicy(0);
+
+        assertEquals(4, policy.getLevel(FbxTextureType.DIFFUSE, 1024, 1024, 0));
+        assertEquals(5, policy.getLevel(FbxTextureType.DIFFUSE, 2048, 16, 0));
+        assertEquals(0, policy.getLevel(FbxTextureType.DIFFUSE, 64, 64, 0));
+    }
+
+    @Test
+    public void computeDimensionsAndSizes() {
+
+        assertEquals(256, FbxTexturePolicy.getDimension(1024, 2));
+        assertEquals(1, FbxTexturePolicy.getDimension(3, 5));
+        assertEquals(1, FbxTexturePolicy.getDimension(1024, 100));
+        assertEquals(256 * 64 * 4, FbxTexturePolicy.getSize(1024, 256, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNegativeBudget() {
+        new FbxTexturePolicy(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectEmptyMaxDimension() {
+        new FbxTexturePolicy().setMaxDimension(FbxTextureType.DIFFUSE, 0);
+    }
+}
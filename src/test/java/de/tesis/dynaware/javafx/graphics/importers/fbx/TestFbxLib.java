@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.importers.fbx;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An {@link FbxLib} that serves a scene from memory for tests.
+ *
+ * <p>
+ * The scene is a root node with one child per mesh, each child translated by its index along x. All meshes share the
+ * same mesh data and have a single material. Nodes can be made unselectable to simulate a library that fails while a
+ * file is open.
+ * </p>
+ */
+class TestFbxLib implements FbxLib {
+
+    private static final String MESH = "mesh";
+
+    private final int meshCount;
+    private final FbxMeshData meshData;
+    private final Set<Integer> failingNodes = new HashSet<>();
+
+    // -1 for the root node, otherwise the index of the mesh node.
+    private int currentNode;
+    private boolean open;
+    private int closeCount;
+
+    /**
+     * Creates a new test library.
+     *
+     * @param meshCount the number of mesh nodes below the root
+     * @param meshData the mesh data of every mesh node
+     */
+    TestFbxLib(int meshCount, FbxMeshData meshData) {
+        this.meshCount = meshCount;
+        this.meshData = meshData;
+    }
+
+    /**
+     * Makes {@link #selectNode(int)} fail for a node.
+     *
+     * @param node the index of the node in the node table, where the root is 0
+     */
+    synchronized void failNode(int node) {
+        failingNodes.add(node);
+    }
+
+    /**
+     * Checks whether the file is open.
+     *
+     * @return <tt>true</tt> if the file was opened and not closed since
+     */
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Gets the number of times the file was closed.
+     *
+     * @return the number of calls of {@link #close()}
+     */
+    synchronized int getCloseCount() {
+        return closeCount;
+    }
+
+    @Override
+    public synchronized boolean open(String filePath) {
+        currentNode = -1;
+        open = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        closeCount++;
+    }
+
+    @Override
+    public boolean nextChild() {
+
+        checkOpen();
+
+        if (currentNode >= 0 || meshCount == 0) {
+            return false;
+        }
+        currentNode = 0;
+        return true;
+    }
+
+    @Override
+    public boolean nextSibling() {
+
+        checkOpen();
+
+        if (currentNode < 0 || currentNode + 1 >= meshCount) {
+            return false;
+        }
+        currentNode++;
+        return true;
+    }
+
+    @Override
+    public boolean nextParent() {
+
+        checkOpen();
+
+        if (currentNode < 0) {
+            return false;
+        }
+        currentNode = -1;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean selectNode(int node) {
+
+        checkOpen();
+
+        if (node < 0 || node > meshCount || failingNodes.contains(node)) {
+            return false;
+        }
+        currentNode = node - 1;
+        return true;
+    }
+
+    @Override
+    public String getNodeName() {
+        return currentNode < 0 ? "root" : MESH + currentNode;
+    }
+
+    @Override
+    public double[] getNodeGlobalAffineTransformation() {
+        return new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, Math.max(currentNode, 0), 0, 0, 1 };
+    }
+
+    @Override
+    public double[] getNodeGeometricTranslation() {
+        return new double[3];
+    }
+
+    @Override
+    public int getNodeAttributeCount() {
+        return currentNode < 0 ? 0 : 1;
+    }
+
+    @Override
+    public String getNodeAttributeName(int i) {
+        return getNodeName();
+    }
+
+    @Override
+    public String getNodeAttributeType(int i) {
+        return MESH;
+    }
+
+    @Override
+    public long getNodeAttributeId(int i) {
+        return currentNode;
+    }
+
+    @Override
+    public boolean isTriangleMesh(int i) {
+        return true;
+    }
+
+    @Override
+    public void triangulate(int i) {
+    }
+
+    @Override
+    public float[] getMeshVertices(int i) {
+        return meshData.getVertices().clone();
+    }
+
+    @Override
+    public float[] getMeshTexCoords(int i) {
+        return meshData.getTexCoords() != null ? meshData.getTexCoords().clone() : null;
+    }
+
+    @Override
+    public int[] getMeshFaces(int i) {
+        return meshData.getFaces().clone();
+    }
+
+    @Override
+    public int[] getMeshFaceSmoothingGroups(int i) {
+        return meshData.getSmoothingGroups() != null ? meshData.getSmoothingGroups().clone() : null;
+    }
+
+    @Override
+    public int getMeshDataSize(int i) {
+        return FbxMeshData.getSize(meshData.getVertices(), meshData.getTexCoords(), meshData.getFaces(),
+                meshData.getSmoothingGroups());
+    }
+
+    @Override
+    public boolean getMeshData(int i, ByteBuffer buffer) {
+        FbxMeshData.encode(buffer, meshData.getVertices(), meshData.getTexCoords(), meshData.getFaces(),
+                meshData.getSmoothingGroups());
+        return true;
+    }
+
+    @Override
+    public int getMaterialCount() {
+        return currentNode < 0 ? 0 : 1;
+    }
+
+    @Override
+    public String getMaterialName(int j) {
+        return "material";
+    }
+
+    @Override
+    public double[] getMaterialDiffuseColor(int j) {
+        return new double[] { 0.5, 0.5, 0.5, 1 };
+    }
+
+    @Override
+    public double[] getMaterialSpecularColor(int j) {
+        return null;
+    }
+
+    @Override
+    public double getMaterialSpecularPower(int j) {
+        return -1;
+    }
+
+    @Override
+    public String getMaterialDiffuseMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialSpecularMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialBumpMap(int j) {
+        return null;
+    }
+
+    @Override
+    public String getMaterialSelfIlluminationMap(int j) {
+        return null;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("No file is open");
+        }
+    }
+}
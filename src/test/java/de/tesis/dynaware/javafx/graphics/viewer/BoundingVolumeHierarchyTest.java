@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoundingVolumeHierarchy}.
+ */
+public class BoundingVolumeHierarchyTest {
+
+    // A row of cubes of size 2 at a depth of 50, every 20 along x from -195 to 185. The frustum of FrustumTest is 50
+    // wide at that depth, so the five cubes from -35 to 45 are visible.
+    private static final int NODE_COUNT = 20;
+    private static final int VISIBLE_COUNT = 5;
+    private static final double DEPTH = 50;
+
+    private static final double[] RAY_ALONG_ROW = { -300, 0, DEPTH, 1, 0, 0 };
+
+    private final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+    private final List<Node> nodes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = new Group();
+            nodes.add(node);
+            hierarchy.add(node, new BoundingBox(getX(i) - 1, -1, DEPTH - 1, 2, 2, 2));
+        }
+    }
+
+    @Test
+    public void cullNodesOutsideOfTheFrustum() throws NonInvertibleTransformException {
+
+        assertEquals(NODE_COUNT, hierarchy.size());
+        assertEquals(NODE_COUNT - VISIBLE_COUNT, hierarchy.cull(FrustumTest.createFrustum(new Group(), 100, 100)));
+
+        for (int i = 0; i < NODE_COUNT; i++) {
+            assertEquals("Node " + i, isInView(i), nodes.get(i).isVisible());
+        }
+    }
+
+    @Test
+    public void showNodesThatEnterTheFrustum() throws NonInvertibleTransformException {
+
+        hierarchy.cull(FrustumTest.createFrustum(new Group(), 100, 100));
+
+        // A viewport twice as wide sees twice as far along x.
+        assertEquals(NODE_COUNT - 10, hierarchy.cull(FrustumTest.createFrustum(new Group(), 200, 100)));
+        for (int i = 0; i < NODE_COUNT; i++) {
+            assertEquals("Node " + i, Math.abs(getX(i)) < 100, nodes.get(i).isVisible());
+        }
+    }
+
+    @Test
+    public void cullAgainAfterShowAll() throws NonInvertibleTransformException {
+
+        Frustum frustum = FrustumTest.createFrustum(new Group(), 100, 100);
+        hierarchy.cull(frustum);
+
+        hierarchy.showAll();
+        for (Node node : nodes) {
+            assertTrue(node.isVisible());
+        }
+        assertEquals(NODE_COUNT, hierarchy.findAlongRay(RAY_ALONG_ROW).size());
+
+        // Cells that were hidden before showAll() must be hidden again.
+        assertEquals(NODE_COUNT - VISIBLE_COUNT, hierarchy.cull(frustum));
+        for (int i = 0; i < NODE_COUNT; i++) {
+            assertEquals("Node " + i, isInView(i), nodes.get(i).isVisible());
+        }
+    }
+
+    @Test
+    public void findNodesAlongRay() {
+
+        List<BoundingVolumeHierarchy.RayEntry> rayEntries = hierarchy.findAlongRay(RAY_ALONG_ROW);
+
+        assertEquals(NODE_COUNT, rayEntries.size());
+        for (int i = 0; i < NODE_COUNT; i++) {
+            assertSame(nodes.get(i), rayEntries.get(i).getNode());
+            assertEquals(getX(i) + 300 - Math.sqrt(3), rayEntries.get(i).getDistance(), 1e-9);
+        }
+
+        // From inside of a bounding sphere, backwards, and beside the row.
+        rayEntries = hierarchy.findAlongRay(new double[] { getX(3), 0, DEPTH, -1, 0, 0 });
+        assertEquals(4, rayEntries.size());
+        assertSame(nodes.get(3), rayEntries.get(0).getNode());
+        assertEquals(0, rayEntries.get(0).getDistance(), 0);
+
+        assertTrue(hierarchy.findAlongRay(new double[] { -300, 10, DEPTH, 1, 0, 0 }).isEmpty());
+    }
+
+    @Test
+    public void skipCulledNodesAlongRay() throws NonInvertibleTransformException {
+
+        hierarchy.cull(FrustumTest.createFrustum(new Group(), 100, 100));
+
+        List<BoundingVolumeHierarchy.RayEntry> rayEntries = hierarchy.findAlongRay(RAY_ALONG_ROW);
+
+        assertEquals(VISIBLE_COUNT, rayEntries.size());
+        for (BoundingVolumeHierarchy.RayEntry rayEntry : rayEntries) {
+            assertTrue(rayEntry.getNode().isVisible());
+        }
+    }
+
+    @Test
+    public void addAfterCull() throws NonInvertibleTransformException {
+
+        Frustum frustum = FrustumTest.createFrustum(new Group(), 100, 100);
+        hierarchy.cull(frustum);
+
+        Node node = new Group();
+        hierarchy.add(node, new BoundingBox(-1, 200, DEPTH - 1, 2, 2, 2));
+
+        assertEquals(NODE_COUNT + 1, hierarchy.size());
+        assertEquals(NODE_COUNT + 1 - VISIBLE_COUNT, hierarchy.cull(frustum));
+        assertFalse(node.isVisible());
+        assertEquals(node, hierarchy.getNodes().get(NODE_COUNT));
+    }
+
+    @Test
+    public void clearWithoutShowing() throws NonInvertibleTransformException {
+
+        hierarchy.cull(FrustumTest.createFrustum(new Group(), 100, 100));
+        hierarchy.clear();
+
+        assertEquals(0, hierarchy.size());
+        assertEquals(0, hierarchy.cull(FrustumTest.createFrustum(new Group(), 100, 100)));
+        assertTrue(hierarchy.findAlongRay(RAY_ALONG_ROW).isEmpty());
+        assertFalse(nodes.get(0).isVisible());
+    }
+
+    private static double getX(int i) {
+        return 20 * i - 195;
+    }
+
+    private static boolean isInView(int i) {
+        return Math.abs(getX(i)) < DEPTH;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import static org.junit.Assert.assertEquals;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Frustum}.
+ */
+public class FrustumTest {
+
+    // With a field of view of 90 degrees, the frustum is as wide as it is far from the camera.
+    private static final double FIELD_OF_VIEW = 90;
+    private static final double NEAR_CLIP = 1;
+    private static final double FAR_CLIP = 100;
+
+    @Test
+    public void testNearAndFarPlanes() throws NonInvertibleTransformException {
+
+        Frustum frustum = createFrustum(new Group(), 100, 100);
+
+        assertEquals(Frustum.INSIDE, frustum.test(0, 0, 50, 1));
+        assertEquals(Frustum.INTERSECTING, frustum.test(0, 0, 50, 60));
+
+        // Behind the camera, between the camera and the near plane, and beyond the far plane.
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 0, -10, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 0, 0.5, 0.1));
+        assertEquals(Frustum.INTERSECTING, frustum.test(0, 0, 0.5, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 0, 110, 5));
+        assertEquals(Frustum.INTERSECTING, frustum.test(0, 0, 99, 5));
+    }
+
+    @Test
+    public void testSidePlanes() throws NonInvertibleTransformException {
+
+        Frustum frustum = createFrustum(new Group(), 100, 100);
+
+        // At a depth of 50, the side planes are at 50 along x and y. The distance is measured normal to the plane.
+        assertEquals(Frustum.INSIDE, frustum.test(45, 0, 50, 1));
+        assertEquals(Frustum.INTERSECTING, frustum.test(49, 0, 50, 1));
+        assertEquals(Frustum.INTERSECTING, frustum.test(51, 0, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(60, 0, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(-60, 0, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 60, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, -60, 50, 1));
+    }
+
+    @Test
+    public void widenWithAspectRatio() throws NonInvertibleTransformException {
+
+        // The field of view is vertical, so a viewport twice as wide as high sees twice as far along x.
+        Frustum frustum = createFrustum(new Group(), 200, 100);
+
+        assertEquals(Frustum.INSIDE, frustum.test(90, 0, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(110, 0, 50, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 60, 50, 1));
+    }
+
+    @Test
+    public void testInCoordinatesOfTheNode() throws NonInvertibleTransformException {
+
+        // The node is moved in front of the camera and scaled by 2, so its origin is at a depth of 50.
+        Group node = new Group();
+        node.getTransforms().addAll(new Translate(0, 0, 50), new Scale(2, 2, 2));
+
+        Frustum frustum = createFrustum(node, 100, 100);
+
+        assertEquals(Frustum.INSIDE, frustum.test(0, 0, 0, 1));
+        assertEquals(Frustum.INTERSECTING, frustum.test(0, 0, 0, 30));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 0, 30, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(30, 0, 0, 1));
+    }
+
+    @Test
+    public void testInCoordinatesOfTheCamera() throws NonInvertibleTransformException {
+
+        PerspectiveCamera camera = createCamera();
+        camera.setTranslateZ(-50);
+
+        Frustum frustum = new Frustum(camera, new Group(), 100, 100);
+
+        assertEquals(Frustum.INSIDE, frustum.test(0, 0, 0, 1));
+        assertEquals(Frustum.OUTSIDE, frustum.test(0, 0, -55, 1));
+    }
+
+    /**
+     * Creates a camera at the origin that looks along the z axis.
+     */
+    static PerspectiveCamera createCamera() {
+
+        PerspectiveCamera camera = new PerspectiveCamera(true);
+        camera.setFieldOfView(FIELD_OF_VIEW);
+        camera.setNearClip(NEAR_CLIP);
+        camera.setFarClip(FAR_CLIP);
+        return camera;
+    }
+
+    /**
+     * Creates the frustum of a camera at the origin for spheres in the coordinates of a node.
+     */
+    static Frustum createFrustum(Node node, double width, double height) throws NonInvertibleTransformException {
+        return new Frustum(createCamera(), node, width, height);
+    }
+}
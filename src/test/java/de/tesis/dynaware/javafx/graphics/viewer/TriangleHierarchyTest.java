@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 TESIS DYNAware GmbH.
+ * All rights reserved. Use is subject to license terms.
+ *
+ * This file is licensed under the Eclipse Public License v1.0, which accompanies this
+ * distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ */
+package de.tesis.dynaware.javafx.graphics.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TriangleHierarchy}.
+ */
+public class TriangleHierarchyTest {
+
+    private static final double DELTA = 1e-6;
+
+    // Three grids of 8 x 8 quads in the planes z = 0, 1 and 2, each spanning 0 to 8 in x and y.
+    private static final int GRID_SIZE = 8;
+    private static final int LAYER_COUNT = 3;
+
+    private static final int TRIANGLES_PER_LAYER = 2 * GRID_SIZE * GRID_SIZE;
+
+    @Test
+    public void hitClosestTriangle() {
+
+        TriangleHierarchy hierarchy = new TriangleHierarchy(createLayers(VertexFormat.POINT_TEXCOORD)).build();
+        double[] hit = new double[3];
+
+        int triangle = hierarchy.intersect(new double[] { 2.25, 3.5, 10, 0, 0, -1 }, Double.POSITIVE_INFINITY, hit);
+
+        assertEquals(2, triangle / TRIANGLES_PER_LAYER);
+        assertEquals(8, hit[0], DELTA);
+        assertTrue(hit[1] >= 0 && hit[2] >= 0 && hit[1] + hit[2] <= 1);
+
+        // The direction is not normalized, the distance is in multiples of it.
+        hierarchy.intersect(new double[] { 2.25, 3.5, 10, 0, 0, -4 }, Double.POSITIVE_INFINITY, hit);
+        assertEquals(2, hit[0], DELTA);
+    }
+
+    @Test
+    public void hitBackSides() {
+
+        TriangleHierarchy hierarchy = new TriangleHierarchy(createLayers(VertexFormat.POINT_TEXCOORD)).build();
+        double[] hit = new double[3];
+
+        int triangle = hierarchy.intersect(new double[] { 5.5, 0.5, -3, 0, 0, 1 }, Double.POSITIVE_INFINITY, hit);
+
+        assertEquals(0, triangle / TRIANGLES_PER_LAYER);
+        assertEquals(3, hit[0], DELTA);
+    }
+
+    @Test
+    public void missTriangles() {
+
+        TriangleHierarchy hierarchy = new TriangleHierarchy(createLayers(VertexFormat.POINT_TEXCOORD)).build();
+        double[] hit = new double[3];
+
+        // Beside the grids, pointing away from them, and before the maximum distance.
+        assertEquals(-1, hierarchy.intersect(new double[] { 9, 4, 10, 0, 0, -1 }, Double.POSITIVE_INFINITY, hit));
+        assertEquals(-1, hierarchy.intersect(new double[] { 4, 4, 10, 0, 0, 1 }, Double.POSITIVE_INFINITY, hit));
+        assertEquals(-1, hierarchy.intersect(new double[] { 4, 4, 10, 0, 0, -1 }, 8, hit));
+        assertEquals(-1, new TriangleHierarchy(new TriangleMesh()).build().intersect(
+                new double[] { 0, 0, 0, 0, 0, 1 }, Double.POSITIVE_INFINITY, hit));
+    }
+
+    @Test
+    public void supportNormalVertexFormat() {
+
+        TriangleHierarchy hierarchy = new TriangleHierarchy(createLayers(VertexFormat.POINT_NORMAL_TEXCOORD)).build();
+        double[] hit = new double[3];
+
+        int triangle = hierarchy.intersect(new double[] { 7.75, 7.5, 10, 0, 0, -1 }, Double.POSITIVE_INFINITY, hit);
+
+        assertEquals(2, triangle / TRIANGLES_PER_LAYER);
+        assertEquals(8, hit[0], DELTA);
+    }
+
+    @Test
+    public void refitChangedPoints() {
+
+        TriangleMesh mesh = createLayers(VertexFormat.POINT_TEXCOORD);
+        TriangleHierarchy hierarchy = new TriangleHierarchy(mesh).build();
+        double[] ray = { 4.25, 4.5, 10, 0, 0, -1 };
+        double[] hit = new double[3];
+
+        hierarchy.intersect(ray, Double.POSITIVE_INFINITY, hit);
+        assertEquals(8, hit[0], DELTA);
+
+        // Move all layers up by 5, like a deformation of the mesh.
+        float[] points = mesh.getPoints().toArray(null);
+        for (int i = 2; i < points.length; i += 3) {
+            points[i] += 5;
+        }
+        mesh.getPoints().setAll(points);
+
+        int triangle = hierarchy.intersect(ray, Double.POSITIVE_INFINITY, hit);
+        assertEquals(2, triangle / TRIANGLES_PER_LAYER);
+        assertEquals(3, hit[0], DELTA);
+    }
+
+    @Test
+    public void matchBruteForce() {
+
+        Random random = new Random(42);
+        int triangleCount = 500;
+
+        float[] points = new float[9 * triangleCount];
+        for (int i = 0; i < points.length; i += 9) {
+            float x = 20 * random.nextFloat(), y = 20 * random.nextFloat(), z = 20 * random.nextFloat();
+            for (int k = 0; k < 9; k += 3) {
+                points[i + k] = x + random.nextFloat() * 2 - 1;
+                points[i + k + 1] = y + random.nextFloat() * 2 - 1;
+                points[i + k + 2] = z + random.nextFloat() * 2 - 1;
+            }
+        }
+
+        TriangleHierarchy hierarchy = new TriangleHierarchy(createMesh(points)).build();
+
+        // A single triangle is a single leaf, so testing all of them one by one is a brute force search.
+        TriangleHierarchy[] singles = new TriangleHierarchy[triangleCount];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            float[] trianglePoints = new float[9];
+            System.arraycopy(points, 9 * triangle, trianglePoints, 0, 9);
+            singles[triangle] = new TriangleHierarchy(createMesh(trianglePoints)).build();
+        }
+
+        double[] hit = new double[3];
+        double[] singleHit = new double[3];
+        int hitCount = 0;
+
+        for (int i = 0; i < 1000; i++) {
+
+            double[] ray = { -5, 20 * random.nextDouble(), 20 * random.nextDouble(), 1,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5 };
+
+            double closest = Double.POSITIVE_INFINITY;
+            int closestTriangle = -1;
+            for (int triangle = 0; triangle < triangleCount; triangle++) {
+                if (singles[triangle].intersect(ray, closest, singleHit) >= 0) {
+                    closest = singleHit[0];
+                    closestTriangle = triangle;
+                }
+            }
+
+            int triangle = hierarchy.intersect(ray, Double.POSITIVE_INFINITY, hit);
+            assertEquals("Ray " + i, closestTriangle, triangle);
+            if (triangle >= 0) {
+                assertEquals(closest, hit[0], DELTA);
+                hitCount++;
+            }
+        }
+        assertTrue("Too few hits [" + hitCount + "]", hitCount > 100);
+    }
+
+    /**
+     * Creates a mesh of separate triangles from their points.
+     */
+    private static TriangleMesh createMesh(float[] points) {
+
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(0, 0);
+
+        int[] faces = new int[2 * points.length / 3];
+        for (int i = 0; i < faces.length; i += 2) {
+            faces[i] = i / 2;
+        }
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
+
+    /**
+     * Creates three parallel grids, lowest first.
+     */
+    private static TriangleMesh createLayers(VertexFormat vertexFormat) {
+
+        int rowLength = GRID_SIZE + 1;
+        int layerPointCount = rowLength * rowLength;
+
+        float[] points = new float[3 * LAYER_COUNT * layerPointCount];
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            for (int point = 0; point < layerPointCount; point++) {
+                int offset = 3 * (layer * layerPointCount + point);
+                points[offset] = point % rowLength;
+                points[offset + 1] = point / rowLength;
+                points[offset + 2] = layer;
+            }
+        }
+
+        // Every vertex refers to point i, texture coordinate 0 and, if the format has normals, normal 0.
+        int vertexSize = vertexFormat.getVertexIndexSize();
+        int[] faces = new int[3 * vertexSize * LAYER_COUNT * TRIANGLES_PER_LAYER];
+        int f = 0;
+
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            for (int y = 0; y < GRID_SIZE; y++) {
+                for (int x = 0; x < GRID_SIZE; x++) {
+                    int p0 = layer * layerPointCount + y * rowLength + x;
+                    for (int p : new int[] { p0, p0 + 1, p0 + rowLength + 1, p0, p0 + rowLength + 1,
+                            p0 + rowLength }) {
+                        faces[f] = p;
+                        f += vertexSize;
+                    }
+                }
+            }
+        }
+
+        TriangleMesh mesh = new TriangleMesh(vertexFormat);
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(0, 0);
+        if (vertexFormat == VertexFormat.POINT_NORMAL_TEXCOORD) {
+            mesh.getNormals().setAll(0, 0, 1);
+        }
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
+}